@@ -24,7 +24,55 @@ package org.apache.royale.compiler.config;
  */
 public class CompilerDiagnosticsConstants
 {
-	public static int diagnostics = 0;
+    /**
+     * The diagnostic output that is turned on, which is every kind that a
+     * compilation that is running turned on. Only set it with
+     * {@link #addDiagnostics(int)} and {@link #removeDiagnostics(int)}, so
+     * that compilations that run at the same time each get the output they
+     * asked for.
+     */
+    public static volatile int diagnostics = 0;
+
+    /**
+     * The number of running compilations that turned on each kind of
+     * diagnostic output.
+     */
+    private static final int[] diagnosticsCounts = new int[Integer.SIZE];
+
+    /**
+     * Turns on diagnostic output for a compilation.
+     * 
+     * @param level The diagnostic output the compilation asked for.
+     */
+    public static synchronized void addDiagnostics(int level)
+    {
+        for (int i = 0; i < Integer.SIZE; i++)
+        {
+            if ((level & (1 << i)) != 0)
+                diagnosticsCounts[i]++;
+        }
+        diagnostics |= level;
+    }
+
+    /**
+     * Turns off the diagnostic output of a compilation that is done, unless
+     * another running compilation also asked for it.
+     * 
+     * @param level The level that was given to {@link #addDiagnostics(int)}.
+     */
+    public static synchronized void removeDiagnostics(int level)
+    {
+        int remaining = 0;
+        for (int i = 0; i < Integer.SIZE; i++)
+        {
+            if ((level & (1 << i)) != 0 && diagnosticsCounts[i] > 0)
+                diagnosticsCounts[i]--;
+            if (diagnosticsCounts[i] > 0)
+                remaining |= 1 << i;
+        }
+        diagnostics = remaining;
+    }
+
     public static final int NODE_REFERENCES = 1;
     public static final int COUNTER = 2;
     public static final int CLASS_DEFINITION_BASE = 4;
@@ -500,6 +500,31 @@ public class Configuration
         this.sizeReportFileName = getOutputPath(cv, filename);
     }
 
+    //
+    // 'profile-report' option
+    //
+
+    private String profileReportFileName = null;
+
+    public File getProfileReport()
+    {
+        return profileReportFileName != null ? new File(profileReportFileName) : null;
+    }
+
+    /**
+     * Records how long each operation on each compilation unit takes, and on
+     * which thread, and writes them to the specified file as a Trace Event
+     * JSON file that can be opened in chrome://tracing, Perfetto or
+     * speedscope. The file also lists the compilation units by total time.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-report")
+    @Arguments("filename")
+    public void setProfileReport(ConfigurationValue cv, String filename)
+    {
+        this.profileReportFileName = getOutputPath(cv, filename);
+    }
+
     // 'api-report' option
     //
 
@@ -2404,6 +2429,318 @@ public class Configuration
         this.enableSwcVersionFiltering = enable;
     }
 
+    //
+    // 'compiler.swc-index-cache-dir' option
+    //
+
+    private String swcIndexCacheDir = null;
+
+    /**
+     * @return the directory where the indexes of SWC catalogs are cached, or
+     * null if they are not cached.
+     */
+    public File getSwcIndexCacheDir()
+    {
+        return swcIndexCacheDir != null ? new File(swcIndexCacheDir) : null;
+    }
+
+    /**
+     * Caches a binary index of the catalog of every SWC on the library paths
+     * in the specified directory, so that later compilations can load the
+     * SWCs without reading their catalogs again. An index is only used while
+     * the SWC has the same size and modification time.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "swc-index-cache-dir" })
+    @Arguments("directory")
+    public void setCompilerSwcIndexCacheDir(ConfigurationValue cv, String directory)
+    {
+        this.swcIndexCacheDir = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'compiler.file-scope-cache-dir' option
+    //
+
+    private String fileScopeCacheDir = null;
+
+    /**
+     * @return the directory where the file scopes of ActionScript source
+     * files are cached, or null if they are not cached.
+     */
+    public File getFileScopeCacheDir()
+    {
+        return fileScopeCacheDir != null ? new File(fileScopeCacheDir) : null;
+    }
+
+    /**
+     * Caches the definitions of every ActionScript source file in the
+     * specified directory, so that later compilations can resolve the
+     * definitions of an unchanged file without parsing it first. A cached
+     * file scope is only used while the file, the compiler and the config
+     * variables are the same.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "file-scope-cache-dir" })
+    @Arguments("directory")
+    public void setCompilerFileScopeCacheDir(ConfigurationValue cv, String directory)
+    {
+        this.fileScopeCacheDir = getOutputPath(cv, directory);
+    }
+
+    //
+    // 'compiler.scope-cache-max-entries' option
+    //
+
+    private int scopeCacheMaxEntries = 0;
+
+    /**
+     * @return the maximum number of entries in each name lookup cache of a
+     * scope, or 0 if the caches are soft referenced and unbounded.
+     */
+    public int getScopeCacheMaxEntries()
+    {
+        return scopeCacheMaxEntries;
+    }
+
+    /**
+     * Keeps the name lookup caches of every scope strongly referenced, and
+     * limits each of them to the specified number of entries. By default, 0,
+     * the caches are soft referenced and unbounded, so the VM drops them when
+     * it runs low on memory.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "scope-cache-max-entries" })
+    @Arguments("count")
+    public void setCompilerScopeCacheMaxEntries(ConfigurationValue cv, int count) throws ConfigurationException
+    {
+        if (count < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(count), cv.getVar(), cv.getSource(), cv.getLine());
+        this.scopeCacheMaxEntries = count;
+    }
+
+    //
+    // 'compiler.scope-cache-max-scopes' option
+    //
+
+    private int scopeCacheMaxScopes = 0;
+
+    /**
+     * @return the maximum number of scopes whose name lookups are cached, or
+     * 0 if they are only limited by the available memory.
+     */
+    public int getScopeCacheMaxScopes()
+    {
+        return scopeCacheMaxScopes;
+    }
+
+    /**
+     * Limits the number of scopes whose name lookups are cached. Once there
+     * are more, the caches of the least recently used scopes are dropped. By
+     * default, 0, the caches are only dropped when the VM runs low on memory.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "scope-cache-max-scopes" })
+    @Arguments("count")
+    public void setCompilerScopeCacheMaxScopes(ConfigurationValue cv, int count) throws ConfigurationException
+    {
+        if (count < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(count), cv.getVar(), cv.getSource(), cv.getLine());
+        this.scopeCacheMaxScopes = count;
+    }
+
+    //
+    // 'compiler.scope-cache-statistics' option
+    //
+
+    private boolean scopeCacheStatistics = false;
+
+    public boolean getScopeCacheStatistics()
+    {
+        return scopeCacheStatistics;
+    }
+
+    /**
+     * Counts the hits, misses, rebuilds and evictions of the name lookup
+     * caches of the scopes, and prints them when the compilation is done.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "scope-cache-statistics" })
+    public void setCompilerScopeCacheStatistics(ConfigurationValue cv, boolean enable)
+    {
+        this.scopeCacheStatistics = enable;
+    }
+
+    //
+    // 'compiler.request-statistics' option
+    //
+
+    private boolean requestStatistics = false;
+
+    public boolean getRequestStatistics()
+    {
+        return requestStatistics;
+    }
+
+    /**
+     * Counts the requests of each kind made by the compilation units, how
+     * many of them ran on the requesting thread because no worker thread was
+     * free, and how long they spent queued, computing and blocking their
+     * callers. Prints them when the compilation is done.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "request-statistics" })
+    public void setCompilerRequestStatistics(ConfigurationValue cv, boolean enable)
+    {
+        this.requestStatistics = enable;
+    }
+
+    //
+    // 'compiler.threads' option
+    //
+
+    private int threads = 0;
+
+    /**
+     * @return the maximum number of threads used to compile, or 0 for the
+     * default.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the maximum number of threads that compile the source files. When
+     * all of them are busy, or waiting on other files, the remaining work runs
+     * on the thread that needs it. 0 uses the default of 16 threads.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "threads" })
+    @Arguments("count")
+    public void setCompilerThreads(ConfigurationValue cv, int count) throws ConfigurationException
+    {
+        if (count < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(count), cv.getVar(), cv.getSource(), cv.getLine());
+        this.threads = count;
+    }
+
+    //
+    // 'compiler.library-cache-max-size' option
+    //
+
+    private int libraryCacheMaxSize = 0;
+
+    /**
+     * @return the maximum size, in megabytes, of each of the caches of SWC
+     * and SWF contents, or 0 if there is none.
+     */
+    public int getLibraryCacheMaxSize()
+    {
+        return libraryCacheMaxSize;
+    }
+
+    /**
+     * Limits the size, in megabytes, of the SWCs and of the SWFs read from
+     * them that are kept in memory for later compilations in the same
+     * process. The least recently used ones are dropped first. 0, the
+     * default, keeps them until the JVM runs low on memory.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "library-cache-max-size" })
+    @Arguments("megabytes")
+    public void setCompilerLibraryCacheMaxSize(ConfigurationValue cv, int size) throws ConfigurationException
+    {
+        if (size < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(size), cv.getVar(), cv.getSource(), cv.getLine());
+        this.libraryCacheMaxSize = size;
+    }
+
+    //
+    // 'compiler.virtual-threads' option
+    //
+
+    private boolean virtualThreads = false;
+
+    public boolean getVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    /**
+     * Compiles each source file on its own virtual thread, so that files
+     * waiting on other files do not tie up a platform thread, and ignores
+     * compiler.threads. Needs Java 21 or later; other JVMs use platform
+     * threads. This is experimental: scope lookups then skip the per thread
+     * caches, so it is not faster for every project.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "virtual-threads" })
+    public void setCompilerVirtualThreads(ConfigurationValue cv, boolean enable)
+    {
+        this.virtualThreads = enable;
+    }
+
+    //
+    // 'compiler.swf-compression-level' option
+    //
+
+    private int swfCompressionLevel = -1;
+
+    /**
+     * @return the ZLIB compression level of SWF files, or -1 for the default.
+     */
+    public int getSwfCompressionLevel()
+    {
+        return swfCompressionLevel;
+    }
+
+    /**
+     * Sets the ZLIB compression level, 0 to 9, used for compressed SWF files.
+     * The default, -1, uses the fastest level for debug SWFs and the best
+     * compression otherwise.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "swf-compression-level" })
+    @Arguments("level")
+    public void setCompilerSwfCompressionLevel(ConfigurationValue cv, int level) throws ConfigurationException
+    {
+        if (level < -1 || level > 9)
+            throw new ConfigurationException.BadValue(String.valueOf(level), cv.getVar(), cv.getSource(), cv.getLine());
+        this.swfCompressionLevel = level;
+    }
+
+    //
+    // 'compiler.swf-compression-threads' option
+    //
+
+    private int swfCompressionThreads = 1;
+
+    /**
+     * @return the number of threads used to compress SWF files, or 0 for one
+     * per processor.
+     */
+    public int getSwfCompressionThreads()
+    {
+        return swfCompressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to compress SWF files with ZLIB. With
+     * more than one thread, the SWF is compressed in chunks that are
+     * concatenated into a single ZLIB stream, which is slightly larger. 0 uses
+     * one thread per processor. The default is 1.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "swf-compression-threads" })
+    @Arguments("count")
+    public void setCompilerSwfCompressionThreads(ConfigurationValue cv, int count) throws ConfigurationException
+    {
+        if (count < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(count), cv.getVar(), cv.getSource(), cv.getLine());
+        this.swfCompressionThreads = count;
+    }
+
     //
     // 'compiler.library-path' option
     //
@@ -6116,6 +6453,65 @@ public class Configuration
         this.removeDeadCode = b;
     }
 
+    //
+    // 'compiler.link-threads' option
+    //
+
+    private int linkThreads = 1;
+
+    /**
+     * @return the number of threads used to link the ABC blocks of a SWF,
+     * or 0 for one thread per processor.
+     */
+    public int getLinkThreads()
+    {
+        return linkThreads;
+    }
+
+    /**
+     * Sets the number of threads used to parse and optimize the ABC blocks
+     * that are linked into a SWF. The blocks are still merged in order, so
+     * the output doesn't depend on the number of threads. 0 uses one thread
+     * per processor. The default is 1.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "link-threads" })
+    @Arguments("count")
+    public void setCompilerLinkThreads(ConfigurationValue cv, int count) throws ConfigurationException
+    {
+        if (count < 0)
+            throw new ConfigurationException.BadValue(String.valueOf(count), cv.getVar(), cv.getSource(), cv.getLine());
+        this.linkThreads = count;
+    }
+
+    //
+    // 'compiler.incremental-link' option
+    //
+
+    private boolean incrementalLink = false;
+
+    /**
+     * @return true if the linked form of the ABC blocks of an application
+     * SWF is kept between builds.
+     */
+    public boolean getIncrementalLink()
+    {
+        return incrementalLink;
+    }
+
+    /**
+     * Keep the stripped and optimized form of each ABC block linked into an
+     * application SWF, so the next build of the same project only parses and
+     * optimizes the blocks that changed. This is useful when the compiler
+     * stays in memory between builds. The default is false.
+     */
+    @Config(advanced = true)
+    @Mapping({ "compiler", "incremental-link" })
+    public void setCompilerIncrementalLink(ConfigurationValue cv, boolean b)
+    {
+        this.incrementalLink = b;
+    }
+
     //
     // Validation methods from ToolsConfiguration
     //
@@ -45,10 +45,31 @@ public class FileSpecification extends BaseFileSpecification implements IBinaryF
 	 *            The path of the file.
 	 */
 	public FileSpecification(String path) {
+		this(path, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param path
+	 *            The path of the file.
+	 * @param useCRLFFilter
+	 *            True to drop the carriage returns of the file when it is read.
+	 */
+	public FileSpecification(String path, boolean useCRLFFilter) {
 		super(path);
+		this.useCRLFFilter = useCRLFFilter;
 	}
 
-	public static boolean useCRLFFilter = false;
+	private final boolean useCRLFFilter;
+
+	/**
+	 * @return True if the carriage returns of the file are dropped when it
+	 *         is read.
+	 */
+	public boolean isUsingCRLFFilter() {
+		return useCRLFFilter;
+	}
 	
 	@Override
 	public int hashCode() {
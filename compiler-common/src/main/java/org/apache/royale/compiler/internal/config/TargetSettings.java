@@ -595,6 +595,18 @@ public class TargetSettings implements ITargetSettings
         return configuration.getRemoveDeadCode();
     }
 
+    @Override
+    public int getLinkThreads()
+    {
+        return configuration.getLinkThreads();
+    }
+
+    @Override
+    public boolean getIncrementalLink()
+    {
+        return configuration.getIncrementalLink();
+    }
+
 	@Override
 	public String getSWFMetadataDate() {
 		return configuration.getMetadataDate();
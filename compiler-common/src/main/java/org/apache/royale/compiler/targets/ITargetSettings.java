@@ -494,6 +494,18 @@ public interface ITargetSettings
      */
     boolean getRemoveDeadCode();
 
+    /**
+     * @return the number of threads used to link the ABC blocks of a SWF,
+     * or 0 for one thread per processor.
+     */
+    int getLinkThreads();
+
+    /**
+     * @return true if the linked form of the ABC blocks of an application
+     * SWF is kept between builds of the same project.
+     */
+    boolean getIncrementalLink();
+
     /**
      * Gets the implicit imports for MXML.
      * 
@@ -88,6 +88,34 @@ public interface IWorkspace extends IFileSpecificationGetter
      */
     void doneBuilding();
 
+    /**
+     * Replaces the executor that runs the requests of the compilation units
+     * in this workspace, unless it was already created with the same options.
+     * Like {@link #startIdleState()}, this waits for the requests that are
+     * running to complete, and holds off new ones until the executor is
+     * replaced, so it must not be called by a thread that is between
+     * {@link #startBuilding()} and {@link #doneBuilding()}.
+     * 
+     * @param threadCount The maximum number of threads the executor uses, or
+     * 0 for the default. When all of them are busy, requests run on the thread
+     * that makes them.
+     * @param useVirtualThreads true to run each request on its own virtual
+     * thread instead, so that requests blocked waiting on other requests do
+     * not tie up a platform thread. The thread count is then ignored. If the
+     * JVM does not support virtual threads, platform threads are used. Since
+     * no thread runs more than one request, the per thread scope caches of
+     * the projects are not used in this mode, and every lookup goes to the
+     * shared scope caches. Whether this is faster than the default depends on
+     * the project; measure it with {@code WorkspaceExecutorBenchmark}.
+     */
+    void setExecutorOptions(int threadCount, boolean useVirtualThreads);
+
+    /**
+     * @return true if the requests of the compilation units in this workspace
+     * run on virtual threads.
+     */
+    boolean isUsingVirtualThreads();
+
     /**
      * Sets the {@link IWorkspaceProfilingDelegate} on the workspace.
      * 
@@ -114,14 +114,23 @@ class CollapsePropertiesWithModuleSupport implements CompilerPass {
   /** list of aliases that are also in externs */
   private List<String> externAliases;
 
+  /** lists of aliases that are also in externs, by extern node tree, from ProcessClosurePrimitives */
+  private final Map<Node, List<String>> externedAliases;
+
+  /** lists of goog.provides, by extern node tree, from ProcessClosurePrimitives */
+  private final Map<Node, List<String>> providedsMap;
+
   /** list of aliases that came from goog.provides */
   private List<String> providedAliases = new ArrayList<String>();
   
   /** list of namespaces that came from goog.provides */
   private List<String> providedNamespaces = new ArrayList<String>();
   
-  CollapsePropertiesWithModuleSupport(AbstractCompiler compiler, PropertyCollapseLevel propertyCollapseLevel, String sourceFileName, File varRenameMapFile) {
+  CollapsePropertiesWithModuleSupport(AbstractCompiler compiler, PropertyCollapseLevel propertyCollapseLevel, String sourceFileName, File varRenameMapFile,
+      Map<Node, List<String>> externedAliases, Map<Node, List<String>> providedsMap) {
     this.compiler = compiler;
+    this.externedAliases = externedAliases;
+    this.providedsMap = providedsMap;
     this.propertyCollapseLevel = propertyCollapseLevel;
     this.varRenameMapFile = varRenameMapFile;
     this.sourceFileName = sourceFileName;
@@ -131,7 +140,7 @@ class CollapsePropertiesWithModuleSupport implements CompilerPass {
   public void process(Node externs, Node root) {
 	// ProcessClosurePrimitives runs first and builds up an initial list of
 	// namespaces from goog.provides that were also in externs.
-	externAliases = ProcessClosurePrimitivesWithModuleSupport.externedAliases.get(externs);
+	externAliases = externedAliases.get(externs);
 	int n = externAliases.size();
 	for (int i = 0; i < n; i++)
 	{
@@ -141,7 +150,7 @@ class CollapsePropertiesWithModuleSupport implements CompilerPass {
 	}
 	// ProcessClosurePrimitives runs first and builds up an initial list of
 	// namespaces from goog.provides.
-	providedAliases = ProcessClosurePrimitivesWithModuleSupport.providedsMap.get(externs);
+	providedAliases = providedsMap.get(externs);
 	providedNamespaces.addAll(providedAliases);
 	n = providedAliases.size();
 	for (int i = 0; i < n; i++)
@@ -40,7 +40,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import javax.annotation.Nullable;
 
@@ -193,12 +192,16 @@ class ProcessClosurePrimitivesWithModuleSupport extends AbstractPostOrderCallbac
   ProcessClosurePrimitivesWithModuleSupport(AbstractCompiler compiler,
       @Nullable PreprocessorSymbolTable preprocessorSymbolTable,
       CheckLevel requiresLevel,
-      boolean preserveGoogProvidesAndRequires) {
+      boolean preserveGoogProvidesAndRequires,
+      Map<Node, List<String>> externedAliases,
+      Map<Node, List<String>> providedsMap) {
     this.compiler = compiler;
     this.preprocessorSymbolTable = preprocessorSymbolTable;
     this.moduleGraph = compiler.getModuleGraph();
     this.requiresLevel = requiresLevel;
     this.preserveGoogProvidesAndRequires = preserveGoogProvidesAndRequires;
+    this.externedAliases = externedAliases;
+    this.providedsMap = providedsMap;
 
     // goog is special-cased because it is provided in Closure's base library.
     providedNames.put(GOOG,
@@ -213,13 +216,13 @@ class ProcessClosurePrimitivesWithModuleSupport extends AbstractPostOrderCallbac
   private ArrayList<String> externStrings = new ArrayList<String>();
 
   /** a map extern node trees to their list of vars that are in the externs but also renamed/aliased */
-  public static WeakHashMap<Node, List<String>> externedAliases = new WeakHashMap<Node, List<String>>();
+  private final Map<Node, List<String>> externedAliases;
   
   /** list of namespaces that are in the externs but also renamed/aliased */
   private ArrayList<String> externAliases = new ArrayList<String>();
   
   /** a map extern node trees to the processed goog.provides */
-  public static WeakHashMap<Node, List<String>> providedsMap = new WeakHashMap<Node, List<String>>();
+  private final Map<Node, List<String>> providedsMap;
   
   /** list of namespaces that are goog.provided */
   private ArrayList<String> provideds = new ArrayList<String>();
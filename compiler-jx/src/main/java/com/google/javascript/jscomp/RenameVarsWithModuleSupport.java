@@ -150,6 +150,9 @@ final class RenameVarsWithModuleSupport implements CompilerPass {
 
   /* list of aliases from the externs */
   private List<String> externAliases;
+
+  /* lists of aliases from the externs, by extern node tree, from ProcessClosurePrimitives */
+  private final Map<Node, List<String>> externedAliases;
   
   /*
    * nameGenerator is a shared NameGenerator that this instance can use;
@@ -162,8 +165,10 @@ final class RenameVarsWithModuleSupport implements CompilerPass {
       boolean preferStableNames, VariableMap prevUsedRenameMap,
       @Nullable char[] reservedCharacters,
       @Nullable Set<String> reservedNames,
-      NameGenerator nameGenerator) {
+      NameGenerator nameGenerator,
+      Map<Node, List<String>> externedAliases) {
     this.compiler = compiler;
+    this.externedAliases = externedAliases;
     this.prefix = nullToEmpty(prefix);
     this.localRenamingOnly = localRenamingOnly;
     this.preserveFunctionExpressionNames = preserveFunctionExpressionNames;
@@ -348,7 +353,7 @@ final class RenameVarsWithModuleSupport implements CompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-	externAliases = ProcessClosurePrimitivesWithModuleSupport.externedAliases.get(externs);
+	externAliases = externedAliases.get(externs);
     this.externNames = NodeUtil.collectExternVariableNames(this.compiler, externs);
 
     originalNameByNode.clear();
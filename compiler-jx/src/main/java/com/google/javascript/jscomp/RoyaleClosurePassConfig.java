@@ -71,6 +71,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.Nullable;
 
 /**
@@ -130,6 +131,12 @@ public final class RoyaleClosurePassConfig extends PassConfig {
 
   /** file of already renamed vars */
   private File varRenameMapFile;
+
+  /** a map extern node trees to their list of vars that are in the externs but also renamed/aliased */
+  private final Map<Node, List<String>> externedAliases = new WeakHashMap<Node, List<String>>();
+
+  /** a map extern node trees to the processed goog.provides */
+  private final Map<Node, List<String>> providedsMap = new WeakHashMap<Node, List<String>>();
   
   public RoyaleClosurePassConfig(CompilerOptions options, String sourceFileName, File varRenameMapFile) {
     super(options);
@@ -1291,7 +1298,9 @@ public final class RoyaleClosurePassConfig extends PassConfig {
                   compiler,
                   preprocessorSymbolTableFactory.getInstanceOrNull(),
                   options.brokenClosureRequiresLevel,
-                  options.shouldPreservesGoogProvidesAndRequires());
+                  options.shouldPreservesGoogProvidesAndRequires(),
+                  externedAliases,
+                  providedsMap);
 
           return new HotSwapCompilerPass() {
             @Override
@@ -2400,7 +2409,8 @@ public final class RoyaleClosurePassConfig extends PassConfig {
       new PassFactory(PassNames.COLLAPSE_PROPERTIES, true) {
         @Override
         protected CompilerPass create(AbstractCompiler compiler) {
-          return new CollapsePropertiesWithModuleSupport(compiler, options.getPropertyCollapseLevel(), sourceFileName, varRenameMapFile);
+          return new CollapsePropertiesWithModuleSupport(compiler, options.getPropertyCollapseLevel(), sourceFileName, varRenameMapFile,
+              externedAliases, providedsMap);
         }
 
         @Override
@@ -3090,7 +3100,8 @@ public final class RoyaleClosurePassConfig extends PassConfig {
         prevVariableMap,
         reservedChars,
         reservedNames,
-        options.nameGenerator);
+        options.nameGenerator,
+        externedAliases);
     rn.process(externs, root);
     return rn.getVariableMap();
   }
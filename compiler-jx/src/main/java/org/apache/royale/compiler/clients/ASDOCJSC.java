@@ -123,7 +123,7 @@ public class ASDOCJSC extends MXMLJSCRoyale
         {
             if (s.contains("js-output-type"))
             {
-                jsOutputType = MXMLJSC.JSOutputType.fromString(s.split("=")[1]);
+                final MXMLJSC.JSOutputType jsOutputType = MXMLJSC.JSOutputType.fromString(s.split("=")[1]);
 
                 switch (jsOutputType)
                 {
@@ -52,6 +52,7 @@ import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyT
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogCompcConfiguration;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.targets.RoyaleSWCTarget;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
 import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.InternalCompilerProblem;
@@ -177,16 +178,20 @@ public class COMPJSC extends MXMLJSC
     	for (String arg : args)
     		System.out.println(arg);
         ExitCode exitCode = ExitCode.SUCCESS;
+        int diagnostics = 0;
         try
         {
             final boolean continueCompilation = configure(args);
-        	CompilerDiagnosticsConstants.diagnostics = config.getDiagnosticsLevel();
+            diagnostics = config.getDiagnosticsLevel();
+            CompilerDiagnosticsConstants.addDiagnostics(diagnostics);
 
 /*            if (outProblems != null && !config.isVerbose())
                 JSSharedData.STDOUT = JSSharedData.STDERR = null;*/
 
             if (continueCompilation)
             {
+                if (config.getProfileReport() != null)
+                    profilingDelegate = new TraceProfilingDelegate(config.getProfileReport());
                 List<String> targets = config.getCompilerTargets();
                 for (String target : targets)
                     System.out.println("target:" + target);
@@ -198,8 +203,8 @@ public class COMPJSC extends MXMLJSC
 	                {
 	                case SWF:
                         System.out.println("COMPC");
-	                    COMPC compc = new COMPC();
-	                    mxmlc = compc;
+	                    COMPC compc = getSWFCompiler();
+	                    compc.setProfilingDelegate(profilingDelegate);
 	                    compc.configurationClass = JSGoogCompcConfiguration.class;
 	                    result = compc.mainNoExit(removeJSArgs(args));
 	                    if (result != 0)
@@ -211,6 +216,7 @@ public class COMPJSC extends MXMLJSC
 	                case JS_ROYALE:
                         System.out.println("COMPCJSCRoyale");
 	                	COMPJSCRoyale royale = new COMPJSCRoyale();
+	                	royale.setProfilingDelegate(profilingDelegate);
 	                	lastCompiler = royale;
 	                    result = royale.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0)
@@ -221,6 +227,7 @@ public class COMPJSC extends MXMLJSC
 	                case JS_NATIVE:
                     case JS_NODE:
 	                	COMPJSCNative jsc = new COMPJSCNative();
+	                	jsc.setProfilingDelegate(profilingDelegate);
 	                	lastCompiler = jsc;
 	                    result = jsc.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0)
@@ -264,6 +271,7 @@ public class COMPJSC extends MXMLJSC
         finally
         {
             waitAndClose();
+            CompilerDiagnosticsConstants.removeDiagnostics(diagnostics);
 
             if (outProblems != null && problems.hasFilteredProblems())
             {
@@ -858,6 +866,17 @@ public class COMPJSC extends MXMLJSC
         return true;
     }
 
+    @Override
+    protected COMPC getSWFCompiler()
+    {
+        if (!(mxmlc instanceof COMPC) || !mxmlc.isIncremental())
+        {
+            mxmlc = new COMPC();
+            mxmlc.setIncremental(isIncremental());
+        }
+        return (COMPC)mxmlc;
+    }
+
     @Override
     protected TargetType getTargetType()
     {
@@ -33,12 +33,16 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.CRC32;
-import java.util.zip.Deflater;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.royale.compiler.clients.problems.ProblemQuery;
@@ -48,6 +52,7 @@ import org.apache.royale.compiler.driver.js.IJSApplication;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.exceptions.ConfigurationException.IOError;
 import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyTarget;
+import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
 import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleSWCBackend;
 import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
@@ -179,12 +184,12 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 boolean packingSWC = false;
                 String outputFolderName = getOutputFilePath();
             	File swcFile = new File(outputFolderName);
-            	File jsOut = new File("js/out");
-            	File externsOut = new File("externs");
                 ZipFile zipFile = null;
-            	ZipOutputStream zipOutputStream = null;
+            	ZipArchiveOutputStream zipOutputStream = null;
             	String catalog = null;
             	StringBuilder fileList = new StringBuilder();
+                long fileDate = System.currentTimeMillis();
+                long zipFileDate = fileDate;
                 if (outputFolderName.endsWith(".swc"))
                 {
                 	packingSWC = true;
@@ -193,16 +198,34 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 		problems.add(new LibraryNotFoundProblem(outputFolderName));
                 		return false;
                 	}
-                    zipFile = new ZipFile(swcFile, ZipFile.OPEN_READ);
-                    final InputStream catalogInputStream = SWCReader.getInputStream(zipFile, SWCReader.CATALOG_XML);
+                	String metadataDate = targetSettings.getSWFMetadataDate();
+                	if (metadataDate != null)
+                	{
+                		String metadataFormat = targetSettings.getSWFMetadataDateFormat();
+                		fileDate = parseMetadataDate(metadataDate, metadataFormat, fileDate);
+                		// strip off timezone.  Zip format doesn't store timezone
+                		// and the goal is to have the same date and time regardless
+                		// of which timezone the build machine is using.
+                		int c = metadataDate.lastIndexOf(" ");
+                		metadataDate = metadataDate.substring(0,  c);
+                		c = metadataFormat.lastIndexOf(" ");
+                		metadataFormat = metadataFormat.substring(0, c);
+                		zipFileDate = parseMetadataDate(metadataDate, metadataFormat, zipFileDate);
+                	}
+                    zipFile = new ZipFile(swcFile);
+                    final InputStream catalogInputStream = zipFile.getInputStream(
+                            zipFile.getEntry(SWCReader.CATALOG_XML));
                     
                     catalog = IOUtils.toString(catalogInputStream);
                     catalogInputStream.close();
-                    zipOutputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputFolderName + ".new")));
-                    zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
-                    for (final Enumeration<? extends ZipEntry> entryEnum = zipFile.entries(); entryEnum.hasMoreElements();)
+                    // Writing to a file lets the stream seek back and fill in
+                    // the size and CRC of the STORED entries after their
+                    // content is streamed, so nothing is buffered to compute them.
+                    zipOutputStream = new ZipArchiveOutputStream(new File(outputFolderName + ".new"));
+                    zipOutputStream.setUseZip64(Zip64Mode.Never);
+                    for (final Enumeration<ZipArchiveEntry> entryEnum = zipFile.getEntries(); entryEnum.hasMoreElements();)
                     {
-                        final ZipEntry entry = entryEnum.nextElement();
+                        final ZipArchiveEntry entry = entryEnum.nextElement();
                         if (!entry.getName().contains("js/out") &&
                         	!entry.getName().contains(SWCReader.CATALOG_XML))
                         {
@@ -210,49 +233,19 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                             {
                                 System.out.println("Copy " + entry.getName());
                             }
-                        	InputStream input = zipFile.getInputStream(entry);
-                        	ZipEntry ze = new ZipEntry(entry.getName());
-                        	ze.setMethod(ZipEntry.STORED);
-                        	ze.setSize(entry.getSize());
-                        	ze.setCompressedSize(entry.getCompressedSize());
-                        	ze.setCrc(entry.getCrc());
-	                        long fileDate = System.currentTimeMillis();
-	                        long zipFileDate = fileDate;
-	                    	String metadataDate = targetSettings.getSWFMetadataDate();
-	                    	if (metadataDate != null)
-	                    	{
-	                    		String metadataFormat = targetSettings.getSWFMetadataDateFormat();
-	                    		try {
-	                    			SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-	                    			fileDate = sdf.parse(metadataDate).getTime();
-	                    		} catch (ParseException e) {
-	                				// TODO Auto-generated catch block
-	                				e.printStackTrace();
-	                			} catch (IllegalArgumentException e1) {
-	                				e1.printStackTrace();
-	                			}
-	                    		// strip off timezone.  Zip format doesn't store timezone
-	                    		// and the goal is to have the same date and time regardless
-	                    		// of which timezone the build machine is using.
-	                    		int c = metadataDate.lastIndexOf(" ");
-	                    		metadataDate = metadataDate.substring(0,  c);
-	                    		c = metadataFormat.lastIndexOf(" ");
-	                    		metadataFormat = metadataFormat.substring(0, c);
-	                    		try {
-	                    			SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-	                    			zipFileDate = sdf.parse(metadataDate).getTime();
-	                    		} catch (ParseException e) {
-	                				// TODO Auto-generated catch block
-	                				e.printStackTrace();
-	                			} catch (IllegalArgumentException e1) {
-	                				e1.printStackTrace();
-	                			}
-	                    	}
-	                    	ze.setTime(zipFileDate);
-                        	zipOutputStream.putNextEntry(ze);
-                        	IOUtils.copy(input, zipOutputStream);
-                            zipOutputStream.flush();
-                        	zipOutputStream.closeEntry();
+                            // copy the compressed bytes as they are, the
+                            // entry keeps its method, sizes and CRC
+                            ZipArchiveEntry ze = new ZipArchiveEntry(entry);
+                            ze.setTime(zipFileDate);
+                            InputStream input = zipFile.getRawInputStream(entry);
+                            try
+                            {
+                                zipOutputStream.addRawArchiveEntry(ze, input);
+                            }
+                            finally
+                            {
+                                input.close();
+                            }
                         }
                     }
                     int filesIndex = catalog.indexOf("<files>");
@@ -285,6 +278,7 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 Set<String> externs = config.getExterns();
                 Collection<ICompilationUnit> roots = ((RoyaleSWCTarget)target).getReachableCompilationUnits(errors);
                 Collection<ICompilationUnit> reachableCompilationUnits = project.getReachableCompilationUnitsInSWFOrder(roots);
+                List<ICompilationUnit> swcUnits = new ArrayList<ICompilationUnit>();
                 for (final ICompilationUnit cu : reachableCompilationUnits)
                 {
                     ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
@@ -346,136 +340,12 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                     	}
                     	else
                     	{
-	                        if (config.isVerbose())
-                            {
-                                System.out.println("Compiling file: " + cu.getQualifiedNames().get(0));
-                            }
-	                    	
-	                        ICompilationUnit unit = cu;
-	
-	                        IJSWriter writer;
-	                        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createWriter(project,
-	                                    (List<ICompilerProblem>) problems.getProblems(), unit,
-	                                    false);
-	                        }
-	                        else
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createMXMLWriter(
-	                                    project, (List<ICompilerProblem>) problems.getProblems(),
-	                                    unit, false);
-	                        }
-
-                            ByteArrayOutputStream temp = new ByteArrayOutputStream();
-                            ByteArrayOutputStream sourceMapTemp = null;
-                            
-                            boolean isExterns = false;
-                            if(cu.getDefinitionPromises().size() > 0)
-                            {
-                                isExterns = project.isExterns(cu.getDefinitionPromises().get(0).getQualifiedName());
-                            }
-	                        
-                            // if the file is @externs DON'T create source map file
-                            if (project.config.getSourceMap() && !isExterns)
-	                        {
-                                sourceMapTemp = new ByteArrayOutputStream();
-	                        }
-                            writer.writeTo(temp, sourceMapTemp, null);
-
-                    		String outputClassFile = getOutputClassFile(
-                                    cu.getQualifiedNames().get(0),
-                                    isExterns ? externsOut : jsOut,
-                                    false).getPath();
-                    		outputClassFile = outputClassFile.replace('\\', '/');
-	                        if (config.isVerbose())
-                            {
-                                System.out.println("Writing file: " + outputClassFile);     	
-                            }
-	                        long fileDate = System.currentTimeMillis();
-	                        long zipFileDate = fileDate;
-	                    	String metadataDate = targetSettings.getSWFMetadataDate();
-	                    	if (metadataDate != null)
-	                    	{
-	                    		String metadataFormat = targetSettings.getSWFMetadataDateFormat();
-	                    		try {
-	                    			SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-	                    			fileDate = sdf.parse(metadataDate).getTime();
-	                    		} catch (ParseException e) {
-	                				// TODO Auto-generated catch block
-	                				e.printStackTrace();
-	                			} catch (IllegalArgumentException e1) {
-	                				e1.printStackTrace();
-	                			}
-	                    		// strip off timezone.  Zip format doesn't store timezone
-	                    		// and the goal is to have the same date and time regardless
-	                    		// of which timezone the build machine is using.
-	                    		int c = metadataDate.lastIndexOf(" ");
-	                    		metadataDate = metadataDate.substring(0,  c);
-	                    		c = metadataFormat.lastIndexOf(" ");
-	                    		metadataFormat = metadataFormat.substring(0, c);
-	                    		try {
-	                    			SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-	                    			zipFileDate = sdf.parse(metadataDate).getTime();
-	                    		} catch (ParseException e) {
-	                				// TODO Auto-generated catch block
-	                				e.printStackTrace();
-	                			} catch (IllegalArgumentException e1) {
-	                				e1.printStackTrace();
-	                			}
-	                    	}
-	                    	ZipEntry ze = new ZipEntry(outputClassFile);
-	                    	ze.setTime(zipFileDate);
-	                    	ze.setMethod(ZipEntry.STORED);
-	                    	
-	                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-	                        temp.writeTo(baos);
-	                        ze.setSize(baos.size());
-	                        ze.setCompressedSize(baos.size());
-	                        CRC32 crc = new CRC32();
-	                        crc.reset();
-	                        crc.update(baos.toByteArray());
-	                        ze.setCrc(crc.getValue());
-
-	                        zipOutputStream.putNextEntry(ze);
-	                        baos.writeTo(zipOutputStream);
-                            zipOutputStream.flush();
-                            zipOutputStream.closeEntry();
-                            fileList.append("        <file path=\"" + outputClassFile + "\" mod=\"" + fileDate + "\"/>\n");
-                            
-                            if(sourceMapTemp != null)
-                            {
-                                String sourceMapFile = getOutputSourceMapFile(
-                                                                                cu.getQualifiedNames().get(0),
-                                                                                isExterns ? externsOut : jsOut,
-                                                                                false).getPath();
-                                if (config.isVerbose())
-                                {
-                                    System.out.println("Writing file: " + sourceMapFile);
-                                }
-                                ze = new ZipEntry(sourceMapFile);
-                                ze.setTime(zipFileDate);
-                                ze.setMethod(ZipEntry.STORED);
-                                
-                                baos = new ByteArrayOutputStream();
-                                sourceMapTemp.writeTo(baos);
-                                ze.setSize(baos.size());
-                                ze.setCompressedSize(baos.size());
-                                crc = new CRC32();
-                                crc.reset();
-                                crc.update(baos.toByteArray());
-                                ze.setCrc(crc.getValue());
-                                
-                                zipOutputStream.putNextEntry(ze);
-                                baos.writeTo(zipOutputStream);
-                                zipOutputStream.flush();
-                                zipOutputStream.closeEntry();
-                                fileList.append("        <file path=\"" + sourceMapFile + "\" mod=\"" + fileDate + "\"/>\n");
-                            }
-	                        writer.close();
+                    		swcUnits.add(cu);
                     	}
                     }
                 }
+                if (packingSWC)
+                	writeSWCCompilationUnits(swcUnits, zipOutputStream, fileList, fileDate, zipFileDate);
                 if (!config.getCreateTargetWithErrors())
                 {
                 	errors.clear();
@@ -487,60 +357,17 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 if (packingSWC)
                 {
                 	zipFile.close();
-                    long fileDate = System.currentTimeMillis();
-                    long zipFileDate = fileDate;
-                	String metadataDate = targetSettings.getSWFMetadataDate();
-                	if (metadataDate != null)
-                	{
-                		String metadataFormat = targetSettings.getSWFMetadataDateFormat();
-                		try {
-                			SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-                			fileDate = sdf.parse(metadataDate).getTime();
-                		} catch (ParseException e) {
-            				// TODO Auto-generated catch block
-            				e.printStackTrace();
-            			} catch (IllegalArgumentException e1) {
-            				e1.printStackTrace();
-            			}
-                		// strip off timezone.  Zip format doesn't store timezone
-                		// and the goal is to have the same date and time regardless
-                		// of which timezone the build machine is using.
-                		int c = metadataDate.lastIndexOf(" ");
-                		metadataDate = metadataDate.substring(0,  c);
-                		c = metadataFormat.lastIndexOf(" ");
-                		metadataFormat = metadataFormat.substring(0, c);
-                		try {
-                			SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-                			zipFileDate = sdf.parse(metadataDate).getTime();
-                		} catch (ParseException e) {
-            				// TODO Auto-generated catch block
-            				e.printStackTrace();
-            			} catch (IllegalArgumentException e1) {
-            				e1.printStackTrace();
-            			}
-                	}
                 	int libraryIndex = catalog.indexOf("</libraries>");
                 	catalog = catalog.substring(0, libraryIndex + 13) +
                 		"    <files>\n" + fileList.toString() + "    </files>" + 
                 		catalog.substring(libraryIndex + 13);
-                	ZipEntry ze = new ZipEntry(SWCReader.CATALOG_XML);
+                	ZipArchiveEntry ze = new ZipArchiveEntry(SWCReader.CATALOG_XML);
                 	ze.setTime(zipFileDate);
-                	ze.setMethod(ZipEntry.STORED);
-                	
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                	baos.write(catalog.getBytes());
-                    ze.setSize(baos.size());
-                    ze.setCompressedSize(baos.size());
-                    CRC32 crc = new CRC32();
-                    crc.reset();
-                    crc.update(baos.toByteArray());
-                    ze.setCrc(crc.getValue());
+                	ze.setMethod(ZipArchiveEntry.STORED);
                 	
-                    zipOutputStream.putNextEntry(ze);
-                    baos.writeTo(zipOutputStream);
-                    zipOutputStream.flush();
-                    zipOutputStream.closeEntry();
-                    zipOutputStream.flush();
+                    zipOutputStream.putArchiveEntry(ze);
+                    zipOutputStream.write(catalog.getBytes());
+                    zipOutputStream.closeArchiveEntry();
                 	zipOutputStream.close();
                 	swcFile.delete();
                 	File newSWCFile = new File(outputFolderName + ".new");
@@ -704,6 +531,212 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         return new File(sdirPath + qname + "." + project.getBackend().getOutputExtension() + ".map");
     }
 
+    /**
+     * Emits the JS (and source map) files of the compilation units into the
+     * SWC. When more than one emit thread is configured, the units are emitted
+     * concurrently into memory, but they are added to the SWC, to its catalog
+     * and to the problems in list order, so that the SWC is the same as the
+     * one built sequentially.
+     *
+     * @param units The compilation units to emit, in SWF order.
+     * @param zipOutputStream The SWC being written.
+     * @param fileList The file list of the catalog.
+     * @param fileDate The modification date of the files in the catalog.
+     * @param zipFileDate The modification date of the SWC entries.
+     * @throws Exception
+     */
+    private void writeSWCCompilationUnits(List<ICompilationUnit> units,
+            ZipArchiveOutputStream zipOutputStream, StringBuilder fileList,
+            long fileDate, long zipFileDate) throws Exception
+    {
+        int emitThreads = ((JSGoogConfiguration) config).getJsEmitThreads();
+        if (emitThreads <= 1 || units.size() < 2)
+        {
+            for (ICompilationUnit cu : units)
+            {
+                SWCUnitOutput output = new SWCUnitOutput(cu,
+                        (List<ICompilerProblem>) problems.getProblems());
+                output.writeTo(zipOutputStream, fileList, fileDate, zipFileDate);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(emitThreads);
+        try
+        {
+            List<Future<SWCUnitOutput>> results = new ArrayList<Future<SWCUnitOutput>>();
+            for (final ICompilationUnit cu : units)
+            {
+                results.add(executor.submit(new Callable<SWCUnitOutput>()
+                {
+                    @Override
+                    public SWCUnitOutput call() throws Exception
+                    {
+                        SWCUnitOutput output = new SWCUnitOutput(cu,
+                                new ArrayList<ICompilerProblem>());
+                        output.emit();
+                        return output;
+                    }
+                }));
+            }
+            // the units that are done are written while the others are
+            // still being emitted
+            for (Future<SWCUnitOutput> result : results)
+            {
+                SWCUnitOutput output;
+                try
+                {
+                    output = result.get();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception)
+                        throw (Exception) cause;
+                    throw e;
+                }
+                problems.addAll(output.unitProblems);
+                output.writeTo(zipOutputStream, fileList, fileDate, zipFileDate);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The JS (and source map) files of a compilation unit packed into the
+     * SWC.
+     */
+    private class SWCUnitOutput
+    {
+        SWCUnitOutput(ICompilationUnit cu, List<ICompilerProblem> unitProblems)
+                throws InterruptedException
+        {
+            this.unitProblems = unitProblems;
+
+            String qname = cu.getQualifiedNames().get(0);
+            if (config.isVerbose())
+            {
+                System.out.println("Compiling file: " + qname);
+            }
+
+            if (cu.getCompilationUnitType() == ICompilationUnit.UnitType.AS_UNIT)
+            {
+                writer = (IJSWriter) project.getBackend().createWriter(project,
+                        unitProblems, cu, false);
+            }
+            else
+            {
+                writer = (IJSWriter) project.getBackend().createMXMLWriter(
+                        project, unitProblems, cu, false);
+            }
+
+            boolean isExterns = false;
+            if (cu.getDefinitionPromises().size() > 0)
+            {
+                isExterns = project.isExterns(cu.getDefinitionPromises().get(0).getQualifiedName());
+            }
+            File outputFolder = isExterns ? new File("externs") : new File("js/out");
+            outputClassFile = getOutputClassFile(qname, outputFolder, false)
+                    .getPath().replace('\\', '/');
+
+            // if the file is @externs DON'T create source map file
+            if (project.config.getSourceMap() && !isExterns)
+            {
+                sourceMapFile = getOutputSourceMapFile(qname, outputFolder, false).getPath();
+                sourceMap = new ByteArrayOutputStream();
+            }
+        }
+
+        final List<ICompilerProblem> unitProblems;
+        private final IJSWriter writer;
+        private final String outputClassFile;
+        private String sourceMapFile;
+        private ByteArrayOutputStream sourceMap;
+
+        /**
+         * The emitted JS, or null if it hasn't been emitted yet.
+         */
+        private ByteArrayOutputStream js;
+
+        /**
+         * Emits the JS into memory, so it can be written to the SWC later.
+         */
+        void emit() throws IOException
+        {
+            js = new ByteArrayOutputStream();
+            writer.writeTo(js, sourceMap, null);
+            writer.close();
+        }
+
+        /**
+         * Adds the files to the SWC and to the file list of its catalog. If
+         * the JS hasn't been emitted yet, it is emitted straight into its
+         * entry, and the stream updates the size and CRC as it goes.
+         */
+        void writeTo(ZipArchiveOutputStream zipOutputStream, StringBuilder fileList,
+                long fileDate, long zipFileDate) throws IOException
+        {
+            if (config.isVerbose())
+            {
+                System.out.println("Writing file: " + outputClassFile);
+            }
+            ZipArchiveEntry ze = new ZipArchiveEntry(outputClassFile);
+            ze.setTime(zipFileDate);
+            ze.setMethod(ZipArchiveEntry.STORED);
+            zipOutputStream.putArchiveEntry(ze);
+            if (js != null)
+            {
+                js.writeTo(zipOutputStream);
+            }
+            else
+            {
+                writer.writeTo(zipOutputStream, sourceMap, null);
+                writer.close();
+            }
+            zipOutputStream.closeArchiveEntry();
+            fileList.append("        <file path=\"" + outputClassFile + "\" mod=\"" + fileDate + "\"/>\n");
+
+            if (sourceMap != null)
+            {
+                if (config.isVerbose())
+                {
+                    System.out.println("Writing file: " + sourceMapFile);
+                }
+                ze = new ZipArchiveEntry(sourceMapFile);
+                ze.setTime(zipFileDate);
+                ze.setMethod(ZipArchiveEntry.STORED);
+                zipOutputStream.putArchiveEntry(ze);
+                sourceMap.writeTo(zipOutputStream);
+                zipOutputStream.closeArchiveEntry();
+                fileList.append("        <file path=\"" + sourceMapFile + "\" mod=\"" + fileDate + "\"/>\n");
+            }
+        }
+    }
+
+    /**
+     * Parses the metadata date used for the files packed into the SWC.
+     *
+     * @param metadataDate The date.
+     * @param metadataFormat The format of the date.
+     * @param defaultDate The time to use if the date can't be parsed.
+     * @return The time of the date in milliseconds.
+     */
+    private static long parseMetadataDate(String metadataDate, String metadataFormat, long defaultDate)
+    {
+        try {
+            SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
+            return sdf.parse(metadataDate).getTime();
+        } catch (ParseException e) {
+            e.printStackTrace();
+        } catch (IllegalArgumentException e1) {
+            e1.printStackTrace();
+        }
+        return defaultDate;
+    }
+
     /**
      * Mxmlc uses target file as the main compilation unit and derive the output
      * SWF file name from this file.
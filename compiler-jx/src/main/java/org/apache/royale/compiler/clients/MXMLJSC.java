@@ -71,6 +71,7 @@ import org.apache.royale.compiler.internal.targets.RoyaleJSTarget;
 import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -209,8 +210,6 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         }
     }
 
-    public static JSOutputType jsOutputType;
-
     @Override
     public String getName()
     {
@@ -273,6 +272,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
     protected ProblemQuery problems;
     protected ISourceFileHandler asFileHandler;
     public JSConfiguration config;
+    protected TraceProfilingDelegate profilingDelegate;
     protected Configurator projectConfigurator;
     private ConfigurationBuffer configBuffer;
     private ICompilationUnit mainCU;
@@ -285,6 +285,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
     public boolean noLink;
     public OutputStream err;
 	public Class<? extends Configuration> configurationClass = JSGoogConfiguration.class;
+    private boolean incremental;
     
     public MXMLJSC()
     {
@@ -294,6 +295,57 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         project = new RoyaleJSProject(workspace, null);
     }
 
+    /**
+     * Keep the workspaces open after each compilation, so that the next
+     * compilation with this instance only compiles again what depends on
+     * files that changed on disk. Only the SWF target is compiled
+     * incrementally. Call {@link #closeWorkspaces()} once this instance is no
+     * longer used.
+     * 
+     * @param incremental true to keep the workspaces open between
+     * compilations.
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    /**
+     * @return true if the workspaces are kept open between compilations.
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * Close the workspaces that an incremental compiler kept open.
+     */
+    public void closeWorkspaces()
+    {
+        if (mxmlc != null && mxmlc.isIncremental())
+            mxmlc.closeWorkspace();
+        if (incremental)
+        {
+            incremental = false;
+            close();
+        }
+    }
+
+    /**
+     * Create the compiler of the SWF target, or reuse the one of the previous
+     * compilation if it kept its workspace open.
+     */
+    protected MXMLC getSWFCompiler()
+    {
+        if (mxmlc == null || !mxmlc.isIncremental())
+        {
+            mxmlc = new MXMLC();
+            mxmlc.setIncremental(incremental);
+        }
+        return mxmlc;
+    }
+
     @Override
     public int mainNoExit(final String[] args, List<ICompilerProblem> problems,
             Boolean printProblems)
@@ -334,16 +386,20 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
             List<ICompilerProblem> outProblems)
     {
         ExitCode exitCode = ExitCode.SUCCESS;
+        int diagnostics = 0;
         try
         {
             final boolean continueCompilation = configure(args);
-        	CompilerDiagnosticsConstants.diagnostics = config.getDiagnosticsLevel();
+            diagnostics = config.getDiagnosticsLevel();
+            CompilerDiagnosticsConstants.addDiagnostics(diagnostics);
 
 /*            if (outProblems != null && !config.isVerbose())
                 JSSharedData.STDOUT = JSSharedData.STDERR = null;*/
 
             if (continueCompilation)
             {
+                if (config.getProfileReport() != null)
+                    profilingDelegate = new TraceProfilingDelegate(config.getProfileReport());
             	targetloop:
             	for (String target : config.getCompilerTargets())
             	{
@@ -351,7 +407,8 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
             		switch (JSTargetType.fromString(target))
 	                {
 	                case SWF:
-	                    mxmlc = new MXMLC();
+	                    mxmlc = getSWFCompiler();
+	                    mxmlc.setProfilingDelegate(profilingDelegate);
 	                    mxmlc.configurationClass = configurationClass;
 	                    if (noLink)
 	                    	result = mxmlc.mainCompileOnly(removeJSArgs(args), err);
@@ -365,6 +422,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 	                    break;
 	                case JS_ROYALE:
 	                	MXMLJSCRoyale royale = new MXMLJSCRoyale();
+	                	royale.setProfilingDelegate(profilingDelegate);
 	                	lastCompiler = royale;
 	                    result = royale.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0 && result != 2)
@@ -374,6 +432,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 	                    break;
 	                case JS_ROYALE_CORDOVA:
 	                	MXMLJSCRoyaleCordova royaleCordova = new MXMLJSCRoyaleCordova();
+	                	royaleCordova.setProfilingDelegate(profilingDelegate);
 	                	lastCompiler = royaleCordova;
 	                    result = royaleCordova.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0 && result != 2)
@@ -383,6 +442,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 	                    break;
 	                case JS_NODE:
                         MXMLJSCNode node = new MXMLJSCNode();
+                        node.setProfilingDelegate(profilingDelegate);
                         lastCompiler = node;
                         result = node.mainNoExit(removeASArgs(args), problems.getProblems(), false);
                         if (result != 0 && result != 2)
@@ -392,6 +452,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
                         break;
                     case JS_NODE_MODULE:
                         MXMLJSCNodeModule nodeModule = new MXMLJSCNodeModule();
+                        nodeModule.setProfilingDelegate(profilingDelegate);
                         lastCompiler = nodeModule;
                         result = nodeModule.mainNoExit(removeASArgs(args), problems.getProblems(), false);
                         if (result != 0 && result != 2)
@@ -401,6 +462,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
                         break;
 	                case JS_NATIVE:
 	                	MXMLJSCNative jsc = new MXMLJSCNative();
+	                	jsc.setProfilingDelegate(profilingDelegate);
 	                	lastCompiler = jsc;
 	                    result = jsc.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != 0 && result != 2)
@@ -444,6 +506,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         finally
         {
             waitAndClose();
+            CompilerDiagnosticsConstants.removeDiagnostics(diagnostics);
 
             if (outProblems != null && problems.hasFilteredProblems())
             {
@@ -1042,12 +1105,15 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (!incremental)
+                workspace.close();
         }
         finally
         {
             workspace.endIdleState(Collections.<ICompilerProject, Set<ICompilationUnit>> emptyMap());
         }
+
+        CompilationReports.printStatistics(workspace, project);
     }
 
     /**
@@ -60,6 +60,7 @@ import org.apache.royale.compiler.internal.targets.RoyaleJSTarget;
 import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -162,6 +163,7 @@ public class MXMLJSCNode implements JSCompilerEntryPoint, ProblemQueryProvider,
     protected ProblemQuery problems;
     protected ISourceFileHandler asFileHandler;
     protected Configuration config;
+    protected TraceProfilingDelegate profilingDelegate;
     protected Configurator projectConfigurator;
     private ConfigurationBuffer configBuffer;
     private ICompilationUnit mainCU;
@@ -234,6 +236,7 @@ public class MXMLJSCNode implements JSCompilerEntryPoint, ProblemQueryProvider,
 
             if (continueCompilation)
             {
+                profilingDelegate = CompilationReports.setupProfiling(workspace, config.getProfileReport(), profilingDelegate);
                 project.setProblems(problems.getProblems());
                	compile();
                 if (problems.hasFilteredProblems())
@@ -726,6 +729,15 @@ public class MXMLJSCNode implements JSCompilerEntryPoint, ProblemQueryProvider,
             throw new ConfigurationException.IOError(targetFile);
     }
 
+    /**
+     * Use a profiling delegate that is shared with other compilations instead
+     * of creating one for the {@code -profile-report} option.
+     */
+    public void setProfilingDelegate(TraceProfilingDelegate profilingDelegate)
+    {
+        this.profilingDelegate = profilingDelegate;
+    }
+
     /**
      * Wait till the workspace to finish compilation and close.
      */
@@ -740,6 +752,8 @@ public class MXMLJSCNode implements JSCompilerEntryPoint, ProblemQueryProvider,
         {
             workspace.endIdleState(Collections.<ICompilerProject, Set<ICompilationUnit>> emptyMap());
         }
+
+        CompilationReports.printReports(workspace, project, profilingDelegate);
     }
 
     /**
@@ -21,6 +21,7 @@ package org.apache.royale.compiler.clients;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -39,6 +40,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.royale.compiler.clients.problems.ProblemPrinter;
@@ -47,6 +54,7 @@ import org.apache.royale.compiler.clients.problems.ProblemQueryProvider;
 import org.apache.royale.compiler.clients.problems.WorkspaceProblemFormatter;
 import org.apache.royale.compiler.codegen.js.IJSPublisher;
 import org.apache.royale.compiler.codegen.js.IJSWriter;
+import org.apache.royale.compiler.common.VersionInfo;
 import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.config.ConfigurationBuffer;
 import org.apache.royale.compiler.config.Configurator;
@@ -59,6 +67,7 @@ import org.apache.royale.compiler.exceptions.ConfigurationException.IOError;
 import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyTarget;
 import org.apache.royale.compiler.exceptions.ConfigurationException.OnlyOneSource;
 import org.apache.royale.compiler.internal.codegen.as.ASEmitterTokens;
+import org.apache.royale.compiler.internal.codegen.js.JSOutputCache;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogDocEmitter;
 import org.apache.royale.compiler.internal.config.FlashBuilderConfigurator;
 import org.apache.royale.compiler.internal.definitions.AccessorDefinition;
@@ -69,6 +78,7 @@ import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
 import org.apache.royale.compiler.internal.definitions.ParameterDefinition;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
 import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleBackend;
+import org.apache.royale.compiler.internal.graph.GoogDepsFileInfo;
 import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
@@ -80,6 +90,7 @@ import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.internal.units.ResourceBundleCompilationUnit;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -99,6 +110,7 @@ import org.apache.royale.swc.ISWCFileEntry;
 import org.apache.royale.swc.ISWCManager;
 import org.apache.royale.utils.ArgumentUtil;
 import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.StringEncoder;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
@@ -137,8 +149,6 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         final int code;
     }
 
-    public static MXMLJSC.JSOutputType jsOutputType;
-
     @Override
     public String getName()
     {
@@ -189,6 +199,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     protected ProblemQuery problems;
     protected ISourceFileHandler asFileHandler;
     protected Configuration config;
+    protected TraceProfilingDelegate profilingDelegate;
     protected Configurator projectConfigurator;
     private ConfigurationBuffer configBuffer;
     private ICompilationUnit mainCU;
@@ -196,6 +207,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     protected ITargetSettings targetSettings;
     protected IJSApplication jsTarget;
     private IJSPublisher jsPublisher;
+    private JSOutputCache outputCache;
     
     public MXMLJSCRoyale()
     {
@@ -261,6 +273,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 
             if (continueCompilation)
             {
+                profilingDelegate = CompilationReports.setupProfiling(workspace, config.getProfileReport(), profilingDelegate);
                 project.setProblems(problems.getProblems());
                	compile();
                 if (problems.hasFilteredProblems())
@@ -357,6 +370,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 	                roots.addAll(incs);
 	                project.mixinClassNames = new TreeSet<String>();
 	                project.remoteClassAliasMap = new HashMap<String, String>();
+	                project.googDepsFileInfos = new ConcurrentHashMap<String, GoogDepsFileInfo>();
 	                List<ICompilationUnit> reachableCompilationUnits = project.getReachableCompilationUnitsInSWFOrder(roots);
 	                ((RoyaleJSTarget)target).collectMixinMetaData(project.mixinClassNames, reachableCompilationUnits);
 	                ((RoyaleJSTarget)target).collectRemoteClassMetaData(project.remoteClassAliasMap, reachableCompilationUnits);
@@ -369,59 +383,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 	                    	outputResourceBundle((ResourceBundleCompilationUnit)cu, outputFolder);
 	                    }
 	                }
-	                for (final ICompilationUnit cu : reachableCompilationUnits)
-	                {
-	                    ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
-	
-	                    if (cuType == ICompilationUnit.UnitType.AS_UNIT
-	                            || cuType == ICompilationUnit.UnitType.MXML_UNIT)
-	                    {
-	                        final File outputClassFile = getOutputClassFile(
-	                                cu.getQualifiedNames().get(0), outputFolder);
-    
-                            if (config.isVerbose())
-                            {
-                                System.out.println("Compiling file: " + outputClassFile);
-                            }
-	
-	                        ICompilationUnit unit = cu;
-	
-	                        IJSWriter writer;
-	                        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createWriter(project,
-	                                    problems.getProblems(), unit, false);
-	                        }
-	                        else
-	                        {
-	                            writer = (IJSWriter) project.getBackend().createMXMLWriter(
-	                                    project, problems.getProblems(), unit, false);
-	                        }
-	
-	                        BufferedOutputStream out = new BufferedOutputStream(
-	                                new FileOutputStream(outputClassFile));
-
-                            BufferedOutputStream sourceMapOut = null;
-	                        File outputSourceMapFile = null;
-	                        if (project.config.getSourceMap())
-	                        {
-	                            outputSourceMapFile = getOutputSourceMapFile(
-                                        cu.getQualifiedNames().get(0), outputFolder);
-                                sourceMapOut = new BufferedOutputStream(
-	                                    new FileOutputStream(outputSourceMapFile));
-	                        }
-	                        
-	                        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
-	                        out.flush();
-	                        out.close();
-                            if (sourceMapOut != null)
-                            {
-                                sourceMapOut.flush();
-                                sourceMapOut.close();
-                            }
-	                        writer.close();
-	                    }
-	                }
+	                writeCompilationUnits(reachableCompilationUnits, outputFolder);
 	                File externsReportFile = googConfiguration.getExternsReport();
 	                if (externsReportFile != null)
 	                	generateExternsReport(externsReportFile, reachableCompilationUnits, problems);
@@ -433,7 +395,11 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 	warnings.clear();
                     problems.getErrorsAndWarnings(errors, warnings);
                     if (errors.size() > 0)
+                    {
+                        project.jsOutputCache = null;
+                        outputCache = null;
                         return false;
+                    }
                 }
                 
                 if (jsPublisher != null)
@@ -444,6 +410,19 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 {
                     compilationSuccess = true;
                 }
+                project.googDepsFileInfos = null;
+                project.jsOutputCache = null;
+
+                if (outputCache != null)
+                {
+                    // the publisher rewrites the emitted files, so the
+                    // manifest has to be saved after publishing
+                    outputCache.releaseUnchangedContents();
+                    outputCache.save();
+                    if (config.isVerbose())
+                        System.out.println(outputCache.getReport());
+                    outputCache = null;
+                }
             }
         }
         catch (Exception e)
@@ -458,6 +437,186 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         return compilationSuccess && (errs.size() == 0);
     }
 
+    /**
+     * Emits the JS (and source map) files for all of the AS and MXML
+     * compilation units in the list. When more than one emit thread is
+     * configured, the units are emitted concurrently, but the problems
+     * reported by each unit are still added in list order so that the
+     * result matches the sequential output.
+     * 
+     * @param reachableCompilationUnits The compilation units to emit.
+     * @param outputFolder The root folder of the intermediate JS files.
+     * @throws Exception
+     */
+    protected void writeCompilationUnits(List<ICompilationUnit> reachableCompilationUnits,
+            final File outputFolder) throws Exception
+    {
+        outputCache = createOutputCache(outputFolder);
+        project.jsOutputCache = outputCache;
+        int emitThreads = ((JSGoogConfiguration) config).getJsEmitThreads();
+        if (emitThreads <= 1)
+        {
+            for (final ICompilationUnit cu : reachableCompilationUnits)
+            {
+                if (isEmittedUnit(cu))
+                    writeCompilationUnit(cu, outputFolder, problems.getProblems(), getOutputCache(cu));
+            }
+        }
+        else
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(emitThreads);
+            try
+            {
+                List<Future<List<ICompilerProblem>>> results = new ArrayList<Future<List<ICompilerProblem>>>();
+                for (final ICompilationUnit cu : reachableCompilationUnits)
+                {
+                    if (!isEmittedUnit(cu))
+                        continue;
+                    final JSOutputCache unitOutputCache = getOutputCache(cu);
+                    results.add(executor.submit(new Callable<List<ICompilerProblem>>()
+                    {
+                        @Override
+                        public List<ICompilerProblem> call() throws Exception
+                        {
+                            List<ICompilerProblem> unitProblems = new ArrayList<ICompilerProblem>();
+                            writeCompilationUnit(cu, outputFolder, unitProblems, unitOutputCache);
+                            return unitProblems;
+                        }
+                    }));
+                }
+                for (Future<List<ICompilerProblem>> result : results)
+                {
+                    try
+                    {
+                        problems.addAll(result.get());
+                    }
+                    catch (ExecutionException e)
+                    {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Exception)
+                            throw (Exception) cause;
+                        throw e;
+                    }
+                }
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * The publisher adds the dependencies of the whole application to the
+     * file of the main class, so that file is always rewritten.
+     */
+    private JSOutputCache getOutputCache(ICompilationUnit cu)
+    {
+        return cu == mainCU ? null : outputCache;
+    }
+
+    /**
+     * @param outputFolder The root folder of the intermediate JS files.
+     * @return The loaded {@link JSOutputCache} for the output folder, or null
+     * if unchanged files should be rewritten.
+     */
+    protected JSOutputCache createOutputCache(File outputFolder)
+    {
+        if (!((JSGoogConfiguration) config).getJsSkipUnchangedOutput())
+            return null;
+        String fingerprint = StringEncoder.stringToMD5String(
+                VersionInfo.getCompilerVersion() + "." + VersionInfo.getBuild() +
+                "\n" + (configBuffer != null ? configBuffer.toString() : ""));
+        JSOutputCache outputCache = new JSOutputCache(outputFolder, fingerprint);
+        outputCache.load();
+        return outputCache;
+    }
+
+    private static boolean isEmittedUnit(ICompilationUnit cu)
+    {
+        ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
+        return cuType == ICompilationUnit.UnitType.AS_UNIT
+                || cuType == ICompilationUnit.UnitType.MXML_UNIT;
+    }
+
+    /**
+     * Emits the JS (and source map) file for a single AS or MXML compilation
+     * unit.
+     * 
+     * @param cu The compilation unit to emit.
+     * @param outputFolder The root folder of the intermediate JS files.
+     * @param unitProblems The collection the emitter reports problems to.
+     * @param outputCache If not null, files whose content did not change
+     * since the last build are not rewritten.
+     * @throws IOException
+     */
+    protected void writeCompilationUnit(ICompilationUnit cu, File outputFolder,
+            List<ICompilerProblem> unitProblems, JSOutputCache outputCache) throws IOException
+    {
+        String qname = cu.getQualifiedNames().get(0);
+        final File outputClassFile = getOutputClassFile(qname, outputFolder);
+
+        if (config.isVerbose())
+        {
+            System.out.println("Compiling file: " + outputClassFile);
+        }
+
+        IJSWriter writer;
+        if (cu.getCompilationUnitType() == ICompilationUnit.UnitType.AS_UNIT)
+        {
+            writer = (IJSWriter) project.getBackend().createWriter(project,
+                    unitProblems, cu, false);
+        }
+        else
+        {
+            writer = (IJSWriter) project.getBackend().createMXMLWriter(
+                    project, unitProblems, cu, false);
+        }
+
+        File outputSourceMapFile = null;
+        if (project.config.getSourceMap())
+        {
+            outputSourceMapFile = getOutputSourceMapFile(qname, outputFolder);
+        }
+
+        if (outputCache != null)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream sourceMapOut = outputSourceMapFile != null ?
+                    new ByteArrayOutputStream() : null;
+            writer.writeTo(out, sourceMapOut, outputSourceMapFile);
+            writer.close();
+            // the recorded dependency information describes the emitted
+            // bytes, which the publisher restores if it has to rewrite an
+            // unchanged file
+            outputCache.write(qname,
+                    new File[] { outputClassFile, outputSourceMapFile },
+                    new byte[][] { out.toByteArray(),
+                            sourceMapOut != null ? sourceMapOut.toByteArray() : null });
+            return;
+        }
+
+        BufferedOutputStream out = new BufferedOutputStream(
+                new FileOutputStream(outputClassFile));
+
+        BufferedOutputStream sourceMapOut = null;
+        if (outputSourceMapFile != null)
+        {
+            sourceMapOut = new BufferedOutputStream(
+                    new FileOutputStream(outputSourceMapFile));
+        }
+
+        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
+        out.flush();
+        out.close();
+        if (sourceMapOut != null)
+        {
+            sourceMapOut.flush();
+            sourceMapOut.close();
+        }
+        writer.close();
+    }
+
     private void generateExternsReport(File externsReportFile,
 			List<ICompilationUnit> reachableCompilationUnits,
 			ProblemQuery problems) {
@@ -1147,6 +1306,15 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
             throw new ConfigurationException.IOError(targetFile);
     }
 
+    /**
+     * Use a profiling delegate that is shared with other compilations instead
+     * of creating one for the {@code -profile-report} option.
+     */
+    public void setProfilingDelegate(TraceProfilingDelegate profilingDelegate)
+    {
+        this.profilingDelegate = profilingDelegate;
+    }
+
     /**
      * Wait till the workspace to finish compilation and close.
      */
@@ -1161,6 +1329,8 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         {
             workspace.endIdleState(Collections.<ICompilerProject, Set<ICompilationUnit>> emptyMap());
         }
+
+        CompilationReports.printReports(workspace, project, profilingDelegate);
     }
 
     /**
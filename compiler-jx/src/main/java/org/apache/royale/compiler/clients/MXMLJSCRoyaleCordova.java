@@ -60,6 +60,7 @@ import org.apache.royale.compiler.internal.targets.RoyaleJSTarget;
 import org.apache.royale.compiler.internal.targets.JSTarget;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -113,8 +114,6 @@ public class MXMLJSCRoyaleCordova implements JSCompilerEntryPoint, ProblemQueryP
         final int code;
     }
 
-    public static MXMLJSC.JSOutputType jsOutputType;
-
     @Override
     public String getName()
     {
@@ -165,6 +164,7 @@ public class MXMLJSCRoyaleCordova implements JSCompilerEntryPoint, ProblemQueryP
     protected ProblemQuery problems;
     protected ISourceFileHandler asFileHandler;
     protected Configuration config;
+    protected TraceProfilingDelegate profilingDelegate;
     protected Configurator projectConfigurator;
     private ConfigurationBuffer configBuffer;
     private ICompilationUnit mainCU;
@@ -237,6 +237,7 @@ public class MXMLJSCRoyaleCordova implements JSCompilerEntryPoint, ProblemQueryP
 
             if (continueCompilation)
             {
+                profilingDelegate = CompilationReports.setupProfiling(workspace, config.getProfileReport(), profilingDelegate);
                 project.setProblems(problems.getProblems());
                	compile();
                 if (problems.hasFilteredProblems())
@@ -729,6 +730,15 @@ public class MXMLJSCRoyaleCordova implements JSCompilerEntryPoint, ProblemQueryP
             throw new ConfigurationException.IOError(targetFile);
     }
 
+    /**
+     * Use a profiling delegate that is shared with other compilations instead
+     * of creating one for the {@code -profile-report} option.
+     */
+    public void setProfilingDelegate(TraceProfilingDelegate profilingDelegate)
+    {
+        this.profilingDelegate = profilingDelegate;
+    }
+
     /**
      * Wait till the workspace to finish compilation and close.
      */
@@ -743,6 +753,8 @@ public class MXMLJSCRoyaleCordova implements JSCompilerEntryPoint, ProblemQueryP
         {
             workspace.endIdleState(Collections.<ICompilerProject, Set<ICompilationUnit>> emptyMap());
         }
+
+        CompilationReports.printReports(workspace, project, profilingDelegate);
     }
 
     /**
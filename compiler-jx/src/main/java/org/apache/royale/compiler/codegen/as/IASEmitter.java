@@ -19,6 +19,7 @@
 
 package org.apache.royale.compiler.codegen.as;
 
+import java.io.IOException;
 import java.io.Writer;
 
 import org.apache.royale.compiler.codegen.IDocEmitter;
@@ -88,6 +89,17 @@ public interface IASEmitter extends INestingEmitter
 
     String postProcess(String output);
 
+    /**
+     * Post-processes the emitted output like {@link #postProcess(String)},
+     * but writes the result to <code>out</code> instead of building a
+     * <code>String</code> for the whole file.
+     * 
+     * @param output The emitted output.
+     * @param out The writer that receives the post-processed output.
+     * @throws IOException
+     */
+    void postProcess(String output, Writer out) throws IOException;
+
     void emitImport(IImportNode node);
 
     void emitPackageHeader(IPackageDefinition definition);
@@ -21,6 +21,7 @@ package org.apache.royale.compiler.internal.codegen.as;
 
 import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.List;
 
@@ -221,6 +222,12 @@ public class ASEmitter implements IASEmitter, IEmitter
     {
     	return output;
     }
+
+    @Override
+    public void postProcess(String output, Writer out) throws IOException
+    {
+        out.write(postProcess(output));
+    }
     
     @Override
     public void write(IEmitterTokens value)
@@ -0,0 +1,459 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Remembers a digest of every intermediate JS file (and source map) written
+ * to an output folder so that a later build that emits the same bytes for a
+ * compilation unit can leave the file on disk untouched.
+ * <p>
+ * The digests are stored in a manifest in the output folder together with a
+ * fingerprint of the compiler version and configuration. A manifest written
+ * with a different fingerprint is ignored, so every file is rewritten once
+ * after the compiler or its options change.
+ * <p>
+ * The publisher rewrites the emitted files in place, so the manifest also
+ * records the length and modification time of each file at the time it is
+ * saved. A file is only left untouched if it still has them, which means the
+ * manifest must be saved after the files have been published.
+ * <p>
+ * How the publisher rewrites a file also depends on other compilation units,
+ * for example on which of the classes it requires are provided by a JS file.
+ * The publisher records a key of those inputs for every file it rewrites
+ * with {@link #setPublishKey(File, String)}. The bytes emitted for an
+ * unchanged file are kept in memory until it is published. If its publish key
+ * differs from the one of the previous build, the publisher calls
+ * {@link #restore(File)} to write the emitted bytes again and then rewrites
+ * the file as usual.
+ * <p>
+ * The publisher can also store what it reads from files it did not emit,
+ * such as the ones copied out of SWCs, with
+ * {@link #setFileInfo(File, String)}. The information is only returned by
+ * {@link #getFileInfo(File)} while the length and modification time of the
+ * file are the ones it had when the information was stored.
+ * <p>
+ * This class is thread-safe, so units can be written from several emit
+ * threads at once.
+ */
+public class JSOutputCache
+{
+    /**
+     * Name of the manifest file in the output folder.
+     */
+    public static final String MANIFEST_FILE_NAME = ".royale-output-cache";
+
+    private static final String FINGERPRINT_KEY = "#fingerprint";
+
+    private static final String PUBLISH_KEY_SUFFIX = "#publish";
+
+    private static final String FILE_INFO_SUFFIX = "#info";
+
+    /**
+     * Constructor.
+     *
+     * @param outputFolder The root folder of the intermediate JS files.
+     * @param fingerprint A digest of everything besides the emitted bytes that
+     * the recorded digests depend on, such as the compiler version and options.
+     */
+    public JSOutputCache(File outputFolder, String fingerprint)
+    {
+        this.outputFolder = outputFolder;
+        this.manifestFile = new File(outputFolder, MANIFEST_FILE_NAME);
+        this.fingerprint = fingerprint;
+        this.digests = new ConcurrentHashMap<String, String>();
+        this.outputFiles = new ConcurrentHashMap<String, File>();
+        this.fileKeys = new ConcurrentHashMap<File, String>();
+        this.unchangedContents = new ConcurrentHashMap<File, byte[]>();
+        this.recordedPublishKeys = new ConcurrentHashMap<String, String>();
+        this.publishKeys = new ConcurrentHashMap<String, String>();
+        this.recordedFileInfos = new ConcurrentHashMap<String, String>();
+        this.fileInfos = new ConcurrentHashMap<String, String>();
+        this.emittedUnits = new AtomicInteger();
+        this.skippedUnits = new AtomicInteger();
+    }
+
+    private final File outputFolder;
+    private final File manifestFile;
+    private final String fingerprint;
+    private final Map<String, String> digests;
+    private final Map<String, File> outputFiles;
+    private final Map<File, String> fileKeys;
+    private final Map<File, byte[]> unchangedContents;
+    private final Map<String, String> recordedPublishKeys;
+    private final Map<String, String> publishKeys;
+    private final Map<String, String> recordedFileInfos;
+    private final Map<String, String> fileInfos;
+    private final AtomicInteger emittedUnits;
+    private final AtomicInteger skippedUnits;
+
+    /**
+     * Reads the manifest written by the previous build, if there is one and
+     * its fingerprint matches.
+     */
+    public void load()
+    {
+        if (!manifestFile.isFile())
+            return;
+
+        Properties props = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new BufferedInputStream(new FileInputStream(manifestFile));
+            props.load(in);
+        }
+        catch (IOException e)
+        {
+            // an unreadable manifest just means everything is rewritten
+            return;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+
+        if (!fingerprint.equals(props.getProperty(FINGERPRINT_KEY)))
+            return;
+
+        for (String key : props.stringPropertyNames())
+        {
+            if (key.equals(FINGERPRINT_KEY))
+                continue;
+            if (key.endsWith(PUBLISH_KEY_SUFFIX))
+                recordedPublishKeys.put(key.substring(0, key.length() - PUBLISH_KEY_SUFFIX.length()), props.getProperty(key));
+            else if (key.endsWith(FILE_INFO_SUFFIX))
+                recordedFileInfos.put(key.substring(0, key.length() - FILE_INFO_SUFFIX.length()), props.getProperty(key));
+            else
+                digests.put(key, props.getProperty(key));
+        }
+    }
+
+    /**
+     * Writes the manifest for the next build.
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException
+    {
+        Properties props = new Properties();
+        for (Map.Entry<String, String> entry : digests.entrySet())
+        {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            File file = outputFiles.get(key);
+            if (file != null)
+            {
+                if (!file.isFile())
+                    continue;
+                value = getDigest(value) + ":" + file.length() + ":" + file.lastModified();
+            }
+            props.setProperty(key, value);
+
+            // a file the publisher did not process this time still has the
+            // changes it made for the recorded key
+            String publishKey = publishKeys.get(key);
+            if (publishKey == null)
+                publishKey = recordedPublishKeys.get(key);
+            if (publishKey != null)
+                props.setProperty(key + PUBLISH_KEY_SUFFIX, publishKey);
+        }
+        // only the information used by this build is kept
+        for (Map.Entry<String, String> entry : fileInfos.entrySet())
+            props.setProperty(entry.getKey() + FILE_INFO_SUFFIX, entry.getValue());
+        props.setProperty(FINGERPRINT_KEY, fingerprint);
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(manifestFile));
+        try
+        {
+            props.store(out, "generated by Apache Royale compiler");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the files emitted for one compilation unit, skipping every file
+     * whose bytes match the ones recorded by the previous build.
+     *
+     * @param key A key that identifies the compilation unit, usually its
+     * qualified name.
+     * @param files The files emitted for the compilation unit.
+     * @param contents The bytes of each file in <code>files</code>.
+     * @return true if at least one file was written, false if all of them
+     * were unchanged.
+     * @throws IOException
+     */
+    public boolean write(String key, File[] files, byte[][] contents) throws IOException
+    {
+        boolean written = false;
+        for (int i = 0; i < files.length; i++)
+        {
+            if (files[i] == null)
+                continue;
+            if (writeFile(key + ":" + files[i].getName(), files[i], contents[i]))
+                written = true;
+        }
+        if (written)
+            emittedUnits.incrementAndGet();
+        else
+            skippedUnits.incrementAndGet();
+        return written;
+    }
+
+    private boolean writeFile(String key, File file, byte[] bytes) throws IOException
+    {
+        String digest = digest(bytes);
+        String recorded = digests.get(key);
+        outputFiles.put(key, file);
+        fileKeys.put(file, key);
+        if (recorded != null && digest.equals(getDigest(recorded)) && file.isFile() &&
+                recorded.equals(digest + ":" + file.length() + ":" + file.lastModified()))
+        {
+            unchangedContents.put(file, bytes);
+            return false;
+        }
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+        digests.put(key, digest);
+        return true;
+    }
+
+    /**
+     * @param file An emitted file.
+     * @return true if the file was not written by this build because the
+     * emitted bytes did not change, so it still has the changes the
+     * publisher made to it in the previous build.
+     */
+    public boolean isUnchanged(File file)
+    {
+        return unchangedContents.containsKey(file);
+    }
+
+    /**
+     * Checks whether the publisher would rewrite an unchanged file the same
+     * way as in the previous build.
+     *
+     * @param file An emitted file.
+     * @param publishKey The inputs the publisher uses to rewrite the file,
+     * besides its emitted bytes.
+     * @return true if the file is unchanged and the previous build recorded
+     * the same key for it.
+     */
+    public boolean isPublishKeyUnchanged(File file, String publishKey)
+    {
+        String key = fileKeys.get(file);
+        return key != null && isUnchanged(file) &&
+                digest(toBytes(publishKey)).equals(recordedPublishKeys.get(key));
+    }
+
+    /**
+     * Records the inputs the publisher used to rewrite a file, besides its
+     * emitted bytes.
+     *
+     * @param file An emitted file.
+     * @param publishKey The inputs.
+     */
+    public void setPublishKey(File file, String publishKey)
+    {
+        String key = fileKeys.get(file);
+        if (key != null)
+            publishKeys.put(key, digest(toBytes(publishKey)));
+    }
+
+    /**
+     * Writes the emitted bytes of an unchanged file again, so that the
+     * publisher can rewrite it from scratch.
+     *
+     * @param file An emitted file.
+     * @return true if the file was unchanged and has been written.
+     * @throws IOException
+     */
+    public boolean restore(File file) throws IOException
+    {
+        byte[] bytes = unchangedContents.remove(file);
+        if (bytes == null)
+            return false;
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+        return true;
+    }
+
+    /**
+     * @param file A file in the output folder.
+     * @return true if the file was emitted by this build, even if it was not
+     * written because it was unchanged.
+     */
+    public boolean isEmitted(File file)
+    {
+        return fileKeys.containsKey(file);
+    }
+
+    /**
+     * Returns the information the publisher stored for a file it did not
+     * emit, if the file has not changed since.
+     *
+     * @param file A file in the output folder.
+     * @return The information, or null.
+     */
+    public String getFileInfo(File file)
+    {
+        String key = getRelativePath(file);
+        String recorded = fileInfos.get(key);
+        if (recorded == null)
+            recorded = recordedFileInfos.get(key);
+        if (recorded == null)
+            return null;
+
+        String prefix = file.length() + ":" + file.lastModified() + ":";
+        if (!file.isFile() || !recorded.startsWith(prefix))
+            return null;
+        fileInfos.put(key, recorded);
+        return recorded.substring(prefix.length());
+    }
+
+    /**
+     * Stores information about the current contents of a file the publisher
+     * did not emit.
+     *
+     * @param file A file in the output folder.
+     * @param info The information.
+     */
+    public void setFileInfo(File file, String info)
+    {
+        fileInfos.put(getRelativePath(file), file.length() + ":" + file.lastModified() + ":" + info);
+    }
+
+    private String getRelativePath(File file)
+    {
+        return outputFolder.toURI().relativize(file.getAbsoluteFile().toURI()).getPath();
+    }
+
+    /**
+     * Releases the emitted bytes kept for the unchanged files. Must be called
+     * once the files have been published.
+     */
+    public void releaseUnchangedContents()
+    {
+        unchangedContents.clear();
+    }
+
+    /**
+     * @return The number of compilation units for which at least one file
+     * was written.
+     */
+    public int getEmittedUnitCount()
+    {
+        return emittedUnits.get();
+    }
+
+    /**
+     * @return The number of compilation units whose files were all unchanged.
+     */
+    public int getSkippedUnitCount()
+    {
+        return skippedUnits.get();
+    }
+
+    /**
+     * @return A one line summary of the emitted and skipped units.
+     */
+    public String getReport()
+    {
+        int emitted = getEmittedUnitCount();
+        int skipped = getSkippedUnitCount();
+        return "Wrote " + emitted + " of " + (emitted + skipped) +
+               " compilation units, " + skipped + " unchanged.";
+    }
+
+    private static String getDigest(String value)
+    {
+        int c = value.indexOf(':');
+        return c > -1 ? value.substring(0, c) : value;
+    }
+
+    private static byte[] toBytes(String s)
+    {
+        try
+        {
+            return s.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String digest(byte[] bytes)
+    {
+        MessageDigest md;
+        try
+        {
+            md = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+        byte[] hash = md.digest(bytes);
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
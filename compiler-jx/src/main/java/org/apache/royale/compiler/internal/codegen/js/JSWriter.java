@@ -19,10 +19,14 @@
 
 package org.apache.royale.compiler.internal.codegen.js;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 import org.apache.royale.compiler.codegen.ISourceMapEmitter;
@@ -30,6 +34,7 @@ import org.apache.royale.compiler.codegen.js.IJSEmitter;
 import org.apache.royale.compiler.codegen.js.IJSWriter;
 import org.apache.royale.compiler.codegen.js.IMappingEmitter;
 import org.apache.royale.compiler.driver.js.IJSBackend;
+import org.apache.royale.compiler.internal.graph.GoogDepsFileInfo;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.units.ICompilationUnit;
@@ -86,6 +91,34 @@ public class JSWriter implements IJSWriter
         return 0;
     }
 
+    /**
+     * If the project collects the dependency information of the emitted
+     * files, returns a writer that records it for this compilation unit while
+     * the file is written, so that GoogDepsWriter does not have to read the
+     * file back.
+     *
+     * @param out The writer for the JS file.
+     * @return The recording writer, or null if nothing is recorded.
+     */
+    protected GoogDepsFileInfo.Recorder createGoogDepsRecorder(Writer out)
+    {
+        Map<String, GoogDepsFileInfo> fileInfos = project.googDepsFileInfos;
+        if (fileInfos == null)
+            return null;
+        String qname;
+        try
+        {
+            qname = compilationUnit.getQualifiedNames().get(0);
+        }
+        catch (InterruptedException e)
+        {
+            return null;
+        }
+        GoogDepsFileInfo fileInfo = new GoogDepsFileInfo(qname);
+        fileInfos.put(qname, fileInfo);
+        return new GoogDepsFileInfo.Recorder(out, fileInfo);
+    }
+
     public void writeTo(OutputStream jsOut, OutputStream jsSourceMapOut, File sourceMapFile)
     {
         IJSBackend backend = (IJSBackend) project.getBackend();
@@ -99,7 +132,14 @@ public class JSWriter implements IJSWriter
         
         try
         {
-            jsOut.write(emitter.postProcess(writer.toString()).getBytes("utf8"));
+            Writer jsWriter = new BufferedWriter(new OutputStreamWriter(jsOut, "utf8"));
+            GoogDepsFileInfo.Recorder recorder = createGoogDepsRecorder(jsWriter);
+            if (recorder != null)
+                jsWriter = recorder;
+            emitter.postProcess(writer.toString(), jsWriter);
+            jsWriter.flush();
+            if (recorder != null)
+                recorder.close();
         }
         catch (IOException e)
         {
@@ -22,6 +22,8 @@ package org.apache.royale.compiler.internal.codegen.js.royale;
 import java.io.File;
 import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -114,7 +116,6 @@ import org.apache.royale.compiler.tree.as.IVariableNode;
 import org.apache.royale.compiler.units.ICompilationUnit;
 import org.apache.royale.compiler.utils.ASNodeUtils;
 
-import com.google.common.base.Joiner;
 import org.apache.royale.compiler.utils.NativeUtils;
 import org.apache.royale.utils.FilenameNormalization;
 
@@ -163,10 +164,45 @@ public class JSRoyaleEmitter extends JSGoogEmitter implements IJSRoyaleEmitter
 
     @Override
     public String postProcess(String output)
+    {
+        StringWriter out = new StringWriter(output.length() + 256);
+        try
+        {
+            postProcess(output, out);
+        }
+        catch (IOException e)
+        {
+            // a StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    /**
+     * Injects the missing <code>goog.require</code> lines and the static
+     * dependency list into the header of the emitted file.
+     * <p>
+     * Only the lines up to the end of the <code>goog.require</code> block are
+     * split out and edited; the rest of the file is written straight from
+     * <code>output</code>. Trailing line breaks are dropped, as they always
+     * have been.
+     * <p>
+     * <code>output</code> itself is still the whole emitted file, because
+     * the emitter buffers the unit in memory; only the post-processed copy
+     * of it is not built.
+     */
+    @Override
+    public void postProcess(String output, Writer out) throws IOException
     {
         output = super.postProcess(output);
 
-    	String[] lines = output.split("\n");
+        // the end of the output without its trailing line breaks, because
+        // those never made it into the post-processed output
+        int end = output.length();
+        while (end > 0 && output.charAt(end - 1) == '\n')
+            end--;
+        // output that consists of nothing but line breaks has no lines at all
+        boolean hasLines = end > 0 || output.length() == 0;
+
     	ArrayList<String> finalLines = new ArrayList<String>();
         boolean foundLanguage = false;
         boolean foundXML = false;
@@ -175,10 +211,17 @@ public class JSRoyaleEmitter extends JSGoogEmitter implements IJSRoyaleEmitter
     	boolean stillSearching = true;
         int addIndex = -1;
         int provideIndex = -1;
-        int len = lines.length;
-    	for (int i = 0; i < len; i++)
+        int lineStart = 0;
+    	for (int i = 0; hasLines; i++)
     	{
-            String line = lines[i];
+            int lineEnd = output.indexOf('\n', lineStart);
+            if (lineEnd == -1 || lineEnd > end)
+                lineEnd = end;
+            boolean isLastLine = lineEnd == end;
+            String line = output.substring(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+            if (isLastLine)
+                hasLines = false;
     		if (stillSearching)
     		{
                 if (provideIndex == -1 || !sawRequires)
@@ -220,7 +263,7 @@ public class JSRoyaleEmitter extends JSGoogEmitter implements IJSRoyaleEmitter
                     }
                     */
 	    		}
-	    		else if (sawRequires || i == len - 1)
+	    		else if (sawRequires || isLastLine)
                 {
                     stillSearching = false;
 
@@ -307,6 +350,8 @@ public class JSRoyaleEmitter extends JSGoogEmitter implements IJSRoyaleEmitter
                 }
     		}
     		finalLines.add(line);
+            if (!stillSearching)
+                break;
     	}
 		if (staticUsedNames.size() > 0)
 		{
@@ -325,7 +370,19 @@ public class JSRoyaleEmitter extends JSGoogEmitter implements IJSRoyaleEmitter
             addLineToMappings(provideIndex);
 		}
 
-    	return Joiner.on("\n").join(finalLines);
+        int len = finalLines.size();
+        for (int i = 0; i < len; i++)
+        {
+            if (i > 0)
+                out.write('\n');
+            out.write(finalLines.get(i));
+        }
+        if (hasLines)
+        {
+            // the lines after the header are written as they were emitted
+            out.write('\n');
+            out.write(output, lineStart, end - lineStart);
+        }
     }
 
     public BindableEmitter getBindableEmitter()
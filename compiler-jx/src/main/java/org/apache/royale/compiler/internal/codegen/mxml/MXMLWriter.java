@@ -19,9 +19,12 @@
 
 package org.apache.royale.compiler.internal.codegen.mxml;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 
 import org.apache.royale.compiler.codegen.ISourceMapEmitter;
@@ -31,6 +34,7 @@ import org.apache.royale.compiler.codegen.mxml.IMXMLEmitter;
 import org.apache.royale.compiler.driver.js.IJSBackend;
 import org.apache.royale.compiler.internal.codegen.js.JSFilterWriter;
 import org.apache.royale.compiler.internal.codegen.js.JSWriter;
+import org.apache.royale.compiler.internal.graph.GoogDepsFileInfo;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.units.ICompilationUnit;
@@ -70,7 +74,14 @@ public class MXMLWriter extends JSWriter
 
         try
         {
-            out.write(mxmlEmitter.postProcess(writer.toString()).getBytes("utf8"));
+            Writer jsWriter = new BufferedWriter(new OutputStreamWriter(out, "utf8"));
+            GoogDepsFileInfo.Recorder recorder = createGoogDepsRecorder(jsWriter);
+            if (recorder != null)
+                jsWriter = recorder;
+            jsWriter.write(mxmlEmitter.postProcess(writer.toString()));
+            jsWriter.flush();
+            if (recorder != null)
+                recorder.close();
         }
         catch (IOException e)
         {
@@ -163,6 +163,13 @@ public class MXMLRoyaleEmitter extends MXMLEmitter implements
         sourceMapMappings = new ArrayList<SourceMapMapping>();
     }
 
+    /**
+     * Unlike {@link JSRoyaleEmitter#postProcess(String, java.io.Writer)},
+     * this still splits the whole file into lines and joins them again: the
+     * main application class gets its <code>info()</code> and CSS data
+     * appended, and the requires they need are inserted into the header
+     * only after the rest of the file has been processed.
+     */
     @Override
     public String postProcess(String output)
     {
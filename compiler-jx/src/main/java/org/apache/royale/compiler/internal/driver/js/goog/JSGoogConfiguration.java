@@ -285,7 +285,65 @@ public class JSGoogConfiguration extends JSConfiguration
     {
     	skipTranspile = value;
     }
-    
+
+    //
+    // 'js-emit-threads'
+    //
+
+    private int jsEmitThreads = 1;
+
+    /**
+     * @return The number of threads used to emit the intermediate JS files.
+     * A value of 1 emits the compilation units sequentially.
+     */
+    public int getJsEmitThreads()
+    {
+        if (jsEmitThreads == 0)
+            return Runtime.getRuntime().availableProcessors();
+        return jsEmitThreads;
+    }
+
+    /**
+     * The number of threads used to emit the intermediate JS files and
+     * source maps, or the JS files packed into a SWC by compc. 1 (the
+     * default) emits one compilation unit after another, 0 uses one thread
+     * per available processor. The output is the same in every case.
+     */
+    @Config(advanced = true)
+    @Mapping("js-emit-threads")
+    @Arguments("count")
+    public void setJsEmitThreads(ConfigurationValue cv, int value)
+            throws ConfigurationException
+    {
+        if (value < 0)
+            throw new ConfigurationException.BadValue(Integer.toString(value), cv.getVar(), cv.getSource(), cv.getLine());
+        jsEmitThreads = value;
+    }
+
+    //
+    // 'js-skip-unchanged-output'
+    //
+
+    private boolean jsSkipUnchangedOutput = false;
+
+    public boolean getJsSkipUnchangedOutput()
+    {
+        return jsSkipUnchangedOutput;
+    }
+
+    /**
+     * Leaves intermediate JS files and source maps untouched when the emitted
+     * bytes match the ones written by the previous build with the same
+     * compiler and options, and reports how many units were rewritten.
+     */
+    @Config(advanced = true)
+    @Mapping("js-skip-unchanged-output")
+    public void setJsSkipUnchangedOutput(ConfigurationValue cv, boolean value)
+            throws ConfigurationException
+    {
+        jsSkipUnchangedOutput = value;
+    }
+
     
     
     protected String getAbsolutePathFromPathRelativeToMXMLC(String relativePath)
@@ -0,0 +1,458 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.graph;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogEmitterTokens;
+
+/**
+ * The dependency information that {@link GoogDepsWriter} needs from one
+ * generated JS file: the <code>goog.provide</code>/<code>goog.require</code>
+ * lines, the <code>@extends</code>/<code>@implements</code> annotations, the
+ * static dependency list and the line numbers of the header comments.
+ * <p>
+ * The information is collected one line at a time, either while the emitter
+ * writes the file (see {@link Recorder}) or by reading the file back from
+ * disk, which is only needed for files that were not emitted by this
+ * compilation, such as the ones copied out of SWCs.
+ */
+public class GoogDepsFileInfo
+{
+    public GoogDepsFileInfo(String className)
+    {
+        this.className = className;
+    }
+
+    private final String className;
+
+    public ArrayList<String> impls;
+    public ArrayList<String> deps;
+    public ArrayList<String> staticDeps;
+    public ArrayList<String> provides;
+    public int constructorLine = -1;
+    public int suppressLine = -1;
+    public int fileoverviewLine = -1;
+    public int googProvideLine = -1;
+
+    /**
+     * The line of the dependency list {@link GoogDepsWriter} adds when it
+     * rewrites the file, or -1 if the file has not been rewritten.
+     */
+    public int dependencyListLine = -1;
+    public boolean isExtern;
+
+    /**
+     * Lines found inside <code>&lt;inject_html&gt;</code> blocks.
+     */
+    public ArrayList<String> additionalHTML = new ArrayList<String>();
+
+    /**
+     * Classes used by the static initializers of this class.
+     */
+    public ArrayList<String> staticInitializers = new ArrayList<String>();
+
+    /**
+     * True if the class implements <code>ICSSImpl</code>.
+     */
+    public boolean needCSS;
+
+    private int lineNumber;
+    private int numProvides;
+    private int constructorCount;
+    private boolean inInjectHTML;
+    private boolean done;
+
+    /**
+     * @return The qualified name of the class in the file.
+     */
+    public String getClassName()
+    {
+        return className;
+    }
+
+    /**
+     * Scans the next line of the file.
+     *
+     * @param line The line, without its line terminator.
+     * @return false once the rest of the file cannot change the information
+     * any more.
+     */
+    public boolean scanLine(String line)
+    {
+        if (done)
+            return false;
+
+        int i = lineNumber++;
+        int c2;
+        int c = line.indexOf("*/");
+        if (c > -1 && constructorCount > 0 && constructorCount == numProvides)
+        {
+            done = true;
+            return false;
+        }
+        if (inInjectHTML)
+        {
+            if (line.indexOf("</inject_html>") > -1)
+            {
+                inInjectHTML = false;
+                return true;
+            }
+            line = line.trim();
+            if (line.startsWith("*"))
+                line = line.substring(1);
+            additionalHTML.add(line);
+            return true;
+        }
+        c = line.indexOf("<inject_html>");
+        if (c > -1)
+        {
+            inInjectHTML = true;
+        }
+        c = line.indexOf("@constructor");
+        if (c > -1)
+        {
+            if (constructorLine == -1)
+                constructorLine = i;
+            constructorCount++;
+            return true;
+        }
+        c = line.indexOf("@interface");
+        if (c > -1)
+        {
+            constructorLine = i;
+            return true;
+        }
+        c = line.indexOf("@suppress");
+        if (c > -1)
+        {
+            suppressLine = i;
+            return true;
+        }
+        c = line.indexOf("@fileoverview");
+        if (c > -1)
+        {
+            fileoverviewLine = i;
+            return true;
+        }
+        c = line.indexOf("goog.provide");
+        if (c > -1)
+        {
+            if (googProvideLine == -1)
+                googProvideLine = i;
+            if (numProvides > 0)
+            {
+                if (provides == null)
+                    provides = new ArrayList<String>();
+                c2 = line.indexOf(")", c);
+                String provide = line.substring(c + 14, c2 - 1);
+                provides.add(provide);
+            }
+            numProvides++;
+            return true;
+        }
+        c = line.indexOf("@implements");
+        if (c > -1)
+        {
+            if (impls == null)
+                impls = new ArrayList<String>();
+            c2 = line.indexOf("}", c);
+            String impl = line.substring(c + 13, c2);
+            if (!impls.contains(impl) && !impl.contentEquals(className))
+                impls.add(impl);
+            if (impl.equals("org.apache.royale.core.ICSSImpl"))
+                needCSS = true;
+            return true;
+        }
+        c = line.indexOf("@extends");
+        if (c > -1)
+        {
+            if (impls == null)
+                impls = new ArrayList<String>();
+            c2 = line.indexOf("}", c);
+            String impl = line.substring(c + 10, c2);
+            if (!impls.contains(impl) && !impl.contentEquals(className))
+                impls.add(impl);
+            return true;
+        }
+        String token = JSGoogEmitterTokens.ROYALE_STATIC_DEPENDENCY_LIST.getToken();
+        c = line.indexOf(token);
+        if (c > -1)
+        {
+            c2 = line.indexOf("*/");
+            line = line.substring(c + token.length(), c2);
+            List<String> staticDepList = Arrays.asList(line.split(","));
+            staticDeps = new ArrayList<String>();
+            staticDeps.addAll(staticDepList);
+            for (String staticDep : staticDepList)
+            {
+                if (staticDep.equals(className))
+                    continue;
+                staticInitializers.add(staticDep);
+            }
+            return true;
+        }
+        c = line.indexOf("@externs");
+        if (c > -1)
+        {
+            isExtern = true;
+            return true;
+        }
+        token = JSGoogEmitterTokens.ROYALE_DEPENDENCY_LIST.getToken();
+        c = line.indexOf(token);
+        if (c > -1)
+        {
+            dependencyListLine = i;
+            c2 = line.indexOf("*/");
+            line = line.substring(c + token.length(), c2);
+            deps = new ArrayList<String>();
+            if (line.length() > 2) // don't add blank or space if no deps
+                deps.addAll(Arrays.asList(line.split(",")));
+            return true;
+        }
+        token = JSGoogEmitterTokens.GOOG_REQUIRE.getToken();
+        c = line.indexOf(token);
+        if (c > -1)
+        {
+            c2 = line.indexOf(")");
+            String s = line.substring(c + 14, c2 - 1);
+            if (deps == null)
+                deps = new ArrayList<String>();
+            deps.add(s);
+        }
+        return true;
+    }
+
+    /**
+     * Completes the scan. Must be called once all lines have been scanned,
+     * or {@link #scanLine(String)} has returned false.
+     */
+    public void finish()
+    {
+        done = true;
+        if (deps != null)
+            Collections.sort(deps);
+        if (staticDeps != null)
+            Collections.sort(staticDeps);
+    }
+
+    /**
+     * @return A copy that {@link GoogDepsWriter} can modify without changing
+     * this instance.
+     */
+    public GoogDepsFileInfo copy()
+    {
+        GoogDepsFileInfo fi = new GoogDepsFileInfo(className);
+        fi.impls = copyList(impls);
+        fi.deps = copyList(deps);
+        fi.staticDeps = copyList(staticDeps);
+        fi.provides = copyList(provides);
+        fi.constructorLine = constructorLine;
+        fi.suppressLine = suppressLine;
+        fi.fileoverviewLine = fileoverviewLine;
+        fi.googProvideLine = googProvideLine;
+        fi.dependencyListLine = dependencyListLine;
+        fi.isExtern = isExtern;
+        fi.additionalHTML = copyList(additionalHTML);
+        fi.staticInitializers = copyList(staticInitializers);
+        fi.needCSS = needCSS;
+        fi.done = true;
+        return fi;
+    }
+
+    private static ArrayList<String> copyList(ArrayList<String> list)
+    {
+        return list != null ? new ArrayList<String>(list) : null;
+    }
+
+    /**
+     * Encodes the information of a completed scan, so that it can be stored
+     * and restored with {@link #fromCacheString(String, String)} instead of
+     * scanning the file again.
+     */
+    public String toCacheString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(constructorLine).append('\n');
+        sb.append(suppressLine).append('\n');
+        sb.append(fileoverviewLine).append('\n');
+        sb.append(googProvideLine).append('\n');
+        sb.append(dependencyListLine).append('\n');
+        sb.append(isExtern).append('\n');
+        sb.append(needCSS).append('\n');
+        appendList(sb, impls);
+        appendList(sb, deps);
+        appendList(sb, staticDeps);
+        appendList(sb, provides);
+        appendList(sb, additionalHTML);
+        appendList(sb, staticInitializers);
+        return sb.toString();
+    }
+
+    private static void appendList(StringBuilder sb, List<String> list)
+    {
+        if (list == null)
+        {
+            sb.append(-1).append('\n');
+            return;
+        }
+        sb.append(list.size()).append('\n');
+        for (String s : list)
+            sb.append(s).append('\n');
+    }
+
+    /**
+     * @param className The qualified name of the class in the file.
+     * @param s A string returned by {@link #toCacheString()}.
+     * @return The decoded information, or null if <code>s</code> is not
+     * valid.
+     */
+    public static GoogDepsFileInfo fromCacheString(String className, String s)
+    {
+        // every value, including the last one, ends with a line break
+        String[] lines = s.split("\n", -1);
+        GoogDepsFileInfo fi = new GoogDepsFileInfo(className);
+        try
+        {
+            int[] index = new int[] { 0 };
+            fi.constructorLine = Integer.parseInt(lines[index[0]++]);
+            fi.suppressLine = Integer.parseInt(lines[index[0]++]);
+            fi.fileoverviewLine = Integer.parseInt(lines[index[0]++]);
+            fi.googProvideLine = Integer.parseInt(lines[index[0]++]);
+            fi.dependencyListLine = Integer.parseInt(lines[index[0]++]);
+            fi.isExtern = Boolean.parseBoolean(lines[index[0]++]);
+            fi.needCSS = Boolean.parseBoolean(lines[index[0]++]);
+            fi.impls = readList(lines, index);
+            fi.deps = readList(lines, index);
+            fi.staticDeps = readList(lines, index);
+            fi.provides = readList(lines, index);
+            fi.additionalHTML = readList(lines, index);
+            fi.staticInitializers = readList(lines, index);
+            if (fi.additionalHTML == null || fi.staticInitializers == null ||
+                    index[0] != lines.length - 1)
+                return null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            return null;
+        }
+        fi.done = true;
+        return fi;
+    }
+
+    private static ArrayList<String> readList(String[] lines, int[] index)
+    {
+        int size = Integer.parseInt(lines[index[0]++]);
+        if (size == -1)
+            return null;
+        ArrayList<String> list = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++)
+            list.add(lines[index[0]++]);
+        return list;
+    }
+
+    /**
+     * A {@link Writer} that passes everything through to another writer and
+     * scans the lines written to it into a {@link GoogDepsFileInfo} until
+     * the scan is complete.
+     */
+    public static class Recorder extends Writer
+    {
+        public Recorder(Writer out, GoogDepsFileInfo fileInfo)
+        {
+            this.out = out;
+            this.fileInfo = fileInfo;
+        }
+
+        private final Writer out;
+        private final GoogDepsFileInfo fileInfo;
+        private final StringBuilder line = new StringBuilder();
+        private boolean scanning = true;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException
+        {
+            out.write(cbuf, off, len);
+            for (int i = off, end = off + len; scanning && i < end; i++)
+                scan(cbuf[i]);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException
+        {
+            out.write(str, off, len);
+            for (int i = off, end = off + len; scanning && i < end; i++)
+                scan(str.charAt(i));
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            out.write(c);
+            if (scanning)
+                scan((char) c);
+        }
+
+        private void scan(char c)
+        {
+            if (c == '\n')
+            {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r')
+                    line.setLength(length - 1);
+                scanning = fileInfo.scanLine(line.toString());
+                line.setLength(0);
+            }
+            else
+            {
+                line.append(c);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            out.flush();
+        }
+
+        /**
+         * Scans the last, unterminated line and completes the scan. The
+         * underlying writer is flushed, but not closed.
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if (scanning && line.length() > 0)
+                fileInfo.scanLine(line.toString());
+            scanning = false;
+            line.setLength(0);
+            fileInfo.finish();
+            out.flush();
+        }
+    }
+}
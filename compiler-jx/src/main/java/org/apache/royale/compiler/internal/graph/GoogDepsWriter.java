@@ -18,11 +18,14 @@
  */
 package org.apache.royale.compiler.internal.graph;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
@@ -40,6 +43,7 @@ import org.apache.royale.compiler.clients.problems.ProblemQuery;
 import org.apache.royale.compiler.common.DependencyType;
 import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
+import org.apache.royale.compiler.internal.codegen.js.JSOutputCache;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogEmitterTokens;
 import org.apache.royale.compiler.internal.driver.js.JSCompilationUnit;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
@@ -621,8 +625,7 @@ public class GoogDepsWriter {
 				sourceMapOut.close();
 			}
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			problems.add(new UnexpectedExceptionProblem(e));
 		}
 		
 	}
@@ -643,14 +646,28 @@ public class GoogDepsWriter {
 			throw new RuntimeException("Unable to find JavaScript filePath for class: " + className);
 		}
 		depMap.put(gd.className, gd);
-        List<String> fileLines;
-		try {
-			fileLines = Files.readLines(new File(gd.filePath), Charset.defaultCharset());
-            FileInfo fi = getFileInfo(fileLines, className);
+		GoogDepsFileInfo fi = getRecordedFileInfo(className);
+		if (fi == null)
+		{
+			try {
+				fi = getFileInfo(new File(gd.filePath), className);
+			} catch (IOException e) {
+				problems.add(new UnexpectedExceptionProblem(e));
+				depMap.remove(className);
+				return;
+			}
+		}
+		if (fi != null)
+		{
+			additionalHTML.addAll(fi.additionalHTML);
+			if (fi.needCSS)
+				needCSS = true;
+			for (String staticDep : fi.staticInitializers)
+			{
+				staticInitializers.add(staticDep);
+				staticInitializerOwners.add(className);
+			}
 			gd.fileInfo = fi;
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		}
 		if (gd.fileInfo.impls != null)
 		{
@@ -696,14 +713,37 @@ public class GoogDepsWriter {
         {
 			gd = depMap.get(className);
 			File depFile = new File(gd.filePath);
+			File sourceMapFile = sourceMaps ? new File(gd.filePath + ".map") : null;
+			JSOutputCache outputCache = getOutputCache();
+			String publishKey = null;
+			if (outputCache != null)
+			{
+				publishKey = getPublishKey(gd);
+				if (outputCache.isPublishKeyUnchanged(depFile, publishKey) &&
+						(sourceMapFile == null || !sourceMapFile.exists() || outputCache.isUnchanged(sourceMapFile)))
+				{
+					// still rewritten the way it would be now
+					outputCache.setPublishKey(depFile, publishKey);
+					return;
+				}
+				// unchanged files have the changes made by the previous
+				// build, so start again from the emitted files
+				outputCache.restore(depFile);
+				if (sourceMapFile != null)
+					outputCache.restore(sourceMapFile);
+			}
+			GoogDepsFileInfo headerInfo = gd.fileInfo;
+			int headerEnd = headerInfo.constructorLine;
+			if (headerInfo.constructorLine == -1) // standalone functions
+				headerEnd = headerInfo.googProvideLine + 4;
+			if (headerInfo.dependencyListLine != -1 && headerInfo.dependencyListLine < headerEnd)
+				return; // already been processed
             List<String> fileLines = Files.readLines(depFile, Charset.defaultCharset());
 			ArrayList<String> finalLines = new ArrayList<String>();
 			
 			SourceMapConsumerV3 sourceMapConsumer = null;
-			File sourceMapFile = null;
 			if (sourceMaps)
 			{
-				sourceMapFile = new File(gd.filePath + ".map");
 				if (sourceMapFile.exists())
 				{
 					String sourceMapContents = FileUtils.readFileToString(sourceMapFile);
@@ -726,7 +766,7 @@ public class GoogDepsWriter {
         	ArrayList<String> writtenRequires = new ArrayList<String>();
 //        	int staticDepsLine = -1;
         	int lastRequireLine = -1;
-            FileInfo fi = gd.fileInfo;
+            GoogDepsFileInfo fi = gd.fileInfo;
 //            int suppressCount = 0;
             int i = 0;
             int stopLine = fi.constructorLine;
@@ -892,13 +932,62 @@ public class GoogDepsWriter {
 				sourceMapOut.print(newSourceMap);
 				sourceMapOut.close();
 			}
+			if (outputCache != null)
+			{
+				outputCache.setPublishKey(depFile, publishKey);
+				if (!outputCache.isEmitted(depFile))
+				{
+					// so that the next build does not have to read it again
+					GoogDepsFileInfo rewrittenInfo = new GoogDepsFileInfo(className);
+					for (String s : finalLines)
+					{
+						if (!rewrittenInfo.scanLine(s))
+							break;
+					}
+					rewrittenInfo.finish();
+					outputCache.setFileInfo(depFile, rewrittenInfo.toCacheString());
+				}
+			}
         }
         catch (IOException e)
         {
-            e.printStackTrace();
+            problems.add(new UnexpectedExceptionProblem(e));
         }		
 	}
 
+	/**
+	 * Builds a key of everything besides the emitted file that
+	 * removeRequires() uses to rewrite the file of a class: the static
+	 * dependencies added by sort() and which of the required classes are
+	 * provided by a JS file.
+	 */
+	private String getPublishKey(GoogDep gd)
+	{
+		StringBuilder sb = new StringBuilder();
+		appendPublishKey(sb, gd.fileInfo.deps);
+		sb.append(";");
+		appendPublishKey(sb, gd.fileInfo.staticDeps);
+		return sb.toString();
+	}
+
+	private void appendPublishKey(StringBuilder sb, List<String> classNames)
+	{
+		if (classNames == null)
+			return;
+		for (String name : classNames)
+		{
+			sb.append(name);
+			sb.append(isGoogProvided(name) ? "+," : "-,");
+		}
+	}
+
+	private JSOutputCache getOutputCache()
+	{
+		if (!(project instanceof RoyaleJSProject))
+			return null;
+		return ((RoyaleJSProject) project).jsOutputCache;
+	}
+
 	String sourceMapConsumerToString(SourceMapConsumerV3 consumer, String file)
 	{
 		SourceMapGeneratorV3 generator = sourceMapConsumerToGenerator(consumer);
@@ -1080,185 +1169,61 @@ public class GoogDepsWriter {
 		return sourceMapGeneratorToConsumer(generator, sourceFileName);
 	}
 		
-	FileInfo getFileInfo(List<String> lines, String className)
+	/**
+	 * Returns the dependency information the emitter recorded for a class
+	 * while writing its file in this compilation, if any.
+	 */
+	private GoogDepsFileInfo getRecordedFileInfo(String className)
 	{
-		FileInfo fi = new FileInfo();
-		
-		int numProvides = 0;
-		int constructorCount = 0;
-	    int n = lines.size();
-	    fi.constructorLine = -1;
-	    fi.suppressLine = -1;
-	    fi.fileoverviewLine = -1;
-	    fi.googProvideLine = -1;
-		boolean inInjectHTML = false;
-	    for (int i = 0; i < n; i++)
-	    {
-	        String line = lines.get(i);
-	        int c2;
-	        int c = line.indexOf("*/");
-	        if (c > -1 && constructorCount > 0 && constructorCount == numProvides)
-	        {
-                break;
-	        }
-	        else
-	        {
-		        if (inInjectHTML)
-	            {
-	                if (line.indexOf("</inject_html>") > -1)
-	                {
-	                    inInjectHTML = false;
-	                    continue;
-	                }
-	            	line = line.trim();
-	            	if (line.startsWith("*"))
-	            		line = line.substring(1);
-				    additionalHTML.add(line);
-				    continue;
-	            }
-                c = line.indexOf("<inject_html>");
-                if (c > -1)
-                {
-                    inInjectHTML = true;
-                }
-		        c = line.indexOf("@constructor");
-		        if (c > -1)
-		        {
-		        	if (fi.constructorLine == -1)
-		        		fi.constructorLine = i;
-		        	constructorCount++;
-		        		
-		        }
-		        else
-		        {
-			        c = line.indexOf("@interface");
-			        if (c > -1)
-			        	fi.constructorLine = i;
-			        else
-			        {
-			        	c = line.indexOf("@suppress");
-			        	if (c > -1)
-			        		fi.suppressLine = i;
-			        	else
-			        	{
-				        	c = line.indexOf("@fileoverview");
-				        	if (c > -1)
-				        		fi.fileoverviewLine = i;
-				        	else
-				        	{
-					        	c = line.indexOf("goog.provide");
-					        	if (c > -1)
-					        	{
-					        		if (fi.googProvideLine == -1)
-					        			fi.googProvideLine = i;
-					        		if (numProvides > 0)
-					        		{
-					        			if (fi.provides == null)
-					        				fi.provides = new ArrayList<String>();
-					        			c2 = line.indexOf(")", c);
-					        			String provide = line.substring(c + 14, c2 - 1);
-					        			fi.provides.add(provide);
-					        		}
-					        		numProvides++;
-					        	}
-					        	else
-					        	{
-					        		c = line.indexOf("@implements");
-					        		if (c > -1)
-					        		{
-					        			if (fi.impls == null)
-					        				fi.impls = new ArrayList<String>();
-					        			c2 = line.indexOf("}", c);
-					        			String impl = line.substring(c + 13, c2);
-					        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
-					        				fi.impls.add(impl);
-					        			if (impl.equals("org.apache.royale.core.ICSSImpl"))
-					        				needCSS = true;
-					        		}
-					        		else
-					        		{
-						        		c = line.indexOf("@extends");
-						        		if (c > -1)
-						        		{
-						        			if (fi.impls == null)
-						        				fi.impls = new ArrayList<String>();
-						        			c2 = line.indexOf("}", c);
-						        			String impl = line.substring(c + 10, c2);
-						        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
-						        				fi.impls.add(impl);
-						        		}
-						        		else
-						        		{
-						        			String token = JSGoogEmitterTokens.ROYALE_STATIC_DEPENDENCY_LIST.getToken();
-						    				c = line.indexOf(token);
-						    				if (c > -1)
-						    				{
-						    					c2 = line.indexOf("*/");
-						    					line = line.substring(c + token.length(), c2);
-						    					List<String> staticDeps = Arrays.asList(line.split(","));
-							        			fi.staticDeps = new ArrayList<String>();
-						    					fi.staticDeps.addAll(staticDeps);
-						    					for (String staticDep : staticDeps)
-						    					{
-						    						if (staticDep.equals(className))
-						    							continue;
-						    						staticInitializers.add(staticDep);
-						    						staticInitializerOwners.add(className);
-						    					}
-						    				}
-						    				else
-						    				{
-						    					c = line.indexOf("@externs");
-						    					if (c > -1)
-						    					{
-						    						fi.isExtern = true;
-						    					}
-						    					else
-						    					{
-								        			token = JSGoogEmitterTokens.ROYALE_DEPENDENCY_LIST.getToken();
-								    				c = line.indexOf(token);
-								    				if (c > -1)
-								    				{
-								    					c2 = line.indexOf("*/");
-								    					line = line.substring(c + token.length(), c2);
-									        			fi.deps = new ArrayList<String>();
-									        			if (line.length() > 2) // don't add blank or space if no deps
-									        				fi.deps.addAll(Arrays.asList(line.split(",")));
-//								    					fi.depsLine = i;
-								    				}
-								    				else /* if (fi.depsLine == 0) */
-								    				{
-								    					token = JSGoogEmitterTokens.GOOG_REQUIRE.getToken();
-								    					c = line.indexOf(token);
-								    					if (c > -1)
-								    					{
-								                            c2 = line.indexOf(")");
-								                            String s = line.substring(c + 14, c2 - 1);
-								                            if (fi.deps == null)
-								                            	fi.deps = new ArrayList<String>();
-								                            fi.deps.add(s);
-								    					}
-								    				}
-						    					}
-							        		}
-						        		}
-					        		}
-					        	}
-				        	}
-			        	}
-			        }
-		        }
-	        }
-	    }
-	    if (fi.deps != null)
-	    {
-	    	Collections.sort(fi.deps);
-	    }
-	    if (fi.staticDeps != null)
-	    {
-	    	Collections.sort(fi.staticDeps);
-	    }
-	    return fi;
+		if (!(project instanceof RoyaleJSProject))
+			return null;
+		Map<String, GoogDepsFileInfo> fileInfos = ((RoyaleJSProject) project).googDepsFileInfos;
+		if (fileInfos == null)
+			return null;
+		GoogDepsFileInfo fi = fileInfos.get(className);
+		// sort() adds to the static dependencies, so use a copy
+		return fi != null ? fi.copy() : null;
+	}
+
+	/**
+	 * Reads the dependency information from a file that was not emitted by
+	 * this compilation. Only the lines up to the end of the class header are
+	 * read, and not even those if the output cache has the information for
+	 * the current contents of the file.
+	 */
+	GoogDepsFileInfo getFileInfo(File file, String className) throws IOException
+	{
+		JSOutputCache outputCache = getOutputCache();
+		if (outputCache != null)
+		{
+			String cachedInfo = outputCache.getFileInfo(file);
+			if (cachedInfo != null)
+			{
+				GoogDepsFileInfo fi = GoogDepsFileInfo.fromCacheString(className, cachedInfo);
+				if (fi != null)
+					return fi;
+			}
+		}
+		GoogDepsFileInfo fi = new GoogDepsFileInfo(className);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), Charset.defaultCharset()));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (!fi.scanLine(line))
+					break;
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		fi.finish();
+		if (outputCache != null && !outputCache.isEmitted(file))
+			outputCache.setFileInfo(file, fi.toCacheString());
+		return fi;
 	}
 	
 	String getFilePath(String className)
@@ -1564,21 +1529,7 @@ public class GoogDepsWriter {
 		public String filePath;
 		public String className;
 		public ArrayList<String> deps;
-		public FileInfo fileInfo;
+		public GoogDepsFileInfo fileInfo;
 		
 	}
-	
-	private class FileInfo
-	{
-		public ArrayList<String> impls;
-		public ArrayList<String> deps;
-		public ArrayList<String> staticDeps;
-		public ArrayList<String> provides;
-		public int constructorLine;
-//		public int depsLine;
-		public int suppressLine;
-		public int fileoverviewLine;
-		public int googProvideLine;
-		public boolean isExtern;
-	}
 }
@@ -46,12 +46,14 @@ import org.apache.royale.compiler.definitions.metadata.IMetaTagAttribute;
 import org.apache.royale.compiler.definitions.references.IResolvedQualifiersReference;
 import org.apache.royale.compiler.definitions.references.ReferenceFactory;
 import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.codegen.js.JSOutputCache;
 import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitterTokens;
 import org.apache.royale.compiler.internal.codegen.mxml.royale.MXMLRoyaleEmitterTokens;
 import org.apache.royale.compiler.internal.css.codegen.CSSCompilationSession;
 import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
 import org.apache.royale.compiler.internal.driver.js.royale.JSCSSCompilationSession;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
+import org.apache.royale.compiler.internal.graph.GoogDepsFileInfo;
 import org.apache.royale.compiler.internal.mxml.MXMLNamespaceMapping;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope.DefinitionPromise;
 import org.apache.royale.compiler.internal.targets.ITargetAttributes;
@@ -102,6 +104,18 @@ public class RoyaleJSProject extends RoyaleProject
 
     public ICompilationUnit mainCU;
 
+    /**
+     * The dependency information of each emitted JS file, keyed by qualified
+     * name, or null if it is not collected during emission.
+     */
+    public Map<String, GoogDepsFileInfo> googDepsFileInfos;
+
+    /**
+     * The cache of the emitted JS files that were left unchanged, or null if
+     * every file is written.
+     */
+    public JSOutputCache jsOutputCache;
+
     @Override
     public void addDependency(ICompilationUnit from, ICompilationUnit to,
                               DependencyType dt, String qname)
@@ -127,8 +141,12 @@ public class RoyaleJSProject extends RoyaleProject
 		            String asDocString = ((ASDocComment)asDoc).commentNoEnd();
 		            if (asDocString.contains(JSRoyaleEmitterTokens.EXTERNS.getToken()))
 		            {
-		            	if (!sourceExterns.contains(defname))
-		            		sourceExterns.add(defname);
+		            	// units may be emitted on several threads
+		            	synchronized (sourceExterns)
+		            	{
+			            	if (!sourceExterns.contains(defname))
+			            		sourceExterns.add(defname);
+		            	}
 		            }
 		        }
         	}
@@ -249,14 +267,15 @@ public class RoyaleJSProject extends RoyaleProject
         }
     }
 
-    public boolean needLanguage;
-    public boolean needCSS;
-    public boolean needXML;
+    // set by the emitters, which may run on several threads
+    public volatile boolean needLanguage;
+    public volatile boolean needCSS;
+    public volatile boolean needXML;
 
     private LinkageChecker linkageChecker;
     private ITargetSettings ts;
 
-    // definitions that had @externs in the source
+    // definitions that had @externs in the source, guarded by itself
     public ArrayList<String> sourceExterns = new ArrayList<String>();
     
     // definitions that should be considered external linkage
@@ -392,7 +411,7 @@ public class RoyaleJSProject extends RoyaleProject
         return false;
     }
 
-    public ArrayList<String> getInterfaces(ICompilationUnit from)
+    public synchronized ArrayList<String> getInterfaces(ICompilationUnit from)
     {
         if (interfaces.containsKey(from))
         {
@@ -406,7 +425,7 @@ public class RoyaleJSProject extends RoyaleProject
         return null;
     }
 
-    public ArrayList<String> getRequires(ICompilationUnit from)
+    public synchronized ArrayList<String> getRequires(ICompilationUnit from)
     {
         if (requires.containsKey(from))
         {
@@ -420,7 +439,7 @@ public class RoyaleJSProject extends RoyaleProject
         return null;
     }
 
-    public ArrayList<String> getExternalRequires(ICompilationUnit from)
+    public synchronized ArrayList<String> getExternalRequires(ICompilationUnit from)
     {
         if (jsModules.containsKey(from))
         {
@@ -460,7 +479,7 @@ public class RoyaleJSProject extends RoyaleProject
     private HashMap<IASNode, String> astCache = new HashMap<IASNode, String>();
 
     @Override
-    public void addToASTCache(IASNode ast)
+    public synchronized void addToASTCache(IASNode ast)
     {
         astCache.put(ast, "");
     }
@@ -574,12 +593,12 @@ public class RoyaleJSProject extends RoyaleProject
 	public List<String> compiledResourceBundleNames = new ArrayList<String>();
 	public List<String> compiledResourceBundleClasses = new ArrayList<String>();
 	
-	public void addExportedName(String name)
+	public synchronized void addExportedName(String name)
 	{
 		exportedNames.add(name);
 	}
 	
-	public Set<String> getExportedNames()
+	public synchronized Set<String> getExportedNames()
 	{
 		return exportedNames;
 	}
@@ -0,0 +1,235 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.codegen.js;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Builds the same output folder several times through a
+ * {@link JSOutputCache}, with a fake publisher that appends its publish key
+ * to every file it publishes.
+ */
+public class TestJSOutputCache
+{
+    private static final String EMITTED = "goog.provide('A');\n";
+
+    /**
+     * The time every written file is moved back to, so that a rewrite is
+     * detected even on file systems with a coarse time resolution.
+     */
+    private static final long PAST = 1000000000000L;
+
+    private File outputFolder;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        outputFolder = File.createTempFile("TestJSOutputCache", "");
+        outputFolder.delete();
+        outputFolder.mkdirs();
+        file = new File(outputFolder, "A.js");
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(outputFolder);
+    }
+
+    @Test
+    public void testFirstBuildWrites() throws IOException
+    {
+        JSOutputCache cache = build(EMITTED, "key1");
+        assertThat("emitted", cache.getEmittedUnitCount(), is(1));
+        assertThat("content", read(), is(EMITTED + "published key1\n"));
+    }
+
+    @Test
+    public void testUnchangedSkipped() throws IOException
+    {
+        build(EMITTED, "key1");
+        long lastModified = file.lastModified();
+
+        JSOutputCache cache = build(EMITTED, "key1");
+        assertThat("skipped", cache.getSkippedUnitCount(), is(1));
+        assertThat("content", read(), is(EMITTED + "published key1\n"));
+        assertThat("lastModified", file.lastModified(), is(lastModified));
+
+        cache = build(EMITTED, "key1");
+        assertThat("skipped again", cache.getSkippedUnitCount(), is(1));
+        assertThat("lastModified", file.lastModified(), is(lastModified));
+    }
+
+    @Test
+    public void testPublishKeyChangedRestores() throws IOException
+    {
+        build(EMITTED, "key1");
+
+        JSOutputCache cache = build(EMITTED, "key2");
+        assertThat("skipped", cache.getSkippedUnitCount(), is(1));
+        assertThat("content", read(), is(EMITTED + "published key2\n"));
+
+        cache = build(EMITTED, "key2");
+        assertThat("content", read(), is(EMITTED + "published key2\n"));
+    }
+
+    @Test
+    public void testEmittedChangedWrites() throws IOException
+    {
+        build(EMITTED, "key1");
+
+        String emitted = EMITTED + "A = 1;\n";
+        JSOutputCache cache = build(emitted, "key1");
+        assertThat("emitted", cache.getEmittedUnitCount(), is(1));
+        assertThat("content", read(), is(emitted + "published key1\n"));
+    }
+
+    @Test
+    public void testModifiedOnDiskWrites() throws IOException
+    {
+        build(EMITTED, "key1");
+        FileUtils.writeStringToFile(file, "changed", "UTF-8");
+
+        JSOutputCache cache = build(EMITTED, "key1");
+        assertThat("emitted", cache.getEmittedUnitCount(), is(1));
+        assertThat("content", read(), is(EMITTED + "published key1\n"));
+    }
+
+    @Test
+    public void testFingerprintChangedWrites() throws IOException
+    {
+        build(EMITTED, "key1");
+
+        JSOutputCache cache = build("other", EMITTED, "key1");
+        assertThat("emitted", cache.getEmittedUnitCount(), is(1));
+        assertThat("content", read(), is(EMITTED + "published key1\n"));
+    }
+
+    @Test
+    public void testNotPublishedKeepsKey() throws IOException
+    {
+        build(EMITTED, "key1");
+
+        // a build in which the publisher does not process the file
+        JSOutputCache cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.load();
+        cache.write("A", new File[] { file }, new byte[][] { EMITTED.getBytes("UTF-8") });
+        assertThat("unchanged", cache.isUnchanged(file), is(true));
+        cache.releaseUnchangedContents();
+        cache.save();
+
+        cache = build(EMITTED, "key1");
+        assertThat("skipped", cache.getSkippedUnitCount(), is(1));
+        assertThat("content", read(), is(EMITTED + "published key1\n"));
+    }
+
+    @Test
+    public void testFileInfo() throws IOException
+    {
+        File copiedFile = new File(outputFolder, "lib/B.js");
+        FileUtils.writeStringToFile(copiedFile, "goog.provide('lib.B');\n", "UTF-8");
+        copiedFile.setLastModified(PAST);
+
+        JSOutputCache cache = build(EMITTED, "key1");
+        assertThat("emitted", cache.isEmitted(file), is(true));
+        assertThat("not emitted", cache.isEmitted(copiedFile), is(false));
+        cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.load();
+        assertThat("no info", cache.getFileInfo(copiedFile), is(nullValue()));
+        cache.setFileInfo(copiedFile, "info\nof B");
+        cache.save();
+
+        cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.load();
+        assertThat("info", cache.getFileInfo(copiedFile), is("info\nof B"));
+        cache.save();
+
+        // still kept, because the previous build used it
+        cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.load();
+        assertThat("info kept", cache.getFileInfo(copiedFile), is("info\nof B"));
+
+        FileUtils.writeStringToFile(copiedFile, "goog.provide('lib.Other');\n", "UTF-8");
+        copiedFile.setLastModified(PAST);
+        assertThat("file changed", cache.getFileInfo(copiedFile), is(nullValue()));
+    }
+
+    @Test
+    public void testFileInfoDroppedWhenUnused() throws IOException
+    {
+        File copiedFile = new File(outputFolder, "B.js");
+        FileUtils.writeStringToFile(copiedFile, "goog.provide('B');\n", "UTF-8");
+
+        JSOutputCache cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.setFileInfo(copiedFile, "info");
+        cache.save();
+
+        cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.load();
+        cache.save();
+
+        cache = new JSOutputCache(outputFolder, "fingerprint");
+        cache.load();
+        assertThat("dropped", cache.getFileInfo(copiedFile), is(nullValue()));
+    }
+
+    private JSOutputCache build(String emitted, String publishKey) throws IOException
+    {
+        return build("fingerprint", emitted, publishKey);
+    }
+
+    /**
+     * Emits the file and publishes it the way GoogDepsWriter does.
+     */
+    private JSOutputCache build(String fingerprint, String emitted, String publishKey) throws IOException
+    {
+        JSOutputCache cache = new JSOutputCache(outputFolder, fingerprint);
+        cache.load();
+        cache.write("A", new File[] { file }, new byte[][] { emitted.getBytes("UTF-8") });
+
+        if (!cache.isPublishKeyUnchanged(file, publishKey))
+        {
+            cache.restore(file);
+            FileUtils.writeStringToFile(file, read() + "published " + publishKey + "\n", "UTF-8");
+        }
+        cache.setPublishKey(file, publishKey);
+        if (file.lastModified() != PAST)
+            file.setLastModified(PAST);
+
+        cache.releaseUnchangedContents();
+        cache.save();
+        return cache;
+    }
+
+    private String read() throws IOException
+    {
+        return FileUtils.readFileToString(file, "UTF-8");
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.royale;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.test.ASTestBase;
+import org.apache.royale.compiler.tree.as.IFileNode;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Compares the bytes allocated per compilation unit by the post-processing
+ * step of {@link JSRoyaleEmitter} when the whole file is materialized
+ * (split into lines, re-joined and encoded) with the streaming
+ * {@link JSRoyaleEmitter#postProcess(String, Writer)}.
+ * <p>
+ * This is not a unit test. Run it with the test classpath:
+ * <pre>
+ * java ... PostProcessBenchmark [methodCount] [iterations]
+ * </pre>
+ */
+public class PostProcessBenchmark extends ASTestBase
+{
+    @Override
+    public void setUp()
+    {
+        backend = createBackend();
+        project = new RoyaleJSProject(workspace, backend);
+        super.setUp();
+    }
+
+    @Override
+    protected IBackend createBackend()
+    {
+        return new RoyaleBackend();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int methodCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        PostProcessBenchmark benchmark = new PostProcessBenchmark();
+        benchmark.setUp();
+        try
+        {
+            benchmark.run(methodCount, iterations);
+        }
+        finally
+        {
+            benchmark.tearDown();
+        }
+    }
+
+    private void run(int methodCount, int iterations) throws IOException
+    {
+        StringBuilder code = new StringBuilder();
+        code.append("package com.example {");
+        code.append("public class Big {");
+        for (int i = 0; i < methodCount; i++)
+        {
+            code.append("public function method").append(i);
+            code.append("(value:String):String { return value + \"").append(i).append("\"; }");
+        }
+        code.append("}}");
+        IFileNode node = compileAS(code.toString());
+        asBlockWalker.visitFile(node);
+        String output = writer.toString();
+        JSRoyaleEmitter emitter = (JSRoyaleEmitter) asEmitter;
+
+        System.out.println("emitted " + output.length() + " chars");
+
+        // warm up both paths
+        for (int i = 0; i < iterations; i++)
+        {
+            materialize(emitter, output);
+            stream(emitter, output);
+        }
+
+        long materialized = 0;
+        long streamed = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            long before = allocatedBytes();
+            materialize(emitter, output);
+            materialized += allocatedBytes() - before;
+
+            before = allocatedBytes();
+            stream(emitter, output);
+            streamed += allocatedBytes() - before;
+        }
+        System.out.println("materialized: " + (materialized / iterations) + " bytes per unit");
+        System.out.println("streamed:     " + (streamed / iterations) + " bytes per unit");
+    }
+
+    /**
+     * The copies the post-processing step used to make: split into lines,
+     * copy into a list of final lines, re-join, and encode.
+     */
+    private static void materialize(JSRoyaleEmitter emitter, String output) throws IOException
+    {
+        String processed = emitter.postProcess(output);
+        String[] lines = processed.split("\n");
+        List<String> finalLines = new ArrayList<String>(Arrays.asList(lines));
+        NULL_OUTPUT.write(Joiner.on("\n").join(finalLines).getBytes("utf8"));
+    }
+
+    private static void stream(JSRoyaleEmitter emitter, String output) throws IOException
+    {
+        Writer out = new BufferedWriter(new OutputStreamWriter(NULL_OUTPUT, "utf8"));
+        emitter.postProcess(output, out);
+        out.flush();
+    }
+
+    private static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream()
+    {
+        @Override
+        public void write(int b)
+        {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+        }
+    };
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.royale;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.test.ASTestBase;
+import org.apache.royale.compiler.tree.as.IFileNode;
+import org.junit.Test;
+
+/**
+ * Checks that {@link JSRoyaleEmitter#postProcess(String)} and the streaming
+ * {@link JSRoyaleEmitter#postProcess(String, java.io.Writer)} produce the
+ * same output.
+ */
+public class TestRoyalePostProcess extends ASTestBase
+{
+    @Override
+    public void setUp()
+    {
+        backend = createBackend();
+        project = new RoyaleJSProject(workspace, backend);
+        super.setUp();
+    }
+
+    @Override
+    protected IBackend createBackend()
+    {
+        return new RoyaleBackend();
+    }
+
+    @Test
+    public void testClassWithRequires() throws IOException
+    {
+        assertSamePostProcess("package com.example {"
+                + "import custom.TestImplementation;"
+                + "public class A extends TestImplementation {"
+                + "public function A() { foo(); }"
+                + "public function foo():String { return \"foo\"; }}}");
+    }
+
+    @Test
+    public void testClassWithoutRequires() throws IOException
+    {
+        assertSamePostProcess("package com.example {"
+                + "public class A {"
+                + "public var value:Number = 1;"
+                + "public function foo():String { return \"foo\"; }}}");
+    }
+
+    @Test
+    public void testClassNeedingLanguage() throws IOException
+    {
+        assertSamePostProcess("package com.example {"
+                + "public class A {"
+                + "public function foo(value:Object):A { return value as A; }}}");
+    }
+
+    @Test
+    public void testClassWithStaticDependencies() throws IOException
+    {
+        assertSamePostProcess("package com.example {"
+                + "import custom.TestImplementation;"
+                + "public class A {"
+                + "public static var impl:TestImplementation = new TestImplementation();"
+                + "public static const NAME:String = \"A\";}}");
+    }
+
+    @Test
+    public void testPackageFunction() throws IOException
+    {
+        assertSamePostProcess("package com.example {"
+                + "public function foo(value:Object):String { return String(value); }}");
+    }
+
+    @Test
+    public void testTrailingLineBreaks() throws IOException
+    {
+        assertPostProcess("a\nb\n\n", "a\nb");
+        assertPostProcess("\na", "\na");
+    }
+
+    @Test
+    public void testOnlyLineBreaks() throws IOException
+    {
+        assertPostProcess("\n\n", "");
+        assertPostProcess("", "");
+    }
+
+    private void assertSamePostProcess(String code) throws IOException
+    {
+        IFileNode node = compileAS(code);
+        asBlockWalker.visitFile(node);
+        String output = writer.toString();
+        JSRoyaleEmitter emitter = (JSRoyaleEmitter) asEmitter;
+
+        String expected = emitter.postProcess(output);
+        StringWriter out = new StringWriter();
+        emitter.postProcess(output, out);
+        assertThat(out.toString(), is(expected));
+    }
+
+    private void assertPostProcess(String output, String expected) throws IOException
+    {
+        JSRoyaleEmitter emitter = (JSRoyaleEmitter) asEmitter;
+        assertThat(emitter.postProcess(output), is(expected));
+        StringWriter out = new StringWriter();
+        emitter.postProcess(output, out);
+        assertThat(out.toString(), is(expected));
+    }
+}
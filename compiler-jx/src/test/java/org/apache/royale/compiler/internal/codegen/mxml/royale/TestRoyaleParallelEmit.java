@@ -0,0 +1,165 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.codegen.mxml.royale;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.royale.compiler.clients.COMPJSC;
+import org.apache.royale.compiler.clients.MXMLJSC;
+import org.apache.royale.compiler.internal.test.RoyaleTestBase;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.Test;
+
+/**
+ * Checks that emitting the JS of the compilation units on several threads
+ * produces the same output as emitting them one after another.
+ */
+public class TestRoyaleParallelEmit extends RoyaleTestBase
+{
+    @Test
+    public void testApplicationOutput() throws IOException
+    {
+        File serialFolder = compileApplication("threads1", 1);
+        File parallelFolder = compileApplication("threads4", 4);
+        assertSameFiles(readFiles(serialFolder), readFiles(parallelFolder));
+    }
+
+    @Test
+    public void testLibraryOutput() throws IOException
+    {
+        File serialSWC = compileLibrary("threads1", 1);
+        File parallelSWC = compileLibrary("threads4", 4);
+        assertSameFiles(readJSEntries(serialSWC), readJSEntries(parallelSWC));
+    }
+
+    private File compileApplication(String folderName, int threads) throws IOException
+    {
+        File outputFolder = new File(testAdapter.getTempDir(), "parallel-emit/" + folderName);
+        FileUtils.deleteQuietly(outputFolder);
+
+        List<String> args = getLibraryArgs();
+        args.add("-compiler.targets=JSRoyale");
+        args.add("-js-emit-threads=" + threads);
+        args.add("-output=" + new File(outputFolder, "RoyaleTest_again.swf").getPath());
+        args.add(new File(testAdapter.getUnitTestBaseDir(), "royale/files/RoyaleTest_again.mxml").getPath());
+
+        MXMLJSC mxmlc = new MXMLJSC();
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        int result = mxmlc.mainNoExit(args.toArray(new String[0]), problems, true);
+        assertThat(problems.toString(), result, is(0));
+
+        File jsFolder = new File(outputFolder, "bin/" + MXMLRoyalePublisher.ROYALE_INTERMEDIATE_DIR_NAME);
+        assertTrue(jsFolder.getPath(), jsFolder.isDirectory());
+        return jsFolder;
+    }
+
+    private File compileLibrary(String folderName, int threads) throws IOException
+    {
+        File outputFolder = new File(testAdapter.getTempDir(), "parallel-emit/" + folderName);
+        File outputSWC = new File(outputFolder, "Library.swc");
+        FileUtils.deleteQuietly(outputSWC);
+
+        List<String> args = getLibraryArgs();
+        args.add("-compiler.targets=SWF,JSRoyale");
+        args.add("-js-emit-threads=" + threads);
+        args.add("-source-path=" + new File(testAdapter.getUnitTestBaseDir(), "royale/files").getPath());
+        args.add("-include-classes=binding.ComplexValueObject,binding.SimpleValueObject,models.MyModel,controllers.MyController");
+        args.add("-output=" + outputSWC.getPath());
+
+        COMPJSC compc = new COMPJSC();
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        int result = compc.mainNoExit(args.toArray(new String[0]), problems, true);
+        assertThat(problems.toString(), result, is(0));
+        assertTrue(outputSWC.getPath(), outputSWC.isFile());
+        return outputSWC;
+    }
+
+    private List<String> getLibraryArgs()
+    {
+        List<String> args = new ArrayList<String>();
+        args.add("-compiler.allow-subclass-overrides");
+        args.add("-remove-circulars");
+        args.add("-library-path=" + new File(FilenameNormalization.normalize(env.ASJS + "/frameworks/libs")).getPath());
+        args.add("-js-library-path=" + new File(FilenameNormalization.normalize(env.ASJS + "/frameworks/js/libs")).getPath());
+        args.add("-external-library-path+=" + testAdapter.getPlayerglobal().getPath());
+        args.add("-js-external-library-path+=" + new File(FilenameNormalization.normalize(env.ASJS + "/js/libs/js.swc")).getPath());
+        if (env.GOOG != null)
+            args.add("-closure-lib=" + new File(FilenameNormalization.normalize(env.GOOG)).getPath());
+        else
+            args.add("-define=COMPILE::temp,false");
+        return args;
+    }
+
+    private static Map<String, String> readFiles(File folder) throws IOException
+    {
+        Map<String, String> files = new TreeMap<String, String>();
+        Collection<File> list = FileUtils.listFiles(folder, null, true);
+        for (File file : list)
+        {
+            String path = folder.toURI().relativize(file.toURI()).getPath();
+            files.put(path, FileUtils.readFileToString(file, "UTF-8"));
+        }
+        return files;
+    }
+
+    private static Map<String, String> readJSEntries(File swcFile) throws IOException
+    {
+        Map<String, String> entries = new TreeMap<String, String>();
+        ZipFile zipFile = new ZipFile(swcFile);
+        try
+        {
+            Enumeration<? extends ZipEntry> list = zipFile.entries();
+            while (list.hasMoreElements())
+            {
+                ZipEntry entry = list.nextElement();
+                if (entry.getName().startsWith("js/"))
+                    entries.put(entry.getName(), IOUtils.toString(zipFile.getInputStream(entry), "UTF-8"));
+            }
+        }
+        finally
+        {
+            zipFile.close();
+        }
+        return entries;
+    }
+
+    private static void assertSameFiles(Map<String, String> expected, Map<String, String> actual)
+    {
+        assertTrue("no files", !expected.isEmpty());
+        assertThat("files", actual.keySet(), is(expected.keySet()));
+        for (Map.Entry<String, String> entry : expected.entrySet())
+            assertThat(entry.getKey(), actual.get(entry.getKey()), is(entry.getValue()));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.mxml.royale;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.royale.compiler.clients.COMPJSC;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.swc.io.SWCReader;
+import org.apache.royale.utils.EnvProperties;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that a SWC whose JS is emitted on several threads by
+ * {@code COMPJSCRoyale} is byte for byte the same as one emitted on a single
+ * thread: the same entries in the same order, the same catalog, and the same
+ * problems in the same order. Each generated class has public variables, so
+ * that each one reports warnings while its JS is emitted.
+ * <p>
+ * Needs a royale-asjs checkout and playerglobal, and is skipped without them.
+ */
+public class TestRoyaleParallelSWCEmit
+{
+    private static final int CLASS_COUNT = 24;
+    private static final int THREADS = 4;
+
+    private static final EnvProperties env = EnvProperties.initiate();
+    private static final ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+
+    private static File folder;
+
+    @BeforeClass
+    public static void writeSources() throws IOException
+    {
+        File playerglobal = testAdapter.getPlayerglobal();
+        assumeTrue(env.ASJS != null && new File(env.ASJS, "frameworks/libs").isDirectory());
+        assumeTrue(playerglobal != null && playerglobal.isFile());
+
+        folder = new File(testAdapter.getTempDir(), "parallel-swc-emit");
+        FileUtils.deleteQuietly(folder);
+        for (int i = 0; i < CLASS_COUNT; i++)
+        {
+            String source = "package pkg {\n"
+                    + "public class Class" + i + " {\n"
+                    + "public var name:String = \"Class" + i + "\";\n"
+                    + "public var count:int = " + i + ";\n"
+                    + "public function compute(n:int):Number {\n"
+                    + "var total:Number = count;\n"
+                    + "for (var j:int = 0; j < n; j++) total += j * " + i + ";\n"
+                    + "return total;\n"
+                    + "}\n"
+                    + "}\n"
+                    + "}\n";
+            FileUtils.writeStringToFile(new File(folder, "src/pkg/Class" + i + ".as"), source, "UTF-8");
+        }
+    }
+
+    @AfterClass
+    public static void deleteFolder()
+    {
+        if (folder != null)
+            FileUtils.deleteQuietly(folder);
+    }
+
+    @Test
+    public void testSWCSameAsSingleThread() throws IOException
+    {
+        List<String> serialProblems = new ArrayList<String>();
+        File serialSWC = compileLibrary("threads1", 1, serialProblems);
+        List<String> parallelProblems = new ArrayList<String>();
+        File parallelSWC = compileLibrary("threads" + THREADS, THREADS, parallelProblems);
+
+        assertTrue("no warnings", serialProblems.size() >= CLASS_COUNT);
+        assertThat("problems", parallelProblems, is(serialProblems));
+
+        assertThat("entries", readEntryNames(parallelSWC), is(readEntryNames(serialSWC)));
+        assertThat("catalog", readEntry(parallelSWC, SWCReader.CATALOG_XML),
+                is(readEntry(serialSWC, SWCReader.CATALOG_XML)));
+        assertArrayEquals("SWC", FileUtils.readFileToByteArray(serialSWC),
+                FileUtils.readFileToByteArray(parallelSWC));
+    }
+
+    private File compileLibrary(String folderName, int threads, List<String> problemList) throws IOException
+    {
+        File outputSWC = new File(folder, folderName + "/Library.swc");
+
+        List<String> args = new ArrayList<String>();
+        args.add("-compiler.targets=SWF,JSRoyale");
+        args.add("-js-emit-threads=" + threads);
+        // the dates of the catalog and of the entries are fixed
+        args.add("-metadata.date=2020-01-01 00:00:00 +0000");
+        args.add("-metadata.dateFormat=yyyy-MM-dd HH:mm:ss Z");
+        args.add("-library-path=" + new File(FilenameNormalization.normalize(env.ASJS + "/frameworks/libs")).getPath());
+        args.add("-js-library-path=" + new File(FilenameNormalization.normalize(env.ASJS + "/frameworks/js/libs")).getPath());
+        args.add("-external-library-path+=" + testAdapter.getPlayerglobal().getPath());
+        args.add("-js-external-library-path+=" + new File(FilenameNormalization.normalize(env.ASJS + "/js/libs/js.swc")).getPath());
+        args.add("-source-path=" + new File(folder, "src").getPath());
+        args.add("-include-sources=" + new File(folder, "src").getPath());
+        args.add("-output=" + outputSWC.getPath());
+
+        COMPJSC compc = new COMPJSC();
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        int result = compc.mainNoExit(args.toArray(new String[0]), problems, true);
+        assertThat(problems.toString(), result, is(0));
+        assertTrue(outputSWC.getPath(), outputSWC.isFile());
+        for (ICompilerProblem problem : problems)
+            problemList.add(problem.getClass().getSimpleName() + " " + problem.getSourcePath() + ":" + problem.getLine());
+        return outputSWC;
+    }
+
+    private static List<String> readEntryNames(File swcFile) throws IOException
+    {
+        List<String> names = new ArrayList<String>();
+        ZipFile zipFile = new ZipFile(swcFile);
+        try
+        {
+            Enumeration<? extends ZipEntry> list = zipFile.entries();
+            while (list.hasMoreElements())
+                names.add(list.nextElement().getName());
+        }
+        finally
+        {
+            zipFile.close();
+        }
+        return names;
+    }
+
+    private static String readEntry(File swcFile, String name) throws IOException
+    {
+        ZipFile zipFile = new ZipFile(swcFile);
+        try
+        {
+            return IOUtils.toString(zipFile.getInputStream(zipFile.getEntry(name)), "UTF-8");
+        }
+        finally
+        {
+            zipFile.close();
+        }
+    }
+}
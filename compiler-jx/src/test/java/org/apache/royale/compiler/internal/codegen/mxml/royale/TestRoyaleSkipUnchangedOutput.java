@@ -0,0 +1,117 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.codegen.mxml.royale;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.clients.MXMLJSC;
+import org.apache.royale.compiler.internal.codegen.js.JSOutputCache;
+import org.apache.royale.compiler.internal.test.RoyaleTestBase;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.Test;
+
+/**
+ * Builds the same application twice with js-skip-unchanged-output and
+ * checks that the published files are the same as the ones of a build that
+ * rewrites every file.
+ */
+public class TestRoyaleSkipUnchangedOutput extends RoyaleTestBase
+{
+    @Test
+    public void testSecondBuild() throws IOException
+    {
+        File folder = new File(testAdapter.getTempDir(), "skip-unchanged/cached");
+        FileUtils.deleteQuietly(folder);
+
+        File jsFolder = compileApplication(folder, true);
+        Map<String, String> firstBuild = readFiles(jsFolder);
+        File modelFile = new File(jsFolder, "models/MyModel.js");
+        assertTrue(modelFile.getPath(), modelFile.isFile());
+        long modelLastModified = modelFile.lastModified();
+
+        compileApplication(folder, true);
+        assertThat("lastModified", modelFile.lastModified(), is(modelLastModified));
+        Map<String, String> secondBuild = readFiles(jsFolder);
+        assertSameFiles(firstBuild, secondBuild);
+
+        File uncachedFolder = new File(testAdapter.getTempDir(), "skip-unchanged/uncached");
+        FileUtils.deleteQuietly(uncachedFolder);
+        assertSameFiles(readFiles(compileApplication(uncachedFolder, false)), secondBuild);
+    }
+
+    private File compileApplication(File outputFolder, boolean skipUnchanged) throws IOException
+    {
+        List<String> args = new ArrayList<String>();
+        args.add("-compiler.targets=JSRoyale");
+        args.add("-compiler.allow-subclass-overrides");
+        args.add("-remove-circulars");
+        args.add("-js-skip-unchanged-output=" + skipUnchanged);
+        args.add("-library-path=" + new File(FilenameNormalization.normalize(env.ASJS + "/frameworks/libs")).getPath());
+        args.add("-js-library-path=" + new File(FilenameNormalization.normalize(env.ASJS + "/frameworks/js/libs")).getPath());
+        args.add("-external-library-path+=" + testAdapter.getPlayerglobal().getPath());
+        args.add("-js-external-library-path+=" + new File(FilenameNormalization.normalize(env.ASJS + "/js/libs/js.swc")).getPath());
+        if (env.GOOG != null)
+            args.add("-closure-lib=" + new File(FilenameNormalization.normalize(env.GOOG)).getPath());
+        else
+            args.add("-define=COMPILE::temp,false");
+        args.add("-output=" + new File(outputFolder, "RoyaleTest_again.swf").getPath());
+        args.add(new File(testAdapter.getUnitTestBaseDir(), "royale/files/RoyaleTest_again.mxml").getPath());
+
+        MXMLJSC mxmlc = new MXMLJSC();
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        int result = mxmlc.mainNoExit(args.toArray(new String[0]), problems, true);
+        assertThat(problems.toString(), result, is(0));
+
+        return new File(outputFolder, "bin/" + MXMLRoyalePublisher.ROYALE_INTERMEDIATE_DIR_NAME);
+    }
+
+    private static Map<String, String> readFiles(File folder) throws IOException
+    {
+        Map<String, String> files = new TreeMap<String, String>();
+        Collection<File> list = FileUtils.listFiles(folder, null, true);
+        for (File file : list)
+        {
+            if (file.getName().equals(JSOutputCache.MANIFEST_FILE_NAME))
+                continue;
+            String path = folder.toURI().relativize(file.toURI()).getPath();
+            files.put(path, FileUtils.readFileToString(file, "UTF-8"));
+        }
+        return files;
+    }
+
+    private static void assertSameFiles(Map<String, String> expected, Map<String, String> actual)
+    {
+        assertTrue("no files", !expected.isEmpty());
+        assertThat("files", actual.keySet(), is(expected.keySet()));
+        for (Map.Entry<String, String> entry : expected.entrySet())
+            assertThat(entry.getKey(), actual.get(entry.getKey()), is(entry.getValue()));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.graph;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestGoogDepsFileInfo
+{
+    private static final String[] REWRITTEN = new String[] {
+        "/**",
+        " * com.example.A",
+        " *",
+        " * @fileoverview",
+        " *",
+        " * @suppress {missingRequire|checkTypes|accessControls}",
+        " */",
+        "",
+        "goog.provide('com.example.A');",
+        "/* Royale Dependency List: com.example.B,org.apache.royale.core.ICSSImpl*/",
+        "/* Royale Static Dependency List: com.example.C*/",
+        "",
+        "goog.require('com.example.B');",
+        "",
+        "/**",
+        " * <inject_html>",
+        " * <script src=\"a.js\"></script>",
+        " * </inject_html>",
+        " * @constructor",
+        " * @extends {com.example.B}",
+        " * @implements {org.apache.royale.core.ICSSImpl}",
+        " */",
+        "com.example.A = function() {",
+        "};"
+    };
+
+    @Test
+    public void testScan()
+    {
+        GoogDepsFileInfo fi = scan(REWRITTEN);
+        assertThat("dependencyListLine", fi.dependencyListLine, is(9));
+        assertThat("googProvideLine", fi.googProvideLine, is(8));
+        assertThat("constructorLine", fi.constructorLine, is(18));
+        assertThat("needCSS", fi.needCSS, is(true));
+        assertThat("staticDeps", fi.staticDeps, is(Arrays.asList("com.example.C")));
+    }
+
+    @Test
+    public void testCacheStringRoundTrip()
+    {
+        GoogDepsFileInfo fi = scan(REWRITTEN);
+        GoogDepsFileInfo restored = GoogDepsFileInfo.fromCacheString("com.example.A", fi.toCacheString());
+        assertSameInfo(restored, fi);
+    }
+
+    @Test
+    public void testCacheStringRoundTripWithoutLists()
+    {
+        GoogDepsFileInfo fi = scan(new String[] {
+            "goog.provide('com.example.f');",
+            "com.example.f = function() {};"
+        });
+        assertThat("impls", fi.impls, is(nullValue()));
+        GoogDepsFileInfo restored = GoogDepsFileInfo.fromCacheString("com.example.f", fi.toCacheString());
+        assertSameInfo(restored, fi);
+    }
+
+    @Test
+    public void testCacheStringInvalid()
+    {
+        String s = scan(REWRITTEN).toCacheString();
+        assertThat(GoogDepsFileInfo.fromCacheString("com.example.A", ""), is(nullValue()));
+        assertThat(GoogDepsFileInfo.fromCacheString("com.example.A", s.substring(0, s.length() / 2)), is(nullValue()));
+        assertThat(GoogDepsFileInfo.fromCacheString("com.example.A", s + "extra\n"), is(nullValue()));
+    }
+
+    private static GoogDepsFileInfo scan(String[] lines)
+    {
+        GoogDepsFileInfo fi = new GoogDepsFileInfo("com.example.A");
+        for (String line : lines)
+        {
+            if (!fi.scanLine(line))
+                break;
+        }
+        fi.finish();
+        return fi;
+    }
+
+    private static void assertSameInfo(GoogDepsFileInfo actual, GoogDepsFileInfo expected)
+    {
+        assertThat("impls", actual.impls, is(expected.impls));
+        assertThat("deps", actual.deps, is(expected.deps));
+        assertThat("staticDeps", actual.staticDeps, is(expected.staticDeps));
+        assertThat("provides", actual.provides, is(expected.provides));
+        assertThat("constructorLine", actual.constructorLine, is(expected.constructorLine));
+        assertThat("suppressLine", actual.suppressLine, is(expected.suppressLine));
+        assertThat("fileoverviewLine", actual.fileoverviewLine, is(expected.fileoverviewLine));
+        assertThat("googProvideLine", actual.googProvideLine, is(expected.googProvideLine));
+        assertThat("dependencyListLine", actual.dependencyListLine, is(expected.dependencyListLine));
+        assertThat("isExtern", actual.isExtern, is(expected.isExtern));
+        assertThat("needCSS", actual.needCSS, is(expected.needCSS));
+        assertThat("additionalHTML", actual.additionalHTML, is(expected.additionalHTML));
+        assertThat("staticInitializers", actual.staticInitializers, is(expected.staticInitializers));
+    }
+}
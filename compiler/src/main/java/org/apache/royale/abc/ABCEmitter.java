@@ -184,9 +184,15 @@ public final class ABCEmitter implements IABCVisitor
     /**
      * String pool, has default zero entry.
      */
-    final Pool<String> stringPool = new Pool<String>(Pool.DefaultType.HasDefaultZero);
+    final StringPool stringPool = new StringPool(Pool.DefaultType.HasDefaultZero);
     
-    public Pool<String> getStringPool()
+    /**
+     * @return the string pool. This used to be a {@code Pool<String>}, so
+     * code compiled against that signature has to be recompiled; the
+     * {@link StringPool#add(String)} and {@link StringPool#id(String)}
+     * methods behave the same way.
+     */
+    public StringPool getStringPool()
     {
     	return stringPool;
     }
@@ -194,17 +200,17 @@ public final class ABCEmitter implements IABCVisitor
     /**
      * int pool, has default zero entry.
      */
-    final Pool<Integer> intPool = new Pool<Integer>(Pool.DefaultType.HasDefaultZero);
+    final IntPool intPool = new IntPool(Pool.DefaultType.HasDefaultZero);
     
     /**
      * uint pool, has default zero entry.
      */
-    final Pool<Long> uintPool = new Pool<Long>(Pool.DefaultType.HasDefaultZero);
+    final LongPool uintPool = new LongPool(Pool.DefaultType.HasDefaultZero);
     
     /**
      * double pool, has default zero entry.
      */
-    final Pool<Double> doublePool = new Pool<Double>(Pool.DefaultType.HasDefaultZero);
+    final DoublePool doublePool = new DoublePool(Pool.DefaultType.HasDefaultZero);
     
     /**
      * namespace pool, has default zero entry.
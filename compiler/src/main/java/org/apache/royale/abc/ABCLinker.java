@@ -55,7 +55,23 @@ import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.problems.UnreachableBlockProblem;
 
 import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The ABCLinker links a sequence of ABC blocks into a single ABC block,
@@ -70,15 +86,364 @@ public class ABCLinker
         // so allow those, instead of throwin java exceptions
         emitter.setAllowBadJumps(true);
         emitter.visit(majorVersion, minorVersion);
-        for (byte[] inputABC : inputABCs)
+
+        int threads = settings.linkThreads > 0 ?
+                settings.linkThreads : Runtime.getRuntime().availableProcessors();
+        if (settings.linkCache != null)
+        {
+            linkWithCache(inputABCs, emitter, settings, threads, settings.linkCache);
+        }
+        else if (threads > 1)
         {
-            ABCParser abcParser = new ABCParser(inputABC);
-            abcParser.parseABC(new LinkingVisitor(emitter, settings));
+            linkInParallel(inputABCs, emitter, settings, threads);
+        }
+        else
+        {
+            for (byte[] inputABC : inputABCs)
+            {
+                ABCParser abcParser = new ABCParser(inputABC);
+                abcParser.parseABC(new LinkingVisitor(emitter, settings, settings.problems));
+            }
         }
         emitter.visitEnd();
         return emitter.emit();
     }
 
+    /**
+     * Parses, strips and optimizes the input ABC blocks concurrently, each
+     * into a {@link RecordingABCVisitor}, and replays the recordings into the
+     * emitter on the calling thread in input order. The emitter pools the
+     * constants of each block as the block is replayed, so the linked ABC is
+     * the same as when the blocks are linked one after another.
+     */
+    private static void linkInParallel(Iterable<byte[]> inputABCs, ABCEmitter emitter,
+            final ABCLinkerSettings settings, int threads) throws Exception
+    {
+        List<byte[]> abcs = new ArrayList<byte[]>();
+        for (byte[] inputABC : inputABCs)
+            abcs.add(inputABC);
+
+        if (abcs.size() < 2)
+        {
+            for (byte[] inputABC : abcs)
+            {
+                ABCParser abcParser = new ABCParser(inputABC);
+                abcParser.parseABC(new LinkingVisitor(emitter, settings, settings.problems));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(threads, abcs.size()), DAEMON_THREAD_FACTORY);
+        try
+        {
+            List<Future<LinkedBlock>> blocks = new ArrayList<Future<LinkedBlock>>(abcs.size());
+            for (final byte[] inputABC : abcs)
+            {
+                blocks.add(executor.submit(new Callable<LinkedBlock>()
+                {
+                    @Override
+                    public LinkedBlock call() throws Exception
+                    {
+                        // Problems are collected per block, and added to
+                        // the settings' collection in input order.
+                        return linkBlock(inputABC, settings, settings.problems != null);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < blocks.size(); i++)
+            {
+                LinkedBlock block = getLinkedBlock(blocks.get(i));
+                // drop the reference so the block can be collected
+                // once it has been replayed
+                blocks.set(i, null);
+                block.recording.replay(emitter);
+                if (block.problems != null)
+                    settings.problems.addAll(block.problems);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Links the input ABC blocks through a {@link LinkCache}. The blocks that
+     * were linked with the same settings before are replayed from the cache,
+     * the others are parsed and optimized, on several threads if allowed, and
+     * added to the cache. Everything is replayed into the emitter in input
+     * order, so the linked ABC is the same as without the cache.
+     */
+    private static void linkWithCache(Iterable<byte[]> inputABCs, ABCEmitter emitter,
+            final ABCLinkerSettings settings, int threads, LinkCache cache) throws Exception
+    {
+        List<byte[]> abcs = new ArrayList<byte[]>();
+        for (byte[] inputABC : inputABCs)
+            abcs.add(inputABC);
+
+        // A recording is changed while it is replayed, so the cache is only
+        // used by one link at a time.
+        synchronized (cache)
+        {
+            cache.checkSettings(settings.getCacheKey());
+
+            // A block that appears twice is linked twice, as both copies
+            // are in the emitter at the same time.
+            BlockKey[] keys = new BlockKey[abcs.size()];
+            LinkedBlock[] blocks = new LinkedBlock[abcs.size()];
+            List<Integer> misses = new ArrayList<Integer>();
+            Set<BlockKey> seen = new HashSet<BlockKey>();
+            for (int i = 0; i < abcs.size(); i++)
+            {
+                BlockKey key = new BlockKey(abcs.get(i));
+                if (seen.add(key))
+                {
+                    keys[i] = key;
+                    blocks[i] = cache.get(key);
+                }
+                if (blocks[i] == null)
+                    misses.add(i);
+            }
+
+            if (threads > 1 && misses.size() > 1)
+            {
+                ExecutorService executor = Executors.newFixedThreadPool(
+                        Math.min(threads, misses.size()), DAEMON_THREAD_FACTORY);
+                try
+                {
+                    List<Future<LinkedBlock>> futures = new ArrayList<Future<LinkedBlock>>(misses.size());
+                    for (int i : misses)
+                    {
+                        final byte[] inputABC = abcs.get(i);
+                        futures.add(executor.submit(new Callable<LinkedBlock>()
+                        {
+                            @Override
+                            public LinkedBlock call() throws Exception
+                            {
+                                return linkBlock(inputABC, settings, true);
+                            }
+                        }));
+                    }
+                    for (int i = 0; i < misses.size(); i++)
+                        blocks[misses.get(i)] = getLinkedBlock(futures.get(i));
+                }
+                finally
+                {
+                    executor.shutdownNow();
+                }
+            }
+            else
+            {
+                for (int i : misses)
+                    blocks[i] = linkBlock(abcs.get(i), settings, true);
+            }
+
+            // The problems found while a block was optimized are kept with
+            // it, and reported again each time it is linked.
+            for (int i = 0; i < blocks.length; i++)
+            {
+                LinkedBlock block = blocks[i];
+                block.recording.replay(emitter);
+                if (settings.problems != null)
+                    settings.problems.addAll(block.problems);
+                if (keys[i] != null)
+                    cache.put(keys[i], block);
+            }
+        }
+    }
+
+    /**
+     * Parses, strips and optimizes one input ABC block into a recording.
+     */
+    private static LinkedBlock linkBlock(byte[] inputABC, ABCLinkerSettings settings,
+            boolean collectProblems) throws Exception
+    {
+        LinkedBlock block = new LinkedBlock(collectProblems);
+        ABCParser abcParser = new ABCParser(inputABC);
+        abcParser.parseABC(new LinkingVisitor(block.recording, settings, block.problems));
+        return block;
+    }
+
+    private static LinkedBlock getLinkedBlock(Future<LinkedBlock> future) throws Exception
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw e;
+        }
+    }
+
+    /**
+     * The stripped and optimized contents of one input ABC block, waiting to
+     * be merged into the linked ABC.
+     */
+    private static final class LinkedBlock
+    {
+        LinkedBlock(boolean collectProblems)
+        {
+            problems = collectProblems ? new ArrayList<ICompilerProblem>() : null;
+        }
+
+        final RecordingABCVisitor recording = new RecordingABCVisitor();
+        final Collection<ICompilerProblem> problems;
+    }
+
+    /**
+     * Identifies an input ABC block by its length and MD5 digest.
+     */
+    private static final class BlockKey
+    {
+        BlockKey(byte[] abc) throws Exception
+        {
+            length = abc.length;
+            digest = MessageDigest.getInstance("MD5").digest(abc);
+            hashCode = Arrays.hashCode(digest);
+        }
+
+        private final int length;
+        private final byte[] digest;
+        private final int hashCode;
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof BlockKey))
+                return false;
+            BlockKey other = (BlockKey)o;
+            return length == other.length && Arrays.equals(digest, other.digest);
+        }
+    }
+
+    /**
+     * Keeps the stripped and optimized form of the ABC blocks linked by
+     * {@link ABCLinker#linkABC}, so a block that was linked before with the
+     * same settings isn't parsed and optimized again. Blocks are found by a
+     * digest of their bytes, and the cache is emptied when it's used with
+     * different settings.
+     * <p>
+     * Blocks that weren't linked since the previous call to
+     * {@link #startBuild()} are dropped by the next call, so a client that
+     * links the same application over and over should call it once per
+     * build.
+     * <p>
+     * The cache only saves the parsing, stripping and optimizing of the
+     * blocks. Every block is still replayed into a new emitter, which pools
+     * the constants and writes the bytecode of the whole application again,
+     * so a link where every block is found in the cache still takes time in
+     * proportion to the size of the application, not to the size of the
+     * change.
+     */
+    public static final class LinkCache
+    {
+        private String settingsKey;
+        private Map<BlockKey, LinkedBlock> blocks = new HashMap<BlockKey, LinkedBlock>();
+        private Map<BlockKey, LinkedBlock> previousBlocks = new HashMap<BlockKey, LinkedBlock>();
+        private int hitCount;
+        private int missCount;
+
+        /**
+         * Tell the cache that a new build starts. The blocks that weren't
+         * linked since the previous call are dropped.
+         */
+        public synchronized void startBuild()
+        {
+            previousBlocks = blocks;
+            blocks = new HashMap<BlockKey, LinkedBlock>();
+        }
+
+        /**
+         * Drop all the blocks.
+         */
+        public synchronized void clear()
+        {
+            blocks.clear();
+            previousBlocks.clear();
+        }
+
+        /**
+         * @return the number of blocks in the cache.
+         */
+        public synchronized int size()
+        {
+            return blocks.size() + previousBlocks.size();
+        }
+
+        /**
+         * @return the number of input blocks that were found in the cache.
+         */
+        public synchronized int getHitCount()
+        {
+            return hitCount;
+        }
+
+        /**
+         * @return the number of input blocks that had to be linked.
+         */
+        public synchronized int getMissCount()
+        {
+            return missCount;
+        }
+
+        private void checkSettings(String key)
+        {
+            if (!key.equals(settingsKey))
+            {
+                clear();
+                settingsKey = key;
+            }
+        }
+
+        private LinkedBlock get(BlockKey key)
+        {
+            LinkedBlock block = blocks.get(key);
+            if (block == null)
+            {
+                block = previousBlocks.remove(key);
+                if (block != null)
+                    blocks.put(key, block);
+            }
+            if (block != null)
+                hitCount++;
+            else
+                missCount++;
+            return block;
+        }
+
+        private void put(BlockKey key, LinkedBlock block)
+        {
+            blocks.put(key, block);
+        }
+    }
+
+    private static final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "ABCLinker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
     public static class ABCLinkerSettings
     {
         private boolean optimize = false;
@@ -93,6 +458,8 @@ public class ABCLinker
         @SuppressWarnings("unused")
         private int majorVersion = ABCConstants.VERSION_ABC_MAJOR_FP10;
         private Collection<ICompilerProblem> problems;
+        private int linkThreads = 1;
+        private LinkCache linkCache;
 
         /**
          * Tell the linker whether it should run the peephole optimizer defaults
@@ -195,6 +562,49 @@ public class ABCLinker
         {
             this.problems = problems;
         }
+
+        /**
+         * Set the number of threads used to parse and optimize the input
+         * ABCs. Defaults to 1, which links the ABCs one after another on the
+         * calling thread.
+         * @param linkThreads the number of threads, or 0 for one thread per
+         * processor.
+         */
+        public void setLinkThreads(int linkThreads)
+        {
+            if (linkThreads < 0)
+                throw new IllegalArgumentException("linkThreads: " + linkThreads);
+            this.linkThreads = linkThreads;
+        }
+
+        /**
+         * Set a cache for the stripped and optimized form of the input ABCs,
+         * so the ABCs that were linked before with the same settings are not
+         * parsed and optimized again. Defaults to null, no cache.
+         * @param linkCache the cache, or null.
+         */
+        public void setLinkCache(LinkCache linkCache)
+        {
+            this.linkCache = linkCache;
+        }
+
+        /**
+         * @return a string that is the same for two settings objects when
+         * they link an input ABC the same way.
+         */
+        String getCacheKey()
+        {
+            StringBuilder key = new StringBuilder();
+            key.append(optimize).append(',')
+               .append(enableInlining).append(',')
+               .append(stripDebug).append(',')
+               .append(stripFileAttributeFromGotoDefinitionHelp).append(',')
+               .append(stripGotoDefinitionHelp).append(',')
+               .append(removeDeadCode);
+            if (meta_names != null)
+                key.append(',').append(new TreeSet<String>(meta_names));
+            return key.toString();
+        }
     }
 
     /**
@@ -666,14 +1076,17 @@ public class ABCLinker
      */
     private static class LinkingVisitor implements IABCVisitor
     {
-        public LinkingVisitor(ABCEmitter delegate, ABCLinkerSettings linkSettings)
+        public LinkingVisitor(IABCVisitor delegate, ABCLinkerSettings linkSettings,
+                              Collection<ICompilerProblem> problems)
         {
             this.delegate = delegate;
             this.settings = linkSettings;
+            this.problems = problems;
         }
 
-        private final ABCEmitter delegate;
+        private final IABCVisitor delegate;
         private final ABCLinkerSettings settings;
+        private final Collection<ICompilerProblem> problems;
 
         @Override
         public void visit(int major_version, int minor_version)
@@ -715,7 +1128,7 @@ public class ABCLinker
         {
             IMethodVisitor mv = delegate.visitMethod(minfo);
             if (settings.optimize)
-                mv = new OptimizingMethodVisitor(mv, settings.problems, settings.removeDeadCode);
+                mv = new OptimizingMethodVisitor(mv, problems, settings.removeDeadCode);
 
             // Run the debug stripping visitor first, so the debug
             // instructions won't confuse the peephole optimizer
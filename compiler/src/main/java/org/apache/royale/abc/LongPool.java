@@ -0,0 +1,206 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.util.Arrays;
+
+/**
+ * A constant pool of {@code long} values. It behaves like a
+ * {@code Pool<Long>}, but keeps its values in a {@code long[]} and finds
+ * them with an open addressing hash table of positions, so adding and
+ * looking up values doesn't allocate.
+ */
+public final class LongPool
+{
+    /**
+     * Construct a new LongPool.
+     * 
+     * @param default_type - one of HasDefaultZero or NoDefaultZero; the pool
+     * will have a default meaning for its 0th entry if HasDefaultZero is passed
+     * in.
+     */
+    public LongPool(Pool.DefaultType default_type)
+    {
+        this.hasDefaultZero = default_type == Pool.DefaultType.HasDefaultZero;
+    }
+
+    /**
+     * The pool's elements in entry order.
+     */
+    private long[] values = new long[16];
+
+    /**
+     * The number of elements in {@link #values}.
+     */
+    private int count;
+
+    /**
+     * Open addressing hash table of the elements' indexes in
+     * {@link #values}, plus one; 0 marks an empty slot. The table is never
+     * more than half full.
+     */
+    private int[] table = new int[32];
+
+    /**
+     * When set, the pool has a default meaning for its 0th element (which is
+     * not present in the pool).
+     */
+    private final boolean hasDefaultZero;
+
+    /**
+     * Add an element to the pool if it's not already present.
+     * 
+     * @param e - the element to add.
+     * @return the element's position in the pool.
+     */
+    public int add(long e)
+    {
+        int mask = table.length - 1;
+        for (int slot = hash(e) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = table[slot];
+            if (entry == 0)
+            {
+                if (count == values.length)
+                    values = Arrays.copyOf(values, count * 2);
+                values[count++] = e;
+                table[slot] = count;
+                if (count * 2 > table.length)
+                    rehash();
+                return position(count - 1);
+            }
+            if (values[entry - 1] == e)
+                return position(entry - 1);
+        }
+    }
+
+    /**
+     * @param e - the element of interest.
+     * @return the element's position in the pool.
+     * @throws IllegalArgumentException if the element isn't in the pool.
+     */
+    public int id(long e)
+    {
+        int mask = table.length - 1;
+        for (int slot = hash(e) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = table[slot];
+            if (entry == 0)
+                throw new IllegalArgumentException("Unknown pool item \"" + e + "\"");
+            if (values[entry - 1] == e)
+                return position(entry - 1);
+        }
+    }
+
+    /**
+     * Add a boxed element to the pool if it's not already present. Like
+     * {@link Pool#add}, null is the default zeroth element.
+     * 
+     * @param e - the element to add, or null.
+     * @return the element's position in the pool.
+     */
+    public int add(Long e)
+    {
+        if (null == e)
+        {
+            if (this.hasDefaultZero)
+                return 0;
+            else
+                throw new NullPointerException();
+        }
+        return add(e.longValue());
+    }
+
+    /**
+     * Like {@link Pool#id}, null is the default zeroth element.
+     * 
+     * @param e - the boxed element of interest, or null.
+     * @return the element's position in the pool.
+     * @throws IllegalArgumentException if the element isn't in the pool.
+     */
+    public int id(Long e)
+    {
+        if (null == e && this.hasDefaultZero)
+            return 0;
+        if (null == e)
+            throw new IllegalArgumentException("Unknown pool item \"-none-\"");
+        return id(e.longValue());
+    }
+
+    /**
+     * @return a copy of the pool's elements in entry order.
+     */
+    public long[] getValues()
+    {
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @return the size of the pool; this is the size of the elements, plus one
+     * if the pool has a default zeroth element.
+     */
+    public int size()
+    {
+        return (hasDefaultZero ? 1 : 0) + count;
+    }
+
+    /**
+     * @return the nominal size of the pool, to write into the ABC.
+     * @see Pool#getNominalSize()
+     */
+    public int getNominalSize()
+    {
+        final int poolSize = size();
+        if (hasDefaultZero && poolSize == 1)
+            return 0;
+        return poolSize;
+    }
+
+    private int position(int index)
+    {
+        return hasDefaultZero ? index + 1 : index;
+    }
+
+    private void rehash()
+    {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int index = 0; index < count; index++)
+        {
+            int slot = hash(values[index]) & mask;
+            while (newTable[slot] != 0)
+                slot = (slot + 1) & mask;
+            newTable[slot] = index + 1;
+        }
+        table = newTable;
+    }
+
+    private static int hash(long e)
+    {
+        int h = (int)(e ^ (e >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(getValues());
+    }
+}
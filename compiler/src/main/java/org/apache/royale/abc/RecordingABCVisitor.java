@@ -0,0 +1,745 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.abc.instructionlist.InstructionList;
+import org.apache.royale.abc.semantics.ClassInfo;
+import org.apache.royale.abc.semantics.ExceptionInfo;
+import org.apache.royale.abc.semantics.InstanceInfo;
+import org.apache.royale.abc.semantics.Instruction;
+import org.apache.royale.abc.semantics.Label;
+import org.apache.royale.abc.semantics.Metadata;
+import org.apache.royale.abc.semantics.MethodBodyInfo;
+import org.apache.royale.abc.semantics.MethodInfo;
+import org.apache.royale.abc.semantics.Name;
+import org.apache.royale.abc.semantics.Namespace;
+import org.apache.royale.abc.semantics.Nsset;
+import org.apache.royale.abc.semantics.Traits;
+import org.apache.royale.abc.visitors.IABCVisitor;
+import org.apache.royale.abc.visitors.IClassVisitor;
+import org.apache.royale.abc.visitors.IMetadataVisitor;
+import org.apache.royale.abc.visitors.IMethodBodyVisitor;
+import org.apache.royale.abc.visitors.IMethodVisitor;
+import org.apache.royale.abc.visitors.IScriptVisitor;
+import org.apache.royale.abc.visitors.ITraitVisitor;
+import org.apache.royale.abc.visitors.ITraitsVisitor;
+import org.apache.royale.abc.visitors.NilVisitors;
+
+/**
+ * This class implements an IABCVisitor which records the events it receives
+ * so they can be replayed, in the same order, into another IABCVisitor later,
+ * possibly on a different thread.
+ * <p>
+ * The instructions and exceptions of a method body are collected into an
+ * InstructionList and replayed with a single
+ * {@link IMethodBodyVisitor#visitInstructionList(InstructionList)} call,
+ * just before the body's visitEnd().
+ * <p>
+ * The ABCLinker uses this to parse and optimize several ABC blocks
+ * concurrently and then merge them into one ABCEmitter in input order, and
+ * to keep the linked form of a block from one link to the next.
+ * <p>
+ * The events carry the recorded ClassInfo, InstanceInfo and MethodBodyInfo
+ * objects, which the ABCEmitter fills in with traits, exception handlers and
+ * bytecode. Each replay puts them back in the state they were recorded in,
+ * so a recording can be replayed into several emitters, one after another.
+ */
+final class RecordingABCVisitor implements IABCVisitor
+{
+    /**
+     * A recorded event.
+     */
+    private static abstract class Step
+    {
+        abstract void replay(IABCVisitor target);
+    }
+
+    RecordingABCVisitor()
+    {
+    }
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /**
+     * Send the recorded events to another visitor. This may only be called
+     * once all the events have been recorded, and the target must be done
+     * with the events of a previous replay before it's called again.
+     *
+     * @param target - the visitor that receives the events.
+     */
+    void replay(IABCVisitor target)
+    {
+        for (Step step : steps)
+            step.replay(target);
+    }
+
+    @Override
+    public void visit(final int majorVersion, final int minorVersion)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visit(majorVersion, minorVersion);
+            }
+        });
+    }
+
+    @Override
+    public void visitEnd()
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitEnd();
+            }
+        });
+    }
+
+    @Override
+    public IScriptVisitor visitScript()
+    {
+        final ScriptRecorder result = new ScriptRecorder();
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                IScriptVisitor sv = target.visitScript();
+                result.target = sv != null ? sv : NilVisitors.NIL_SCRIPT_VISITOR;
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public IClassVisitor visitClass(final InstanceInfo iinfo, final ClassInfo cinfo)
+    {
+        final ClassRecorder result = new ClassRecorder();
+        final Traits classTraits = cinfo.classTraits;
+        final MethodInfo cInit = cinfo.cInit;
+        final Traits instanceTraits = iinfo.traits;
+        final MethodInfo iInit = iinfo.iInit;
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                // The emitter creates the traits, and the initializers if
+                // there are none, as the class is replayed.
+                cinfo.classTraits = classTraits;
+                cinfo.cInit = cInit;
+                iinfo.traits = instanceTraits;
+                iinfo.iInit = iInit;
+                IClassVisitor cv = target.visitClass(iinfo, cinfo);
+                result.target = cv != null ? cv : NilVisitors.NIL_CLASS_VISITOR;
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public IMethodVisitor visitMethod(final MethodInfo minfo)
+    {
+        final MethodRecorder result = new MethodRecorder();
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                IMethodVisitor mv = target.visitMethod(minfo);
+                result.target = mv != null ? mv : NilVisitors.NIL_METHOD_VISITOR;
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void visitPooledInt(final Integer i)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledInt(i);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledUInt(final Long l)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledUInt(l);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledDouble(final Double d)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledDouble(d);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledString(final String s)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledString(s);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledNamespace(final Namespace ns)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledNamespace(ns);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledNsSet(final Nsset nss)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledNsSet(nss);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledName(final Name n)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledName(n);
+            }
+        });
+    }
+
+    @Override
+    public void visitPooledMetadata(final Metadata md)
+    {
+        steps.add(new Step()
+        {
+            @Override
+            void replay(IABCVisitor target)
+            {
+                target.visitPooledMetadata(md);
+            }
+        });
+    }
+
+    private class ScriptRecorder implements IScriptVisitor
+    {
+        IScriptVisitor target;
+
+        @Override
+        public void visit()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visit();
+                }
+            });
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitEnd();
+                }
+            });
+        }
+
+        @Override
+        public void visitInit(final MethodInfo methodInfo)
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitInit(methodInfo);
+                }
+            });
+        }
+
+        @Override
+        public ITraitsVisitor visitTraits()
+        {
+            final TraitsRecorder result = new TraitsRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitTraits());
+                }
+            });
+            return result;
+        }
+    }
+
+    private class ClassRecorder implements IClassVisitor
+    {
+        IClassVisitor target;
+
+        @Override
+        public void visit()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visit();
+                }
+            });
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitEnd();
+                }
+            });
+        }
+
+        @Override
+        public ITraitsVisitor visitClassTraits()
+        {
+            final TraitsRecorder result = new TraitsRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitClassTraits());
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public ITraitsVisitor visitInstanceTraits()
+        {
+            final TraitsRecorder result = new TraitsRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitInstanceTraits());
+                }
+            });
+            return result;
+        }
+    }
+
+    private class MethodRecorder implements IMethodVisitor
+    {
+        IMethodVisitor target;
+
+        @Override
+        public void visit()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visit();
+                }
+            });
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitEnd();
+                }
+            });
+        }
+
+        @Override
+        public IMethodBodyVisitor visitBody(final MethodBodyInfo mbi)
+        {
+            final MethodBodyRecorder result = new MethodBodyRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    // The traits, the exception handlers and the
+                    // instructions only reach the body as it is replayed;
+                    // drop what a previous replay left in it.
+                    mbi.setTraits(new Traits());
+                    mbi.getExceptions().clear();
+                    mbi.setBytecode(null);
+                    IMethodBodyVisitor mbv = target.visitBody(mbi);
+                    result.target = mbv != null ? mbv : NilVisitors.NIL_METHOD_BODY_VISITOR;
+                }
+            });
+            return result;
+        }
+    }
+
+    private class MethodBodyRecorder implements IMethodBodyVisitor
+    {
+        IMethodBodyVisitor target;
+
+        /**
+         * The instructions of the method body, in the form they will be
+         * replayed.
+         */
+        InstructionList instructions = new InstructionList();
+
+        final List<ExceptionInfo> exceptions = new ArrayList<ExceptionInfo>();
+
+        @Override
+        public void visit()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visit();
+                }
+            });
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    for (ExceptionInfo ex : exceptions)
+                    {
+                        target.visitException(ex.getFrom(), ex.getTo(), ex.getTarget(),
+                                ex.getExceptionType(), ex.getCatchVar());
+                    }
+                    target.visitInstructionList(instructions);
+                    target.visitEnd();
+                }
+            });
+        }
+
+        @Override
+        public ITraitsVisitor visitTraits()
+        {
+            final TraitsRecorder result = new TraitsRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitTraits());
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public void visitInstructionList(InstructionList newList)
+        {
+            instructions = newList;
+        }
+
+        @Override
+        public void visitInstruction(int opcode)
+        {
+            instructions.addInstruction(opcode);
+        }
+
+        @Override
+        public void visitInstruction(int opcode, int immediateOperand)
+        {
+            instructions.addInstruction(opcode, immediateOperand);
+        }
+
+        @Override
+        public void visitInstruction(int opcode, Object[] operands)
+        {
+            instructions.addInstruction(opcode, operands);
+        }
+
+        @Override
+        public void visitInstruction(int opcode, Object singleOperand)
+        {
+            instructions.addInstruction(opcode, singleOperand);
+        }
+
+        @Override
+        public void visitInstruction(Instruction instruction)
+        {
+            instructions.addInstruction(instruction);
+        }
+
+        @Override
+        public int visitException(Label from, Label to, Label target, Name exceptionType, Name catchVar)
+        {
+            exceptions.add(new ExceptionInfo(from, to, target, exceptionType, catchVar));
+            return exceptions.size() - 1; //  zero-based exception numbers
+        }
+
+        @Override
+        public void labelCurrent(Label l)
+        {
+            instructions.labelCurrent(l);
+        }
+
+        @Override
+        public void labelNext(Label l)
+        {
+            instructions.labelNext(l);
+        }
+    }
+
+    private class TraitsRecorder implements ITraitsVisitor
+    {
+        ITraitsVisitor target;
+
+        void setTarget(ITraitsVisitor target)
+        {
+            this.target = target != null ? target : NilVisitors.NIL_TRAITS_VISITOR;
+        }
+
+        @Override
+        public void visit()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visit();
+                }
+            });
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitEnd();
+                }
+            });
+        }
+
+        @Override
+        public Traits getTraits()
+        {
+            // The traits only exist once they have been replayed.
+            return null;
+        }
+
+        @Override
+        public ITraitVisitor visitSlotTrait(final int kind, final Name name, final int slotID,
+                                            final Name slotType, final Object slotValue)
+        {
+            final TraitRecorder result = new TraitRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitSlotTrait(kind, name, slotID, slotType, slotValue));
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public ITraitVisitor visitClassTrait(final int kind, final Name name, final int slotID,
+                                             final ClassInfo clazz)
+        {
+            final TraitRecorder result = new TraitRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitClassTrait(kind, name, slotID, clazz));
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public ITraitVisitor visitMethodTrait(final int kind, final Name name, final int dispID,
+                                              final MethodInfo method)
+        {
+            final TraitRecorder result = new TraitRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    result.setTarget(target.visitMethodTrait(kind, name, dispID, method));
+                }
+            });
+            return result;
+        }
+    }
+
+    private class TraitRecorder implements ITraitVisitor
+    {
+        ITraitVisitor target;
+
+        void setTarget(ITraitVisitor target)
+        {
+            this.target = target != null ? target : NilVisitors.NIL_TRAIT_VISITOR;
+        }
+
+        @Override
+        public void visitStart()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitStart();
+                }
+            });
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitEnd();
+                }
+            });
+        }
+
+        @Override
+        public void visitAttribute(final String attrName, final Object attrValue)
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visitAttribute(attrName, attrValue);
+                }
+            });
+        }
+
+        @Override
+        public IMetadataVisitor visitMetadata(final int count)
+        {
+            final MetadataRecorder result = new MetadataRecorder();
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    IMetadataVisitor mv = target.visitMetadata(count);
+                    result.target = mv != null ? mv : NilVisitors.NIL_METADATA_VISITOR;
+                }
+            });
+            return result;
+        }
+    }
+
+    private class MetadataRecorder implements IMetadataVisitor
+    {
+        IMetadataVisitor target;
+
+        @Override
+        public void visit(final Metadata md)
+        {
+            steps.add(new Step()
+            {
+                @Override
+                void replay(IABCVisitor abc)
+                {
+                    target.visit(md);
+                }
+            });
+        }
+    }
+}
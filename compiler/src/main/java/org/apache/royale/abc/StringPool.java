@@ -0,0 +1,201 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.util.Arrays;
+
+/**
+ * A constant pool of strings. It behaves like a {@code Pool<String>}, but
+ * finds its strings with an open addressing hash table of positions instead
+ * of a {@code HashMap<String, Integer>}, so adding and looking up strings
+ * doesn't allocate. Strings are compared by identity before they are
+ * compared by value, which avoids most character comparisons because the
+ * names and literals in the ABC are usually shared or interned instances.
+ */
+public final class StringPool
+{
+    /**
+     * Construct a new StringPool.
+     * 
+     * @param default_type - one of HasDefaultZero or NoDefaultZero; the pool
+     * will have a default meaning for its 0th entry if HasDefaultZero is passed
+     * in.
+     */
+    public StringPool(Pool.DefaultType default_type)
+    {
+        this.hasDefaultZero = default_type == Pool.DefaultType.HasDefaultZero;
+    }
+
+    /**
+     * The pool's elements in entry order.
+     */
+    private String[] values = new String[16];
+
+    /**
+     * The number of elements in {@link #values}.
+     */
+    private int count;
+
+    /**
+     * Open addressing hash table of the elements' indexes in
+     * {@link #values}, plus one, each followed by the element's hash so most
+     * mismatches are found without touching the string; 0 marks an empty
+     * slot. The table is never more than half full.
+     */
+    private int[] table = new int[64];
+
+    /**
+     * When set, the pool has a default meaning for its 0th element (which is
+     * not present in the pool).
+     */
+    private final boolean hasDefaultZero;
+
+    /**
+     * Add an element to the pool if it's not already present.
+     * 
+     * @param e - the element to add.
+     * @return the element's position in the pool.
+     */
+    public int add(String e)
+    {
+        if (null == e)
+        {
+            if (this.hasDefaultZero)
+                return 0;
+            else
+                throw new NullPointerException();
+        }
+
+        int hash = hash(e);
+        int mask = table.length - 2;
+        for (int slot = (hash << 1) & mask; ; slot = (slot + 2) & mask)
+        {
+            int entry = table[slot];
+            if (entry == 0)
+            {
+                if (count == values.length)
+                    values = Arrays.copyOf(values, count * 2);
+                values[count++] = e;
+                table[slot] = count;
+                table[slot + 1] = hash;
+                if (count * 4 > table.length)
+                    rehash();
+                return position(count - 1);
+            }
+            if (table[slot + 1] == hash && equals(values[entry - 1], e))
+                return position(entry - 1);
+        }
+    }
+
+    /**
+     * @param e - the element of interest.
+     * @return the element's position in the pool.
+     * @throws IllegalArgumentException if the element isn't in the pool.
+     */
+    public int id(String e)
+    {
+        if (null == e && this.hasDefaultZero)
+            return 0;
+        if (null == e)
+            throw new IllegalArgumentException("Unknown pool item \"-none-\"");
+
+        int hash = hash(e);
+        int mask = table.length - 2;
+        for (int slot = (hash << 1) & mask; ; slot = (slot + 2) & mask)
+        {
+            int entry = table[slot];
+            if (entry == 0)
+                throw new IllegalArgumentException("Unknown pool item \"" + e + "\"");
+            if (table[slot + 1] == hash && equals(values[entry - 1], e))
+                return position(entry - 1);
+        }
+    }
+
+    /**
+     * @return a copy of the pool's elements in entry order.
+     */
+    public String[] getValues()
+    {
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @return the size of the pool; this is the size of the elements, plus one
+     * if the pool has a default zeroth element.
+     */
+    public int size()
+    {
+        return (hasDefaultZero ? 1 : 0) + count;
+    }
+
+    /**
+     * @return the nominal size of the pool, to write into the ABC.
+     * @see Pool#getNominalSize()
+     */
+    public int getNominalSize()
+    {
+        final int poolSize = size();
+        if (hasDefaultZero && poolSize == 1)
+            return 0;
+        return poolSize;
+    }
+
+    private int position(int index)
+    {
+        return hasDefaultZero ? index + 1 : index;
+    }
+
+    private void rehash()
+    {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 2;
+        for (int slot = 0; slot < table.length; slot += 2)
+        {
+            int entry = table[slot];
+            if (entry == 0)
+                continue;
+            int hash = table[slot + 1];
+            int newSlot = (hash << 1) & mask;
+            while (newTable[newSlot] != 0)
+                newSlot = (newSlot + 2) & mask;
+            newTable[newSlot] = entry;
+            newTable[newSlot + 1] = hash;
+        }
+        table = newTable;
+    }
+
+    private static int hash(String e)
+    {
+        // similar names have similar hash codes, spread them over the table
+        int h = e.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(String s1, String s2)
+    {
+        return s1 == s2 || s1.equals(s2);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(getValues());
+    }
+}
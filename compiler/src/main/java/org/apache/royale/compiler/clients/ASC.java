@@ -491,6 +491,18 @@ public class ASC
             return removeDeadCode;
         }
 
+        @Override
+        public int getLinkThreads()
+        {
+            return 1;
+        }
+
+        @Override
+        public boolean getIncrementalLink()
+        {
+            return false;
+        }
+
 		@Override
 		public String getSWFMetadataDate() {
 			// TODO Auto-generated method stub
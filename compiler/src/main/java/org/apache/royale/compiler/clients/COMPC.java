@@ -40,7 +40,6 @@ import org.apache.royale.compiler.targets.ISWCTarget;
 import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.compiler.targets.ITarget.TargetType;
 import org.apache.royale.swc.ISWC;
-import org.apache.royale.swc.io.ISWCWriter;
 import org.apache.royale.swc.io.SWCDirectoryWriter;
 import org.apache.royale.swc.io.SWCWriter;
 import org.apache.royale.swf.io.SizeReportWritingSWFWriter;
@@ -177,9 +176,11 @@ public class COMPC extends MXMLC implements FlexTool
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("output swc as directory");
             final String path = FilenameNormalization.normalize(outputOptionValue);
-            final ISWCWriter swcWriter = new SWCDirectoryWriter(path, useCompression,
+            final SWCDirectoryWriter swcWriter = new SWCDirectoryWriter(path, useCompression,
                     targetSettings.isDebugEnabled(), targetSettings.isTelemetryEnabled(),
                     SizeReportWritingSWFWriter.getSWFWriterFactory(targetSettings.getSizeReport()));
+            swcWriter.setLibrarySWFCompression(config.getSwfCompressionLevel(),
+                    config.getSwfCompressionThreads());
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("attempting to write swc");
             swcWriter.write(swc);
@@ -198,10 +199,12 @@ public class COMPC extends MXMLC implements FlexTool
         {
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("output swc as file");
-            final ISWCWriter swcWriter = new SWCWriter(outputOptionValue, useCompression,
+            final SWCWriter swcWriter = new SWCWriter(outputOptionValue, useCompression,
                     targetSettings.isDebugEnabled(), targetSettings.isTelemetryEnabled(),
                     targetSettings.getSWFMetadataDate(), targetSettings.getSWFMetadataDateFormat(),
                     SizeReportWritingSWFWriter.getSWFWriterFactory(targetSettings.getSizeReport()));
+            swcWriter.setLibrarySWFCompression(config.getSwfCompressionLevel(),
+                    config.getSwfCompressionThreads());
             if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
             	System.out.println("attempting to write swc");
             swcWriter.write(swc);
@@ -0,0 +1,107 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+
+/**
+ * The {@code -profile-report}, {@code -compiler.scope-cache-statistics} and
+ * {@code -compiler.request-statistics} handling shared by the command line
+ * clients.
+ */
+public final class CompilationReports
+{
+    private CompilationReports()
+    {
+    }
+
+    /**
+     * Install a profiling delegate on the workspace of a compilation.
+     *
+     * @param workspace the workspace of the compilation
+     * @param profileReport the file of the {@code -profile-report} option,
+     * or null
+     * @param profilingDelegate a profiling delegate that is shared with other
+     * compilations, or null to create one for the {@code -profile-report}
+     * option
+     * @return the installed profiling delegate, or null if the compilation
+     * is not profiled
+     */
+    public static TraceProfilingDelegate setupProfiling(Workspace workspace, File profileReport,
+            TraceProfilingDelegate profilingDelegate)
+    {
+        if (profilingDelegate == null && profileReport != null)
+            profilingDelegate = new TraceProfilingDelegate(profileReport);
+        if (profilingDelegate != null)
+            workspace.setProfilingDelegate(profilingDelegate);
+        return profilingDelegate;
+    }
+
+    /**
+     * Print the scope cache and request statistics of a compilation, if
+     * they were counted.
+     *
+     * @param workspace the workspace of the compilation, or null
+     * @param project the project of the compilation, or null
+     */
+    public static void printStatistics(Workspace workspace, CompilerProject project)
+    {
+        if (project != null && project.getScopeCacheStatistics() != null)
+            project.getScopeCacheStatistics().print(System.out);
+        if (workspace != null && workspace.getRequestStatistics() != null)
+            workspace.getRequestStatistics().print(System.out);
+    }
+
+    /**
+     * Write the report of a profiling delegate. An error is printed rather
+     * than failing the compilation.
+     *
+     * @param profilingDelegate the profiling delegate, or null
+     */
+    public static void writeProfileReport(TraceProfilingDelegate profilingDelegate)
+    {
+        if (profilingDelegate == null)
+            return;
+        try
+        {
+            profilingDelegate.writeReport();
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Print the statistics of a compilation that is done and write its
+     * profiling report.
+     */
+    public static void printReports(Workspace workspace, CompilerProject project,
+            TraceProfilingDelegate profilingDelegate)
+    {
+        printStatistics(workspace, project);
+        writeProfileReport(profilingDelegate);
+    }
+}
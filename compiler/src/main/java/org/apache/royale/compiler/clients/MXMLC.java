@@ -73,6 +73,8 @@ import org.apache.royale.compiler.internal.targets.Target;
 import org.apache.royale.compiler.internal.units.ResourceModuleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
 import org.apache.royale.compiler.internal.units.StyleModuleCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.FileChangeTracker;
+import org.apache.royale.compiler.internal.workspaces.TraceProfilingDelegate;
 import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.problems.ConfigurationProblem;
 import org.apache.royale.compiler.problems.FileIOProblem;
@@ -92,6 +94,7 @@ import org.apache.royale.swf.io.ISWFWriterFactory;
 import org.apache.royale.swf.Header;
 import org.apache.royale.swf.ISWF;
 import org.apache.royale.swf.io.ISWFWriter;
+import org.apache.royale.swf.io.SWFWriter;
 import org.apache.royale.swf.io.SizeReportWritingSWFWriter;
 import org.apache.royale.utils.FilenameNormalization;
 
@@ -231,6 +234,7 @@ public class MXMLC implements FlexTool
             
             if (continueCompilation)
             {
+                profilingDelegate = CompilationReports.setupProfiling(workspace, config.getProfileReport(), profilingDelegate);
                 if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.COMPC_PHASES) == CompilerDiagnosticsConstants.COMPC_PHASES)
                 	System.out.println("Configuration is ok");
                 project.setProblems(problems.getProblems());
@@ -303,6 +307,7 @@ public class MXMLC implements FlexTool
 
             if (continueCompilation)
             {
+                profilingDelegate = CompilationReports.setupProfiling(workspace, config.getProfileReport(), profilingDelegate);
                 compile(true); // skip linking
                 exitCode = printProblems(printer, legacyOutput);
                 reportTargetCompletion();
@@ -406,6 +411,7 @@ public class MXMLC implements FlexTool
     protected Workspace workspace;
     protected RoyaleProject project;
     public Configuration config;
+    protected TraceProfilingDelegate profilingDelegate;
     public ProblemQuery problems;
     public ConfigurationBuffer configBuffer;
 
@@ -418,6 +424,7 @@ public class MXMLC implements FlexTool
     protected ITargetSettings targetSettings;
     private ISWF swfTarget;
     private String swfOutputMessage;
+    private FileChangeTracker fileChangeTracker;
     
     /**
      * Print a message.
@@ -429,6 +436,46 @@ public class MXMLC implements FlexTool
         System.out.println(msg);
     }
 
+    /**
+     * Use a profiling delegate that is shared with other compilations instead
+     * of creating one for the {@code -profile-report} option.
+     */
+    public void setProfilingDelegate(TraceProfilingDelegate profilingDelegate)
+    {
+        this.profilingDelegate = profilingDelegate;
+    }
+
+    /**
+     * Keep the workspace open after each compilation, so that the next
+     * compilation with this instance only compiles again the compilation
+     * units that depend on files that changed on disk. Call
+     * {@link #closeWorkspace()} once this instance is no longer used.
+     * 
+     * @param incremental true to keep the workspace open between
+     * compilations.
+     */
+    public void setIncremental(boolean incremental)
+    {
+        fileChangeTracker = incremental ? new FileChangeTracker(workspace, project) : null;
+    }
+
+    /**
+     * @return true if the workspace is kept open between compilations.
+     */
+    public boolean isIncremental()
+    {
+        return fileChangeTracker != null;
+    }
+
+    /**
+     * Close the workspace that an incremental compiler kept open.
+     */
+    public void closeWorkspace()
+    {
+        fileChangeTracker = null;
+        close();
+    }
+
     /**
      * Wait till the workspace to finish compilation and close.
      */
@@ -437,12 +484,17 @@ public class MXMLC implements FlexTool
         workspace.startIdleState();
         try
         {
-            workspace.close();
+            if (fileChangeTracker != null)
+                fileChangeTracker.recordFiles();
+            else
+                workspace.close();
         }
         finally
         {
             workspace.endIdleState(Collections.<ICompilerProject, Set<ICompilationUnit>>emptyMap());
         }
+
+        CompilationReports.printReports(workspace, project, profilingDelegate);
     }
 
     /**
@@ -473,6 +525,9 @@ public class MXMLC implements FlexTool
      */
     public boolean configure(final String[] args)
     {
+        if (fileChangeTracker != null)
+            fileChangeTracker.notifyChangedFiles();
+
         projectConfigurator = createConfigurator();
         
         try
@@ -894,7 +949,19 @@ public class MXMLC implements FlexTool
      */
     private int writeSWF(final ISWF swf, final File outputFile) throws IOException
     {
-  
+        final ISWFWriter writer = createSWFWriter(swf);
+        return writer.writeTo(outputFile);
+    }
+
+    /**
+     * Create a SWF writer for the target settings and the SWF compression
+     * options.
+     * 
+     * @param swf SWF model
+     * @return SWF writer
+     */
+    private ISWFWriter createSWFWriter(final ISWF swf)
+    {
         final Header.Compression compression = Header.decideCompression(
                 targetSettings.useCompression(), 
                 targetSettings.getSWFVersion(),
@@ -903,8 +970,12 @@ public class MXMLC implements FlexTool
                 targetSettings.getSizeReport()); 
         final ISWFWriter writer = writerFactory.createSWFWriter(swf, compression,
                 targetSettings.isDebugEnabled(), targetSettings.isTelemetryEnabled());
-        
-        return writer.writeTo(outputFile);
+        if (writer instanceof SWFWriter)
+        {
+            ((SWFWriter)writer).setCompressionLevel(config.getSwfCompressionLevel());
+            ((SWFWriter)writer).setCompressionThreads(config.getSwfCompressionThreads());
+        }
+        return writer;
     }
 
     /**
@@ -1192,15 +1263,7 @@ public class MXMLC implements FlexTool
     
     public int writeSWF(OutputStream outputStream)
     {
-        
-        final Header.Compression compression = Header.decideCompression(
-                targetSettings.useCompression(), 
-                targetSettings.getSWFVersion(),
-                targetSettings.isDebugEnabled());
-        final ISWFWriterFactory writerFactory = SizeReportWritingSWFWriter.getSWFWriterFactory(
-                targetSettings.getSizeReport()); 
-        final ISWFWriter writer = writerFactory.createSWFWriter(swfTarget, compression,
-                targetSettings.isDebugEnabled(), targetSettings.isTelemetryEnabled());
+        final ISWFWriter writer = createSWFWriter(swfTarget);
         
         // Write out the SWF, counting how many bytes were written.
         final CountingOutputStream output =
@@ -27,7 +27,6 @@ import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swf.ITagContainer;
-import org.apache.royale.swf.TagType;
 import org.apache.royale.swf.tags.ICharacterReferrer;
 import org.apache.royale.swf.tags.ICharacterTag;
 import org.apache.royale.swf.tags.ITag;
@@ -143,7 +142,15 @@ public class AssetTagCache extends ConcurrentCacheStoreBase<AssetTagCache.AssetT
             throw new IllegalArgumentException("expect AssetTagCacheKey but got " + key.getClass().getSimpleName());
 
         final AssetTagCacheKey assetTagCacheKey = (AssetTagCacheKey)key;
-        final ITagContainer tagContainer = ((SWFCache)swcManager.getSWFCache()).get(SWFCache.createKey(assetTagCacheKey.swc, assetTagCacheKey.swfPath));
+        final SWFCache swfCache = (SWFCache)swcManager.getSWFCache();
+
+        // Only decode the asset tags of the library if the definition is
+        // exported as a symbol.
+        final ITagContainer codeTags = swfCache.get(SWFCache.createKey(assetTagCacheKey.swc, assetTagCacheKey.swfPath));
+        if (!SWFCache.exportsSymbol(codeTags, assetTagCacheKey.qname))
+            return new AssetTagCacheValue(null);
+
+        final ITagContainer tagContainer = swfCache.getAllTags(assetTagCacheKey.swc, assetTagCacheKey.swfPath);
         final SymbolClassTag symbolClassTag = getSymbolClass(tagContainer);
         if (symbolClassTag == null)
             return new AssetTagCacheValue(null);
@@ -163,11 +170,8 @@ public class AssetTagCache extends ConcurrentCacheStoreBase<AssetTagCache.AssetT
      */
     private static SymbolClassTag getSymbolClass(ITagContainer tagContainer)
     {
-        for (ITag tag : tagContainer)
-        {
-            if (tag.getTagType() == TagType.SymbolClass)
-                return (SymbolClassTag)tag;
-        }
+        for (SymbolClassTag tag : SWFCache.findAllSymbolClassTags(tagContainer))
+            return tag;
 
         return null;
     }
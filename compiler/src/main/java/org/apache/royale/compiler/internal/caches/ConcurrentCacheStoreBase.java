@@ -20,13 +20,25 @@
 package org.apache.royale.compiler.internal.caches;
 
 import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Joiner;
 
 /**
  * A key-value pair cache store that supports concurrent access.
+ * <p>
+ * By default, the cache holds its values with {@link SoftReference}s, so they
+ * are only released when the garbage collector needs the memory. After
+ * {@link #setMaximumWeight(long)} is called with a positive value, the cache
+ * holds its values strongly instead, and evicts the least recently used
+ * entries once the total weight of the entries, as computed by
+ * {@link #getEntryWeight(CacheStoreKeyBase, Object)}, exceeds the maximum.
  */
 public abstract class ConcurrentCacheStoreBase<T>
 {
@@ -35,47 +47,176 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     protected ConcurrentCacheStoreBase()
     {
-        this.cache = new ConcurrentHashMap<CacheStoreKeyBase, SoftReference<T>>();
+        this.cache = new ConcurrentHashMap<CacheStoreKeyBase, CacheEntry<T>>();
+        this.lruEntries = new LinkedHashMap<CacheStoreKeyBase, CacheEntry<T>>(16, 0.75f, true);
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
     }
 
-    private final ConcurrentMap<CacheStoreKeyBase, SoftReference<T>> cache;
+    private final ConcurrentMap<CacheStoreKeyBase, CacheEntry<T>> cache;
+
+    /**
+     * The strongly held entries in least recently used order. Guarded by
+     * itself, which also guards {@link #totalWeight}.
+     */
+    private final LinkedHashMap<CacheStoreKeyBase, CacheEntry<T>> lruEntries;
+    private long totalWeight;
+    private volatile long maximumWeight;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
 
     /**
      * Get a value from the cache store. If the cache doesn't have a valid
      * entry, it will obtain the value, add to the cache and return the value.
      * <p>
-     * The implementation is thread-safe. The API looks like a "read" access,
-     * but when the cache doesn't have a hit, it will write an entry to the
-     * cache table. The first attempt queries the cache, so the read-lock allows
-     * parallelized read if no other thread is writing the cache. If there's no
-     * hit, the second attempt is to create a valid entry, store it in the cache
-     * and return it. This requires upgrading the read-lock to a write-lock.
+     * The implementation is thread-safe. When several threads ask for the
+     * same missing entry at once, only the first one creates the value. The
+     * other threads wait for it and get the same value. If the creation
+     * fails, the exception is thrown to the creating thread only, and the
+     * waiting threads try again.
      * 
      * @param key cache key
      * @return cached value
      */
     public final T get(CacheStoreKeyBase key)
     {
-        T result = null;
-
-        if (cache.containsKey(key))
+        while (true)
         {
-            result = cache.get(key).get();
+            CacheEntry<T> entry = cache.get(key);
+            if (entry == null)
+            {
+                final CacheEntry<T> newEntry = new CacheEntry<T>();
+                entry = cache.putIfAbsent(key, newEntry);
+                if (entry == null)
+                {
+                    missCount.incrementAndGet();
+                    return createEntry(key, newEntry);
+                }
+            }
+
+            final T result = entry.await();
+            if (result != null)
+            {
+                hitCount.incrementAndGet();
+                if (entry.isStrong())
+                {
+                    synchronized (lruEntries)
+                    {
+                        lruEntries.get(key);
+                    }
+                }
+                return result;
+            }
+
+            // The value was collected or could not be created. Remove the
+            // stale entry, unless another thread already replaced it.
+            if (cache.remove(key, entry) && !entry.isFailed())
+                evictionCount.incrementAndGet();
         }
+    }
 
-        // create entry and store in cache
-        if (result == null)
+    private T createEntry(CacheStoreKeyBase key, CacheEntry<T> entry)
+    {
+        T result = null;
+        try
         {
             result = createEntryValue(key);
             if (result == null)
                 throw new NullPointerException("Null value not allowed in cache store.");
-            cache.put(key, new SoftReference<T>(result));
-
+        }
+        finally
+        {
+            if (result == null)
+            {
+                cache.remove(key, entry);
+                entry.fail();
+            }
         }
 
+        setEntryValue(key, entry, result);
         assert result != null : "Expected non-null value from cache.";
         return result;
+    }
+
+    /**
+     * Store the value of an entry that is in the cache table, and count its
+     * weight if the entry is still there.
+     */
+    private void setEntryValue(CacheStoreKeyBase key, CacheEntry<T> entry, T value)
+    {
+        if (maximumWeight > 0)
+        {
+            final long weight = getEntryWeight(key, value);
+            entry.setStrong(value);
+            synchronized (lruEntries)
+            {
+                // the entry might have been removed while it was created
+                if (cache.get(key) == entry)
+                {
+                    entry.weight = weight;
+                    lruEntries.put(key, entry);
+                    totalWeight += weight;
+                    evictEntries();
+                }
+            }
+        }
+        else
+        {
+            entry.setSoft(value);
+        }
+    }
+
+    /**
+     * Replace the value of an entry, or add an entry with the value if there
+     * is none. Threads that are waiting for the previous value to be created
+     * get the previous value.
+     * 
+     * @param key cache key
+     * @param value the new value
+     */
+    protected final void replace(CacheStoreKeyBase key, T value)
+    {
+        if (value == null)
+            throw new NullPointerException("Null value not allowed in cache store.");
 
+        final CacheEntry<T> entry = new CacheEntry<T>();
+        final CacheEntry<T> previous = cache.put(key, entry);
+        if (previous != null && previous.isStrong())
+        {
+            synchronized (lruEntries)
+            {
+                if (lruEntries.get(key) == previous)
+                {
+                    lruEntries.remove(key);
+                    totalWeight -= previous.weight;
+                }
+            }
+        }
+        setEntryValue(key, entry, value);
+    }
+
+    /**
+     * Evicts the least recently used entries until the total weight is within
+     * the maximum, but keeps the most recently used entry even if it alone
+     * exceeds the maximum. Must be called with the lock on
+     * {@link #lruEntries}.
+     */
+    private void evictEntries()
+    {
+        final long max = maximumWeight;
+        final Iterator<Map.Entry<CacheStoreKeyBase, CacheEntry<T>>> iter =
+                lruEntries.entrySet().iterator();
+        while (max > 0 && totalWeight > max && lruEntries.size() > 1)
+        {
+            final Map.Entry<CacheStoreKeyBase, CacheEntry<T>> eldest = iter.next();
+            iter.remove();
+            totalWeight -= eldest.getValue().weight;
+            if (cache.remove(eldest.getKey(), eldest.getValue()))
+                evictionCount.incrementAndGet();
+        }
     }
 
     /**
@@ -86,10 +227,21 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     public final T remove(CacheStoreKeyBase key)
     {
-        SoftReference<T> entryRef = cache.remove(key);
-        if (entryRef == null)
+        CacheEntry<T> entry = cache.remove(key);
+        if (entry == null)
             return null;
-        return entryRef.get();
+        if (entry.isStrong())
+        {
+            synchronized (lruEntries)
+            {
+                if (lruEntries.get(key) == entry)
+                {
+                    lruEntries.remove(key);
+                    totalWeight -= entry.weight;
+                }
+            }
+        }
+        return entry.peek();
     }
 
     /**
@@ -102,6 +254,84 @@ public abstract class ConcurrentCacheStoreBase<T>
         return cache.size();
     }
 
+    /**
+     * Set the maximum total weight of the cached values. A positive maximum
+     * makes the cache hold the values it creates from now on strongly and
+     * evict the least recently used ones when the maximum is exceeded. Zero,
+     * the default, makes the cache hold its values with soft references and
+     * never evict them itself.
+     * 
+     * @param maximumWeight maximum total weight, or 0 for no maximum
+     */
+    public final void setMaximumWeight(long maximumWeight)
+    {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("Maximum weight can't be negative.");
+
+        synchronized (lruEntries)
+        {
+            this.maximumWeight = maximumWeight;
+            if (maximumWeight > 0)
+            {
+                evictEntries();
+            }
+            else
+            {
+                for (CacheEntry<T> entry : lruEntries.values())
+                    entry.soften();
+                lruEntries.clear();
+                totalWeight = 0;
+            }
+        }
+    }
+
+    /**
+     * @return maximum total weight of the cached values, or 0 if there is
+     * none
+     */
+    public final long getMaximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    /**
+     * @return total weight of the strongly held values
+     */
+    public final long getWeight()
+    {
+        synchronized (lruEntries)
+        {
+            return totalWeight;
+        }
+    }
+
+    /**
+     * @return number of {@link #get(CacheStoreKeyBase)} calls that found a
+     * cached value
+     */
+    public final long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of {@link #get(CacheStoreKeyBase)} calls that had to
+     * create the value
+     */
+    public final long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of entries that were dropped because the maximum weight
+     * was exceeded or because the garbage collector released their value
+     */
+    public final long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
     /**
      * Concrete class must implement this method to create a cache value object.
      * Do NOT add the value to the cache in this method. {@link #get(CacheStoreKeyBase)} is
@@ -112,6 +342,22 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     protected abstract T createEntryValue(CacheStoreKeyBase key);
 
+    /**
+     * Compute the weight of a value created by
+     * {@link #createEntryValue(CacheStoreKeyBase)}. The weight is only used
+     * when a maximum weight is set. Concrete classes that can estimate the
+     * memory used by their values should return it in bytes. The default
+     * weight is 1, which bounds the number of entries instead.
+     * 
+     * @param key cache key
+     * @param value the created value
+     * @return weight of the value
+     */
+    protected long getEntryWeight(CacheStoreKeyBase key, T value)
+    {
+        return 1;
+    }
+
     @Override
     public String toString()
     {
@@ -122,4 +368,108 @@ public abstract class ConcurrentCacheStoreBase<T>
         result.append("} ");
         return result.toString();
     }
+
+    /**
+     * A cache table entry. The entry is added to the table before its value
+     * is created, so that other threads asking for the same key can wait for
+     * the value instead of creating it again.
+     */
+    private static final class CacheEntry<V>
+    {
+        private final Thread creator = Thread.currentThread();
+        private final CountDownLatch created = new CountDownLatch(1);
+        private volatile V strongValue;
+        private volatile SoftReference<V> softValue;
+        private volatile boolean failed;
+
+        /**
+         * Guarded by the lock on {@code lruEntries}.
+         */
+        long weight;
+
+        void setStrong(V value)
+        {
+            strongValue = value;
+            created.countDown();
+        }
+
+        void setSoft(V value)
+        {
+            softValue = new SoftReference<V>(value);
+            created.countDown();
+        }
+
+        void soften()
+        {
+            final V value = strongValue;
+            if (value != null)
+            {
+                softValue = new SoftReference<V>(value);
+                strongValue = null;
+            }
+        }
+
+        void fail()
+        {
+            failed = true;
+            created.countDown();
+        }
+
+        boolean isStrong()
+        {
+            return strongValue != null;
+        }
+
+        boolean isFailed()
+        {
+            return failed;
+        }
+
+        /**
+         * @return the value, or null if it is not created yet
+         */
+        V peek()
+        {
+            final V value = strongValue;
+            if (value != null)
+                return value;
+            final SoftReference<V> ref = softValue;
+            return ref != null ? ref.get() : null;
+        }
+
+        /**
+         * Wait until the value is created.
+         * 
+         * @return the value, or null if it could not be created or it was
+         * collected
+         */
+        V await()
+        {
+            if (created.getCount() > 0 && creator == Thread.currentThread())
+                throw new IllegalStateException("Cache entry requested while it is created.");
+
+            boolean interrupted = false;
+            try
+            {
+                while (true)
+                {
+                    try
+                    {
+                        created.await();
+                        break;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+            finally
+            {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+            return peek();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.apache.royale.swf.tags.SymbolClassTag;
+
+/**
+ * A {@link SWFReader} for the SWFs kept in the {@link SWFCache}, which indexes
+ * the {@code DoABC} tags by name and keeps the {@code SymbolClass} tags once
+ * all of the tags are read, so that finding the tags of each script of a
+ * library does not scan all of the tags of the library.
+ * <p>
+ * A reader that only decodes the code of a library SWF skips the other tags,
+ * including the {@code SymbolClass} tags, but keeps the names they export.
+ */
+final class IndexedSWFReader extends SWFReader
+{
+    /**
+     * @param codeOnly if true, only the {@link SWFReader#CODE_TAG_TYPES} are
+     * decoded.
+     */
+    IndexedSWFReader(boolean codeOnly)
+    {
+        super(false, codeOnly ? CODE_TAG_TYPES : null); // Need not to build SWF frames.
+    }
+
+    private Map<String, DoABCTag> doABCTags = Collections.emptyMap();
+    private List<SymbolClassTag> symbolClassTags = Collections.emptyList();
+
+    /**
+     * Indexes the tags read. Must be called after the SWF is read, and before
+     * the reader is shared with other threads.
+     */
+    void buildIndex()
+    {
+        final Map<String, DoABCTag> doABCTags = new HashMap<String, DoABCTag>();
+        final List<SymbolClassTag> symbolClassTags = new ArrayList<SymbolClassTag>(1);
+        for (final ITag tag : tags)
+        {
+            if (tag instanceof DoABCTag)
+            {
+                // the first tag with a name wins, as in a scan of the tags
+                final DoABCTag abcTag = (DoABCTag)tag;
+                if (!doABCTags.containsKey(abcTag.getName()))
+                    doABCTags.put(abcTag.getName(), abcTag);
+            }
+            else if (tag instanceof SymbolClassTag)
+            {
+                symbolClassTags.add((SymbolClassTag)tag);
+            }
+        }
+        this.doABCTags = doABCTags;
+        this.symbolClassTags = Collections.unmodifiableList(symbolClassTags);
+    }
+
+    /**
+     * @return the first {@code DoABC} tag with the specified name, or null.
+     */
+    DoABCTag getDoABCTag(String abcName)
+    {
+        return doABCTags.get(abcName);
+    }
+
+    /**
+     * @return the {@code SymbolClass} tags, in the order they were read.
+     */
+    List<SymbolClassTag> getSymbolClassTags()
+    {
+        return symbolClassTags;
+    }
+
+    /**
+     * @return true if some of the tags were not decoded.
+     */
+    boolean hasSkippedTags()
+    {
+        return !getSkippedTags().isEmpty();
+    }
+
+    /**
+     * @return the number of bytes of the tags that were not decoded.
+     */
+    long getSkippedLength()
+    {
+        long length = 0;
+        for (final SkippedTag tag : getSkippedTags())
+            length += tag.getLength();
+        return length;
+    }
+
+    /**
+     * @return true if a {@code SymbolClass} tag, decoded or not, exports a
+     * character with the specified name.
+     */
+    boolean exportsSymbol(String name)
+    {
+        if (getSkippedSymbolNames().contains(name))
+            return true;
+        for (final SymbolClassTag symbolClassTag : symbolClassTags)
+        {
+            if (symbolClassTag.getSymbol(name) != null)
+                return true;
+        }
+        return false;
+    }
+}
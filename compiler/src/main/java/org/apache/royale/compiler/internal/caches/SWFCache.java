@@ -27,15 +27,17 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipFile;
 
 import org.apache.royale.compiler.caches.ISWFCache;
 import org.apache.royale.compiler.problems.FileInLibraryNotFoundProblem;
 import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.SWC;
 import org.apache.royale.swc.SWCManager;
+import org.apache.royale.swc.io.MappedSWCArchive;
 import org.apache.royale.swc.io.SWCReader;
+import org.apache.royale.swf.ISWF;
 import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.SWF;
 import org.apache.royale.swf.io.SWFReader;
 import org.apache.royale.swf.tags.DoABCTag;
 import org.apache.royale.swf.tags.ITag;
@@ -44,7 +46,14 @@ import org.apache.royale.swf.tags.SymbolClassTag;
 /**
  * Cache for parsed SWF models. The cache is a list of key-value pairs. The key
  * is the URI to the SWF file. The value is a {@link SoftReference} to a
- * collection of SWF tags.
+ * collection of SWF tags, indexed by {@link IndexedSWFReader}.
+ * <p>
+ * Only the tags needed to build definitions are decoded from the library SWFs
+ * inside SWCs, so the tags of embedded assets are neither decoded nor kept
+ * for the scripts that are only compiled against. The tags of a library SWF
+ * that are linked into an output SWF are found with
+ * {@link #getAllTags(ISWC, String)}, which decodes all of them, and keeps
+ * them in place of the code.
  */
 public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements ISWFCache
 {
@@ -71,6 +80,7 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
     {
         protected ISWC swc; // null-able
         protected String swfPath; // non-null
+        protected boolean allTags; // false if only the code is decoded
 
         public SWFInSWCCacheKey()
         {
@@ -79,34 +89,31 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
         @Override
         public String generateKey()
         {
-            return String.format("%s:%s", swc.getSWCFile().getAbsolutePath(), swfPath).intern();
+            return String.format("%s:%s%s", swc.getSWCFile().getAbsolutePath(), swfPath, allTags ? ":all" : "").intern();
         }
 
         @Override
         void readSWF(SWFReader swfReader) throws IOException
         {
-            ZipFile zipFile = null;
-            try
+            // Load library SWF inside a SWC.
+            InputStream swfInputStream = MappedSWCArchive.openEntry(swc.getSWCFile(), swfPath);
+            if (swfInputStream != null)
             {
-                // Load library SWF inside a SWC.
-                zipFile = new ZipFile(swc.getSWCFile(), ZipFile.OPEN_READ);
-                InputStream swfInputStream = SWCReader.getInputStream(zipFile, swfPath);
-                if (swfInputStream != null)
+                try
                 {
                     swfInputStream = new BufferedInputStream(swfInputStream);
                     swfReader.readFrom(swfInputStream, SWCReader.getReportingPath( 
                             swc.getSWCFile().getAbsolutePath(), swfPath));
                 }
-                else if (swc instanceof SWC)
+                finally
                 {
-                    ((SWC)swc).addProblem(new FileInLibraryNotFoundProblem(swfPath, 
-                            swc.getSWCFile().getAbsolutePath()));
+                    swfInputStream.close();
                 }
             }
-            finally
+            else if (swc instanceof SWC)
             {
-                // closes the input steam as well as the zip file.
-                zipFile.close();
+                ((SWC)swc).addProblem(new FileInLibraryNotFoundProblem(swfPath, 
+                        swc.getSWCFile().getAbsolutePath()));
             }
         }
     }
@@ -167,6 +174,23 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
         return key;
     }
     
+    /**
+     * Factory method for creating a key object for {@code SWCCache}, for a
+     * library SWF inside a SWC of which all the tags are decoded. The tags of
+     * the SWF found with {@link #createKey(ISWC, String)} are only the tags
+     * needed to build definitions.
+     * 
+     * @param swc SWC file
+     * @param swfPath path to a SWF file
+     * @return key
+     */
+    public static SWFInSWCCacheKey createKeyForAllTags(ISWC swc, String swfPath)
+    {
+        final SWFInSWCCacheKey key = createKey(swc, swfPath);
+        key.allTags = true;
+        return key;
+    }
+
     /**
      * Factory method for creating a key object for {@code SWCCache}.
      * 
@@ -181,7 +205,8 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
     }
 
     /**
-     * Find {@code DoABC} tag by name.
+     * Find {@code DoABC} tag by name. The tags of the SWFs in this cache are
+     * indexed, other tags are scanned.
      * 
      * @param tags list of tags
      * @param abcName abc name
@@ -191,6 +216,9 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
     {
         assert (abcName != null && !"".equals(abcName)) : "expect ABC name.";
 
+        if (tags instanceof IndexedSWFReader)
+            return ((IndexedSWFReader)tags).getDoABCTag(abcName);
+
         for (final ITag tag : tags)
         {
             if (tag instanceof DoABCTag)
@@ -214,6 +242,9 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
      */
     public static Collection<SymbolClassTag> findAllSymbolClassTags(ITagContainer tags)
     {
+        if (tags instanceof IndexedSWFReader)
+            return ((IndexedSWFReader)tags).getSymbolClassTags();
+
         List<SymbolClassTag> symbolTags = new ArrayList<SymbolClassTag>();
         for (final ITag tag : tags)
         {
@@ -224,6 +255,29 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
         return symbolTags;
     }
 
+    /**
+     * Find if a {@code SymbolClass} tag contained in the SWF exports a
+     * character with the specified name. This does not need the
+     * {@code SymbolClass} tags to be decoded.
+     * 
+     * @param tags list of tags
+     * @param name symbol name
+     * @return true if the symbol is exported
+     */
+    public static boolean exportsSymbol(ITagContainer tags, String name)
+    {
+        if (tags instanceof IndexedSWFReader)
+            return ((IndexedSWFReader)tags).exportsSymbol(name);
+
+        for (final SymbolClassTag symbolTag : findAllSymbolClassTags(tags))
+        {
+            if (symbolTag.getSymbol(name) != null)
+                return true;
+        }
+
+        return false;
+    }
+
     /**
      * @param swcManager The object that manages SWC files.
      */
@@ -233,11 +287,42 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
     }
 
     /**
-     * Get all the tags from a SWF file.
+     * Get all the tags from a library SWF inside a SWC, including the tags
+     * of embedded assets, which are only decoded the first time any of them
+     * are needed.
+     * <p>
+     * The fully decoded SWF then replaces the code-only one, so the SWF is
+     * only cached once, and the key created with
+     * {@link #createKey(ISWC, String)} finds the problems of all its tags.
      * 
-     * @param key {@code ICacheStoreKey} key object
+     * @param swc SWC file
+     * @param swfPath path to a SWF file
      * @return {@link ITagContainer} contains all the tags in the SWF file.
      */
+    public ITagContainer getAllTags(ISWC swc, String swfPath)
+    {
+        final SWFInSWCCacheKey key = createKey(swc, swfPath);
+        final ITagContainer tags = get(key);
+        if (!(tags instanceof IndexedSWFReader) || !((IndexedSWFReader)tags).hasSkippedTags())
+            return tags;
+
+        // the all tags key makes other threads wait for this decode rather
+        // than decode the SWF again
+        final SWFInSWCCacheKey allTagsKey = createKeyForAllTags(swc, swfPath);
+        final ITagContainer allTags = get(allTagsKey);
+        replace(key, allTags);
+        remove(allTagsKey);
+        return allTags;
+    }
+
+    /**
+     * Get the tags from a SWF file. For a library SWF inside a SWC, only the
+     * tags needed to build definitions are decoded, unless the key was
+     * created with {@link #createKeyForAllTags(ISWC, String)}.
+     * 
+     * @param key {@code ICacheStoreKey} key object
+     * @return {@link ITagContainer} contains the tags in the SWF file.
+     */
     @Override
     protected ITagContainer createEntryValue(CacheStoreKeyBase key)
     {
@@ -246,8 +331,10 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
 
         try
         {
-            final SWFReader swfReader = new SWFReader(false); // Need not to build SWF frames.
+            final boolean codeOnly = key instanceof SWFInSWCCacheKey && !((SWFInSWCCacheKey)key).allTags;
+            final IndexedSWFReader swfReader = new IndexedSWFReader(codeOnly);
             readInputStream(swfReader, (SWFCacheKey)key);
+            swfReader.buildIndex();
             return swfReader;
         }
         catch (IOException e)
@@ -256,6 +343,29 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
         }
     }
 
+    /**
+     * Weighs a SWF by its uncompressed length, less the tags that were not
+     * decoded, so that a maximum weight set with
+     * {@link #setMaximumWeight(long)} is roughly a number of bytes.
+     */
+    @Override
+    protected long getEntryWeight(CacheStoreKeyBase key, ITagContainer value)
+    {
+        if (value instanceof SWFReader)
+        {
+            final ISWF swf = ((SWFReader)value).getSWF();
+            if (swf instanceof SWF)
+            {
+                long length = ((SWF)swf).getHeader().getLength();
+                if (value instanceof IndexedSWFReader)
+                    length -= ((IndexedSWFReader)value).getSkippedLength();
+                if (length > 0)
+                    return length;
+            }
+        }
+        return 1;
+    }
+
     /**
      * Read the {@code InputStream} from SWF file URI.
      * 
@@ -241,6 +241,47 @@ public abstract class DefinitionBase implements IDocumentableDefinition, IDefini
         this.absoluteNameEnd = absoluteNameEnd;
     }
 
+    /**
+     * Called by {@code ASFileScopeCache} when it rebuilds a definition that
+     * was built from source by an earlier compiler process. Creates a
+     * nodeless {@code NodeReference} for this definition, so that the node
+     * is found by reparsing the file when it is asked for.
+     *
+     * @param containingFileSpec File that contains the definition.
+     * @param absoluteStart Start offset of the node of the definition.
+     * @param absoluteNameStart Start offset of the name of the definition.
+     * @param absoluteNameEnd End offset of the name of the definition.
+     */
+    public void setLocation(IFileSpecification containingFileSpec, int absoluteStart,
+                            int absoluteNameStart, int absoluteNameEnd)
+    {
+        nodeRef = new NodeReference(containingFileSpec, absoluteStart);
+        setNameLocation(absoluteNameStart, absoluteNameEnd);
+    }
+
+    /**
+     * @return The bit flags of this definition, so that
+     * {@code ASFileScopeCache} can save them.
+     */
+    public final short getFlags()
+    {
+        return flags;
+    }
+
+    /**
+     * Restores the bit flags of a definition saved by
+     * {@code ASFileScopeCache}, without the side effects of the setters of
+     * the individual flags.
+     *
+     * @param flags The flags returned by {@link #getFlags()}.
+     * @param isAbstract True if the definition has the abstract modifier.
+     */
+    public final void restoreFlags(short flags, boolean isAbstract)
+    {
+        this.flags = flags;
+        this.abstractFlag = isAbstract;
+    }
+
     @Override
     public IASScope getContainingScope()
     {
@@ -515,6 +515,44 @@ public abstract class NamespaceDefinition extends DefinitionBase implements INam
         ((ASScope)scope).addUseDirective(directive);
     }
 
+    /**
+     * Adds a <code>use namespace</code> directive for an unqualified
+     * namespace name to a scope. Used when a scope is rebuilt without a
+     * syntax tree.
+     *
+     * @param scope The ASScope the directive is in.
+     * @param baseName The name of the used namespace, such as
+     * <code>mx_internal</code>.
+     */
+    public static void addUseNamespaceDirectiveToScope(ASScope scope, String baseName)
+    {
+        assert scope != null;
+        scope.addUseDirective(new UseNamespaceDirective(scope, baseName));
+    }
+
+    /**
+     * Gets the name of an unqualified user defined namespace that a namespace
+     * reference or a <code>use namespace</code> directive refers to.
+     *
+     * @param reference The namespace reference or directive.
+     * @return The name of the namespace, such as <code>mx_internal</code>, or
+     * null if the reference is to a built-in namespace, to a qualified
+     * namespace, or to a member of an expression.
+     */
+    public static String getUnqualifiedUserDefinedNamespaceName(Object reference)
+    {
+        if (reference == null)
+            return null;
+        if (reference.getClass() != UserDefinedNamespaceReference.class &&
+            reference.getClass() != UseNamespaceDirective.class)
+            return null;
+
+        UserDefinedNamespaceReference userDefinedReference = (UserDefinedNamespaceReference)reference;
+        if (userDefinedReference.getQualifierNamespace() != null)
+            return null;
+        return userDefinedReference.getBaseName();
+    }
+
     private static String getBaseName(INamespaceDecorationNode node)
     {
         // if there is no namespace decoration, must be internal
@@ -1764,6 +1802,11 @@ public abstract class NamespaceDefinition extends DefinitionBase implements INam
             super(scope, node);
         }
 
+        private UseNamespaceDirective(ASScope scope, String baseName)
+        {
+            super(scope, baseName, null);
+        }
+
         private INamespaceDirective next;
 
         @Override
@@ -84,6 +84,18 @@ public class VariableDefinition extends DefinitionBase implements IVariableDefin
      */
     protected Object initValue;
 
+    /**
+     * Gets the initial value of this VariableDefinition if it is known
+     * without evaluating an initializer expression, that is if it came from
+     * an ABC or if the initializer is a literal.
+     *
+     * @return The initial value, or null.
+     */
+    public Object getKnownInitialValue()
+    {
+        return initValue;
+    }
+
     @Override
     public VariableClassification getVariableClassification()
     {
@@ -50,6 +50,14 @@ public class BuiltinReference implements IReferenceMName
 
     private final IASLanguageConstants.BuiltinType builtinType;
 
+    /**
+     * @return The built-in type this reference refers to.
+     */
+    public IASLanguageConstants.BuiltinType getBuiltinType()
+    {
+        return builtinType;
+    }
+
     @Override
     public String getName()
     {
@@ -49,6 +49,24 @@ public class ParameterizedReference implements IReferenceMName
 
     private final IReferenceMName param;
 
+    /**
+     * @return The reference to the parameterized type, such as
+     * <code>Vector</code> in <code>Vector.&lt;T&gt;</code>.
+     */
+    public IReference getBaseReference()
+    {
+        return name;
+    }
+
+    /**
+     * @return The reference to the type parameter, such as <code>T</code> in
+     * <code>Vector.&lt;T&gt;</code>.
+     */
+    public IReference getParameterReference()
+    {
+        return param;
+    }
+
     @Override
     public String getName()
     {
@@ -431,6 +431,8 @@ public class EmbedData implements IEmbedData
         }
 
         Workspace workspace = (Workspace)project.getWorkspace();
+        final String byteArrayEmbedClass = project instanceof RoyaleProject ?
+                ((RoyaleProject)project).getByteArrayEmbedClass() : null;
         switch (mimeType)
         {
             case JPEG:
@@ -462,12 +464,12 @@ public class EmbedData implements IEmbedData
             }
             case PBJ:
             {
-                transcoder = new PBJTranscoder(this, workspace);
+                transcoder = new PBJTranscoder(this, workspace, byteArrayEmbedClass);
                 break;
             }
             case OCT_STRM:
             {
-                transcoder = new DataTranscoder(this, workspace);
+                transcoder = new DataTranscoder(this, workspace, byteArrayEmbedClass);
                 break;
             }
             case XML:
@@ -36,18 +36,26 @@ import org.apache.royale.swf.tags.ITag;
  */
 public class DataTranscoder extends TranscoderBase
 {
+    /**
+     * The class the embedded data extends when the project doesn't set one.
+     */
+    public static final String DEFAULT_EMBED_CLASS_NAME = CORE_PACKAGE + ".ByteArrayAsset";
+
     /**
      * Constructor.
      * 
      * @param data The embedding data.
      * @param workspace The workspace.
+     * @param embedClassName The class the embedded data extends, or null for
+     * {@link #DEFAULT_EMBED_CLASS_NAME}.
      */
-    public DataTranscoder(EmbedData data, Workspace workspace)
+    public DataTranscoder(EmbedData data, Workspace workspace, String embedClassName)
     {
         super(data, workspace);
+        this.embedClassName = embedClassName != null ? embedClassName : DEFAULT_EMBED_CLASS_NAME;
     }
 
-    public static String embedClassName = CORE_PACKAGE + ".ByteArrayAsset";
+    private final String embedClassName;
     
     @Override
     public boolean analyze(ISourceLocation location, Collection<ICompilerProblem> problems)
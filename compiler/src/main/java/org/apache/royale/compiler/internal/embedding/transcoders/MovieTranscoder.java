@@ -376,7 +376,7 @@ public class MovieTranscoder extends ScalableTranscoder
         else
         {
             final ISWC swc = swcManager.get(new File(super.swcSource.getContainingSWCPath()));
-            cacheKey = SWFCache.createKey(swc, source);
+            cacheKey = SWFCache.createKeyForAllTags(swc, source);
         }
         SWFCache swfCache = (SWFCache)workspace.getSWCManager().getSWFCache();
         SWFReader swfReader = (SWFReader)swfCache.get(cacheKey);
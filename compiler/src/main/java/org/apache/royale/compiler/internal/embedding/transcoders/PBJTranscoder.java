@@ -55,10 +55,12 @@ public class PBJTranscoder extends DataTranscoder
      * 
      * @param data The embedding data.
      * @param workspace The workspace.
+     * @param embedClassName The class the embedded data extends, or null for
+     * {@link #DEFAULT_EMBED_CLASS_NAME}.
      */
-    public PBJTranscoder(EmbedData data, Workspace workspace)
+    public PBJTranscoder(EmbedData data, Workspace workspace, String embedClassName)
     {
-        super(data, workspace);
+        super(data, workspace, embedClassName);
     }
 
     @Override
@@ -30,13 +30,15 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
+import org.apache.royale.swc.io.MappedSWCArchive;
+
 public class ZipFileSpecification implements IZipFileSpecification {
 	
 	private class IteratorImplementation implements Iterator<String> {
 		
 		private Enumeration<? extends ZipEntry> enumeration;
 
-		public IteratorImplementation() {
+		public IteratorImplementation(ZipFile zipFile) {
 			enumeration = zipFile.entries();
 		}
 		
@@ -57,23 +59,44 @@ public class ZipFileSpecification implements IZipFileSpecification {
 		}
 	}
 
+	// the archive is read through the shared memory mapping of a retained
+	// archive when possible, otherwise through zipFile
+	private MappedSWCArchive mappedArchive;
 	private ZipFile zipFile;
 	private long lastModified;
 	private String path;
 
 	public ZipFileSpecification(File file) throws ZipException, IOException {
-		zipFile = new ZipFile(file);
+		if(MappedSWCArchive.isRetained(file)) {
+			try {
+				mappedArchive = MappedSWCArchive.get(file);
+			}
+			catch(ZipException e) {
+				// not an archive that can be mapped
+			}
+		}
+		if(mappedArchive == null)
+			zipFile = new ZipFile(file);
 		lastModified = file.lastModified();
 		path = file.getPath();
 	}
 	
 	@Override
     public Iterator<String> getEntries() {
-		return new IteratorImplementation();
+		if(mappedArchive != null)
+			return mappedArchive.getEntryNames().iterator();
+		return new IteratorImplementation(zipFile);
 	}
 
 	@Override
     public InputStream getEntryStream(String name) throws IOException {
+		if(mappedArchive != null) {
+			if(mappedArchive.hasEntry(name))
+				return mappedArchive.getInputStream(name);
+			//try with leading slash as a fallback
+			if(mappedArchive.hasEntry("/" + name))
+				return mappedArchive.getInputStream("/" + name);
+		}
 		if(zipFile != null) {
 			ZipEntry entry = zipFile.getEntry(name);
 			if(entry != null)
@@ -89,6 +112,7 @@ public class ZipFileSpecification implements IZipFileSpecification {
 
 	@Override
     public void close() throws IOException {
+		mappedArchive = null;
 		if(zipFile == null)
 			return;
 		zipFile.close();
@@ -97,6 +121,8 @@ public class ZipFileSpecification implements IZipFileSpecification {
 
 	@Override
     public boolean hasEntry(String entryName) {
+		if(mappedArchive != null)
+			return mappedArchive.hasEntry(entryName) || mappedArchive.hasEntry("/" + entryName);
 		ZipEntry entry = zipFile.getEntry(entryName);
 		if(entry == null) //check for leading slashes
 			return zipFile.getEntry("/" + entryName) != null;
@@ -263,13 +263,29 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         StreamingASTokenizer tokenizer = null;
         try
         {
-            tokenizer = StreamingASTokenizer.createForASParser(
-                    spec,
-                    includeHandler,
-                    followIncludes,
-                    includedFiles);
-
-            final IRepairingTokenBuffer buffer = new StreamingTokenBuffer(tokenizer);
+            final IRepairingTokenBuffer buffer;
+            if (deferFunctionBody == DeferFunctionBody.ENABLED)
+            {
+                // Tokenize the whole file up front into a compact token list,
+                // so that no token objects are created for the function
+                // bodies the parser skips.
+                final String source = readSource(spec);
+                tokenizer = StreamingASTokenizer.createForASParser(
+                        new StringFileSpecification(spec.getPath(), source, spec.getLastModified()),
+                        includeHandler,
+                        followIncludes,
+                        includedFiles);
+                buffer = new CompactTokenBuffer(tokenizer.getCompactTokens(source));
+            }
+            else
+            {
+                tokenizer = StreamingASTokenizer.createForASParser(
+                        spec,
+                        includeHandler,
+                        followIncludes,
+                        includedFiles);
+                buffer = new StreamingTokenBuffer(tokenizer);
+            }
 
             final ASParser parser = new ASParser(fileSpecGetter.getWorkspace(), buffer);
             parser.deferFunctionBody = deferFunctionBody;
@@ -312,6 +328,25 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         return node;
     }
 
+    /**
+     * Read the whole text of a file.
+     * 
+     * @param spec the file to read
+     * @return the text of the file
+     */
+    private static String readSource(IFileSpecification spec) throws IOException
+    {
+        final Reader reader = spec.createReader();
+        try
+        {
+            return IOUtils.toString(reader);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
     /**
      * Parse a fragment of ActionScript. The resulting AST node is the return
      * value. The resulting definitions and scopes will be attached to the given
@@ -921,16 +956,18 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
      */
     private static Reader tryGetSecondaryReader(IWorkspace workspace, IRepairingTokenBuffer buffer)
     {
-        if (buffer instanceof StreamingTokenBuffer)
+        if (buffer instanceof StreamingTokenBuffer || buffer instanceof CompactTokenBuffer)
         {
-            final StreamingTokenBuffer streamingTokenBuffer = (StreamingTokenBuffer)buffer;
+            final String bufferSourcePath = buffer instanceof StreamingTokenBuffer ?
+                    ((StreamingTokenBuffer)buffer).getSourcePath() :
+                    ((CompactTokenBuffer)buffer).getSourcePath();
 
             // token without source path (probably from string literals
-            if (streamingTokenBuffer.getSourcePath() == null)
+            if (bufferSourcePath == null)
                 return null;
 
             // token source path doesn't exist: imaginary sources
-            final String sourcePath = FilenameNormalization.normalize(streamingTokenBuffer.getSourcePath());
+            final String sourcePath = FilenameNormalization.normalize(bufferSourcePath);
             if (!new File(sourcePath).isFile())
                 return null;
 
@@ -2033,6 +2070,17 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         return buffer.LT(i);
     }
 
+    /**
+     * @return the source path of the next token, without creating a token
+     * object when the buffer is a {@link CompactTokenBuffer}
+     */
+    private String lookAheadSourcePath()
+    {
+        if (buffer instanceof CompactTokenBuffer)
+            return ((CompactTokenBuffer)buffer).lookAheadSourcePath(1);
+        return LT(1).getSourcePath();
+    }
+
     @Override
     public final int mark()
     {
@@ -2533,15 +2581,13 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
         tokenLoop:
         for (int depth = 0; depth > 0 || LA(1) != TOKEN_BLOCK_CLOSE; consume())
         {
-            prevToken = LT(1);
-
             // If a function body token's source path is different from the
             // function node's source path, there's include processing. Then,
             // the function body text caching optimization can't be used. 
-            if (!this.getSourceFilePath().equals(LT(1).getSourcePath()))
+            if (!this.getSourceFilePath().equals(lookAheadSourcePath()))
                 functionBodyHasInclude = true;
 
-            switch (prevToken.getType())
+            switch (LA(1))
             {
                 case TOKEN_BLOCK_OPEN:
                     depth++;
@@ -2550,9 +2596,12 @@ abstract class BaseASParser extends LLkParser implements IProblemReporter
                     depth--;
                     break;
                 case EOF:
+                    prevToken = LT(1);
                     break tokenLoop;
             }
         }
+        if (prevToken == null)
+            prevToken = buffer.previous();
 
         assert LA(1) == TOKEN_BLOCK_CLOSE || LA(1) == EOF : "Loop should stop before the '}' of the function body or 'eof'.";
         assert prevToken != null : "Function body must have at least one token if we reached here.";
@@ -24,6 +24,7 @@ import static org.apache.royale.compiler.common.ISourceLocation.UNKNOWN;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.royale.compiler.parsing.IASToken.ASTokenKind;
 import org.apache.royale.compiler.problems.SyntaxProblem;
 
 import antlr.Token;
@@ -103,8 +104,60 @@ public abstract class BaseRepairingTokenBuffer implements IRepairingTokenBuffer
     }
 
     @Override
-    public final int LA(final int i)
+    public int LA(final int i)
     {
         return LT(i).getType();
     }
+
+    /**
+     * Match optional semicolon.
+     * <p>
+     * This function implements the first 2 optional semicolon insertion rules
+     * in the ECMA specification.
+     * 
+     * @see "ECMA 2.6.2 Chapter 7.9.1 Rules of Automatic Semicolon Insertion"
+     */
+    @Override
+    public boolean matchOptionalSemicolon()
+    {
+        final ASToken nextToken = LT(1);
+        if (nextToken == null)
+        {
+            // Pass -- end of file
+        }
+        else if (nextToken.getType() == ASTokenTypes.EOF)
+        {
+            // Pass -- end of file
+        }
+        else if (nextToken.getType() == ASTokenTypes.TOKEN_SEMICOLON)
+        {
+            // Found the semicolon.
+            consume();
+        }
+        else if (nextToken.getTokenKind() == ASTokenKind.SCOPE_CLOSE)
+        {
+            // Pass - the "offending token" is a "}".
+        }
+        else if (nextToken.getType() == ASTokenTypes.TOKEN_KEYWORD_ELSE)
+        {
+            // Pass - the "offending token" is "else".            
+        }
+        else if (nextToken.getLine() > previous().getLine())
+        {
+            // Insert - the "offending token" is on another line.
+            insertSemicolon(false);
+        }
+        else if (!nextToken.getSourcePath().equals(previous().getSourcePath()))
+        {
+            // Insert - the "offending token" is in another file.
+            // The previous token is in an included file.
+            insertSemicolon(false);
+        }
+        else
+        {
+            // Failed to insert a virtual semicolon.
+            return false;
+        }
+        return true;
+    }
 }
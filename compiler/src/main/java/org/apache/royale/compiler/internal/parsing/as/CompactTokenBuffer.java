@@ -0,0 +1,177 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.parsing.as;
+
+import java.util.Arrays;
+
+/**
+ * Token buffer that feeds the tokens of a {@link CompactTokenList} to the
+ * parser. {@link ASToken} objects are only created for the tokens the parser
+ * looks at, and only the ones around the current position are kept. The
+ * parser skips the tokens of a deferred function body with {@link #LA(int)}
+ * and {@link #lookAheadSourcePath(int)}, so no token object is created for
+ * them.
+ * <p>
+ * Optional semicolons are matched with the same rules as
+ * {@link StreamingTokenBuffer}.
+ */
+public final class CompactTokenBuffer extends BaseRepairingTokenBuffer implements IRepairingTokenBuffer
+{
+    /**
+     * The number of token objects kept around the current position; a power
+     * of two. The parser never looks further ahead or rewinds further back
+     * than this, and if it did, the token would just be created again.
+     */
+    private static final int WINDOW_SIZE = 64;
+
+    private final CompactTokenList tokens;
+
+    /**
+     * The token objects created for the tokens at {@link #windowIndexes}.
+     */
+    private final ASToken[] window = new ASToken[WINDOW_SIZE];
+    private final int[] windowIndexes = new int[WINDOW_SIZE];
+
+    /**
+     * The index of the previous token, or -1 if it is {@link #previousToken}.
+     */
+    private int previousIndex;
+    private ASToken previousToken;
+
+    public CompactTokenBuffer(final CompactTokenList tokens)
+    {
+        super(tokens.getSourcePath());
+        this.tokens = tokens;
+        Arrays.fill(windowIndexes, -1);
+        previousIndex = -1;
+        previousToken = eofToken;
+    }
+
+    /**
+     * @return Path of the token source.
+     */
+    public String getSourcePath()
+    {
+        return tokens.getSourcePath();
+    }
+
+    @Override
+    public final boolean insertSemicolon(final boolean isNextToken)
+    {
+        if (!insertSemis)
+            return false;
+        if (isNextToken)
+            onSemicolonInserted();
+        return true;
+    }
+
+    @Override
+    public void rewind(final int position)
+    {
+        this.position = position;
+    }
+
+    @Override
+    public final void consume()
+    {
+        if (nextIsSemicolon)
+        {
+            nextIsSemicolon = false;
+            previousIndex = -1;
+            previousToken = SEMICOLON;
+        }
+        else
+        {
+            if (position < tokens.size())
+                previousIndex = position;
+            position++;
+        }
+    }
+
+    @Override
+    public int LA(final int i)
+    {
+        if (nextIsSemicolon)
+            return SEMICOLON.getType();
+
+        final int index = position + i - 1;
+        if (index >= tokens.size())
+            return eofToken.getType();
+        // the parser may have changed the type of the token object
+        final int slot = index & (WINDOW_SIZE - 1);
+        if (windowIndexes[slot] == index)
+            return window[slot].getType();
+        return tokens.getType(index);
+    }
+
+    /**
+     * Look-ahead "i" tokens, and get the path of the file the token was read
+     * from without creating a token object.
+     *
+     * @param i the distance of the token.
+     * @return the source path of the token.
+     */
+    public String lookAheadSourcePath(final int i)
+    {
+        if (nextIsSemicolon)
+            return SEMICOLON.getSourcePath();
+
+        final int index = position + i - 1;
+        if (index >= tokens.size())
+            return eofToken.getSourcePath();
+        return tokens.getSourcePath(index);
+    }
+
+    @Override
+    protected ASToken lookAheadSkipInsertedSemicolon(int i)
+    {
+        final int index = position + i - 1;
+        if (index >= tokens.size())
+            return eofToken;
+        final ASToken result = getToken(index);
+        result.lock();
+        return result;
+    }
+
+    private ASToken getToken(int index)
+    {
+        final int slot = index & (WINDOW_SIZE - 1);
+        if (windowIndexes[slot] != index)
+        {
+            // keep the type the parser may have given to the token we drop
+            if (windowIndexes[slot] != -1)
+                tokens.setType(windowIndexes[slot], window[slot].getType());
+            window[slot] = tokens.getToken(index);
+            windowIndexes[slot] = index;
+        }
+        return window[slot];
+    }
+
+    @Override
+    public ASToken previous()
+    {
+        if (previousIndex != -1)
+        {
+            previousToken = getToken(previousIndex);
+            previousIndex = -1;
+        }
+        return previousToken != null ? previousToken : eofToken;
+    }
+}
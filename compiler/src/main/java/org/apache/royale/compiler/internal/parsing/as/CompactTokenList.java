@@ -0,0 +1,315 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.parsing.as;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A list of ActionScript tokens kept in parallel arrays of token types,
+ * offsets, lengths, lines and columns instead of {@link ASToken} objects.
+ * The text of a token is sliced from the source when it is asked for.
+ * <p>
+ * Most tokens are described completely by these values. A token that isn't,
+ * because its text isn't the source text at its offsets (escape sequences,
+ * tokens made up by the tokenizer), because it spans several lines, or
+ * because it comes from an included file, is kept as a copy of the
+ * {@link ASToken}.
+ * <p>
+ * {@link StreamingASTokenizer#getCompactTokens(String)} creates these lists,
+ * and {@link CompactTokenBuffer} feeds them to the parser.
+ */
+public final class CompactTokenList
+{
+    /**
+     * Constructor.
+     *
+     * @param source the text the tokens were read from.
+     * @param sourceOffset the offset of the first character of the source.
+     * @param sourcePath the path of the source, or null.
+     * @param capacity the expected number of tokens.
+     */
+    CompactTokenList(String source, int sourceOffset, String sourcePath, int capacity)
+    {
+        this.source = source;
+        this.sourceOffset = sourceOffset;
+        this.sourcePath = sourcePath;
+        capacity = Math.max(capacity, 16);
+        types = new int[capacity];
+        starts = new int[capacity];
+        localStarts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+    }
+
+    private final String source;
+    private final int sourceOffset;
+    private final String sourcePath;
+
+    private int[] types;
+    private int[] starts;
+    private int[] localStarts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] columns;
+    private int size;
+
+    /**
+     * Copies of the tokens that can't be rebuilt from the arrays, by index.
+     */
+    private Map<Integer, ASToken> irregularTokens;
+
+    /**
+     * The text sliced from the source, so that the tokens of the same
+     * identifier share a string, as the tokens of the tokenizer do.
+     */
+    private final Map<String, String> textPool = new HashMap<String, String>();
+
+    /**
+     * Add a token at the end of the list. Only the values of the token are
+     * kept, so the tokenizer may reuse it for the next token.
+     *
+     * @param token the token to add.
+     */
+    void add(ASToken token)
+    {
+        if (size == types.length)
+        {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            localStarts = Arrays.copyOf(localStarts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+        }
+        types[size] = token.getType();
+        starts[size] = token.getStart();
+        localStarts[size] = token.getLocalStart();
+        lengths[size] = token.getEnd() - token.getStart();
+        lines[size] = token.getLine();
+        columns[size] = token.getColumn();
+        if (!isRegular(token))
+        {
+            if (irregularTokens == null)
+                irregularTokens = new HashMap<Integer, ASToken>();
+            irregularTokens.put(size, token.clone());
+        }
+        size++;
+    }
+
+    /**
+     * @return true if the token can be rebuilt from its type, offsets, line
+     * and column, and the source.
+     */
+    private boolean isRegular(ASToken token)
+    {
+        if (token.getClass() != ASToken.class)
+            return false;
+        final int length = token.getEnd() - token.getStart();
+        if (token.getLocalEnd() - token.getLocalStart() != length)
+            return false;
+        if (token.getEndLine() != token.getLine() ||
+            token.getEndColumn() != token.getColumn() + length)
+            return false;
+        final String path = token.getSourcePath();
+        if (path == null ? sourcePath != null : !path.equals(sourcePath))
+            return false;
+
+        final CharSequence text = token.getCharSequence();
+        final int sourceStart = token.getLocalStart() - sourceOffset;
+        if (text == null || text.length() != length ||
+            sourceStart < 0 || sourceStart + length > source.length())
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (text.charAt(i) != source.charAt(sourceStart + i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of tokens.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the path of the source the tokens were read from.
+     */
+    public String getSourcePath()
+    {
+        return sourcePath;
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the type of the token, from {@link ASTokenTypes}.
+     */
+    public int getType(int index)
+    {
+        checkIndex(index);
+        return types[index];
+    }
+
+    /**
+     * Change the type of a token, as the parser does when it recovers from
+     * an error.
+     *
+     * @param index the index of a token.
+     * @param type the new type of the token.
+     */
+    void setType(int index, int type)
+    {
+        checkIndex(index);
+        types[index] = type;
+        final ASToken irregular = getIrregularToken(index);
+        if (irregular != null)
+            irregular.setType(type);
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the start offset of the token.
+     */
+    public int getStart(int index)
+    {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the end offset of the token.
+     */
+    public int getEnd(int index)
+    {
+        checkIndex(index);
+        return starts[index] + lengths[index];
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the line of the token.
+     */
+    public int getLine(int index)
+    {
+        checkIndex(index);
+        return lines[index];
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the column of the token.
+     */
+    public int getColumn(int index)
+    {
+        checkIndex(index);
+        return columns[index];
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the path of the file the token was read from, which is not the
+     * path of the list for the tokens of included files.
+     */
+    public String getSourcePath(int index)
+    {
+        checkIndex(index);
+        final ASToken irregular = getIrregularToken(index);
+        return irregular != null ? irregular.getSourcePath() : sourcePath;
+    }
+
+    /**
+     * @param index the index of a token.
+     * @return the text of the token.
+     */
+    public String getText(int index)
+    {
+        checkIndex(index);
+        final ASToken irregular = getIrregularToken(index);
+        if (irregular != null)
+            return irregular.getText();
+        final int start = localStarts[index] - sourceOffset;
+        final String text = source.substring(start, start + lengths[index]);
+        if (types[index] == ASTokenTypes.TOKEN_LITERAL_STRING)
+            return text;
+        final String pooledText = textPool.get(text);
+        if (pooledText != null)
+            return pooledText;
+        textPool.put(text, text);
+        return text;
+    }
+
+    /**
+     * Create an {@link ASToken} for a token of the list. Each call creates a
+     * new token.
+     *
+     * @param index the index of a token.
+     * @return a new token.
+     */
+    public ASToken getToken(int index)
+    {
+        checkIndex(index);
+        final ASToken irregular = getIrregularToken(index);
+        if (irregular != null)
+            return irregular.clone();
+        final int localStart = localStarts[index];
+        final ASToken token = new ASToken(types[index], localStart,
+                localStart + lengths[index], lines[index], columns[index], getText(index));
+        if (starts[index] != localStart)
+        {
+            // tokens after an included file
+            token.setStart(starts[index]);
+            token.setEnd(starts[index] + lengths[index]);
+        }
+        token.setSourcePath(sourcePath);
+        return token;
+    }
+
+    /**
+     * Create {@link ASToken} objects for all the tokens.
+     *
+     * @return a new array of new tokens.
+     */
+    public ASToken[] toArray()
+    {
+        final ASToken[] result = new ASToken[size];
+        for (int i = 0; i < size; i++)
+            result[i] = getToken(i);
+        return result;
+    }
+
+    private ASToken getIrregularToken(int index)
+    {
+        return irregularTokens != null ? irregularTokens.get(index) : null;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+    }
+}
@@ -24,6 +24,7 @@ import java.util.EnumSet;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DefinitionPriority;
+import org.apache.royale.compiler.internal.scopes.ASFileScopeCache;
 import org.apache.royale.compiler.internal.semantics.PostProcessStep;
 import org.apache.royale.compiler.internal.tree.as.FileNode;
 import org.apache.royale.compiler.internal.tree.as.NilNode;
@@ -82,6 +83,13 @@ class ConfigCompilationUnit extends ASCompilationUnit
         return new ConfigFileNode(getProject().getWorkspace(), getAbsoluteFilename());
     }
 
+    @Override
+    protected ASFileScopeCache getFileScopeCache()
+    {
+        // the config file node isn't parsed from a file
+        return null;
+    }
+
     @Override
     protected void verifyAST(IASNode ast)
     {
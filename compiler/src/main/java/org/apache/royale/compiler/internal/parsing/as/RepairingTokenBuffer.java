@@ -136,7 +136,7 @@ public class RepairingTokenBuffer extends BaseRepairingTokenBuffer implements IR
     /**
      * If we don't have the optional semicolon, always insert it. This
      * implementation is much looser than
-     * {@link StreamingTokenBuffer#matchOptionalSemicolon()} in order to appease
+     * {@link BaseRepairingTokenBuffer#matchOptionalSemicolon()} in order to appease
      * code model.
      * 
      * @return Always true.
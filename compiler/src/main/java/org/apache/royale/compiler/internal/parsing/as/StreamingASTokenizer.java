@@ -724,6 +724,32 @@ public class StreamingASTokenizer implements ASTokenTypes, IASTokenizer, Closeab
         return getTokens(new NonLockingStringReader(range));
     }
 
+    /**
+     * Tokenizes the rest of the input of this tokenizer into a
+     * {@link CompactTokenList}. Unlike {@link #getTokens(Reader)}, this
+     * neither locks nor copies the tokens: their values are kept in
+     * primitive arrays, and their text is sliced from the source when it is
+     * needed, so the tokenizer can reuse its pooled tokens. Use a
+     * {@link CompactTokenBuffer} to parse them.
+     *
+     * @param source the text this tokenizer reads.
+     * @return the tokens of the source.
+     */
+    public CompactTokenList getCompactTokens(final String source)
+    {
+        final CompactTokenList tokens = new CompactTokenList(
+                source, offsetAdjustment, getSourcePath(), source.length() / 5);
+        ASToken token = null;
+        do
+        {
+            token = next();
+            if (token != null && (config.filter == null || config.filter.accept(token)))
+                tokens.add(token);
+        }
+        while (token != null);
+        return tokens;
+    }
+
     /**
      * Returns the next token that can be produced from the underlying reader
      * 
@@ -22,7 +22,6 @@ package org.apache.royale.compiler.internal.parsing.as;
 import java.util.ArrayList;
 
 import org.apache.royale.compiler.parsing.IASToken;
-import org.apache.royale.compiler.parsing.IASToken.ASTokenKind;
 
 /**
  * Buffer used that supports streaming of tokens, instead of a pre-computed
@@ -153,56 +152,4 @@ public final class StreamingTokenBuffer extends BaseRepairingTokenBuffer impleme
     {
         return previousToken != null ? previousToken : eofToken;
     }
-
-    /**
-     * Match optional semicolon.
-     * <p>
-     * This function implements the first 2 optional semicolon insertion rules
-     * in the ECMA specification.
-     * 
-     * @see "ECMA 2.6.2 Chapter 7.9.1 Rules of Automatic Semicolon Insertion"
-     */
-    @Override
-    public boolean matchOptionalSemicolon()
-    {
-        final ASToken nextToken = LT(1);
-        if (nextToken == null)
-        {
-            // Pass -- end of file
-        }
-        else if (nextToken.getType() == ASTokenTypes.EOF)
-        {
-            // Pass -- end of file
-        }
-        else if (nextToken.getType() == ASTokenTypes.TOKEN_SEMICOLON)
-        {
-            // Found the semicolon.
-            consume();
-        }
-        else if (nextToken.getTokenKind() == ASTokenKind.SCOPE_CLOSE)
-        {
-            // Pass - the "offending token" is a "}".
-        }
-        else if (nextToken.getType() == ASTokenTypes.TOKEN_KEYWORD_ELSE)
-        {
-            // Pass - the "offending token" is "else".            
-        }
-        else if (nextToken.getLine() > previous().getLine())
-        {
-            // Insert - the "offending token" is on another line.
-            insertSemicolon(false);
-        }
-        else if (!nextToken.getSourcePath().equals(previous().getSourcePath()))
-        {
-            // Insert - the "offending token" is in another file.
-            // The previous token is in an included file.
-            insertSemicolon(false);
-        }
-        else
-        {
-            // Failed to insert a virtual semicolon.
-            return false;
-        }
-        return true;
-    }
 }
@@ -33,6 +33,7 @@ import java.util.WeakHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.royale.abc.ABCLinker;
 import org.apache.royale.compiler.common.DependencyType;
 import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.common.Multiname;
@@ -46,9 +47,11 @@ import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
 import org.apache.royale.compiler.internal.embedding.EmbedData;
 import org.apache.royale.compiler.internal.parsing.as.IProjectConfigVariables;
+import org.apache.royale.compiler.internal.scopes.ASFileScopeCache;
 import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.scopes.ASScope;
 import org.apache.royale.compiler.internal.scopes.ASScopeCache;
+import org.apache.royale.compiler.internal.scopes.ASScopeCacheStatistics;
 import org.apache.royale.compiler.internal.targets.AppSWFTarget;
 import org.apache.royale.compiler.internal.targets.Target;
 import org.apache.royale.compiler.internal.units.EmbedCompilationUnit;
@@ -112,12 +115,27 @@ public abstract class CompilerProject implements ICompilerProject
     /**
      * Map that holds caches for each scope in the project - uses a Concurrent Map, with weak keys so that the caches
      * will go away once the corresponding scope has been gc'ed.  Uses soft values so the caches may be collected
-     * if the VM is running out of memory
+     * if the VM is running out of memory.  The values have to stay soft even when the scope caches are bounded,
+     * because each ASScopeCache references its scope, so a strong value would keep its weak key reachable forever.
      */
-    private LoadingCache<ASScope, ASScopeCache> scopeCaches = CacheBuilder.newBuilder()
-        .weakKeys()
-        .softValues()
-        .build(new ScopeCacheLoader(this));
+    private LoadingCache<ASScope, ASScopeCache> scopeCaches = createScopeCaches(0);
+
+    /**
+     * The maximum number of entries in each lookup cache of an
+     * {@link ASScopeCache}, or 0 if the caches are soft referenced.
+     */
+    private int scopeCacheMaximumSize;
+
+    /**
+     * The maximum number of {@link ASScopeCache}s, or 0 if they are only
+     * limited by the available memory.
+     */
+    private int scopeCacheMaximumCount;
+
+    /**
+     * Counters for the {@link ASScopeCache}s, or null if they are not counted.
+     */
+    private ASScopeCacheStatistics scopeCacheStatistics;
  
     /** This thread local is to avoid every thread contending for access to the scopeCaches map, which is shared
      *  across the entire Project.
@@ -150,6 +168,18 @@ public abstract class CompilerProject implements ICompilerProject
 
     private final boolean useAS3;
 
+    /**
+     * The linked form of the ABC blocks of the application SWFs built from
+     * this project, kept between builds, or null if no target asked for it.
+     */
+    private ABCLinker.LinkCache abcLinkCache;
+
+    /**
+     * The on-disk cache of the file scopes of the source files of this
+     * project, or null if file scopes are not cached.
+     */
+    private volatile ASFileScopeCache fileScopeCache;
+
     /**
      * used to track config variables and return config information back to clients, such as the parser
      */
@@ -537,6 +567,10 @@ public abstract class CompilerProject implements ICompilerProject
 
             scopeCaches.invalidateAll();
             initThreadLocalCaches();
+            synchronized (this)
+            {
+                abcLinkCache = null;
+            }
         }
         finally
         {
@@ -655,6 +689,141 @@ public abstract class CompilerProject implements ICompilerProject
         problems.addAll(configManager.getProjectConfig(this).getProblems());
     }
 
+    private LoadingCache<ASScope, ASScopeCache> createScopeCaches(int maximumCount)
+    {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().weakKeys().softValues();
+        if (maximumCount > 0)
+            builder.maximumSize(maximumCount);
+        return builder.build(new ScopeCacheLoader(this));
+    }
+
+    /**
+     * @return the maximum number of entries in each lookup cache of an
+     * {@link ASScopeCache}, or 0 if the caches are soft referenced and
+     * unbounded.
+     */
+    public int getScopeCacheMaximumSize()
+    {
+        return scopeCacheMaximumSize;
+    }
+
+    /**
+     * Sets the maximum number of entries in each lookup cache of an
+     * {@link ASScopeCache}. With a maximum size, the lookup caches of a scope
+     * cache are strongly referenced, so they are not all dropped at once when
+     * the VM runs low on memory. With 0, the default, they are soft referenced
+     * and unbounded. The scope caches themselves are always soft referenced;
+     * see {@link #setScopeCacheMaximumCount(int)} to bound their number.
+     * All the existing scope caches are discarded.
+     * 
+     * @param maximumSize the maximum number of entries, or 0.
+     */
+    public void setScopeCacheMaximumSize(int maximumSize)
+    {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("maximumSize: " + maximumSize);
+        this.scopeCacheMaximumSize = maximumSize;
+        scopeCaches = createScopeCaches(scopeCacheMaximumCount);
+        initThreadLocalCaches();
+    }
+
+    /**
+     * @return the maximum number of {@link ASScopeCache}s, or 0 if they are
+     * only limited by the available memory.
+     */
+    public int getScopeCacheMaximumCount()
+    {
+        return scopeCacheMaximumCount;
+    }
+
+    /**
+     * Sets the maximum number of {@link ASScopeCache}s of this project. Once
+     * there are more, the least recently used ones are discarded. With 0, the
+     * default, they are only discarded when their scope is garbage collected
+     * or the VM runs low on memory. All the existing scope caches are
+     * discarded.
+     * 
+     * @param maximumCount the maximum number of scope caches, or 0.
+     */
+    public void setScopeCacheMaximumCount(int maximumCount)
+    {
+        if (maximumCount < 0)
+            throw new IllegalArgumentException("maximumCount: " + maximumCount);
+        this.scopeCacheMaximumCount = maximumCount;
+        scopeCaches = createScopeCaches(maximumCount);
+        initThreadLocalCaches();
+    }
+
+    /**
+     * @return the number of {@link ASScopeCache}s this project holds.
+     */
+    public long getScopeCacheCount()
+    {
+        return scopeCaches.size();
+    }
+
+    /**
+     * @return the counters of the {@link ASScopeCache}s of this project, or
+     * null if they are not counted.
+     */
+    public ASScopeCacheStatistics getScopeCacheStatistics()
+    {
+        return scopeCacheStatistics;
+    }
+
+    /**
+     * Enables or disables counting the hits, misses, rebuilds and evictions
+     * of the {@link ASScopeCache}s of this project. All the existing scope
+     * caches are discarded.
+     */
+    public void setEnableScopeCacheStatistics(boolean enable)
+    {
+        scopeCacheStatistics = enable ? new ASScopeCacheStatistics() : null;
+        scopeCaches = createScopeCaches(scopeCacheMaximumCount);
+        initThreadLocalCaches();
+    }
+
+    /**
+     * @return the cache that keeps the linked form of the ABC blocks of the
+     * application SWFs built from this project between builds; it is created
+     * on first use.
+     */
+    public synchronized ABCLinker.LinkCache getABCLinkCache()
+    {
+        if (abcLinkCache == null)
+            abcLinkCache = new ABCLinker.LinkCache();
+        return abcLinkCache;
+    }
+
+    /**
+     * Sets the directory in which the file scopes of the source files of
+     * this project are cached between compiler processes.
+     *
+     * @param directory The cache directory, or null to not cache file scopes.
+     */
+    public void setFileScopeCacheDirectory(File directory)
+    {
+        fileScopeCache = directory != null ? new ASFileScopeCache(directory) : null;
+    }
+
+    /**
+     * @return The on-disk cache of the file scopes of the source files of
+     * this project, or null if file scopes are not cached.
+     */
+    public ASFileScopeCache getFileScopeCache()
+    {
+        return fileScopeCache;
+    }
+
+    /**
+     * @return The config variables of this project and their expressions, in
+     * the order they were added.
+     */
+    public Map<String, String> getConfigVariables()
+    {
+        return configManager.getConfigVariables();
+    }
+
     /**
      * Get the cache for a particular scope
      * @param scope     the scope you want the cache for.
@@ -662,6 +831,11 @@ public abstract class CompilerProject implements ICompilerProject
      */
     public ASScopeCache getCacheForScope(ASScope scope)
     {
+        // A virtual thread runs a single request, so a thread local cache would
+        // start out empty every time, and only cost a map per request.
+        if (getWorkspace().isUsingVirtualThreads())
+            return scopeCaches.getUnchecked(scope);
+
         ASScopeCache scopeCache = null;
 
         // First check and see if we have the result cached in the thread local cache
@@ -21,6 +21,7 @@ package org.apache.royale.compiler.internal.projects;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -319,6 +320,14 @@ public final class ConfigManager
         validated = false;
     }
     
+    /**
+     * @return The config variables and their expressions, in the order they
+     * were added.
+     */
+    public Map<String, String> getConfigVariables() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(configMapping));
+    }
+    
     /**
      * Returns the {@link IProjectConfigVariables} object for the given project.  Each value returned will be a new object, but could possibly share
      * the same signature as other variables
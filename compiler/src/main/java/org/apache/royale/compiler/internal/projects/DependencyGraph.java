@@ -24,7 +24,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,7 +37,6 @@ import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.exceptions.CircularDependencyException;
 import org.apache.royale.compiler.internal.graph.Graph;
 import org.apache.royale.compiler.internal.graph.GraphEdge;
-import org.apache.royale.compiler.internal.graph.TopologicalSort;
 import org.apache.royale.compiler.internal.units.CompilationUnitBase;
 import org.apache.royale.compiler.internal.units.EmbedCompilationUnit;
 import org.apache.royale.compiler.internal.units.InvisibleCompilationUnit;
@@ -301,6 +300,7 @@ public final class DependencyGraph
         {
             result = new Edge(referencingCompilationUnit, declaringCompilationUnit);
             graph.setEdge(result);
+            snapshot = null;
         }
         return result;
     }
@@ -317,6 +317,13 @@ public final class DependencyGraph
     private final Graph<ICompilationUnit, Edge> graph;
     private final ReadWriteLock lock;
 
+    /**
+     * The snapshot of the graph, or null if the graph changed since the last
+     * one was taken. It is only set while the read lock is held, and cleared
+     * while the write lock is held.
+     */
+    private volatile DependencyGraphSnapshot snapshot;
+
     /**
      * Adds a dependency to the dependency graph.
      * 
@@ -346,6 +353,7 @@ public final class DependencyGraph
         {
             Edge e = getEdge(depender, dependee);
             e.addDependency(targetQName, dt);
+            snapshot = null;
         }
         finally
         {
@@ -382,6 +390,7 @@ public final class DependencyGraph
         {
             Edge e = getEdge(depender, dependee);
             e.addDependency(targetQName, dt);
+            snapshot = null;
         }
         finally
         {
@@ -417,6 +426,7 @@ public final class DependencyGraph
         {
             Edge e = getEdge(depender, dependee);
             e.addDependency(dt);
+            snapshot = null;
         }
         finally
         {
@@ -464,6 +474,7 @@ public final class DependencyGraph
         {
             Edge e = getEdge(depender, dependee);
             graph.removeEdge(e);
+            snapshot = null;
         }
         finally
         {
@@ -491,14 +502,7 @@ public final class DependencyGraph
      */
     public List<ICompilationUnit> topologicalSort(Collection<ICompilationUnit> roots)
     {
-        return topologicalSort(roots, new Comparator<ICompilationUnit>()
-        {
-            @Override
-            public int compare(ICompilationUnit o1, ICompilationUnit o2)
-            {
-                return o1.getName().compareTo(o2.getName());
-            }
-        });
+        return sort(roots, null);
     }
     
     public CircularDependencyException lastCircularDependencyException;
@@ -521,59 +525,69 @@ public final class DependencyGraph
      */
     public List<ICompilationUnit> topologicalSort(Collection<ICompilationUnit> roots, final Comparator<ICompilationUnit> comparator)
     {
+        return sort(roots, comparator);
+    }
+
+    private List<ICompilationUnit> sort(Collection<ICompilationUnit> roots, Comparator<ICompilationUnit> comparator)
+    {
+        lastCircularDependencyException = null;
+        DependencyGraphSnapshot graphSnapshot = snapshot();
+        final ArrayList<ICompilationUnit> sortedList = new ArrayList<ICompilationUnit>(graphSnapshot.getCompilationUnitCount());
+        try
+        {
+            graphSnapshot.topologicalSort(roots, comparator, sortedList);
+        }
+        catch (CircularDependencyException e1)
+        {
+			if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.GOOG_DEPS) == CompilerDiagnosticsConstants.GOOG_DEPS)
+			{
+				System.out.println("Circular Dependency Found");
+				@SuppressWarnings("unchecked")
+				ImmutableList<ICompilationUnit> nodes = (ImmutableList<ICompilationUnit>) e1.getCircularDependency();
+				for (ICompilationUnit node : nodes)
+				{
+					try {
+						System.out.println(node.getQualifiedNames().toString());
+					} catch (InterruptedException e2) {
+						// TODO Auto-generated catch block
+						e2.printStackTrace();
+					}
+				}
+				System.out.println("End of Circular Dependency");
+			}
+			lastCircularDependencyException = e1;
+            assert false : "CircularDependencyException";
+        }
+        return sortedList;
+    }
+
+    /**
+     * Returns an immutable, index-based copy of the graph, which can be
+     * sorted and walked without taking the graph's lock. The copy is taken
+     * the first time this is called after the graph changes, and shared
+     * until the graph changes again, so the targets and publishers of a
+     * build that sort the same graph several times only copy it once.
+     * 
+     * @return A snapshot of the current graph.
+     */
+    public DependencyGraphSnapshot snapshot()
+    {
+        DependencyGraphSnapshot result = snapshot;
+        if (result != null)
+            return result;
         lock.readLock().lock();
         try
         {
-        	lastCircularDependencyException = null;
-            final ArrayList<ICompilationUnit> sortedList = new ArrayList<ICompilationUnit>(graph.getVertices().size());
-            TopologicalSort.IVisitor<ICompilationUnit, Edge> visitor =
-                    new TopologicalSort.IVisitor<ICompilationUnit, Edge>()
-                {
-                    @Override
-                    public void visit(ICompilationUnit v)
-                    {
-                        assert v != null;           // this might mean there was some race condidition...
-                        sortedList.add(v);
-                    }
-
-                    @Override
-                    public boolean isTopologicalEdge(Edge e)
-                    {
-                        return e.getIsInheritanceDependency();
-                    }
-
-                    @Override
-                    public int compare(ICompilationUnit a, ICompilationUnit b)
-                    {
-                        return comparator.compare(a, b);
-                    }
-                };
-            try
+            // Writers wait for the read lock to be released, so a snapshot
+            // taken here can't miss a change, and concurrent readers would
+            // only take equal snapshots.
+            result = snapshot;
+            if (result == null)
             {
-                TopologicalSort.sort(graph, roots, visitor);
+                result = new DependencyGraphSnapshot(graph);
+                snapshot = result;
             }
-            catch (CircularDependencyException e1)
-            {
-    			if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.GOOG_DEPS) == CompilerDiagnosticsConstants.GOOG_DEPS)
-    			{
-    				System.out.println("Circular Dependency Found");
-    				@SuppressWarnings("unchecked")
-					ImmutableList<ICompilationUnit> nodes = (ImmutableList<ICompilationUnit>) e1.getCircularDependency();
-    				for (ICompilationUnit node : nodes)
-    				{
-    					try {
-							System.out.println(node.getQualifiedNames().toString());
-						} catch (InterruptedException e2) {
-							// TODO Auto-generated catch block
-							e2.printStackTrace();
-						}
-    				}
-    				System.out.println("End of Circular Dependency");
-    			}
-    			lastCircularDependencyException = e1;
-                assert false : "CircularDependencyException";
-            }
-            return sortedList;
+            return result;
         }
         finally
         {
@@ -595,31 +609,32 @@ public final class DependencyGraph
      */
     public static Set<ICompilationUnit> computeInvalidationSet(Iterable<ICompilationUnit> roots)
     {
-        
-        HashSet<ICompilationUnit> result = new HashSet<ICompilationUnit>();
-        LinkedList<Edge> workList = new LinkedList<Edge>();
+        // Dependents are found through the incoming edges in the graph of
+        // their project, so the roots of each project's graph are
+        // invalidated with a snapshot of that graph.
+        Map<DependencyGraph, List<ICompilationUnit>> rootsByGraph =
+                new LinkedHashMap<DependencyGraph, List<ICompilationUnit>>();
         for (ICompilationUnit unit : roots)
         {
             assert unit instanceof CompilationUnitBase;
             CompilationUnitBase compilationUnit = (CompilationUnitBase)unit;
-            boolean alreadyVisited = !result.add(compilationUnit);
-            if (!alreadyVisited)
-                workList.addAll(compilationUnit.getProject().getDependencyGraph().getIncomingEdges(compilationUnit));
-        }
-        DependencyTypeSet recursiveInvalidationSet = DependencyTypeSet.of(DependencyType.INHERITANCE, DependencyType.SIGNATURE, DependencyType.NAMESPACE);
-        HashSet<Edge> visitedEdges = new HashSet<Edge>();
-        while (!workList.isEmpty())
-        {
-            Edge currentEdge = workList.pop();
-            if (visitedEdges.add(currentEdge))
+            DependencyGraph graph = compilationUnit.getProject().getDependencyGraph();
+            List<ICompilationUnit> graphRoots = rootsByGraph.get(graph);
+            if (graphRoots == null)
             {
-                assert currentEdge.getFrom() instanceof CompilationUnitBase;
-                CompilationUnitBase dependentUnit = (CompilationUnitBase)currentEdge.getFrom();
-                result.add(dependentUnit);
-                if (currentEdge.typeInSet(recursiveInvalidationSet))
-                    workList.addAll(dependentUnit.getProject().getDependencyGraph().getIncomingEdges(dependentUnit));
+                graphRoots = new ArrayList<ICompilationUnit>();
+                rootsByGraph.put(graph, graphRoots);
             }
+            graphRoots.add(compilationUnit);
         }
+        if (rootsByGraph.size() == 1)
+        {
+            Map.Entry<DependencyGraph, List<ICompilationUnit>> entry = rootsByGraph.entrySet().iterator().next();
+            return entry.getKey().snapshot().computeInvalidationSet(entry.getValue());
+        }
+        HashSet<ICompilationUnit> result = new HashSet<ICompilationUnit>();
+        for (Map.Entry<DependencyGraph, List<ICompilationUnit>> entry : rootsByGraph.entrySet())
+            result.addAll(entry.getKey().snapshot().computeInvalidationSet(entry.getValue()));
         return result;
     }
 
@@ -636,6 +651,7 @@ public final class DependencyGraph
         try
         {
             graph.addVertex(cu);
+            snapshot = null;
         }
         finally
         {
@@ -663,6 +679,7 @@ public final class DependencyGraph
         try
         {
             graph.addVertices(transformed);
+            snapshot = null;
         }
         finally
         {
@@ -682,6 +699,7 @@ public final class DependencyGraph
         try
         {
             graph.removeVertex(cu);
+            snapshot = null;
         }
         finally
         {
@@ -0,0 +1,518 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.exceptions.CircularDependencyException;
+import org.apache.royale.compiler.internal.graph.Graph;
+import org.apache.royale.compiler.internal.projects.DependencyGraph.Edge;
+import org.apache.royale.compiler.internal.units.InvisibleCompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * An immutable copy of a {@link DependencyGraph}, in which the compilation
+ * units are numbered and the edges are stored in arrays.
+ * <p>
+ * The compilation units are numbered in the order of their names. The
+ * outgoing and incoming edges of the units are stored in compressed sparse
+ * row form: the edges of unit {@code i} are at the positions from
+ * {@code start[i]} to {@code start[i + 1]} of the arrays of edge ends and of
+ * edge types, and the {@link DependencyTypeSet} of each edge is stored as a
+ * bit mask in which the bit position is the ordinal of the
+ * {@link DependencyType}.
+ * <p>
+ * A snapshot doesn't change, so any number of threads can sort and walk it
+ * without taking the lock of the {@link DependencyGraph}. Use
+ * {@link DependencyGraph#snapshot()} to get one.
+ */
+public final class DependencyGraphSnapshot
+{
+    private static final int INHERITANCE = mask(DependencyType.INHERITANCE);
+
+    private static final int RECURSIVE_INVALIDATION =
+            mask(DependencyType.INHERITANCE) | mask(DependencyType.SIGNATURE) | mask(DependencyType.NAMESPACE);
+
+    /**
+     * Sorts compilation units by name, which is the order used to number them
+     * and the order of last resort used by
+     * {@link DependencyGraph#topologicalSort(Collection)}.
+     */
+    static final Comparator<ICompilationUnit> NAME_COMPARATOR = new Comparator<ICompilationUnit>()
+    {
+        @Override
+        public int compare(ICompilationUnit o1, ICompilationUnit o2)
+        {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    /**
+     * Copies a graph. The caller must hold the read lock of the graph.
+     *
+     * @param graph The graph of a {@link DependencyGraph}.
+     */
+    DependencyGraphSnapshot(Graph<ICompilationUnit, Edge> graph)
+    {
+        Collection<ICompilationUnit> vertices = graph.getVertices();
+        units = vertices.toArray(new ICompilationUnit[vertices.size()]);
+        Arrays.sort(units, NAME_COMPARATOR);
+        ids = new HashMap<ICompilationUnit, Integer>(units.length * 2);
+        for (int i = 0; i < units.length; i++)
+            ids.put(units[i], i);
+
+        // Collect the outgoing edges, counting the incoming edges of each
+        // unit as we go.
+        int n = units.length;
+        outStart = new int[n + 1];
+        int[] inCount = new int[n + 1];
+        int[] to = new int[Math.max(n, 16)];
+        int[] types = new int[to.length];
+        int edgeCount = 0;
+        for (int i = 0; i < n; i++)
+        {
+            outStart[i] = edgeCount;
+            for (Edge e : graph.getOutgoingEdges(units[i]))
+            {
+                if (edgeCount == to.length)
+                {
+                    to = Arrays.copyOf(to, edgeCount * 2);
+                    types = Arrays.copyOf(types, edgeCount * 2);
+                }
+                int target = ids.get(e.getTo());
+                to[edgeCount] = target;
+                types[edgeCount] = mask(e.getAllDependencies());
+                inCount[target + 1]++;
+                edgeCount++;
+            }
+        }
+        outStart[n] = edgeCount;
+        outTo = Arrays.copyOf(to, edgeCount);
+        outTypes = Arrays.copyOf(types, edgeCount);
+
+        // Then the incoming edges, from the counts.
+        inStart = inCount;
+        for (int i = 0; i < n; i++)
+            inStart[i + 1] += inStart[i];
+        int[] next = Arrays.copyOf(inStart, n);
+        inFrom = new int[edgeCount];
+        inTypes = new int[edgeCount];
+        for (int i = 0; i < n; i++)
+        {
+            for (int e = outStart[i]; e < outStart[i + 1]; e++)
+            {
+                int position = next[outTo[e]]++;
+                inFrom[position] = i;
+                inTypes[position] = outTypes[e];
+            }
+        }
+    }
+
+    /**
+     * The compilation units, by number.
+     */
+    private final ICompilationUnit[] units;
+
+    /**
+     * The numbers of the compilation units.
+     */
+    private final Map<ICompilationUnit, Integer> ids;
+
+    private final int[] outStart;
+    private final int[] outTo;
+    private final int[] outTypes;
+
+    private final int[] inStart;
+    private final int[] inFrom;
+    private final int[] inTypes;
+
+    /**
+     * @return The number of compilation units in the snapshot.
+     */
+    public int getCompilationUnitCount()
+    {
+        return units.length;
+    }
+
+    /**
+     * @return The number of edges in the snapshot.
+     */
+    public int getEdgeCount()
+    {
+        return outTo.length;
+    }
+
+    /**
+     * @param unit A compilation unit.
+     * @return true if the compilation unit is in the snapshot.
+     */
+    public boolean contains(ICompilationUnit unit)
+    {
+        return ids.containsKey(unit);
+    }
+
+    /**
+     * Computes the same list as {@link DependencyGraph#topologicalSort}: all
+     * the compilation units that the roots depend on directly or indirectly,
+     * where units containing definitions that extend or implement
+     * definitions from other units occur after those units. Roots that are
+     * not in the snapshot are sorted as units without any dependencies.
+     *
+     * @param roots The compilation units to start from.
+     * @param comparator The comparator of last resort used to order units
+     * that have no real dependencies between them, or null to order them by
+     * name.
+     * @param sortedList The list the units are added to, in order. If a
+     * circular dependency is found, it has the units sorted until then.
+     * @throws CircularDependencyException If the inheritance dependencies
+     * of the units have a cycle.
+     */
+    public void topologicalSort(Collection<ICompilationUnit> roots,
+            Comparator<ICompilationUnit> comparator, List<ICompilationUnit> sortedList)
+            throws CircularDependencyException
+    {
+        // Roots that aren't in the graph get numbers after the units that
+        // are, and never have edges.
+        ICompilationUnit[] vertices = units;
+        int[] rootIds = new int[roots.size()];
+        int rootCount = 0;
+        Map<ICompilationUnit, Integer> extraIds = null;
+        for (ICompilationUnit root : roots)
+        {
+            Integer id = ids.get(root);
+            if (id == null)
+            {
+                if (extraIds == null)
+                    extraIds = new HashMap<ICompilationUnit, Integer>();
+                id = extraIds.get(root);
+                if (id == null)
+                {
+                    id = units.length + extraIds.size();
+                    extraIds.put(root, id);
+                }
+            }
+            rootIds[rootCount++] = id;
+        }
+        if (extraIds != null)
+        {
+            vertices = Arrays.copyOf(units, units.length + extraIds.size());
+            for (Map.Entry<ICompilationUnit, Integer> entry : extraIds.entrySet())
+                vertices[entry.getValue()] = entry.getKey();
+        }
+
+        // The vertices are sorted by rank. The numbers are already in name
+        // order, so the ranks only have to be computed for other orders or
+        // for extra roots.
+        int[] rank = null;
+        int[] byRank = null;
+        if (comparator != null || extraIds != null)
+        {
+            Integer[] order = new Integer[vertices.length];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            final ICompilationUnit[] sortedVertices = vertices;
+            final Comparator<ICompilationUnit> vertexComparator =
+                    comparator != null ? comparator : NAME_COMPARATOR;
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer a, Integer b)
+                {
+                    return vertexComparator.compare(sortedVertices[a], sortedVertices[b]);
+                }
+            });
+            rank = new int[vertices.length];
+            byRank = new int[vertices.length];
+            for (int i = 0; i < order.length; i++)
+            {
+                rank[order[i]] = i;
+                byRank[i] = order[i];
+            }
+        }
+
+        TopologicalSorter sorter = new TopologicalSorter(vertices, rank, byRank, sortedList);
+        int[] pending = Arrays.copyOf(rootIds, rootCount);
+        while (pending.length > 0)
+        {
+            sorter.traverse(pending, pending.length);
+            pending = sorter.takeNonTopological();
+        }
+    }
+
+    /**
+     * The state of a topological sort. This follows
+     * {@link org.apache.royale.compiler.internal.graph.TopologicalSort}, with
+     * the vertices numbered.
+     */
+    private final class TopologicalSorter
+    {
+        TopologicalSorter(ICompilationUnit[] vertices, int[] rank, int[] byRank,
+                List<ICompilationUnit> sortedList)
+        {
+            this.vertices = vertices;
+            this.rank = rank;
+            this.byRank = byRank;
+            this.sortedList = sortedList;
+            visited = new BitSet(vertices.length);
+            nonTopological = new BitSet(vertices.length);
+            onStack = new BitSet(vertices.length);
+            stack = new int[16];
+        }
+
+        private final ICompilationUnit[] vertices;
+        private final int[] rank;
+        private final int[] byRank;
+        private final List<ICompilationUnit> sortedList;
+        private final BitSet visited;
+        private final BitSet nonTopological;
+        private final BitSet onStack;
+        private int[] stack;
+        private int stackSize;
+
+        /**
+         * Visits the vertices, and the vertices they depend on, in the order
+         * of their ranks.
+         */
+        void traverse(int[] ids, int count) throws CircularDependencyException
+        {
+            sortByRank(ids, count);
+            for (int i = 0; i < count; i++)
+            {
+                int id = ids[i];
+                if (stackSize == stack.length)
+                    stack = Arrays.copyOf(stack, stackSize * 2);
+                stack[stackSize++] = id;
+                onStack.set(id);
+                traverse(id);
+                onStack.clear(id);
+                stackSize--;
+            }
+        }
+
+        private void traverse(int id) throws CircularDependencyException
+        {
+            if (visited.get(id))
+                return;
+            visited.set(id);
+
+            int[] topological = null;
+            int topologicalCount = 0;
+            if (id < units.length)
+            {
+                for (int e = outStart[id]; e < outStart[id + 1]; e++)
+                {
+                    int to = outTo[e];
+                    if ((outTypes[e] & INHERITANCE) != 0)
+                    {
+                        if (onStack.get(to))
+                            throw new CircularDependencyException(getCycle(to));
+                        if (topological == null)
+                            topological = new int[outStart[id + 1] - e];
+                        topological[topologicalCount++] = to;
+                    }
+                    else
+                    {
+                        nonTopological.set(to);
+                    }
+                }
+            }
+
+            // First visit the vertices this one extends or implements, then
+            // this one.
+            if (topologicalCount > 0)
+                traverse(topological, topologicalCount);
+            sortedList.add(vertices[id]);
+            nonTopological.clear(id);
+        }
+
+        /**
+         * @return The vertices found through other edges that were not
+         * visited yet.
+         */
+        int[] takeNonTopological()
+        {
+            nonTopological.andNot(visited);
+            int[] result = new int[nonTopological.cardinality()];
+            int count = 0;
+            for (int id = nonTopological.nextSetBit(0); id >= 0; id = nonTopological.nextSetBit(id + 1))
+                result[count++] = id;
+            nonTopological.clear();
+            return result;
+        }
+
+        private List<ICompilationUnit> getCycle(int repeated)
+        {
+            List<ICompilationUnit> cycle = new ArrayList<ICompilationUnit>(stackSize + 1);
+            for (int i = 0; i < stackSize; i++)
+                cycle.add(vertices[stack[i]]);
+            cycle.add(vertices[repeated]);
+            return cycle;
+        }
+
+        private void sortByRank(int[] ids, int count)
+        {
+            if (rank == null)
+            {
+                Arrays.sort(ids, 0, count);
+                return;
+            }
+            for (int i = 0; i < count; i++)
+                ids[i] = rank[ids[i]];
+            Arrays.sort(ids, 0, count);
+            for (int i = 0; i < count; i++)
+                ids[i] = byRank[ids[i]];
+        }
+    }
+
+    /**
+     * Computes the compilation units that the roots depend on directly or
+     * indirectly through edges with at least one of the specified types.
+     *
+     * @param roots The compilation units to start from.
+     * @param types The types of the edges to follow.
+     * @return The roots and the units they depend on, in the order they were
+     * found. Invisible roots are replaced by the units they delegate to, as
+     * in the graph.
+     */
+    public Set<ICompilationUnit> getReachableCompilationUnits(Collection<ICompilationUnit> roots,
+            DependencyTypeSet types)
+    {
+        int typeMask = mask(types);
+        Set<ICompilationUnit> result = new LinkedHashSet<ICompilationUnit>();
+        BitSet reached = new BitSet(units.length);
+        int[] workList = new int[Math.max(units.length, 1)];
+        int head = 0;
+        int tail = 0;
+        for (ICompilationUnit root : roots)
+        {
+            int id = getId(root);
+            if (id < 0)
+            {
+                result.add(root);
+            }
+            else if (!reached.get(id))
+            {
+                reached.set(id);
+                workList[tail++] = id;
+            }
+        }
+        while (head < tail)
+        {
+            int id = workList[head++];
+            result.add(units[id]);
+            for (int e = outStart[id]; e < outStart[id + 1]; e++)
+            {
+                int to = outTo[e];
+                if ((outTypes[e] & typeMask) != 0 && !reached.get(to))
+                {
+                    reached.set(to);
+                    workList[tail++] = to;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the same set as
+     * {@link DependencyGraph#computeInvalidationSet(Iterable)} for roots
+     * that are all in this snapshot's graph: the roots, and the units that
+     * depend on them, where the units that depend on them through an
+     * inheritance, signature or namespace dependency are invalidated
+     * recursively.
+     *
+     * @param roots The compilation units known to need cleaning.
+     * @return The compilation units that should be cleaned.
+     */
+    public Set<ICompilationUnit> computeInvalidationSet(Iterable<ICompilationUnit> roots)
+    {
+        Set<ICompilationUnit> result = new HashSet<ICompilationUnit>();
+        BitSet invalidated = new BitSet(units.length);
+        BitSet expanded = new BitSet(units.length);
+        int[] workList = new int[Math.max(units.length, 1)];
+        int tail = 0;
+        for (ICompilationUnit root : roots)
+        {
+            result.add(root);
+            int id = getId(root);
+            if (id >= 0 && !expanded.get(id))
+            {
+                expanded.set(id);
+                workList[tail++] = id;
+            }
+        }
+        while (tail > 0)
+        {
+            int id = workList[--tail];
+            for (int e = inStart[id]; e < inStart[id + 1]; e++)
+            {
+                int from = inFrom[e];
+                if (!invalidated.get(from))
+                {
+                    invalidated.set(from);
+                    result.add(units[from]);
+                }
+                if ((inTypes[e] & RECURSIVE_INVALIDATION) != 0 && !expanded.get(from))
+                {
+                    expanded.set(from);
+                    workList[tail++] = from;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of a unit, or of the unit an invisible unit
+     * delegates to, or -1 if it isn't in the snapshot.
+     */
+    private int getId(ICompilationUnit unit)
+    {
+        if (unit instanceof InvisibleCompilationUnit)
+            unit = ((InvisibleCompilationUnit)unit).getDelegate();
+        Integer id = ids.get(unit);
+        return id != null ? id : -1;
+    }
+
+    private static int mask(DependencyType type)
+    {
+        return 1 << type.ordinal();
+    }
+
+    private static int mask(DependencyTypeSet types)
+    {
+        int result = 0;
+        for (DependencyType type : types)
+            result |= mask(type);
+        return result;
+    }
+}
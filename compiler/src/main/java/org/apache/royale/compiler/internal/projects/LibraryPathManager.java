@@ -648,6 +648,7 @@ public final class LibraryPathManager
             
             for (ISWCLibrary library : swc.getLibraries())
             {
+                // once the assets of a library are linked, this finds all of its tags
                 final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
                 final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(key);
                 problems.addAll(tags.getProblems());
@@ -381,6 +381,7 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
     private String xmlWatcherClass;
     private Name xmlWatcherClassName;
     private String swfDebugfileAlias;
+    private String byteArrayEmbedClass;
     
     /**
      * The fully-qualified name of the runtime class
@@ -2581,4 +2582,18 @@ public class RoyaleProject extends ASProject implements IRoyaleProject, ICompile
         this.swfDebugfileAlias = swfDebugfileAlias;
     }
 
+    /**
+     * @return the class that data embedded as a ByteArray extends, or null
+     * for the default one
+     */
+    public String getByteArrayEmbedClass()
+    {
+        return byteArrayEmbedClass;
+    }
+
+    public void setByteArrayEmbedClass(String byteArrayEmbedClass)
+    {
+        this.byteArrayEmbedClass = byteArrayEmbedClass;
+    }
+
 }
@@ -30,12 +30,11 @@ import org.apache.royale.abc.semantics.Namespace;
 import org.apache.royale.abc.semantics.Nsset;
 import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.config.Configurator;
-import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.fxg.flex.FlexFXG2SWFTranscoder;
 import org.apache.royale.compiler.internal.as.codegen.BindableHelper;
+import org.apache.royale.compiler.internal.caches.SWFCache;
 import org.apache.royale.compiler.internal.config.RoyaleTargetSettings;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
-import org.apache.royale.compiler.internal.embedding.transcoders.DataTranscoder;
 import org.apache.royale.compiler.internal.units.FXGCompilationUnit;
 import org.apache.royale.compiler.mxml.IMXMLTypeConstants;
 import org.apache.royale.compiler.mxml.IMXMLNamespaceMapping;
@@ -44,6 +43,8 @@ import org.apache.royale.compiler.projects.IRoyaleProject;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.targets.ITargetSettings;
 import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCManager;
+import org.apache.royale.swc.SWCManager;
 import org.apache.royale.utils.FilenameNormalization;
 
 /**
@@ -269,9 +270,20 @@ public class RoyaleProjectConfigurator extends Configurator
             project.setAllowPrivateConstructors(configuration.getCompilerAllowPrivateConstructors());
             
             project.setSwfDebugfileAlias(configuration.getSwfDebugfileAlias());
-            if (configuration.getSwfDebugfileAlias() != null)
-            	FileSpecification.useCRLFFilter = true;
-            DataTranscoder.embedClassName = configuration.getByteArrayEmbedClass();
+            project.getWorkspace().setUseCRLFFilter(configuration.getSwfDebugfileAlias() != null);
+            project.setByteArrayEmbedClass(configuration.getByteArrayEmbedClass());
+
+            // changing these discards the scope caches, so only do it if needed
+            if (project.getScopeCacheMaximumSize() != configuration.getScopeCacheMaxEntries())
+                project.setScopeCacheMaximumSize(configuration.getScopeCacheMaxEntries());
+            if (project.getScopeCacheMaximumCount() != configuration.getScopeCacheMaxScopes())
+                project.setScopeCacheMaximumCount(configuration.getScopeCacheMaxScopes());
+            if ((project.getScopeCacheStatistics() != null) != configuration.getScopeCacheStatistics())
+                project.setEnableScopeCacheStatistics(configuration.getScopeCacheStatistics());
+            if ((project.getWorkspace().getRequestStatistics() != null) != configuration.getRequestStatistics())
+                project.getWorkspace().setEnableRequestStatistics(configuration.getRequestStatistics());
+            project.setFileScopeCacheDirectory(configuration.getFileScopeCacheDir());
+            project.getWorkspace().setExecutorOptions(configuration.getThreads(), configuration.getVirtualThreads());
         }
     }
     
@@ -418,6 +430,15 @@ public class RoyaleProjectConfigurator extends Configurator
         	}
         }
         
+        // The SWCs are read when the libraries are set, so the index cache
+        // has to be set up first.
+        ISWCManager swcManager = project.getWorkspace().getSWCManager();
+        if (swcManager instanceof SWCManager)
+        {
+            ((SWCManager)swcManager).setIndexCacheDirectory(configuration.getSwcIndexCacheDir());
+            setupLibraryCacheSize((SWCManager)swcManager);
+        }
+
         project.setLibraries(new ArrayList<File>(libraries));
         
         // After we set the library path we can check for ANE files more
@@ -427,6 +448,24 @@ public class RoyaleProjectConfigurator extends Configurator
         return validateNoANEFiles(project, externalLibraryFiles);
     }
     
+    /**
+     * Setup {@code -compiler.library-cache-max-size}. A manager shared by
+     * several compilations is only changed when the size differs, so that
+     * the strongly held entries are not dropped for nothing.
+     */
+    private void setupLibraryCacheSize(SWCManager swcManager)
+    {
+        final long maximumWeight = configuration.getLibraryCacheMaxSize() * 1024L * 1024L;
+        if (swcManager.getMaximumWeight() != maximumWeight)
+            swcManager.setMaximumWeight(maximumWeight);
+        if (swcManager.getSWFCache() instanceof SWFCache)
+        {
+            final SWFCache swfCache = (SWFCache)swcManager.getSWFCache();
+            if (swfCache.getMaximumWeight() != maximumWeight)
+                swfCache.setMaximumWeight(maximumWeight);
+        }
+    }
+    
     /**
      * Validate all of the ANE files are on the external library path.
      *
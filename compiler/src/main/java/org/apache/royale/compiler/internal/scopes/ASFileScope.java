@@ -33,6 +33,7 @@ import org.apache.royale.compiler.constants.IASLanguageConstants;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.definitions.INamespaceDefinition;
 import org.apache.royale.compiler.definitions.IPackageDefinition;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
 import org.apache.royale.compiler.internal.definitions.ScopedDefinitionBase;
 import org.apache.royale.compiler.internal.parsing.as.OffsetLookup;
@@ -142,6 +143,30 @@ public class ASFileScope extends ASScope implements IFileScope
         addImplicitImportsForAS();
         this.parsedFunctionBodies = new ConcurrentHashMap<FunctionNode, Object>();
     }
+
+    /**
+     * Constructor for a file scope that {@link ASFileScopeCache} rebuilds
+     * without a syntax tree. It has the same file private namespace as a
+     * file scope built from the {@link FileNode} of the file.
+     *
+     * @param fileSpecGetter {@link IFileSpecificationGetter} that is used to
+     * open files associated with this {@link ASFileScope}.
+     * @param fileSpec The file for which this {@link ASFileScope} is being
+     * created.
+     * @param absoluteStart Start offset of the {@link FileNode} of the file.
+     */
+    ASFileScope(IFileSpecificationGetter fileSpecGetter, IFileSpecification fileSpec, int absoluteStart)
+    {
+        super(null);
+        filePath = fileSpec.getPath();
+        final String uri = "FilePrivateNS:" + FilenameUtils.getBaseName(filePath);
+        filePrivateNamespace = NamespaceDefinition.createFilePrivateNamespaceDefinition(uri);
+        this.fileSpecGetter = fileSpecGetter;
+        this.compilationUnitReference = null;
+        addImplicitImportsForAS();
+        this.parsedFunctionBodies = new ConcurrentHashMap<FunctionNode, Object>();
+        setScopeNodeLocation(fileSpec, absoluteStart);
+    }
  
     /**
      * Adds the appropriate implicit imports for ActionScript.
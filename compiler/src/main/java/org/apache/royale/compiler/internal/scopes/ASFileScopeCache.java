@@ -0,0 +1,1281 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.scopes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.royale.abc.ABCConstants;
+import org.apache.royale.compiler.common.ISourceLocation;
+import org.apache.royale.compiler.common.VersionInfo;
+import org.apache.royale.compiler.constants.IASLanguageConstants;
+import org.apache.royale.compiler.constants.IMetaAttributeConstants;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.definitions.INamespaceDefinition;
+import org.apache.royale.compiler.definitions.INamespaceDefinition.IPublicNamespaceDefinition;
+import org.apache.royale.compiler.definitions.metadata.IMetaTag;
+import org.apache.royale.compiler.definitions.metadata.IMetaTagAttribute;
+import org.apache.royale.compiler.definitions.references.INamespaceReference;
+import org.apache.royale.compiler.definitions.references.IReference;
+import org.apache.royale.compiler.definitions.references.ReferenceFactory;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.definitions.ClassDefinition;
+import org.apache.royale.compiler.internal.definitions.ConstantDefinition;
+import org.apache.royale.compiler.internal.definitions.DefinitionBase;
+import org.apache.royale.compiler.internal.definitions.FunctionDefinition;
+import org.apache.royale.compiler.internal.definitions.GetterDefinition;
+import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
+import org.apache.royale.compiler.internal.definitions.NamespaceDefinition;
+import org.apache.royale.compiler.internal.definitions.PackageDefinition;
+import org.apache.royale.compiler.internal.definitions.ParameterDefinition;
+import org.apache.royale.compiler.internal.definitions.SetterDefinition;
+import org.apache.royale.compiler.internal.definitions.VariableDefinition;
+import org.apache.royale.compiler.internal.definitions.metadata.MetaTag;
+import org.apache.royale.compiler.internal.definitions.metadata.MetaTagAttribute;
+import org.apache.royale.compiler.internal.definitions.references.BuiltinReference;
+import org.apache.royale.compiler.internal.definitions.references.LexicalReference;
+import org.apache.royale.compiler.internal.definitions.references.NotATypeReference;
+import org.apache.royale.compiler.internal.definitions.references.ParameterizedReference;
+import org.apache.royale.compiler.internal.definitions.references.ResolvedQualifiersReference;
+import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.utils.StringEncoder;
+
+/**
+ * A directory of binary images of the file scopes of ActionScript source
+ * files, so that the definitions of a file that was parsed by an earlier
+ * compiler process can be used without parsing the file again.
+ * <p>
+ * Each image is keyed by the path of the file, and it is only used while the
+ * contents of the file, the version of the compiler and the configuration
+ * variables of the project are the ones the image was built with. A file is
+ * still parsed when its syntax tree is needed, for example to generate code,
+ * and the syntax tree is then reconnected to the definitions read from the
+ * image.
+ * <p>
+ * Only the file scopes that are populated directly from the syntax tree are
+ * stored. A file whose scope has anything else in it, such as a namespace
+ * declaration, an initializer that is not a literal, an import alias, an
+ * included file or a bindable variable, is parsed as usual by every compiler
+ * process.
+ */
+public class ASFileScopeCache
+{
+    private static final int MAGIC = 0x41534653; // "ASFS"
+    private static final int FORMAT_VERSION = 1;
+    private static final String IMAGE_EXTENSION = ".asfs";
+
+    private static final byte KIND_PACKAGE = 1;
+    private static final byte KIND_CLASS = 2;
+    private static final byte KIND_INTERFACE = 3;
+    private static final byte KIND_FUNCTION = 4;
+    private static final byte KIND_GETTER = 5;
+    private static final byte KIND_SETTER = 6;
+    private static final byte KIND_VARIABLE = 7;
+    private static final byte KIND_CONSTANT = 8;
+    private static final byte KIND_PARAMETER = 9;
+
+    private static final byte NAMESPACE_NONE = 0;
+    private static final byte NAMESPACE_PUBLIC = 1;
+    private static final byte NAMESPACE_CM_IMPLICIT = 2;
+    private static final byte NAMESPACE_ANY = 3;
+    private static final byte NAMESPACE_AS3 = 4;
+    private static final byte NAMESPACE_PACKAGE_PUBLIC = 5;
+    private static final byte NAMESPACE_PACKAGE_INTERNAL = 6;
+    private static final byte NAMESPACE_FILE_PRIVATE = 7;
+    private static final byte NAMESPACE_INTERFACE = 8;
+    private static final byte NAMESPACE_CLASS_PRIVATE = 9;
+    private static final byte NAMESPACE_CLASS_PROTECTED = 10;
+    private static final byte NAMESPACE_CLASS_STATIC_PROTECTED = 11;
+    private static final byte NAMESPACE_USER_DEFINED = 12;
+
+    private static final byte REFERENCE_NONE = 0;
+    private static final byte REFERENCE_BUILTIN = 1;
+    private static final byte REFERENCE_LEXICAL = 2;
+    private static final byte REFERENCE_NOT_A_TYPE = 3;
+    private static final byte REFERENCE_PARAMETERIZED = 4;
+    private static final byte REFERENCE_PACKAGE_QUALIFIED = 5;
+
+    private static final byte VALUE_NONE = 0;
+    private static final byte VALUE_BOOLEAN = 1;
+    private static final byte VALUE_DOUBLE = 2;
+    private static final byte VALUE_STRING = 3;
+    private static final byte VALUE_INTEGER = 4;
+    private static final byte VALUE_LONG = 5;
+    private static final byte VALUE_NULL = 6;
+
+    /**
+     * Thrown while a file scope is written if it has anything in it that the
+     * image format can't represent.
+     */
+    private static class NotCacheableException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory the images are stored in. It is created
+     * when the first image is stored.
+     */
+    public ASFileScopeCache(File directory)
+    {
+        assert directory != null;
+        this.directory = directory;
+    }
+
+    private final File directory;
+
+    /**
+     * @return The directory the images are stored in.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Compute the key that an image of the file scope of a file is stored
+     * and looked up with. The key covers the contents of the file, the
+     * compiler and the configuration variables of the project, which are all
+     * the inputs of the scope building step.
+     *
+     * @param project The project the file is compiled in.
+     * @param fileSpec The file.
+     * @return The key, or null if the file can't be read.
+     */
+    public String computeKey(CompilerProject project, IFileSpecification fileSpec)
+    {
+        final String contents = readContents(fileSpec);
+        if (contents == null)
+            return null;
+        return computeKey(project, fileSpec.getPath(), contents);
+    }
+
+    /**
+     * Compute the key of a file whose contents were already read, for
+     * example by a compilation unit that parses the same contents.
+     *
+     * @param project The project the file is compiled in.
+     * @param path The path of the file.
+     * @param contents The contents of the file.
+     * @return The key.
+     * @see #computeKey(CompilerProject, IFileSpecification)
+     */
+    public String computeKey(CompilerProject project, String path, String contents)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(FORMAT_VERSION).append('\n');
+        sb.append(getCompilerStamp()).append('\n');
+        sb.append(project.getClass().getName()).append('\n');
+        sb.append(project.isAssetEmbeddingSupported()).append('\n');
+        // the parser checks these
+        sb.append(project.getAllowImportAliases()).append('\n');
+        sb.append(project.getAllowAbstractClasses()).append('\n');
+        sb.append(project.getAllowPrivateConstructors()).append('\n');
+        // sort the variables, so that the key doesn't depend on the order
+        // of the options they were set by
+        final Map<String, String> configVariables = new TreeMap<String, String>(project.getConfigVariables());
+        for (final Map.Entry<String, String> entry : configVariables.entrySet())
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        sb.append(path).append('\n');
+        sb.append(contents);
+        return StringEncoder.stringToMD5String(sb.toString());
+    }
+
+    /**
+     * Read the contents of a file the way the parser reads them.
+     *
+     * @param fileSpec The file.
+     * @return The contents, or null if the file can't be read.
+     */
+    public static String readContents(IFileSpecification fileSpec)
+    {
+        try
+        {
+            final Reader reader = fileSpec.createReader();
+            try
+            {
+                return IOUtils.toString(reader);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private static String compilerStamp;
+
+    /**
+     * @return A string that changes whenever the compiler is rebuilt, so that
+     * images written by a different build of the compiler are never used.
+     */
+    private static synchronized String getCompilerStamp()
+    {
+        if (compilerStamp == null)
+        {
+            final StringBuilder sb = new StringBuilder(VersionInfo.buildMessage());
+            try
+            {
+                final CodeSource codeSource = ASFileScopeCache.class.getProtectionDomain().getCodeSource();
+                final URL location = codeSource != null ? codeSource.getLocation() : null;
+                if (location != null)
+                {
+                    final File jarFile = new File(location.toURI());
+                    sb.append(';').append(jarFile.length());
+                    sb.append(';').append(jarFile.lastModified());
+                }
+            }
+            catch (Exception e)
+            {
+                // the build message is all we have then
+            }
+            compilerStamp = sb.toString();
+        }
+        return compilerStamp;
+    }
+
+    /**
+     * Load the file scope of a file from its image.
+     *
+     * @param fileSpec The file.
+     * @param workspace The workspace of the project the file is compiled in.
+     * @param key The key returned by
+     * {@link #computeKey(CompilerProject, IFileSpecification)} for the file.
+     * @return The file scope, or null if there is no image of the file scope
+     * with the specified key.
+     */
+    public ASFileScope load(IFileSpecification fileSpec, Workspace workspace, String key)
+    {
+        final String path = fileSpec.getPath();
+        final File imageFile = getImageFile(path);
+        if (!imageFile.isFile())
+            return null;
+
+        try
+        {
+            final ByteBuffer buffer = map(imageFile);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+                return null;
+            if (!path.equals(readString(buffer)) || !key.equals(readString(buffer)))
+                return null;
+
+            final ASFileScope fileScope = new ASFileScope(workspace, fileSpec, buffer.getInt());
+            new ScopeReader(buffer, fileSpec, workspace).readScopeContents(fileScope);
+            return fileScope;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (BufferUnderflowException e)
+        {
+            // a truncated image is rewritten by the next parse
+            return null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            // an image that doesn't match this format is rewritten by the next parse
+            return null;
+        }
+    }
+
+    /**
+     * Store the image of the file scope of a file that was just populated
+     * from the syntax tree of the file. Nothing is stored if the file scope
+     * can't be represented in an image.
+     *
+     * @param fileScope The file scope.
+     * @param fileSpec The file.
+     * @param workspace The workspace of the project the file is compiled in.
+     * @param key The key returned by
+     * {@link #computeKey(CompilerProject, IFileSpecification)} for the file.
+     */
+    public void store(ASFileScope fileScope, IFileSpecification fileSpec, Workspace workspace, String key)
+    {
+        if (fileScope.getOffsetLookup() != null)
+            return;
+
+        final String path = fileSpec.getPath();
+        File tempFile = null;
+        try
+        {
+            final File imageFile = getImageFile(path);
+            if (!directory.isDirectory() && !directory.mkdirs())
+                return;
+
+            // Write to a temporary file first, so that another compiler
+            // process never maps a partially written image.
+            tempFile = File.createTempFile(imageFile.getName(), ".tmp", directory);
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            boolean cacheable = false;
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, path);
+                writeString(out, key);
+                out.writeInt(getScopeStart(fileScope));
+                new ScopeWriter(out, path, workspace).writeScopeContents(fileScope);
+                cacheable = true;
+            }
+            catch (NotCacheableException e)
+            {
+                // the file is parsed by every compiler process then
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if (!cacheable)
+                return;
+
+            if (imageFile.exists())
+                imageFile.delete();
+            if (tempFile.renameTo(imageFile))
+                tempFile = null;
+        }
+        catch (IOException e)
+        {
+            // the image is only an optimization
+        }
+        finally
+        {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    private File getImageFile(String path)
+    {
+        return new File(directory, StringEncoder.stringToMD5String(path) + IMAGE_EXTENSION);
+    }
+
+    private static ByteBuffer map(File file) throws IOException
+    {
+        final FileInputStream in = new FileInputStream(file);
+        try
+        {
+            final FileChannel channel = in.getChannel();
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static int getScopeStart(ASScope scope) throws NotCacheableException
+    {
+        final int start = scope.getScopeNodeAbsoluteStart();
+        if (start == ISourceLocation.UNKNOWN)
+            throw new NotCacheableException();
+        return start;
+    }
+
+    /**
+     * @return The number of imports at the start of the imports of a scope
+     * that its constructor adds, and that are therefore not written.
+     */
+    private static int getImplicitImportCount(ASScope scope)
+    {
+        if (scope instanceof ASFileScope ||
+            (scope instanceof PackageScope && scope.getContainingScope() instanceof ASFileScope))
+        {
+            return ASFileScope.getImplicitImportsForAS().size();
+        }
+        return 0;
+    }
+
+    private static PackageScope getContainingPackageScope(ASScope scope)
+    {
+        for (ASScope s = scope; s != null; s = s.getContainingScope())
+        {
+            if (s instanceof PackageScope)
+                return (PackageScope)s;
+        }
+        return null;
+    }
+
+    private static ASFileScope getContainingFileScope(ASScope scope)
+    {
+        for (ASScope s = scope; s != null; s = s.getContainingScope())
+        {
+            if (s instanceof ASFileScope)
+                return (ASFileScope)s;
+        }
+        return null;
+    }
+
+    private static ClassDefinition getContainingClassDefinition(ASScope scope)
+    {
+        for (ASScope s = scope; s != null; s = s.getContainingScope())
+        {
+            if (s.getDefinition() instanceof ClassDefinition)
+                return (ClassDefinition)s.getDefinition();
+        }
+        return null;
+    }
+
+    private static InterfaceDefinition getContainingInterfaceDefinition(ASScope scope)
+    {
+        for (ASScope s = scope; s != null; s = s.getContainingScope())
+        {
+            if (s.getDefinition() instanceof InterfaceDefinition)
+                return (InterfaceDefinition)s.getDefinition();
+        }
+        return null;
+    }
+
+    /**
+     * Writes the image of a file scope.
+     */
+    private static class ScopeWriter
+    {
+        ScopeWriter(DataOutputStream out, String path, Workspace workspace)
+        {
+            this.out = out;
+            this.path = path;
+            this.workspace = workspace;
+        }
+
+        private final DataOutputStream out;
+        private final String path;
+        private final Workspace workspace;
+
+        void writeScopeContents(ASScope scope) throws IOException, NotCacheableException
+        {
+            if (scope.hasImportAliases())
+                throw new NotCacheableException();
+
+            final String[] imports = scope.getImports();
+            final int implicitImportCount = getImplicitImportCount(scope);
+            if (imports.length < implicitImportCount)
+                throw new NotCacheableException();
+            out.writeInt(imports.length - implicitImportCount);
+            for (int i = implicitImportCount; i < imports.length; i++)
+                writeString(out, imports[i]);
+
+            final List<String> usedNamespaces = new ArrayList<String>();
+            for (NamespaceDefinition.INamespaceDirective directive = scope.getFirstNamespaceDirective();
+                 directive != null; directive = directive.getNext())
+            {
+                final String name = NamespaceDefinition.getUnqualifiedUserDefinedNamespaceName(directive);
+                if (name == null)
+                    throw new NotCacheableException();
+                usedNamespaces.add(name);
+            }
+            out.writeInt(usedNamespaces.size());
+            for (final String name : usedNamespaces)
+                writeString(out, name);
+
+            final boolean isClassScope = scope.getDefinition() instanceof ClassDefinition;
+            final boolean isInterfaceScope = scope.getDefinition() instanceof InterfaceDefinition;
+            final List<DefinitionBase> definitions = new ArrayList<DefinitionBase>();
+            for (final IDefinition definition : scope.getAllLocalDefinitions())
+            {
+                // The implicit definitions that ClassNode and InterfaceNode
+                // add are added again when the image is read.
+                if (definition.isContingent())
+                    continue;
+                if (isClassScope && definition.isImplicit() && definition.getClass() == VariableDefinition.class)
+                    continue;
+                if (isInterfaceScope && definition instanceof FunctionDefinition &&
+                    ((FunctionDefinition)definition).isCastFunction())
+                    continue;
+                definitions.add((DefinitionBase)definition);
+            }
+            out.writeInt(definitions.size());
+            for (final DefinitionBase definition : definitions)
+                writeDefinition(definition, scope);
+        }
+
+        private void writeDefinition(DefinitionBase definition, ASScope scope) throws IOException, NotCacheableException
+        {
+            final byte kind = getKind(definition);
+            out.writeByte(kind);
+            writeString(out, definition.getBaseName());
+            writeNamespace(definition.getNamespaceReference(), scope);
+            out.writeShort(definition.getFlags());
+            out.writeBoolean(definition.isAbstract());
+            // The implicit constructor has the location of a node that is
+            // not in the syntax tree of the file.
+            out.writeInt(definition.isImplicit() ? ISourceLocation.UNKNOWN : definition.getAbsoluteStart());
+            out.writeInt(definition.getNameStart());
+            out.writeInt(definition.getNameEnd());
+            writeReference(definition.getTypeReference());
+            if (kind == KIND_VARIABLE || kind == KIND_CONSTANT || kind == KIND_PARAMETER)
+            {
+                final VariableDefinition variableDefinition = (VariableDefinition)definition;
+                if (variableDefinition.getInitializer() != null)
+                    throw new NotCacheableException();
+                writeValue(variableDefinition.getKnownInitialValue());
+            }
+            writeMetaTags(definition);
+
+            switch (kind)
+            {
+                case KIND_PACKAGE:
+                {
+                    final ASScope packageScope = ((PackageDefinition)definition).getContainedScope();
+                    out.writeInt(getScopeStart(packageScope));
+                    writeScopeContents(packageScope);
+                    break;
+                }
+                case KIND_CLASS:
+                {
+                    final ClassDefinition classDefinition = (ClassDefinition)definition;
+                    final Collection<String> stateNames = classDefinition.getStateNames();
+                    out.writeInt(stateNames.size());
+                    for (final String stateName : stateNames)
+                        writeString(out, stateName);
+                    writeReference(classDefinition.getBaseClassReference());
+                    writeReferences(classDefinition.getImplementedInterfaceReferences());
+                    final ASScope typeScope = classDefinition.getContainedScope();
+                    out.writeInt(getScopeStart(typeScope));
+                    writeScopeContents(typeScope);
+                    break;
+                }
+                case KIND_INTERFACE:
+                {
+                    final InterfaceDefinition interfaceDefinition = (InterfaceDefinition)definition;
+                    writeReferences(interfaceDefinition.getExtendedInterfaceReferences());
+                    final ASScope typeScope = interfaceDefinition.getContainedScope();
+                    out.writeInt(getScopeStart(typeScope));
+                    writeScopeContents(typeScope);
+                    break;
+                }
+                case KIND_FUNCTION:
+                case KIND_GETTER:
+                case KIND_SETTER:
+                {
+                    writeFunction((FunctionDefinition)definition, scope);
+                    break;
+                }
+            }
+        }
+
+        private void writeFunction(FunctionDefinition definition, ASScope scope) throws IOException, NotCacheableException
+        {
+            writeReference(definition.getReturnTypeReference());
+
+            final ParameterDefinition[] parameters = definition.getParameters();
+            final ASScope functionScope = definition.getContainedScope();
+            // The parameters are in the function scope, or in the containing
+            // scope if the function has none.
+            final ASScope parameterScope = functionScope != null ? functionScope : scope;
+            out.writeInt(parameters.length);
+            for (final ParameterDefinition parameter : parameters)
+            {
+                if (parameter == null || getKind(parameter) != KIND_PARAMETER)
+                    throw new NotCacheableException();
+                writeDefinition(parameter, parameterScope);
+            }
+
+            out.writeBoolean(functionScope != null);
+            if (functionScope != null)
+            {
+                // The function body is not parsed before the file scope is
+                // stored, so the function scope has nothing but the parameters.
+                if (functionScope.getClass() != FunctionScope.class ||
+                    functionScope.getImports().length != 0 ||
+                    functionScope.getFirstNamespaceDirective() != null ||
+                    functionScope.getAllLocalDefinitions().size() != parameters.length)
+                {
+                    throw new NotCacheableException();
+                }
+                out.writeInt(getScopeStart(functionScope));
+            }
+        }
+
+        private byte getKind(DefinitionBase definition) throws NotCacheableException
+        {
+            final Class<?> definitionClass = definition.getClass();
+            if (definitionClass == PackageDefinition.class)
+                return KIND_PACKAGE;
+            if (definitionClass == ClassDefinition.class)
+                return KIND_CLASS;
+            if (definitionClass == InterfaceDefinition.class)
+                return KIND_INTERFACE;
+            if (definitionClass == FunctionDefinition.class)
+                return KIND_FUNCTION;
+            if (definitionClass == GetterDefinition.class)
+                return KIND_GETTER;
+            if (definitionClass == SetterDefinition.class)
+                return KIND_SETTER;
+            if (definitionClass == VariableDefinition.class)
+                return KIND_VARIABLE;
+            if (definitionClass == ConstantDefinition.class)
+                return KIND_CONSTANT;
+            if (definitionClass == ParameterDefinition.class)
+                return KIND_PARAMETER;
+            throw new NotCacheableException();
+        }
+
+        private void writeNamespace(INamespaceReference namespace, ASScope scope) throws IOException, NotCacheableException
+        {
+            if (namespace == null)
+            {
+                out.writeByte(NAMESPACE_NONE);
+                return;
+            }
+            if (namespace == NamespaceDefinition.getPublicNamespaceDefinition())
+            {
+                out.writeByte(NAMESPACE_PUBLIC);
+                return;
+            }
+            if (namespace == NamespaceDefinition.getCodeModelImplicitDefinitionNamespace())
+            {
+                out.writeByte(NAMESPACE_CM_IMPLICIT);
+                return;
+            }
+            if (namespace == NamespaceDefinition.getAnyNamespaceReference())
+            {
+                out.writeByte(NAMESPACE_ANY);
+                return;
+            }
+            if (namespace == NamespaceDefinition.getAS3NamespaceReference())
+            {
+                out.writeByte(NAMESPACE_AS3);
+                return;
+            }
+
+            final PackageScope packageScope = getContainingPackageScope(scope);
+            if (packageScope != null && namespace == packageScope.getPublicNamespace())
+            {
+                out.writeByte(NAMESPACE_PACKAGE_PUBLIC);
+                return;
+            }
+            if (packageScope != null && namespace == packageScope.getInternalNamespace())
+            {
+                out.writeByte(NAMESPACE_PACKAGE_INTERNAL);
+                return;
+            }
+
+            final ASFileScope fileScope = getContainingFileScope(scope);
+            if (fileScope != null && namespace == fileScope.getFilePrivateNamespaceReference())
+            {
+                out.writeByte(NAMESPACE_FILE_PRIVATE);
+                return;
+            }
+
+            final InterfaceDefinition interfaceDefinition = getContainingInterfaceDefinition(scope);
+            if (interfaceDefinition != null && namespace == interfaceDefinition.getInterfaceNamespaceReference())
+            {
+                out.writeByte(NAMESPACE_INTERFACE);
+                return;
+            }
+
+            final ClassDefinition classDefinition = getContainingClassDefinition(scope);
+            if (classDefinition != null)
+            {
+                if (namespace == classDefinition.getPrivateNamespaceReference())
+                {
+                    out.writeByte(NAMESPACE_CLASS_PRIVATE);
+                    return;
+                }
+                if (namespace == classDefinition.getProtectedNamespaceReference())
+                {
+                    out.writeByte(NAMESPACE_CLASS_PROTECTED);
+                    return;
+                }
+                if (namespace == classDefinition.getStaticProtectedNamespaceReference())
+                {
+                    out.writeByte(NAMESPACE_CLASS_STATIC_PROTECTED);
+                    return;
+                }
+            }
+
+            final String name = NamespaceDefinition.getUnqualifiedUserDefinedNamespaceName(namespace);
+            if (name == null)
+                throw new NotCacheableException();
+            out.writeByte(NAMESPACE_USER_DEFINED);
+            writeString(out, name);
+        }
+
+        private void writeReferences(IReference[] references) throws IOException, NotCacheableException
+        {
+            if (references == null)
+            {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(references.length);
+            for (final IReference reference : references)
+                writeReference(reference);
+        }
+
+        private void writeReference(IReference reference) throws IOException, NotCacheableException
+        {
+            if (reference == null)
+            {
+                out.writeByte(REFERENCE_NONE);
+                return;
+            }
+
+            final Class<?> referenceClass = reference.getClass();
+            if (referenceClass == BuiltinReference.class)
+            {
+                out.writeByte(REFERENCE_BUILTIN);
+                writeString(out, ((BuiltinReference)reference).getBuiltinType().name());
+            }
+            else if (referenceClass == LexicalReference.class)
+            {
+                out.writeByte(REFERENCE_LEXICAL);
+                writeString(out, ((LexicalReference)reference).getName());
+            }
+            else if (referenceClass == NotATypeReference.class)
+            {
+                out.writeByte(REFERENCE_NOT_A_TYPE);
+                writeString(out, ((NotATypeReference)reference).getName());
+            }
+            else if (referenceClass == ParameterizedReference.class)
+            {
+                out.writeByte(REFERENCE_PARAMETERIZED);
+                writeReference(((ParameterizedReference)reference).getBaseReference());
+                writeReference(((ParameterizedReference)reference).getParameterReference());
+            }
+            else if (referenceClass == ResolvedQualifiersReference.class)
+            {
+                // Only the package qualified references that a dotted name
+                // in the source is resolved to can be written.
+                final ResolvedQualifiersReference qualifiedReference = (ResolvedQualifiersReference)reference;
+                final Collection<INamespaceDefinition> qualifiers = qualifiedReference.getQualifiers();
+                if (qualifiers.size() != 1 && qualifiers.size() != 2)
+                    throw new NotCacheableException();
+                final INamespaceDefinition qualifier = qualifiers.iterator().next();
+                if (!(qualifier instanceof IPublicNamespaceDefinition))
+                    throw new NotCacheableException();
+                final String packageName = qualifier.getURI();
+                final boolean includeInternal = qualifiers.size() == 2;
+                final ResolvedQualifiersReference packageQualifiedReference = (ResolvedQualifiersReference)
+                        ReferenceFactory.packageQualifiedReference(workspace, packageName, qualifiedReference.getName(), includeInternal);
+                if (!packageQualifiedReference.getQualifiers().equals(qualifiers))
+                    throw new NotCacheableException();
+                out.writeByte(REFERENCE_PACKAGE_QUALIFIED);
+                writeString(out, packageName);
+                writeString(out, qualifiedReference.getName());
+                out.writeBoolean(includeInternal);
+            }
+            else
+            {
+                throw new NotCacheableException();
+            }
+        }
+
+        private void writeMetaTags(DefinitionBase definition) throws IOException, NotCacheableException
+        {
+            final List<IMetaTag> metaTags = new ArrayList<IMetaTag>();
+            for (final IMetaTag metaTag : definition.getAllMetaTags())
+            {
+                if (metaTag.getClass() != MetaTag.class)
+                    throw new NotCacheableException();
+                if (metaTag.getSourcePath() == null)
+                {
+                    // ClassDefinition adds this tag again when the
+                    // constructor of a class is read.
+                    if (definition instanceof ClassDefinition &&
+                        IMetaAttributeConstants.ATTRIBUTE_PRIVATE_CONSTRUCTOR.equals(metaTag.getTagName()))
+                    {
+                        continue;
+                    }
+                }
+                else if (!metaTag.getSourcePath().equals(path))
+                {
+                    throw new NotCacheableException();
+                }
+                metaTags.add(metaTag);
+            }
+
+            out.writeInt(metaTags.size());
+            for (final IMetaTag metaTag : metaTags)
+            {
+                writeString(out, metaTag.getTagName());
+                final IMetaTagAttribute[] attributes = metaTag.getAllAttributes();
+                out.writeInt(attributes.length);
+                for (final IMetaTagAttribute attribute : attributes)
+                {
+                    writeString(out, attribute.getKey());
+                    writeString(out, attribute.getValue());
+                }
+                out.writeBoolean(metaTag.getSourcePath() != null);
+                if (metaTag.getSourcePath() != null)
+                {
+                    out.writeInt(metaTag.getAbsoluteStart());
+                    out.writeInt(metaTag.getAbsoluteEnd());
+                    out.writeInt(metaTag.getLine());
+                    out.writeInt(metaTag.getColumn());
+                }
+            }
+        }
+
+        private void writeValue(Object value) throws IOException, NotCacheableException
+        {
+            if (value == null)
+            {
+                out.writeByte(VALUE_NONE);
+            }
+            else if (value == ABCConstants.NULL_VALUE)
+            {
+                out.writeByte(VALUE_NULL);
+            }
+            else if (value.getClass() == Boolean.class)
+            {
+                out.writeByte(VALUE_BOOLEAN);
+                out.writeBoolean((Boolean)value);
+            }
+            else if (value.getClass() == Double.class)
+            {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeDouble((Double)value);
+            }
+            else if (value.getClass() == String.class)
+            {
+                out.writeByte(VALUE_STRING);
+                writeString(out, (String)value);
+            }
+            else if (value.getClass() == Integer.class)
+            {
+                out.writeByte(VALUE_INTEGER);
+                out.writeInt((Integer)value);
+            }
+            else if (value.getClass() == Long.class)
+            {
+                out.writeByte(VALUE_LONG);
+                out.writeLong((Long)value);
+            }
+            else
+            {
+                throw new NotCacheableException();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a file scope from its image, in the same order as the
+     * {@code POPULATE_SCOPE} step of the syntax tree builds it.
+     */
+    private static class ScopeReader
+    {
+        ScopeReader(ByteBuffer in, IFileSpecification fileSpec, Workspace workspace)
+        {
+            this.in = in;
+            this.fileSpec = fileSpec;
+            this.workspace = workspace;
+        }
+
+        private final ByteBuffer in;
+        private final IFileSpecification fileSpec;
+        private final Workspace workspace;
+
+        void readScopeContents(ASScope scope) throws IOException
+        {
+            for (int count = in.getInt(); count > 0; count--)
+                scope.addImport(readString(in));
+
+            for (int count = in.getInt(); count > 0; count--)
+                NamespaceDefinition.addUseNamespaceDirectiveToScope(scope, readString(in));
+
+            for (int count = in.getInt(); count > 0; count--)
+                readDefinition(scope);
+
+            if (scope.getDefinition() instanceof ClassDefinition)
+            {
+                final ClassDefinition classDefinition = (ClassDefinition)scope.getDefinition();
+                for (final IDefinition definition : scope.getAllLocalDefinitions())
+                {
+                    if (definition instanceof FunctionDefinition && ((FunctionDefinition)definition).isConstructor())
+                        ((FunctionDefinition)definition).setAsConstructor(classDefinition);
+                }
+            }
+        }
+
+        private DefinitionBase readDefinition(ASScope scope) throws IOException
+        {
+            final byte kind = in.get();
+            final String name = readString(in);
+            final INamespaceReference namespace = readNamespace(scope);
+            final short flags = in.getShort();
+            final boolean isAbstract = in.get() != 0;
+            final int absoluteStart = in.getInt();
+            final int absoluteNameStart = in.getInt();
+            final int absoluteNameEnd = in.getInt();
+            final IReference typeReference = readReference();
+            final Object value = kind == KIND_VARIABLE || kind == KIND_CONSTANT || kind == KIND_PARAMETER ?
+                    readValue() : null;
+
+            final DefinitionBase definition;
+            switch (kind)
+            {
+                case KIND_PACKAGE:
+                    definition = new PackageDefinition(name);
+                    break;
+                case KIND_CLASS:
+                    definition = new ClassDefinition(name, namespace);
+                    break;
+                case KIND_INTERFACE:
+                    definition = new InterfaceDefinition(name);
+                    break;
+                case KIND_FUNCTION:
+                    definition = new FunctionDefinition(name);
+                    break;
+                case KIND_GETTER:
+                    definition = new GetterDefinition(name);
+                    break;
+                case KIND_SETTER:
+                    definition = new SetterDefinition(name);
+                    break;
+                case KIND_VARIABLE:
+                    definition = new VariableDefinition(name, value);
+                    break;
+                case KIND_CONSTANT:
+                    definition = new ConstantDefinition(name, value);
+                    break;
+                case KIND_PARAMETER:
+                    definition = new ParameterDefinition(name);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown definition kind " + kind);
+            }
+
+            if (kind != KIND_CLASS)
+                definition.setNamespaceReference(namespace);
+            if (absoluteStart != ISourceLocation.UNKNOWN)
+                definition.setLocation(fileSpec, absoluteStart, absoluteNameStart, absoluteNameEnd);
+            else
+                definition.setNameLocation(absoluteNameStart, absoluteNameEnd);
+            definition.setTypeReference(typeReference);
+            readMetaTags(definition);
+            // Restore the flags last, because setMetaTags() sets some of them.
+            definition.restoreFlags(flags, isAbstract);
+
+            switch (kind)
+            {
+                case KIND_PACKAGE:
+                {
+                    final PackageDefinition packageDefinition = (PackageDefinition)definition;
+                    scope.addDefinition(packageDefinition);
+                    final PackageScope packageScope = new PackageScope(scope, packageDefinition.getQualifiedName());
+                    packageScope.setScopeNodeLocation(fileSpec, in.getInt());
+                    packageDefinition.setContainedScope(packageScope);
+                    readScopeContents(packageScope);
+                    break;
+                }
+                case KIND_CLASS:
+                {
+                    final ClassDefinition classDefinition = (ClassDefinition)definition;
+                    for (int count = in.getInt(); count > 0; count--)
+                        classDefinition.addStateName(readString(in));
+                    classDefinition.setBaseClassReference(readReference());
+                    final IReference[] interfaces = readReferences();
+                    if (interfaces != null)
+                        classDefinition.setImplementedInterfaceReferences(interfaces);
+                    scope.addDefinition(classDefinition);
+                    final TypeScope typeScope = new TypeScope(scope, classDefinition);
+                    typeScope.setScopeNodeLocation(fileSpec, in.getInt());
+                    classDefinition.setContainedScope(typeScope);
+                    classDefinition.setupThisAndSuper();
+                    classDefinition.buildContingentDefinitions();
+                    readScopeContents(typeScope);
+                    break;
+                }
+                case KIND_INTERFACE:
+                {
+                    final InterfaceDefinition interfaceDefinition = (InterfaceDefinition)definition;
+                    final IReference[] extendedInterfaces = readReferences();
+                    if (extendedInterfaces != null)
+                        interfaceDefinition.setExtendedInterfaceReferences(extendedInterfaces);
+                    scope.addDefinition(interfaceDefinition);
+                    final TypeScope typeScope = new TypeScope(scope, interfaceDefinition);
+                    typeScope.setScopeNodeLocation(fileSpec, in.getInt());
+                    interfaceDefinition.setContainedScope(typeScope);
+                    addCastFunction(interfaceDefinition, typeScope);
+                    readScopeContents(typeScope);
+                    break;
+                }
+                case KIND_FUNCTION:
+                case KIND_GETTER:
+                case KIND_SETTER:
+                {
+                    readFunction((FunctionDefinition)definition, scope);
+                    break;
+                }
+                case KIND_VARIABLE:
+                case KIND_CONSTANT:
+                {
+                    scope.addDefinition(definition);
+                    break;
+                }
+                case KIND_PARAMETER:
+                {
+                    if (value != null)
+                        ((ParameterDefinition)definition).setDefaultValue(value);
+                    // added to its scope by readFunction()
+                    break;
+                }
+            }
+            return definition;
+        }
+
+        private void readFunction(FunctionDefinition definition, ASScope scope) throws IOException
+        {
+            definition.setReturnTypeReference(readReference());
+
+            final ParameterDefinition[] parameters = new ParameterDefinition[in.getInt()];
+            for (int i = 0; i < parameters.length; i++)
+            {
+                final DefinitionBase parameter = readDefinition(scope);
+                if (!(parameter instanceof ParameterDefinition))
+                    throw new IllegalArgumentException("Expected a parameter of " + definition.getBaseName());
+                parameters[i] = (ParameterDefinition)parameter;
+            }
+
+            scope.addDefinition(definition);
+
+            ASScope parameterScope = scope;
+            if (in.get() != 0)
+            {
+                final FunctionScope functionScope = new FunctionScope(scope);
+                functionScope.setScopeNodeLocation(fileSpec, in.getInt());
+                definition.setContainedScope(functionScope);
+                parameterScope = functionScope;
+            }
+            for (final ParameterDefinition parameter : parameters)
+                parameterScope.addDefinition(parameter);
+            definition.setParameters(parameters);
+        }
+
+        /**
+         * Adds the implicit function that InterfaceNode adds to the scope of
+         * an interface to resolve casting expressions such as IFoo(foo).
+         */
+        private static void addCastFunction(InterfaceDefinition definition, TypeScope scope)
+        {
+            final FunctionDefinition castFunction = new FunctionDefinition(definition.getBaseName());
+            castFunction.setNamespaceReference(NamespaceDefinition.getCodeModelImplicitDefinitionNamespace());
+            castFunction.setReturnTypeReference(ReferenceFactory.resolvedReference(definition));
+            castFunction.setCastFunction();
+            castFunction.setImplicit();
+            scope.addDefinition(castFunction);
+        }
+
+        private INamespaceReference readNamespace(ASScope scope) throws IOException
+        {
+            final byte kind = in.get();
+            switch (kind)
+            {
+                case NAMESPACE_NONE:
+                    return null;
+                case NAMESPACE_PUBLIC:
+                    return NamespaceDefinition.getPublicNamespaceDefinition();
+                case NAMESPACE_CM_IMPLICIT:
+                    return NamespaceDefinition.getCodeModelImplicitDefinitionNamespace();
+                case NAMESPACE_ANY:
+                    return NamespaceDefinition.getAnyNamespaceReference();
+                case NAMESPACE_AS3:
+                    return NamespaceDefinition.getAS3NamespaceReference();
+                case NAMESPACE_PACKAGE_PUBLIC:
+                    return getPackageScope(scope).getPublicNamespace();
+                case NAMESPACE_PACKAGE_INTERNAL:
+                    return getPackageScope(scope).getInternalNamespace();
+                case NAMESPACE_FILE_PRIVATE:
+                    return getContainingFileScope(scope).getFilePrivateNamespaceReference();
+                case NAMESPACE_INTERFACE:
+                    return getInterfaceDefinition(scope).getInterfaceNamespaceReference();
+                case NAMESPACE_CLASS_PRIVATE:
+                    return getClassDefinition(scope).getPrivateNamespaceReference();
+                case NAMESPACE_CLASS_PROTECTED:
+                    return getClassDefinition(scope).getProtectedNamespaceReference();
+                case NAMESPACE_CLASS_STATIC_PROTECTED:
+                    return getClassDefinition(scope).getStaticProtectedNamespaceReference();
+                case NAMESPACE_USER_DEFINED:
+                    return NamespaceDefinition.createNamespaceReference(scope, readString(in), null);
+                default:
+                    throw new IllegalArgumentException("Unknown namespace kind " + kind);
+            }
+        }
+
+        private static PackageScope getPackageScope(ASScope scope)
+        {
+            final PackageScope packageScope = getContainingPackageScope(scope);
+            if (packageScope == null)
+                throw new IllegalArgumentException("No package scope");
+            return packageScope;
+        }
+
+        private static ClassDefinition getClassDefinition(ASScope scope)
+        {
+            final ClassDefinition classDefinition = getContainingClassDefinition(scope);
+            if (classDefinition == null)
+                throw new IllegalArgumentException("No class scope");
+            return classDefinition;
+        }
+
+        private static InterfaceDefinition getInterfaceDefinition(ASScope scope)
+        {
+            final InterfaceDefinition interfaceDefinition = getContainingInterfaceDefinition(scope);
+            if (interfaceDefinition == null)
+                throw new IllegalArgumentException("No interface scope");
+            return interfaceDefinition;
+        }
+
+        private IReference[] readReferences() throws IOException
+        {
+            final int count = in.getInt();
+            if (count < 0)
+                return null;
+            final IReference[] references = new IReference[count];
+            for (int i = 0; i < count; i++)
+                references[i] = readReference();
+            return references;
+        }
+
+        private IReference readReference() throws IOException
+        {
+            final byte kind = in.get();
+            switch (kind)
+            {
+                case REFERENCE_NONE:
+                    return null;
+                case REFERENCE_BUILTIN:
+                    return ReferenceFactory.builtinReference(IASLanguageConstants.BuiltinType.valueOf(readString(in)));
+                case REFERENCE_LEXICAL:
+                    return ReferenceFactory.lexicalReference(workspace, readString(in));
+                case REFERENCE_NOT_A_TYPE:
+                    return ReferenceFactory.notATypeReference(workspace, readString(in));
+                case REFERENCE_PARAMETERIZED:
+                {
+                    final IReference base = readReference();
+                    final IReference parameter = readReference();
+                    return ReferenceFactory.parameterizedReference(workspace, base, parameter);
+                }
+                case REFERENCE_PACKAGE_QUALIFIED:
+                {
+                    final String packageName = readString(in);
+                    final String baseName = readString(in);
+                    final boolean includeInternal = in.get() != 0;
+                    return ReferenceFactory.packageQualifiedReference(workspace, packageName, baseName, includeInternal);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown reference kind " + kind);
+            }
+        }
+
+        private void readMetaTags(DefinitionBase definition) throws IOException
+        {
+            final int count = in.getInt();
+            if (count == 0)
+                return;
+
+            final IMetaTag[] metaTags = new IMetaTag[count];
+            for (int i = 0; i < count; i++)
+            {
+                final String tagName = readString(in);
+                final IMetaTagAttribute[] attributes = new IMetaTagAttribute[in.getInt()];
+                for (int j = 0; j < attributes.length; j++)
+                {
+                    final String key = readString(in);
+                    attributes[j] = new MetaTagAttribute(key, readString(in));
+                }
+                final MetaTag metaTag = new MetaTag(definition, tagName, attributes);
+                if (in.get() != 0)
+                {
+                    final int absoluteStart = in.getInt();
+                    final int absoluteEnd = in.getInt();
+                    final int line = in.getInt();
+                    metaTag.setLocation(fileSpec, absoluteStart, absoluteEnd, line, in.getInt());
+                }
+                metaTags[i] = metaTag;
+            }
+            definition.setMetaTags(metaTags);
+        }
+
+        private Object readValue() throws IOException
+        {
+            final byte kind = in.get();
+            switch (kind)
+            {
+                case VALUE_NONE:
+                    return null;
+                case VALUE_NULL:
+                    return ABCConstants.NULL_VALUE;
+                case VALUE_BOOLEAN:
+                    return in.get() != 0;
+                case VALUE_DOUBLE:
+                    return in.getDouble();
+                case VALUE_STRING:
+                    return readString(in);
+                case VALUE_INTEGER:
+                    return in.getInt();
+                case VALUE_LONG:
+                    return in.getLong();
+                default:
+                    throw new IllegalArgumentException("Unknown value kind " + kind);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException
+    {
+        final int length = in.getInt();
+        if (length < 0)
+            return null;
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
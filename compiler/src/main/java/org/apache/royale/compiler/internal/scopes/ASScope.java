@@ -40,6 +40,7 @@ import org.apache.royale.compiler.definitions.INamespaceDefinition;
 import org.apache.royale.compiler.definitions.IQualifiers;
 import org.apache.royale.compiler.definitions.IScopedDefinition;
 import org.apache.royale.compiler.definitions.references.INamespaceReference;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.definitions.AmbiguousDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinitionBase;
@@ -181,6 +182,15 @@ public abstract class ASScope extends ASScopeBase
                 && aliasToImportQualifiedName.containsKey(alias);
     }
 
+    /**
+     * @return true if any import in this scope has an alias.
+     */
+    public boolean hasImportAliases()
+    {
+        return aliasToImportQualifiedName != null
+                && !aliasToImportQualifiedName.isEmpty();
+    }
+
     public void addImport(String target, String alias)
     {
         if (aliasToImportQualifiedName == null)
@@ -248,6 +258,30 @@ public abstract class ASScope extends ASScopeBase
         scopedNodeRef.reconnectNode(node);
     }
 
+    /**
+     * Sets the location of the syntax tree node that corresponds to this
+     * scope, for a scope that is built without a syntax tree. The node is
+     * found by reparsing the file when it is asked for, or connected by
+     * {@link #reconnectScopeNode(IScopedNode)}.
+     *
+     * @param containingFileSpec File that contains the node.
+     * @param absoluteStart Start offset of the node.
+     */
+    public void setScopeNodeLocation(IFileSpecification containingFileSpec, int absoluteStart)
+    {
+        scopedNodeRef = new NodeReference(containingFileSpec, absoluteStart);
+    }
+
+    /**
+     * @return The start offset of the syntax tree node that corresponds to
+     * this scope, or {@code ISourceLocation.UNKNOWN} if this scope was not
+     * built from source.
+     */
+    public int getScopeNodeAbsoluteStart()
+    {
+        return scopedNodeRef.getAbsoluteStart();
+    }
+
     @Override
     public IScopedNode getScopeNode()
     {
@@ -32,9 +32,13 @@ import org.apache.royale.compiler.internal.definitions.ClassDefinitionBase;
 import org.apache.royale.compiler.internal.definitions.ConstantDefinition;
 import org.apache.royale.compiler.internal.definitions.TypeDefinitionBase;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
+import org.apache.royale.compiler.internal.scopes.ASScopeCacheStatistics.CacheKind;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.units.ICompilationUnit;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.MapMaker;
 
 import java.lang.ref.SoftReference;
@@ -52,6 +56,13 @@ import java.util.concurrent.ConcurrentMap;
  * can be rebuilt on the fly, so in a worst case scenario where the VM is
  * constantly low on memory, the results should be correct, but performance will
  * be slower.
+ * <p>
+ * If the project sets a maximum scope cache size, the caches are strongly
+ * referenced instead, and each lookup cache drops its least recently used
+ * entries once it holds that many, so that the amount of memory used by the
+ * caches is predictable. The project itself only holds its ASScopeCaches
+ * softly, and can limit their number. If the project keeps {@link ASScopeCacheStatistics},
+ * every lookup is counted.
  */
 public class ASScopeCache
 {
@@ -72,40 +83,53 @@ public class ASScopeCache
     {
         this.scope = scope;
         this.project = project;
+        this.maximumSize = project.getScopeCacheMaximumSize();
+        this.statistics = project.getScopeCacheStatistics();
     }
 
     private final ASScope scope;
     private final CompilerProject project;
 
+    /**
+     * The maximum number of entries of each lookup cache, or 0 if the caches
+     * are soft referenced and unbounded.
+     */
+    private final int maximumSize;
+
+    /**
+     * The counters to update, or null.
+     */
+    private final ASScopeCacheStatistics statistics;
+
     /**
      * Cache results of unqualified lookups over the scope chain
      * (ASScopeBase.findProperty). This is for caching the results of
      * ASScope.findProperty().
      */
-    private SoftReference<ConcurrentMap<String, IDefinition>> findPropCache;
+    private CacheReference<ConcurrentMap<String, IDefinition>> findPropCache;
 
     /**
      * Cache results of lookups of qualified names over the scope chain
      * (ASScopeBase.findPropertyQualified).
      */
-    private SoftReference<ConcurrentMap<QName, IDefinition>> findPropQualifiedCache;
+    private CacheReference<ConcurrentMap<QName, IDefinition>> findPropQualifiedCache;
 
     /**
      * Cache the set of open namespaces
      */
-    private SoftReference<Set<INamespaceDefinition>> openNamespaceCache = null;
+    private CacheReference<Set<INamespaceDefinition>> openNamespaceCache = null;
 
     /**
      * Cache the open namespace set per name
      */
-    private SoftReference<ConcurrentMap<String, Set<INamespaceDefinition>>> namespacesForNameCache;
+    private CacheReference<ConcurrentMap<String, Set<INamespaceDefinition>>> namespacesForNameCache;
 
-    private SoftReference<ConcurrentMap<IResolvedQualifiersReference, IDefinition>> multinameLookupCache;
+    private CacheReference<ConcurrentMap<IResolvedQualifiersReference, IDefinition>> multinameLookupCache;
 
     /**
      * Cache the compile time values of constants
      */
-    private SoftReference<ConcurrentMap<IDefinition, Object>> constValueLookupCache;
+    private CacheReference<ConcurrentMap<IDefinition, Object>> constValueLookupCache;
 
     /**
      * Cache the needs Event dispatch flag
@@ -115,12 +139,12 @@ public class ASScopeCache
     /**
      * Cache the extended or implemented interfaces of an interface or class.
      */
-    private SoftReference<IInterfaceDefinition[]> interfacesCache;
+    private CacheReference<IInterfaceDefinition[]> interfacesCache;
 
     /**
      * Cache the builtin types we've already added dependencies on
      */
-    private SoftReference<Set<IASLanguageConstants.BuiltinType>> builtinTypeDependencyCache;
+    private CacheReference<Set<IASLanguageConstants.BuiltinType>> builtinTypeDependencyCache;
 
     /**
      * Version of findProperty that uses a cache. Checks the cache first, and
@@ -140,6 +164,7 @@ public class ASScopeCache
         IDefinition result = map.get(name);
         if (result != null)
         {
+            recordHit(CacheKind.FIND_PROPERTY);
             // We found a cached result - we're done
         	// after making sure it has a dependency
         	if (result instanceof ITypeDefinition)
@@ -161,6 +186,7 @@ public class ASScopeCache
         // This is intentional - the worst that happens is that we duplicate the resolution work
         // the benefit is that we avoid any sort of locking, which was proving expensive (time wise,
         // and memory wise).
+        recordMiss(CacheKind.FIND_PROPERTY);
 
         boolean wasAmbiguous = false;
         IDefinition def = null;
@@ -230,8 +256,10 @@ public class ASScopeCache
                 map = findPropCache != null ? findPropCache.get() : null;
                 if (map == null)
                 {
-                    map = mapMaker.<String, IDefinition> makeMap();
-                    findPropCache = new SoftReference<ConcurrentMap<String, IDefinition>>(map);
+                    if (findPropCache != null)
+                        recordRebuild(CacheKind.FIND_PROPERTY);
+                    map = this.<String, IDefinition> makeMap(CacheKind.FIND_PROPERTY);
+                    findPropCache = new CacheReference<ConcurrentMap<String, IDefinition>>(map, maximumSize > 0);
                 }
             }
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
@@ -253,8 +281,10 @@ public class ASScopeCache
                 map = findPropQualifiedCache != null ? findPropQualifiedCache.get() : null;
                 if (map == null)
                 {
-                    map = mapMaker.<QName, IDefinition> makeMap();
-                    findPropQualifiedCache = new SoftReference<ConcurrentMap<QName, IDefinition>>(map);
+                    if (findPropQualifiedCache != null)
+                        recordRebuild(CacheKind.FIND_PROPERTY_QUALIFIED);
+                    map = this.<QName, IDefinition> makeMap(CacheKind.FIND_PROPERTY_QUALIFIED);
+                    findPropQualifiedCache = new CacheReference<ConcurrentMap<QName, IDefinition>>(map, maximumSize > 0);
                 }
             }
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
@@ -283,10 +313,12 @@ public class ASScopeCache
         IDefinition result = map.get(qname);
         if (result != null)
         {
+            recordHit(CacheKind.FIND_PROPERTY_QUALIFIED);
             assert result.isInProject(project);
             // We found a cached result - we're done
             return result;
         }
+        recordMiss(CacheKind.FIND_PROPERTY_QUALIFIED);
 
         // If we get this far, then we did not find a cached entry
         // It is possible for 2+ threads to get in here for the same name.
@@ -359,7 +391,11 @@ public class ASScopeCache
         ConcurrentMap<IResolvedQualifiersReference, IDefinition> cache = getMultinameLookupMap();
         IDefinition result = cache.get(ref);
         if (result != null)
+        {
+            recordHit(CacheKind.FIND_PROPERTY_MULTINAME);
             return result;
+        }
+        recordMiss(CacheKind.FIND_PROPERTY_MULTINAME);
 
         IDefinition def;
 
@@ -413,12 +449,19 @@ public class ASScopeCache
      */
     Set<INamespaceDefinition> getNamespaceSet()
     {
-        Set<INamespaceDefinition> nsSet = openNamespaceCache != null ? openNamespaceCache.get() : null;
+        CacheReference<Set<INamespaceDefinition>> ref = openNamespaceCache;
+        Set<INamespaceDefinition> nsSet = ref != null ? ref.get() : null;
         if (nsSet != null)
+        {
+            recordHit(CacheKind.NAMESPACE_SET);
             return nsSet;
+        }
+        recordMiss(CacheKind.NAMESPACE_SET);
+        if (ref != null)
+            recordRebuild(CacheKind.NAMESPACE_SET);
 
         nsSet = scope.getNamespaceSetImpl(project);
-        openNamespaceCache = new SoftReference<Set<INamespaceDefinition>>(nsSet);
+        openNamespaceCache = new CacheReference<Set<INamespaceDefinition>>(nsSet, maximumSize > 0);
         return nsSet;
     }
 
@@ -435,8 +478,10 @@ public class ASScopeCache
                 map = namespacesForNameCache != null ? namespacesForNameCache.get() : null;
                 if (map == null)
                 {
-                    map = mapMaker.<String, Set<INamespaceDefinition>> makeMap();
-                    namespacesForNameCache = new SoftReference<ConcurrentMap<String, Set<INamespaceDefinition>>>(map);
+                    if (namespacesForNameCache != null)
+                        recordRebuild(CacheKind.NAMESPACES_FOR_NAME);
+                    map = this.<String, Set<INamespaceDefinition>> makeMap(CacheKind.NAMESPACES_FOR_NAME);
+                    namespacesForNameCache = new CacheReference<ConcurrentMap<String, Set<INamespaceDefinition>>>(map, maximumSize > 0);
                 }
             }
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
@@ -458,8 +503,10 @@ public class ASScopeCache
                 map = multinameLookupCache != null ? multinameLookupCache.get() : null;
                 if (map == null)
                 {
-                    map = mapMaker.<IResolvedQualifiersReference, IDefinition> makeMap();
-                    multinameLookupCache = new SoftReference<ConcurrentMap<IResolvedQualifiersReference, IDefinition>>(map);
+                    if (multinameLookupCache != null)
+                        recordRebuild(CacheKind.FIND_PROPERTY_MULTINAME);
+                    map = this.<IResolvedQualifiersReference, IDefinition> makeMap(CacheKind.FIND_PROPERTY_MULTINAME);
+                    multinameLookupCache = new CacheReference<ConcurrentMap<IResolvedQualifiersReference, IDefinition>>(map, maximumSize > 0);
                 }
             }
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
@@ -481,8 +528,10 @@ public class ASScopeCache
                 map = constValueLookupCache != null ? constValueLookupCache.get() : null;
                 if (map == null)
                 {
-                    map = mapMaker.<IDefinition, Object> makeMap();
-                    constValueLookupCache = new SoftReference<ConcurrentMap<IDefinition, Object>>(map);
+                    if (constValueLookupCache != null)
+                        recordRebuild(CacheKind.CONSTANT_VALUE);
+                    map = this.<IDefinition, Object> makeMap(CacheKind.CONSTANT_VALUE);
+                    constValueLookupCache = new CacheReference<ConcurrentMap<IDefinition, Object>>(map, maximumSize > 0);
                 }
             }
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
@@ -504,8 +553,10 @@ public class ASScopeCache
                 set = builtinTypeDependencyCache != null ? builtinTypeDependencyCache.get() : null;
                 if (set == null)
                 {
+                    if (builtinTypeDependencyCache != null)
+                        recordRebuild(CacheKind.BUILTIN_TYPE_DEPENDENCY);
                     set = Collections.newSetFromMap(mapMaker.<IASLanguageConstants.BuiltinType, Boolean> makeMap());
-                    builtinTypeDependencyCache = new SoftReference<Set<IASLanguageConstants.BuiltinType>>(set);
+                    builtinTypeDependencyCache = new CacheReference<Set<IASLanguageConstants.BuiltinType>>(set, maximumSize > 0);
                 }
             }
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
@@ -563,7 +614,10 @@ public class ASScopeCache
         IInterfaceDefinition[] interfs = interfacesCache != null ? interfacesCache.get() : null;
 
         if( interfs != null )
+        {
+            recordHit(CacheKind.INTERFACES);
             return interfs;
+        }
 
     	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
     		System.out.println("ASScopeCache waiting for lock in resolveInterfaces");
@@ -575,11 +629,15 @@ public class ASScopeCache
             {
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
             		System.out.println("ASScopeCache done with lock in resolveInterfaces");
+                recordHit(CacheKind.INTERFACES);
                 return interfs;
             }
+            recordMiss(CacheKind.INTERFACES);
+            if (interfacesCache != null)
+                recordRebuild(CacheKind.INTERFACES);
 
             interfs = ((TypeDefinitionBase)scope.getDefinition()).resolveInterfacesImpl(project);
-            interfacesCache = new SoftReference<IInterfaceDefinition[]>(interfs);
+            interfacesCache = new CacheReference<IInterfaceDefinition[]>(interfs, maximumSize > 0);
         	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ASSCOPECACHE) == CompilerDiagnosticsConstants.ASSCOPECACHE)
         		System.out.println("ASScopeCache done with lock in resolveInterfaces");
             return interfs;
@@ -602,9 +660,11 @@ public class ASScopeCache
         Set<INamespaceDefinition> result = map.get(name);
         if (result != null)
         {
+            recordHit(CacheKind.NAMESPACES_FOR_NAME);
             // We found a cached result - we're done
             return result;
         }
+        recordMiss(CacheKind.NAMESPACES_FOR_NAME);
 
         // It is possible for 2+ threads to get in here for the same name.
         // This is intentional - the worst that happens is that we duplicate the resolution work
@@ -633,9 +693,11 @@ public class ASScopeCache
 
         if( set.contains(builtinType) )
         {
+            recordHit(CacheKind.BUILTIN_TYPE_DEPENDENCY);
             // We found a cached result - we're done
             return;
         }
+        recordMiss(CacheKind.BUILTIN_TYPE_DEPENDENCY);
 
         // It is possible for 2+ threads to get in here for the same name.
         // This is intentional - the worst that happens is that we duplicate the dependency work
@@ -670,6 +732,7 @@ public class ASScopeCache
         Object result = map.get(constDef);
         if (result != null)
         {
+            recordHit(CacheKind.CONSTANT_VALUE);
             // We found a cached result - we're done
             if (result == NO_CONST_VALUE)
                 return null;
@@ -680,6 +743,7 @@ public class ASScopeCache
         // This is intentional - the worst that happens is that we duplicate the resolution work
         // the benefit is that we avoid any sort of locking, which was proving expensive (time wise,
         // and memory wise).
+        recordMiss(CacheKind.CONSTANT_VALUE);
 
         Object newResult = constDef.resolveValueImpl(project);
         if (newResult == null)
@@ -694,6 +758,80 @@ public class ASScopeCache
             return result;
     }
 
+    /**
+     * Creates an empty lookup cache: an unbounded map, or a map that evicts
+     * its least recently used entries if the caches are bounded.
+     */
+    private <K, V> ConcurrentMap<K, V> makeMap(final CacheKind kind)
+    {
+        if (maximumSize <= 0)
+            return mapMaker.<K, V> makeMap();
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumSize(maximumSize);
+        if (statistics == null)
+            return builder.<K, V> build().asMap();
+
+        final ASScopeCacheStatistics stats = statistics;
+        return builder.removalListener(new RemovalListener<K, V>()
+        {
+            @Override
+            public void onRemoval(RemovalNotification<K, V> notification)
+            {
+                if (notification.wasEvicted())
+                    stats.recordEviction(kind);
+            }
+        }).<K, V> build().asMap();
+    }
+
+    private void recordHit(CacheKind kind)
+    {
+        if (statistics != null)
+            statistics.recordHit(kind);
+    }
+
+    private void recordMiss(CacheKind kind)
+    {
+        if (statistics != null)
+            statistics.recordMiss(kind);
+    }
+
+    private void recordRebuild(CacheKind kind)
+    {
+        if (statistics != null)
+            statistics.recordRebuild(kind);
+    }
+
+    /**
+     * Holds a cached value either strongly or through a
+     * {@link SoftReference}.
+     */
+    private static final class CacheReference<T>
+    {
+        CacheReference(T value, boolean strong)
+        {
+            if (strong)
+            {
+                this.value = value;
+                this.softValue = null;
+            }
+            else
+            {
+                this.value = null;
+                this.softValue = new SoftReference<T>(value);
+            }
+        }
+
+        private final T value;
+        private final SoftReference<T> softValue;
+
+        T get()
+        {
+            return value != null ? value : softValue.get();
+        }
+    }
+
     /**
      * Helper class - to be used as a key for caching qualified name lookups.
      */
@@ -0,0 +1,144 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.scopes;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hit, miss, rebuild and eviction counters for all the {@link ASScopeCache}s
+ * of a project, per kind of cache.
+ * <p>
+ * A rebuild is counted when a soft referenced cache has been cleared by the
+ * garbage collector and has to be created again, and an eviction when a
+ * bounded cache drops an entry to stay within its maximum size.
+ */
+public final class ASScopeCacheStatistics
+{
+    /**
+     * The kinds of caches kept by an {@link ASScopeCache}.
+     */
+    public static enum CacheKind
+    {
+        FIND_PROPERTY("find-property"),
+        FIND_PROPERTY_QUALIFIED("find-property-qualified"),
+        FIND_PROPERTY_MULTINAME("find-property-multiname"),
+        NAMESPACE_SET("namespace-set"),
+        NAMESPACES_FOR_NAME("namespaces-for-name"),
+        CONSTANT_VALUE("constant-value"),
+        INTERFACES("interfaces"),
+        BUILTIN_TYPE_DEPENDENCY("builtin-type-dependency");
+
+        private CacheKind(String name)
+        {
+            this.name = name;
+        }
+
+        private final String name;
+
+        /**
+         * @return the name used in the report.
+         */
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    private static final int HIT = 0;
+    private static final int MISS = 1;
+    private static final int REBUILD = 2;
+    private static final int EVICTION = 3;
+    private static final int COUNTER_COUNT = 4;
+
+    private final AtomicLongArray counters =
+            new AtomicLongArray(CacheKind.values().length * COUNTER_COUNT);
+
+    void recordHit(CacheKind kind)
+    {
+        counters.incrementAndGet(kind.ordinal() * COUNTER_COUNT + HIT);
+    }
+
+    void recordMiss(CacheKind kind)
+    {
+        counters.incrementAndGet(kind.ordinal() * COUNTER_COUNT + MISS);
+    }
+
+    void recordRebuild(CacheKind kind)
+    {
+        counters.incrementAndGet(kind.ordinal() * COUNTER_COUNT + REBUILD);
+    }
+
+    void recordEviction(CacheKind kind)
+    {
+        counters.incrementAndGet(kind.ordinal() * COUNTER_COUNT + EVICTION);
+    }
+
+    public long getHitCount(CacheKind kind)
+    {
+        return counters.get(kind.ordinal() * COUNTER_COUNT + HIT);
+    }
+
+    public long getMissCount(CacheKind kind)
+    {
+        return counters.get(kind.ordinal() * COUNTER_COUNT + MISS);
+    }
+
+    public long getRebuildCount(CacheKind kind)
+    {
+        return counters.get(kind.ordinal() * COUNTER_COUNT + REBUILD);
+    }
+
+    public long getEvictionCount(CacheKind kind)
+    {
+        return counters.get(kind.ordinal() * COUNTER_COUNT + EVICTION);
+    }
+
+    /**
+     * Prints one line per kind of cache, followed by the totals.
+     */
+    public void print(PrintStream out)
+    {
+        String format = "%-26s %12s %12s %8s %10s %10s%n";
+        out.printf(format, "scope cache", "hits", "misses", "hit %", "rebuilds", "evictions");
+        long hits = 0;
+        long misses = 0;
+        long rebuilds = 0;
+        long evictions = 0;
+        for (CacheKind kind : CacheKind.values())
+        {
+            print(out, format, kind.getName(), getHitCount(kind), getMissCount(kind),
+                    getRebuildCount(kind), getEvictionCount(kind));
+            hits += getHitCount(kind);
+            misses += getMissCount(kind);
+            rebuilds += getRebuildCount(kind);
+            evictions += getEvictionCount(kind);
+        }
+        print(out, format, "total", hits, misses, rebuilds, evictions);
+    }
+
+    private static void print(PrintStream out, String format, String name,
+            long hits, long misses, long rebuilds, long evictions)
+    {
+        long lookups = hits + misses;
+        String hitRate = lookups > 0 ? String.format("%.1f", hits * 100.0 / lookups) : "-";
+        out.printf(format, name, hits, misses, hitRate, rebuilds, evictions);
+    }
+}
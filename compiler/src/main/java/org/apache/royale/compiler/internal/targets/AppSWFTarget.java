@@ -285,6 +285,8 @@ public class AppSWFTarget extends SWFTarget
             {
                 return arg0.getABCData();
             }});
+        if (targetSettings.getIncrementalLink())
+            linkSettings.setLinkCache(project.getABCLinkCache());
         byte[] linkedBytes = 
             ABCLinker.linkABC(inputABCsBytes, ABCConstants.VERSION_ABC_MAJOR_FP10, ABCConstants.VERSION_ABC_MINOR_FP10, linkSettings);
         DoABCTag linkedTag = new DoABCTag(1, "merged", linkedBytes);
@@ -365,6 +367,9 @@ public class AppSWFTarget extends SWFTarget
     {
         if (!targetSettings.isOptimized())
             return unLinked;
+        // drops the linked blocks that weren't used by the previous build
+        if (targetSettings.getIncrementalLink())
+            project.getABCLinkCache().startBuild();
         return super.linkSWF(unLinked);
     }
 
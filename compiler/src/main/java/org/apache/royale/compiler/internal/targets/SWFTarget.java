@@ -37,6 +37,7 @@ import org.apache.royale.abc.ABCParser;
 import org.apache.royale.abc.EntryOrderedStore;
 import org.apache.royale.abc.ABCEmitter.EmitterClassVisitor;
 import org.apache.royale.abc.Pool;
+import org.apache.royale.abc.StringPool;
 import org.apache.royale.abc.semantics.Metadata;
 import org.apache.royale.abc.semantics.MethodInfo;
 import org.apache.royale.abc.semantics.Name;
@@ -485,7 +486,7 @@ public abstract class SWFTarget extends Target implements ISWFTarget
 	                                        				}
 	                                        				if (!foundName)
 	                                        				{
-	                                            				Pool<String> stringPool = emitter.getStringPool();
+	                                            				StringPool stringPool = emitter.getStringPool();
 	                                            				stringPool.add(packageName);// theoretically, it won't be added if already there
 	                                            				stringPool.add(baseName);	// theoretically, it won't be added if already there
 	                                        					Namespace ns = new Namespace(ABCConstants.CONSTANT_PackageNs, packageName);
@@ -543,7 +544,7 @@ public abstract class SWFTarget extends Target implements ISWFTarget
 		                                        				}
 		                                        				if (!foundName)
 		                                        				{
-		                                            				Pool<String> stringPool = emitter.getStringPool();
+		                                            				StringPool stringPool = emitter.getStringPool();
 		                                            				stringPool.add(packageName);// theoretically, it won't be added if already there
 		                                            				stringPool.add(baseName);	// theoretically, it won't be added if already there
 		                                        					Namespace ns = new Namespace(ABCConstants.CONSTANT_PackageNs, packageName);
@@ -729,6 +730,7 @@ public abstract class SWFTarget extends Target implements ISWFTarget
         linkSettings.setStripFileAttributeFromGotoDefinitionHelp(settings.isOptimized());
         linkSettings.setProblemsCollection(this.problemCollection);
         linkSettings.setRemoveDeadCode(settings.getRemoveDeadCode());
+        linkSettings.setLinkThreads(settings.getLinkThreads());
         
         Collection<String> metadataNames = getASMetadataNames();
         if (settings.isDebugEnabled() && metadataNames != null)
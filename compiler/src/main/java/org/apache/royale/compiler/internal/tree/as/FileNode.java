@@ -532,6 +532,7 @@ public class FileNode extends ScopedBlockNode implements Serializable, IFileNode
     public void reconnectDefinitions(ASFileScope fileScope)
     {
         this.scope = fileScope;
+        fileScope.reconnectScopeNode(this);
         Collection<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
         analyze(EnumSet.of(PostProcessStep.RECONNECT_DEFINITIONS), scope, problems);
     }
@@ -270,6 +270,8 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
             final FunctionDefinition functionDef = this.getDefinition();
             if (functionDef != null)
             {
+                if (functionDef.isConstructor())
+                    setConstructorNodeOfClass();
                 scope = functionDef.getContainedScope();
                 ScopedBlockNode contents = contentsPart.getContents();
                 // scope can be null for generated binding wrappers of
@@ -666,15 +668,7 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
             IASNode parentParent = getParent().getParent();
             if( parentParent instanceof ClassNode)
             {
-                ClassNode classNode = (ClassNode)parentParent;
-                if (classNode.getConstructorNode() == null)
-                {
-                    if (nameNode instanceof IdentifierNode)
-                    {
-                        ((IdentifierNode)nameNode).setReferenceValue(classNode.getDefinition());
-                        classNode.constructorNode = this;
-                    }
-                }
+                setConstructorNodeOfClass();
                 // if the namespace reference is private, don't change it
                 if(!(funcDef.getNamespaceReference() instanceof INamespaceDefinition.IPrivateNamespaceDefinition))
                 {
@@ -688,6 +682,27 @@ public class FunctionNode extends BaseTypedDefinitionNode implements IFunctionNo
         }
     }
 
+    /**
+     * Make this function the constructor node of the class that contains it,
+     * when the definitions are built or reconnected.
+     */
+    private void setConstructorNodeOfClass()
+    {
+        IASNode parentParent = getParent().getParent();
+        if (parentParent instanceof ClassNode)
+        {
+            ClassNode classNode = (ClassNode)parentParent;
+            if (classNode.getConstructorNode() == null)
+            {
+                if (nameNode instanceof IdentifierNode)
+                {
+                    ((IdentifierNode)nameNode).setReferenceValue(classNode.getDefinition());
+                    classNode.constructorNode = this;
+                }
+            }
+        }
+    }
+
     FunctionDefinition buildDefinition()
     {
         String definitionName = getName();
@@ -19,6 +19,9 @@
 
 package org.apache.royale.compiler.internal.units;
 
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,6 +29,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.royale.compiler.clients.ASC;
@@ -40,6 +44,7 @@ import org.apache.royale.compiler.internal.parsing.as.DeferFunctionBody;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DefinitionPriority;
 import org.apache.royale.compiler.internal.scopes.ASFileScope;
+import org.apache.royale.compiler.internal.scopes.ASFileScopeCache;
 import org.apache.royale.compiler.internal.semantics.PostProcessStep;
 import org.apache.royale.compiler.internal.tree.as.ClassNode;
 import org.apache.royale.compiler.internal.tree.as.FileNode;
@@ -49,6 +54,7 @@ import org.apache.royale.compiler.internal.units.requests.ASFileScopeRequestResu
 import org.apache.royale.compiler.internal.units.requests.SWFTagsRequestResult;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.projects.IASProject;
+import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.scopes.IASScope;
 import org.apache.royale.compiler.tree.as.IASNode;
 import org.apache.royale.compiler.tree.as.IFileNodeAccumulator;
@@ -269,6 +275,26 @@ public class ASCompilationUnit extends CompilationUnitBase
      * included by {@code -in} option.
      */
     private final List<String> includedFiles = new ArrayList<String>();
+
+    /**
+     * Guards the choice between a file scope read from the file scope cache
+     * and one populated from the syntax tree, so that a syntax tree request
+     * and a file scope request that run at the same time never build two
+     * different file scopes for this compilation unit.
+     */
+    private final Object fileScopeCacheLock = new Object();
+
+    /**
+     * The file scope the current file scope request read from the file scope
+     * cache, or null.
+     */
+    private ASFileScope cachedFileScope;
+
+    /**
+     * True if a syntax tree request is populating the file scope from the
+     * syntax tree.
+     */
+    private boolean populatingFileScope;
     
     @Override
     public UnitType getCompilationUnitType()
@@ -323,16 +349,49 @@ public class ASCompilationUnit extends CompilationUnitBase
         {
             IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest = this.syntaxTreeRequest.get();
 
-            final FileNode ast = createFileNode(getRootFileSpecification());
             IRequest<IFileScopeRequestResult, ICompilationUnit> fileScopeRequest = this.fileScopeRequest.get();
+
+            // The file is read once, and the key is computed from the
+            // contents the parser is given, so that a file that changes
+            // while it is parsed is never cached under the wrong key.
+            final ASFileScopeCache fileScopeCache = getFileScopeCache();
+            IFileSpecification parsedSource = getRootFileSpecification();
+            String fileScopeCacheKey = null;
+            if (fileScopeCache != null && (fileScopeRequest == null || !fileScopeRequest.isDone()))
+            {
+                final String contents = ASFileScopeCache.readContents(parsedSource);
+                if (contents != null)
+                {
+                    fileScopeCacheKey = fileScopeCache.computeKey(getProject(), parsedSource.getPath(), contents);
+                    parsedSource = new ReadFileSpecification(parsedSource.getPath(),
+                            ((FileSpecification)parsedSource).isUsingCRLFFilter(), contents);
+                }
+            }
+
+            final FileNode ast = createFileNode(parsedSource);
+            ASFileScope reconnectScope = null;
             if ((fileScopeRequest != null) && (fileScopeRequest.isDone()))
             {
-                ast.reconnectDefinitions((ASFileScope)fileScopeRequest.get().getScopes()[0]);
+                reconnectScope = (ASFileScope)fileScopeRequest.get().getScopes()[0];
+            }
+            else
+            {
+                synchronized (fileScopeCacheLock)
+                {
+                    reconnectScope = cachedFileScope;
+                    if (reconnectScope == null)
+                        populatingFileScope = true;
+                }
+            }
+            if (reconnectScope != null)
+            {
+                ast.reconnectDefinitions(reconnectScope);
             }
             else
             {
                 getProject().clearScopeCacheForCompilationUnit(this);
                 ast.runPostProcess(EnumSet.of(PostProcessStep.POPULATE_SCOPE));
+                storeFileScope(fileScopeCache, fileScopeCacheKey, ast);
             }
             final ImmutableSet<String> includedFiles = ast.getIncludeHandler().getIncludedFiles();
             addScopeToProjectScope(new ASFileScope[] { ast.getFileScope() });
@@ -358,12 +417,26 @@ public class ASCompilationUnit extends CompilationUnitBase
     {
         startProfile(Operation.GET_FILESCOPE);
 
-        // Get the AST dig out the symbol table.
-        final FileNode ast = (FileNode)getSyntaxTreeRequest().get().getAST();
-        final IASScope scope = ast.getScope();
-        assert scope instanceof ASFileScope : "Expect ASFileScope as the top-level scope, but found " + scope.getClass();
-        
         IFileSpecification rootSource = getRootFileSpecification();
+
+        // Use the file scope saved by an earlier compiler process, unless a
+        // syntax tree request is already populating one. The file is parsed
+        // when its syntax tree is needed, and the syntax tree is then
+        // reconnected to this file scope.
+        IASScope scope;
+        synchronized (fileScopeCacheLock)
+        {
+            cachedFileScope = populatingFileScope ? null : loadFileScope(rootSource);
+            scope = cachedFileScope;
+        }
+
+        if (scope == null)
+        {
+            // Get the AST dig out the symbol table.
+            final FileNode ast = (FileNode)getSyntaxTreeRequest().get().getAST();
+            scope = ast.getScope();
+            assert scope instanceof ASFileScope : "Expect ASFileScope as the top-level scope, but found " + scope.getClass();
+        }
         
         final ASFileScopeRequestResult result =
             new ASFileScopeRequestResult(getDefinitionPromises(), getDefinitionPriority(),
@@ -374,6 +447,82 @@ public class ASCompilationUnit extends CompilationUnitBase
         return result;
     }
     
+    /**
+     * @return The on-disk cache of file scopes of the project, or null if the
+     * file scope of this compilation unit is not cached. Only the file scopes
+     * of files that are parsed with deferred function bodies and without
+     * files included by the {@code -in} option are cached.
+     */
+    protected ASFileScopeCache getFileScopeCache()
+    {
+        if (isInvisible() || !(getRootFileSpecification() instanceof FileSpecification) || !includedFiles.isEmpty())
+            return null;
+        return getProject().getFileScopeCache();
+    }
+
+    private ASFileScope loadFileScope(IFileSpecification rootSource)
+    {
+        final ASFileScopeCache fileScopeCache = getFileScopeCache();
+        if (fileScopeCache == null)
+            return null;
+        final String key = fileScopeCache.computeKey(getProject(), rootSource);
+        if (key == null)
+            return null;
+        return fileScopeCache.load(rootSource, getProject().getWorkspace(), key);
+    }
+
+    /**
+     * Saves the file scope that was just populated from a syntax tree, if the
+     * file had no problems and includes no other files. The key was computed
+     * from the contents that were parsed.
+     */
+    private void storeFileScope(ASFileScopeCache fileScopeCache, String key, FileNode ast)
+    {
+        if (fileScopeCache == null || key == null)
+            return;
+        if (!ast.getProblems().isEmpty() || !ast.getIncludeHandler().getIncludedFiles().isEmpty())
+            return;
+
+        fileScopeCache.store(ast.getFileScope(), getRootFileSpecification(), getProject().getWorkspace(), key);
+    }
+
+    /**
+     * A source file whose contents were already read to compute its file
+     * scope cache key, so the parser doesn't read the file again. It is
+     * still a {@link FileSpecification}, so function bodies are deferred and
+     * read from the file later, as they are for any other source file.
+     */
+    private static final class ReadFileSpecification extends FileSpecification
+    {
+        ReadFileSpecification(String path, boolean useCRLFFilter, String contents)
+        {
+            super(path, useCRLFFilter);
+            this.contents = contents;
+        }
+
+        private final String contents;
+
+        @Override
+        public Reader createReader()
+        {
+            return new StringReader(contents);
+        }
+    }
+
+    @Override
+    protected void handleClean(boolean clearFileScope, Map<ICompilerProject, Set<File>> invalidatedSWCFiles)
+    {
+        super.handleClean(clearFileScope, invalidatedSWCFiles);
+        if (clearFileScope)
+        {
+            synchronized (fileScopeCacheLock)
+            {
+                cachedFileScope = null;
+                populatingFileScope = false;
+            }
+        }
+    }
+    
     protected void addProblemsToProject(ASFileScopeRequestResult result)
     {
         Collection<ICompilationUnit> units = getProject().getIncludingCompilationUnits(getAbsoluteFilename());
@@ -66,6 +66,7 @@ import org.apache.royale.compiler.internal.tree.as.NodeBase;
 import org.apache.royale.compiler.internal.units.requests.ABCBytesRequestResult;
 import org.apache.royale.compiler.internal.units.requests.FileScopeRequestResultBase;
 import org.apache.royale.compiler.internal.units.requests.RequestMaker;
+import org.apache.royale.compiler.internal.units.requests.RequestStatistics.RequestKind;
 import org.apache.royale.compiler.internal.units.requests.SyntaxTreeRequestResult;
 import org.apache.royale.compiler.mxml.IXMLNameResolver;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -250,7 +251,7 @@ public abstract class CompilationUnitBase implements ICompilationUnit
     private final boolean scopeBuiltFromSyntaxTree;
 
     private static final RequestMaker<ISyntaxTreeRequestResult, ICompilationUnit, CompilationUnitBase> syntaxTreeRequestMaker =
-        new RequestMaker<ISyntaxTreeRequestResult, ICompilationUnit, CompilationUnitBase>()
+        new RequestMaker<ISyntaxTreeRequestResult, ICompilationUnit, CompilationUnitBase>(RequestKind.SYNTAX_TREE)
         {
             @Override
             protected Callable<ISyntaxTreeRequestResult> getCallable(final CompilationUnitBase u)
@@ -275,7 +276,7 @@ public abstract class CompilationUnitBase implements ICompilationUnit
         };
         
     private static final RequestMaker<IFileScopeRequestResult, ICompilationUnit, CompilationUnitBase> fileScopeRequestMaker =
-        new RequestMaker<IFileScopeRequestResult, ICompilationUnit, CompilationUnitBase>()
+        new RequestMaker<IFileScopeRequestResult, ICompilationUnit, CompilationUnitBase>(RequestKind.FILE_SCOPE)
         {
             @Override
             protected Callable<IFileScopeRequestResult> getCallable(final CompilationUnitBase u)
@@ -300,7 +301,7 @@ public abstract class CompilationUnitBase implements ICompilationUnit
         };
 
     private static final RequestMaker<IABCBytesRequestResult, ICompilationUnit, CompilationUnitBase> abcBytesRequestMaker =
-        new RequestMaker<IABCBytesRequestResult, ICompilationUnit, CompilationUnitBase>()
+        new RequestMaker<IABCBytesRequestResult, ICompilationUnit, CompilationUnitBase>(RequestKind.ABC_BYTES)
         {
             @Override
             protected Callable<IABCBytesRequestResult> getCallable(final CompilationUnitBase u)
@@ -325,7 +326,7 @@ public abstract class CompilationUnitBase implements ICompilationUnit
 
 
     private static final RequestMaker<ISWFTagsRequestResult, ICompilationUnit, CompilationUnitBase> swfTagsRequestMaker =
-        new RequestMaker<ISWFTagsRequestResult, ICompilationUnit, CompilationUnitBase>()
+        new RequestMaker<ISWFTagsRequestResult, ICompilationUnit, CompilationUnitBase>(RequestKind.SWF_TAGS)
         {
             @Override
             protected Callable<ISWFTagsRequestResult> getCallable(final CompilationUnitBase u)
@@ -375,7 +376,7 @@ public abstract class CompilationUnitBase implements ICompilationUnit
         };
 
     private static final RequestMaker<IOutgoingDependenciesRequestResult, ICompilationUnit, CompilationUnitBase> outgoingDependenciesRequestMaker =
-        new RequestMaker<IOutgoingDependenciesRequestResult, ICompilationUnit, CompilationUnitBase>()
+        new RequestMaker<IOutgoingDependenciesRequestResult, ICompilationUnit, CompilationUnitBase>(RequestKind.OUTGOING_DEPENDENCIES)
         {
             @Override
             protected Callable<IOutgoingDependenciesRequestResult> getCallable(final CompilationUnitBase u)
@@ -374,9 +374,9 @@ public class SWCCompilationUnit extends CompilationUnitBase
 
     private void addAssetTagDependencies(SetMultimap<String, DependencyType> dependencies)
     {
-        final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
-        final ITagContainer swfTags = ((SWFCache)getProject().getWorkspace().getSWCManager().getSWFCache()).get(key);
-        final Collection<SymbolClassTag> symbolTags = SWFCache.findAllSymbolClassTags(swfTags);
+        // The SymbolClass tags are only decoded with the asset tags, so only
+        // get them if a definition has assets.
+        Collection<SymbolClassTag> symbolTags = null;
 
         for (final String defQName : script.getDefinitions())
         {
@@ -388,6 +388,11 @@ public class SWCCompilationUnit extends CompilationUnitBase
                 {
                     if (referredTag instanceof ICharacterTag)
                     {
+                        if (symbolTags == null)
+                        {
+                            final SWFCache swfCache = (SWFCache)getProject().getWorkspace().getSWCManager().getSWFCache();
+                            symbolTags = SWFCache.findAllSymbolClassTags(swfCache.getAllTags(swc, library.getPath()));
+                        }
                         for (SymbolClassTag symbolTag : symbolTags)
                         {
                             String symbol = symbolTag.getSymbolName((ICharacterTag)referredTag);
@@ -53,6 +53,28 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
      * and instead will be caught by JUnit as an error.
      */
     private static final boolean THROW_ASSERTIONS = System.getProperty("throw.assertions", "false").equals("true");
+
+    /**
+     * Constructor for a maker of requests that are not counted in the
+     * {@link RequestStatistics} of the workspace.
+     */
+    protected RequestMaker()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param kind The kind of the requests this maker makes, which they are
+     * counted as in the {@link RequestStatistics} of the workspace.
+     */
+    protected RequestMaker(RequestStatistics.RequestKind kind)
+    {
+        this.kind = kind;
+    }
+
+    private final RequestStatistics.RequestKind kind;
     
     private static class Request<V extends IRequestResult, W> implements IRequest<V, W>
     {
@@ -61,13 +83,17 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
         private Condition haveFuture;
         private final long timestamp;
         private final W requestee;
+        private final RequestStatistics statistics;
+        private final RequestStatistics.RequestKind kind;
 
-        public Request(W requestee)
+        public Request(W requestee, RequestStatistics statistics, RequestStatistics.RequestKind kind)
         {
             lock = new ReentrantLock();
             haveFuture = lock.newCondition();
             timestamp = System.currentTimeMillis();
             this.requestee = requestee;
+            this.statistics = statistics;
+            this.kind = kind;
         }
 
         @Override
@@ -76,8 +102,24 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
             V result = null;
             try
             {
-                // blocks till request is done
-                result = getFuture().get();
+                if (statistics != null && !isDone())
+                {
+                    final long start = System.nanoTime();
+                    try
+                    {
+                        // blocks till request is done
+                        result = getFuture().get();
+                    }
+                    finally
+                    {
+                        statistics.recordTime(kind, RequestStatistics.Timing.WAIT, System.nanoTime() - start);
+                    }
+                }
+                else
+                {
+                    // blocks till request is done
+                    result = getFuture().get();
+                }
             }
             catch (ExecutionException executionException)
             {
@@ -181,11 +223,18 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
         {
             workspace.startRequest(isNeededForFileScope);
             
-            final Request<ResultType, RequesteeInterfaceType> request = new Request<ResultType, RequesteeInterfaceType>(u);
+            final RequestStatistics statistics = kind != null ? workspace.getRequestStatistics() : null;
+            final Request<ResultType, RequesteeInterfaceType> request = new Request<ResultType, RequesteeInterfaceType>(u, statistics, kind);
             if (atomicRef.compareAndSet(null, request))
             {
                 ExecutorService exec = workspace.getExecutorService();
-                request.setFuture(exec.submit(wrapCallable(u, getCallable(u), workspace)));
+                Callable<ResultType> callable = wrapCallable(u, getCallable(u), workspace);
+                if (statistics != null)
+                {
+                    statistics.recordRequest(kind);
+                    callable = timeCallable(callable, statistics);
+                }
+                request.setFuture(exec.submit(callable));
             }
             else
             {
@@ -249,6 +298,37 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
         };
     }
 
+    /**
+     * Creates a new Callable that calls the specified Callable and records
+     * its queue and compute times in the specified {@link RequestStatistics}.
+     * It must be created on the thread that submits it to the executor, so
+     * that it can tell when the executor runs it on that thread.
+     */
+    private Callable<ResultType> timeCallable(final Callable<ResultType> c, final RequestStatistics statistics)
+    {
+        final long submitTime = System.nanoTime();
+        final Thread submittingThread = Thread.currentThread();
+        return new Callable<ResultType>()
+        {
+            @Override
+            public ResultType call() throws Exception
+            {
+                final long start = System.nanoTime();
+                statistics.recordTime(kind, RequestStatistics.Timing.QUEUE, start - submitTime);
+                if (Thread.currentThread() == submittingThread)
+                    statistics.recordCallerRuns(kind);
+                try
+                {
+                    return c.call();
+                }
+                finally
+                {
+                    statistics.recordTime(kind, RequestStatistics.Timing.COMPUTE, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
     /**
      * Called to get the callable that computes the result of the request.
      * 
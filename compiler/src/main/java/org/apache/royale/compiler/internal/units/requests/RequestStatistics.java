@@ -0,0 +1,280 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.units.requests;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timings of the requests made by {@link RequestMaker}s of a
+ * workspace, per kind of request.
+ * <p>
+ * Three times are measured for every request: the queue time, from the
+ * submission of the request to the executor until it starts to run; the
+ * compute time, while it runs; and the wait time, that callers of
+ * {@code IRequest.get()} spend blocked until the request is done. A request
+ * that the executor ran on the submitting thread, because all of its threads
+ * were busy, is counted as a caller-runs request.
+ * <p>
+ * Percentiles are computed from a histogram with power of two buckets, so
+ * they are accurate to within a factor of two.
+ */
+public final class RequestStatistics
+{
+    /**
+     * The kinds of requests made by compilation units.
+     */
+    public static enum RequestKind
+    {
+        SYNTAX_TREE("syntax-tree"),
+        FILE_SCOPE("file-scope"),
+        OUTGOING_DEPENDENCIES("outgoing-dependencies"),
+        ABC_BYTES("abc-bytes"),
+        SWF_TAGS("swf-tags");
+
+        private RequestKind(String name)
+        {
+            this.name = name;
+        }
+
+        private final String name;
+
+        /**
+         * @return the name used in the report.
+         */
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * The times measured for each request.
+     */
+    public static enum Timing
+    {
+        QUEUE("queue"),
+        COMPUTE("compute"),
+        WAIT("wait");
+
+        private Timing(String name)
+        {
+            this.name = name;
+        }
+
+        private final String name;
+
+        /**
+         * @return the name used in the report.
+         */
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    private static final int REQUESTS = 0;
+    private static final int CALLER_RUNS = 1;
+    private static final int COUNTER_COUNT = 2;
+
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MAX = 2;
+    private static final int TIMING_COUNTER_COUNT = 3;
+
+    /**
+     * Bucket 0 holds times under a microsecond, and bucket n holds times from
+     * 2^(n-1) up to 2^n microseconds. The last bucket also holds anything
+     * longer.
+     */
+    private static final int BUCKET_COUNT = 40;
+
+    private static final int KIND_COUNT = RequestKind.values().length;
+    private static final int TIMING_COUNT = Timing.values().length;
+
+    private final AtomicLongArray counters =
+            new AtomicLongArray(KIND_COUNT * COUNTER_COUNT);
+
+    private final AtomicLongArray timingCounters =
+            new AtomicLongArray(KIND_COUNT * TIMING_COUNT * TIMING_COUNTER_COUNT);
+
+    private final AtomicLongArray buckets =
+            new AtomicLongArray(KIND_COUNT * TIMING_COUNT * BUCKET_COUNT);
+
+    void recordRequest(RequestKind kind)
+    {
+        counters.incrementAndGet(kind.ordinal() * COUNTER_COUNT + REQUESTS);
+    }
+
+    void recordCallerRuns(RequestKind kind)
+    {
+        counters.incrementAndGet(kind.ordinal() * COUNTER_COUNT + CALLER_RUNS);
+    }
+
+    void recordTime(RequestKind kind, Timing timing, long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+
+        final int index = timingIndex(kind, timing);
+        timingCounters.incrementAndGet(index * TIMING_COUNTER_COUNT + COUNT);
+        timingCounters.addAndGet(index * TIMING_COUNTER_COUNT + TOTAL, nanos);
+        final int maxIndex = index * TIMING_COUNTER_COUNT + MAX;
+        long max = timingCounters.get(maxIndex);
+        while (nanos > max && !timingCounters.compareAndSet(maxIndex, max, nanos))
+            max = timingCounters.get(maxIndex);
+
+        buckets.incrementAndGet(index * BUCKET_COUNT + bucket(nanos));
+    }
+
+    private static int timingIndex(RequestKind kind, Timing timing)
+    {
+        return kind.ordinal() * TIMING_COUNT + timing.ordinal();
+    }
+
+    private static int bucket(long nanos)
+    {
+        final long micros = nanos / 1000;
+        final int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return the number of requests of the specified kind.
+     */
+    public long getRequestCount(RequestKind kind)
+    {
+        return counters.get(kind.ordinal() * COUNTER_COUNT + REQUESTS);
+    }
+
+    /**
+     * @return the number of requests of the specified kind that were run on
+     * the thread that made them, because the executor had no free thread.
+     */
+    public long getCallerRunsCount(RequestKind kind)
+    {
+        return counters.get(kind.ordinal() * COUNTER_COUNT + CALLER_RUNS);
+    }
+
+    /**
+     * @return the number of times the specified time was measured for
+     * requests of the specified kind. For {@link Timing#WAIT}, this is the
+     * number of calls to {@code IRequest.get()} that blocked.
+     */
+    public long getCount(RequestKind kind, Timing timing)
+    {
+        return timingCounters.get(timingIndex(kind, timing) * TIMING_COUNTER_COUNT + COUNT);
+    }
+
+    /**
+     * @return the sum of the specified times of requests of the specified
+     * kind, in nanoseconds.
+     */
+    public long getTotalNanos(RequestKind kind, Timing timing)
+    {
+        return timingCounters.get(timingIndex(kind, timing) * TIMING_COUNTER_COUNT + TOTAL);
+    }
+
+    /**
+     * @return the longest of the specified times of requests of the
+     * specified kind, in nanoseconds.
+     */
+    public long getMaxNanos(RequestKind kind, Timing timing)
+    {
+        return timingCounters.get(timingIndex(kind, timing) * TIMING_COUNTER_COUNT + MAX);
+    }
+
+    /**
+     * Gets a percentile of the specified times of requests of the specified
+     * kind.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return the upper bound of the histogram bucket the percentile is in,
+     * in nanoseconds, but no more than the longest time; or 0 if nothing was
+     * measured.
+     */
+    public long getPercentileNanos(RequestKind kind, Timing timing, double percentile)
+    {
+        final int index = timingIndex(kind, timing);
+        long total = 0;
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] = buckets.get(index * BUCKET_COUNT + i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+
+        final long rank = (long)Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0)
+                return Math.min((1L << i) * 1000, getMaxNanos(kind, timing));
+        }
+        return getMaxNanos(kind, timing);
+    }
+
+    /**
+     * Prints the number of requests and caller-runs requests per kind of
+     * request, followed by the queue, compute and wait times per kind of
+     * request.
+     */
+    public void print(PrintStream out)
+    {
+        String format = "%-22s %10s %12s%n";
+        out.printf(format, "request", "requests", "caller-runs");
+        long requests = 0;
+        long callerRuns = 0;
+        for (RequestKind kind : RequestKind.values())
+        {
+            out.printf(format, kind.getName(), getRequestCount(kind), getCallerRunsCount(kind));
+            requests += getRequestCount(kind);
+            callerRuns += getCallerRunsCount(kind);
+        }
+        out.printf(format, "total", requests, callerRuns);
+
+        format = "%-22s %-8s %10s %12s %10s %10s %10s %10s %10s%n";
+        out.printf(format, "request", "time", "count", "total ms", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (RequestKind kind : RequestKind.values())
+        {
+            for (Timing timing : Timing.values())
+            {
+                long count = getCount(kind, timing);
+                if (count == 0)
+                    continue;
+                long total = getTotalNanos(kind, timing);
+                out.printf(format, kind.getName(), timing.getName(), count,
+                        millis(total), millis(total / count),
+                        millis(getPercentileNanos(kind, timing, 50)),
+                        millis(getPercentileNanos(kind, timing, 90)),
+                        millis(getPercentileNanos(kind, timing, 99)),
+                        millis(getMaxNanos(kind, timing)));
+            }
+        }
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format("%.3f", nanos / 1000000.0);
+    }
+}
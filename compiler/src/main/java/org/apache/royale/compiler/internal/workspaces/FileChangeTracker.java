@@ -0,0 +1,147 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.internal.projects.ASProject;
+import org.apache.royale.compiler.internal.units.SourceCompilationUnitFactory;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * Finds the files of a project that changed on disk since the last
+ * compilation, for compilers that keep their {@link Workspace} open between
+ * compilations, and notifies the workspace of them, so that only the
+ * compilation units that depend on those files are compiled again.
+ * <p>
+ * The last modified time of the file of every compilation unit of the project
+ * is recorded after a compilation. Before the next compilation, a file with a
+ * different time is reported with {@link Workspace#fileChanged}, a file that
+ * no longer exists with {@link Workspace#fileRemoved}, and a source file in a
+ * directory of the source path that was not recorded with
+ * {@link Workspace#fileAdded}.
+ * <p>
+ * Files that are not the file of a compilation unit, such as included files
+ * and embedded assets that changed, are not detected.
+ */
+public final class FileChangeTracker
+{
+    /**
+     * @param workspace The workspace to notify of the changed files.
+     * @param project The project whose files are tracked.
+     */
+    public FileChangeTracker(Workspace workspace, ASProject project)
+    {
+        this.workspace = workspace;
+        this.project = project;
+    }
+
+    private final Workspace workspace;
+    private final ASProject project;
+
+    /**
+     * Maps the normalized path of each recorded file to its last modified
+     * time.
+     */
+    private Map<String, Long> timestamps = new HashMap<String, Long>();
+
+    /**
+     * Records the last modified time of the file of every compilation unit of
+     * the project. Must be called while the workspace is idle, once a
+     * compilation is done.
+     */
+    public void recordFiles()
+    {
+        final Map<String, Long> timestamps = new HashMap<String, Long>();
+        for (final ICompilationUnit unit : project.getCompilationUnits())
+        {
+            final String path = unit.getAbsoluteFilename();
+            if (path == null || timestamps.containsKey(path))
+                continue;
+
+            // generated compilation units have no file
+            final File file = new File(path);
+            if (file.isFile())
+                timestamps.put(path, file.lastModified());
+        }
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Notifies the workspace of the files that were changed, removed or added
+     * since {@link #recordFiles()} was last called.
+     *
+     * @return The number of files the workspace was notified of.
+     */
+    public int notifyChangedFiles()
+    {
+        int count = 0;
+        for (final Map.Entry<String, Long> entry : timestamps.entrySet())
+        {
+            final File file = new File(entry.getKey());
+            if (!file.isFile())
+            {
+                workspace.fileRemoved(new FileSpecification(entry.getKey(), workspace.isUsingCRLFFilter()));
+                count++;
+            }
+            else if (file.lastModified() != entry.getValue())
+            {
+                workspace.fileChanged(new FileSpecification(entry.getKey(), workspace.isUsingCRLFFilter()));
+                count++;
+            }
+        }
+
+        final SourceCompilationUnitFactory factory = project.getSourceCompilationUnitFactory();
+        for (final File directory : project.getSourcePath())
+            count += notifyAddedFiles(directory, factory);
+
+        return count;
+    }
+
+    private int notifyAddedFiles(File directory, SourceCompilationUnitFactory factory)
+    {
+        final File[] files = directory.listFiles();
+        if (files == null)
+            return 0;
+
+        int count = 0;
+        for (final File file : files)
+        {
+            if (file.isDirectory())
+            {
+                count += notifyAddedFiles(file, factory);
+            }
+            else if (factory.canCreateCompilationUnit(file))
+            {
+                final String path = FilenameNormalization.normalize(file.getAbsolutePath());
+                if (!timestamps.containsKey(path))
+                {
+                    workspace.fileAdded(new FileSpecification(path, workspace.isUsingCRLFFilter()));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import org.apache.royale.swc.SWCManager;
+
+/**
+ * A long-lived workspace whose {@link SWCManager} is shared by the workspaces
+ * of all of the compilations that a build tool runs in the same JVM, so that
+ * SWCs used by many compilations, such as the framework SWCs, are only read
+ * once.
+ * <p>
+ * Build tools opt in by setting the {@link #SESSION_PROPERTY} system property
+ * to a value that identifies their build session. The build tool does not
+ * need to link against the compiler to do so. Workspaces created while the
+ * property is set share the SWC manager of the workspace of that session.
+ * When the value changes, the workspace of the previous session is released.
+ * Clearing the property only stops new workspaces from sharing, because
+ * compilations that run in parallel in the same session, such as the modules
+ * of a parallel build, may still use the shared SWC manager.
+ * <p>
+ * SWCs that changed on disk since they were read, such as the output of an
+ * earlier compilation of the same build, are read again by workspaces created
+ * after the change.
+ */
+public final class SharedWorkspace
+{
+    /**
+     * The system property that identifies the build session whose
+     * compilations share a workspace.
+     */
+    public static final String SESSION_PROPERTY = "royale.compiler.shared-workspace";
+
+    private SharedWorkspace()
+    {
+    }
+
+    private static Workspace workspace;
+    private static String session;
+
+    /**
+     * Gets the SWC manager for a new workspace to share, starting or
+     * releasing the shared workspace if the session changed.
+     *
+     * @return The shared {@link SWCManager}, or null if the
+     * {@link #SESSION_PROPERTY} is not set.
+     */
+    static synchronized SWCManager getSWCManager()
+    {
+        final String currentSession = System.getProperty(SESSION_PROPERTY);
+        if (currentSession == null)
+            return null;
+
+        if (!currentSession.equals(session))
+        {
+            close();
+            workspace = new Workspace(false);
+            session = currentSession;
+        }
+
+        final SWCManager swcManager = (SWCManager)workspace.getSWCManager();
+        swcManager.removeChangedSWCs();
+        return swcManager;
+    }
+
+    /**
+     * Releases the shared workspace, if there is one. Workspaces that share
+     * its SWC manager can still use it.
+     */
+    static synchronized void close()
+    {
+        if (workspace != null)
+            workspace.close();
+        workspace = null;
+        session = null;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit.Operation;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
+
+/**
+ * An {@link IWorkspaceProfilingDelegate} that records the wall time and the
+ * thread of every compilation unit operation, and writes them as a trace in
+ * the Trace Event JSON format, which chrome://tracing, Perfetto and
+ * speedscope display as a timeline or flame graph.
+ * <p>
+ * Besides the trace events, the report has a <code>summary</code> with the
+ * total time spent on each compilation unit, slowest first, broken down by
+ * operation. The {@link Operation#GET_SEMANTIC_PROBLEMS} operation is the
+ * outgoing dependencies request.
+ * <p>
+ * One delegate may be shared by the workspaces of several compilations, such
+ * as the targets of one MXMLJSC invocation. The report then has the
+ * operations of all of them.
+ */
+public class TraceProfilingDelegate implements IWorkspaceProfilingDelegate
+{
+    /**
+     * A completed operation.
+     */
+    private static class Event
+    {
+        Event(String name, String path, Operation operation, Thread thread, long start, long end)
+        {
+            this.name = name;
+            this.path = path;
+            this.operation = operation;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.start = start;
+            this.end = end;
+        }
+
+        final String name;
+        final String path;
+        final Operation operation;
+        final long threadId;
+        final String threadName;
+        final long start;
+        final long end;
+    }
+
+    /**
+     * @param reportFile the file written by {@link #writeReport()}.
+     */
+    public TraceProfilingDelegate(File reportFile)
+    {
+        this.reportFile = reportFile;
+        this.origin = System.nanoTime();
+    }
+
+    private final File reportFile;
+    private final long origin;
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<Event>();
+
+    /**
+     * Start times of the operations in progress on each thread. Operations
+     * start and complete on the same thread, and nest.
+     */
+    private final ThreadLocal<Deque<Long>> startTimes = new ThreadLocal<Deque<Long>>()
+    {
+        @Override
+        protected Deque<Long> initialValue()
+        {
+            return new ArrayDeque<Long>();
+        }
+    };
+
+    /**
+     * @return the file written by {@link #writeReport()}.
+     */
+    public File getReportFile()
+    {
+        return reportFile;
+    }
+
+    @Override
+    public void operationStarted(ICompilationUnit cu, Operation operation)
+    {
+        startTimes.get().push(System.nanoTime());
+    }
+
+    @Override
+    public void operationCompleted(ICompilationUnit cu, Operation operation)
+    {
+        Long start = startTimes.get().poll();
+        if (start == null)
+            return;
+        events.add(new Event(cu.getName(), cu.getAbsoluteFilename(), operation,
+                Thread.currentThread(), start, System.nanoTime()));
+    }
+
+    /**
+     * Writes all the operations recorded so far to the report file.
+     */
+    public void writeReport() throws IOException
+    {
+        List<Event> events = new ArrayList<Event>(this.events);
+        Collections.sort(events, new Comparator<Event>()
+        {
+            @Override
+            public int compare(Event e1, Event e2)
+            {
+                return e1.start < e2.start ? -1 : e1.start == e2.start ? 0 : 1;
+            }
+        });
+
+        File parent = reportFile.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+        try
+        {
+            out.write("{\"displayTimeUnit\":\"ms\",\n\"traceEvents\":[\n");
+            Map<Long, String> threadNames = new HashMap<Long, String>();
+            boolean first = true;
+            for (Event event : events)
+            {
+                threadNames.put(event.threadId, event.threadName);
+                if (!first)
+                    out.write(",\n");
+                first = false;
+                out.write("{\"name\":");
+                writeString(out, event.name);
+                out.write(",\"cat\":");
+                writeString(out, event.operation.name());
+                out.write(",\"ph\":\"X\",\"pid\":1,\"tid\":");
+                out.write(Long.toString(event.threadId));
+                out.write(",\"ts\":");
+                out.write(Long.toString(toMicros(event.start - origin)));
+                out.write(",\"dur\":");
+                out.write(Long.toString(toMicros(event.end - event.start)));
+                out.write(",\"args\":{\"path\":");
+                writeString(out, event.path);
+                out.write("}}");
+            }
+            for (Map.Entry<Long, String> thread : threadNames.entrySet())
+            {
+                if (!first)
+                    out.write(",\n");
+                first = false;
+                out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+                out.write(thread.getKey().toString());
+                out.write(",\"args\":{\"name\":");
+                writeString(out, thread.getValue());
+                out.write("}}");
+            }
+            out.write("\n],\n\"summary\":[\n");
+            writeSummary(out, events);
+            out.write("\n]}\n");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the total time of each compilation unit, slowest first. Time
+     * spent in nested operations is counted once for each operation.
+     */
+    private void writeSummary(Writer out, List<Event> events) throws IOException
+    {
+        final Map<String, long[]> totals = new HashMap<String, long[]>();
+        Map<String, Event> units = new LinkedHashMap<String, Event>();
+        Operation[] operations = Operation.values();
+        for (Event event : events)
+        {
+            String key = event.path != null ? event.path : event.name;
+            long[] total = totals.get(key);
+            if (total == null)
+            {
+                // the last slot is the total of all operations
+                total = new long[operations.length + 1];
+                totals.put(key, total);
+                units.put(key, event);
+            }
+            long duration = event.end - event.start;
+            total[event.operation.ordinal()] += duration;
+            total[operations.length] += duration;
+        }
+
+        List<String> keys = new ArrayList<String>(units.keySet());
+        final int totalIndex = operations.length;
+        Collections.sort(keys, new Comparator<String>()
+        {
+            @Override
+            public int compare(String k1, String k2)
+            {
+                long t1 = totals.get(k1)[totalIndex];
+                long t2 = totals.get(k2)[totalIndex];
+                return t1 > t2 ? -1 : t1 == t2 ? 0 : 1;
+            }
+        });
+
+        boolean first = true;
+        for (String key : keys)
+        {
+            Event unit = units.get(key);
+            long[] total = totals.get(key);
+            if (!first)
+                out.write(",\n");
+            first = false;
+            out.write("{\"name\":");
+            writeString(out, unit.name);
+            out.write(",\"path\":");
+            writeString(out, unit.path);
+            out.write(",\"totalMicros\":");
+            out.write(Long.toString(toMicros(total[totalIndex])));
+            out.write(",\"operations\":{");
+            boolean firstOperation = true;
+            for (Operation operation : operations)
+            {
+                if (total[operation.ordinal()] == 0)
+                    continue;
+                if (!firstOperation)
+                    out.write(",");
+                firstOperation = false;
+                writeString(out, operation.name());
+                out.write(":");
+                out.write(Long.toString(toMicros(total[operation.ordinal()])));
+            }
+            out.write("}}");
+        }
+    }
+
+    private static long toMicros(long nanos)
+    {
+        return nanos / 1000;
+    }
+
+    private static void writeString(Writer out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        out.write(String.format("\\u%04x", (int)c));
+                    else
+                        out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.royale.compiler.internal.workspaces;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -34,6 +35,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +45,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.royale.compiler.asdoc.IASDocDelegate;
+import org.apache.royale.compiler.asdoc.IPackageDITAParser;
 import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.filespecs.FileSpecification;
 import org.apache.royale.compiler.filespecs.IBinaryFileSpecification;
@@ -59,6 +62,7 @@ import org.apache.royale.compiler.internal.scopes.ASProjectScope;
 import org.apache.royale.compiler.internal.units.CompilationUnitBase;
 import org.apache.royale.compiler.internal.units.StringToCompilationUnitMap;
 import org.apache.royale.compiler.internal.units.requests.RequestMaker;
+import org.apache.royale.compiler.internal.units.requests.RequestStatistics;
 import org.apache.royale.compiler.mxml.IMXMLDataManager;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.projects.IASProject;
@@ -93,11 +97,16 @@ public final class Workspace implements IWorkspace
         assert assertionsEnabled = true; // intentional side effect
     }
 
-    private ExecutorService executorService;
+    private volatile ExecutorService executorService;
+    private int executorThreadCount;
+    private boolean executorUseVirtualThreads;
+    private volatile boolean usingVirtualThreads;
+    private volatile boolean useCRLFFilter;
+    private volatile RequestStatistics requestStatistics;
     protected final Map<CompilerProject, Object> projects;
     private IWorkspaceProfilingDelegate profilingDelegate;
     private final Set<IInvalidationListener> invalidationListeners;
-    private final SWCManager swcManager;
+    private SWCManager swcManager;
     private final MXMLDataManager mxmlDataManager;
     private final PackageNamespaceDefinitionCache packageNamespaceDefinitionCache;
 
@@ -155,10 +164,7 @@ public final class Workspace implements IWorkspace
     {
         // Limit the number of threads to the number of processors
         // If you want to run single threaded, update getNumberOfThreadToUse()
-        this(new ThreadPoolExecutor(0, getNumberOfThreadToUse(),
-                                    60L, TimeUnit.SECONDS,
-                                    new SynchronousQueue<Runnable>(),
-                                    new ThreadPoolExecutor.CallerRunsPolicy()));
+        this(createThreadPoolExecutor(getNumberOfThreadToUse()));
 
 //        this(Executors.newCachedThreadPool(), indexingDelegate);
     }
@@ -170,13 +176,34 @@ public final class Workspace implements IWorkspace
      * workspace.
      */
     public Workspace(ExecutorService es)
+    {
+        this(es, true);
+    }
+
+    /**
+     * Constructor for the workspace of a {@link SharedWorkspace}, which must
+     * not share the SWC manager of another workspace.
+     */
+    Workspace(boolean shareSWCManager)
+    {
+        this(createThreadPoolExecutor(getNumberOfThreadToUse()), shareSWCManager);
+    }
+
+    /**
+     * @param es {@link ExecutorService} to use to do background work in this
+     * workspace.
+     * @param shareSWCManager true to use the SWC manager of the
+     * {@link SharedWorkspace}, if there is one.
+     */
+    private Workspace(ExecutorService es, boolean shareSWCManager)
     {
         executorService = es;
 
         profilingDelegate = null;
         invalidationListeners = new LinkedHashSet<IInvalidationListener>();
 
-        swcManager = new SWCManager(this);
+        final SWCManager sharedSWCManager = shareSWCManager ? SharedWorkspace.getSWCManager() : null;
+        swcManager = sharedSWCManager != null ? sharedSWCManager : new SWCManager(this);
         mxmlDataManager = new MXMLDataManager();
 
         projects = new MapMaker().weakKeys().makeMap();
@@ -217,6 +244,108 @@ public final class Workspace implements IWorkspace
         return 16;
     }
 
+    private static ExecutorService createThreadPoolExecutor(int threadCount)
+    {
+        return new ThreadPoolExecutor(0, threadCount,
+                                      60L, TimeUnit.SECONDS,
+                                      new SynchronousQueue<Runnable>(),
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates an {@link ExecutorService} that starts a new virtual thread for
+     * each task. Virtual threads are only available on Java 21 and later, so
+     * the factory method is looked up by reflection.
+     * 
+     * @return The {@link ExecutorService}, or null if this JVM does not
+     * support virtual threads.
+     */
+    private static ExecutorService createVirtualThreadExecutor()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        }
+        catch (Exception e)
+        {
+            // no virtual threads, or only as a preview feature that is not enabled
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The executor is swapped in the idle state, so no request is running or
+     * being submitted while it is. Otherwise a request could be submitted to
+     * the previous executor after it is shut down, and its
+     * {@link ThreadPoolExecutor.CallerRunsPolicy} would discard it rather
+     * than run it, leaving the build waiting on it forever.
+     */
+    @Override
+    public synchronized void setExecutorOptions(int threadCount, boolean useVirtualThreads)
+    {
+        if (threadCount == executorThreadCount && useVirtualThreads == executorUseVirtualThreads)
+            return;
+
+        buildSync.startIdleState();
+        try
+        {
+            ExecutorService es = useVirtualThreads ? createVirtualThreadExecutor() : null;
+            usingVirtualThreads = es != null;
+            if (es == null)
+                es = createThreadPoolExecutor(threadCount > 0 ? threadCount : getNumberOfThreadToUse());
+
+            // no request is running, so the previous executor has nothing left to do
+            ExecutorService previous = executorService;
+            executorService = es;
+            executorThreadCount = threadCount;
+            executorUseVirtualThreads = useVirtualThreads;
+            if (previous != null)
+                previous.shutdown();
+        }
+        finally
+        {
+            buildSync.endIdleState();
+        }
+    }
+
+    @Override
+    public boolean isUsingVirtualThreads()
+    {
+        return usingVirtualThreads;
+    }
+
+    /**
+     * Sets whether the carriage returns of the source files of this workspace
+     * are dropped when the files are read, so that the offsets in the debug
+     * information of a SWF match the files on any platform. The files the
+     * workspace already knows about are read the new way from now on.
+     * 
+     * @param useCRLFFilter True to drop the carriage returns.
+     */
+    public synchronized void setUseCRLFFilter(boolean useCRLFFilter)
+    {
+        if (this.useCRLFFilter == useCRLFFilter)
+            return;
+        this.useCRLFFilter = useCRLFFilter;
+        for (Map.Entry<String, IFileSpecification> entry : pathToFileSpecMap.entrySet())
+        {
+            if (entry.getValue().getClass() == FileSpecification.class)
+                entry.setValue(new FileSpecification(entry.getKey(), useCRLFFilter));
+        }
+    }
+
+    /**
+     * @return True if the carriage returns of the source files of this
+     * workspace are dropped when the files are read.
+     */
+    public boolean isUsingCRLFFilter()
+    {
+        return useCRLFFilter;
+    }
+
     /**
      * Gets the {@link ExecutorService} to use in this workspace.
      * 
@@ -227,6 +356,30 @@ public final class Workspace implements IWorkspace
         return executorService;
     }
 
+    /**
+     * Gets the counters and timings of the requests made by compilation units
+     * in this workspace.
+     * 
+     * @return The {@link RequestStatistics}, or null if request statistics
+     * are not enabled.
+     */
+    public RequestStatistics getRequestStatistics()
+    {
+        return requestStatistics;
+    }
+
+    /**
+     * Enables or disables counting and timing the requests made by
+     * compilation units in this workspace. Enabling request statistics
+     * discards any statistics gathered so far.
+     * 
+     * @param enable true to enable request statistics, false to disable them.
+     */
+    public void setEnableRequestStatistics(boolean enable)
+    {
+        requestStatistics = enable ? new RequestStatistics() : null;
+    }
+
     private CompilerProject[] getProjects()
     {
         return projects.keySet().toArray(new CompilerProject[0]);
@@ -351,6 +504,9 @@ public final class Workspace implements IWorkspace
     {
         executorService.shutdown();
         executorService = null;
+        // a shared SWCManager is released by the workspace that created it
+        if (swcManager.getWorkspace() == this)
+            swcManager.releaseArchives();
     }
 
     private final Collection<ICompilationUnit> collectAssociatedCompilationUnits(IFileSpecification file)
@@ -960,7 +1116,7 @@ public final class Workspace implements IWorkspace
         IFileSpecification fileSpec = pathToFileSpecMap.get(path);
         if (fileSpec == null)
         {
-            fileSpec = new FileSpecification(path);
+            fileSpec = new FileSpecification(path, useCRLFFilter);
             pathToFileSpecMap.put(path, fileSpec);
         }
 
@@ -1038,6 +1194,11 @@ public final class Workspace implements IWorkspace
     {
         assert asDocDelegate != null : "ASDoc delegate can not be null, use default implementation instead!";
         this.asDocDelegate = asDocDelegate;
+
+        // a shared SWC manager reads SWCs with the ASDoc delegate of the
+        // shared workspace, which does not parse the package DITA of SWCs
+        if (swcManager.getWorkspace() != this && asDocDelegate.getPackageDitaParser() != IPackageDITAParser.NIL_PARSER)
+            swcManager = new SWCManager(this);
     }
     
     /**
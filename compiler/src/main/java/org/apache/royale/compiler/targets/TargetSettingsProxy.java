@@ -328,4 +328,16 @@ public abstract class TargetSettingsProxy implements ITargetSettings
     {
         return baseTargetSettings.getRemoveDeadCode();
     }
+
+    @Override
+    public int getLinkThreads()
+    {
+        return baseTargetSettings.getLinkThreads();
+    }
+
+    @Override
+    public boolean getIncrementalLink()
+    {
+        return baseTargetSettings.getIncrementalLink();
+    }
 }
@@ -21,6 +21,11 @@ package org.apache.royale.swc;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.royale.compiler.caches.IAssetTagCache;
 import org.apache.royale.compiler.caches.ICSSDocumentCache;
@@ -33,6 +38,8 @@ import org.apache.royale.compiler.internal.caches.ConcurrentCacheStoreBase;
 import org.apache.royale.compiler.internal.caches.FileScopeCache;
 import org.apache.royale.compiler.internal.caches.SWFCache;
 import org.apache.royale.compiler.workspaces.IWorkspace;
+import org.apache.royale.swc.io.MappedSWCArchive;
+import org.apache.royale.swc.io.SWCIndexCache;
 import org.apache.royale.swc.io.SWCReader;
 
 /**
@@ -87,6 +94,13 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
     private final AssetTagCache assetTagCache;
     private final CSSDocumentCache cssDocumentCache;
     private final IWorkspace workspace;
+    private volatile SWCIndexCache indexCache;
+
+    /**
+     * Maps the canonical path of each SWC read to the last modified time of
+     * its file when it was read.
+     */
+    private final ConcurrentMap<String, Long> swcTimestamps = new ConcurrentHashMap<String, Long>();
 
 
 
@@ -122,13 +136,30 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         return workspace;
     }
 
+    /**
+     * Set the directory where the indexes of the SWC catalogs are cached
+     * across compiler invocations. SWCs that are read after this call are
+     * loaded from an up-to-date index instead of the SWC archive.
+     * 
+     * @param directory the cache directory, or null to stop using the cache
+     */
+    public void setIndexCacheDirectory(File directory)
+    {
+        if (directory == null)
+            indexCache = null;
+        else if (indexCache == null || !directory.equals(indexCache.getDirectory()))
+            indexCache = new SWCIndexCache(directory);
+    }
+
     @Override
     protected ISWC createEntryValue(CacheStoreKeyBase key)
     {
         if (key instanceof SWCCacheKey)
         {
             final SWCCacheKey cacheKey = (SWCCacheKey)key;
-            final SWCReader reader = new SWCReader(cacheKey.file, workspace.getASDocDelegate().getPackageDitaParser());
+            swcTimestamps.put(cacheKey.generateKey(), cacheKey.file.lastModified());
+            MappedSWCArchive.retain(cacheKey.file, this);
+            final SWCReader reader = new SWCReader(cacheKey.file, workspace.getASDocDelegate().getPackageDitaParser(), indexCache);
             final ISWC swc = reader.getSWC();
             
             assert swc != null : "Expect a SWC model object.";
@@ -140,6 +171,17 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         }
     }
 
+    /**
+     * Weighs a SWC by the size of the SWC file, so that a maximum weight set
+     * with {@link #setMaximumWeight(long)} is roughly a number of bytes.
+     */
+    @Override
+    protected long getEntryWeight(CacheStoreKeyBase key, ISWC value)
+    {
+        final long length = value.getSWCFile().length();
+        return length > 0 ? length : 1;
+    }
+
     @Override
     public ISWC get(File file)
     {
@@ -147,10 +189,39 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         return result;
     }
 
+    /**
+     * Removes the SWCs whose file changed or was deleted since it was read,
+     * so that they are read again the next time they are used. Compilation
+     * units that already use a removed SWC are not invalidated.
+     * <p>
+     * Can be called by several threads at once; each changed SWC is removed
+     * by one of them.
+     * 
+     * @return the files of the removed SWCs
+     */
+    public Collection<File> removeChangedSWCs()
+    {
+        final Collection<File> changedFiles = new ArrayList<File>();
+        for (final Map.Entry<String, Long> entry : swcTimestamps.entrySet())
+        {
+            final File file = new File(entry.getKey());
+            if (file.lastModified() != entry.getValue() &&
+                swcTimestamps.remove(entry.getKey(), entry.getValue()))
+            {
+                remove(file);
+                changedFiles.add(file);
+            }
+        }
+        return changedFiles;
+    }
+
     @Override
     public void remove(File file)
     {
-        ISWC removedSWC = this.remove(new SWCCacheKey(file));
+        final SWCCacheKey key = new SWCCacheKey(file);
+        swcTimestamps.remove(key.generateKey());
+        MappedSWCArchive.release(file, this);
+        ISWC removedSWC = this.remove(key);
         if (removedSWC == null)
             return;
         for (ISWCLibrary lib : removedSWC.getLibraries())
@@ -164,13 +235,28 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
             }
 
             swfCache.remove(SWFCache.createKey(removedSWC, lib.getPath()));
+            swfCache.remove(SWFCache.createKeyForAllTags(removedSWC, lib.getPath()));
         }
 
         for (String defaultsCSSFileName : CSSDocumentCache.ALL_DEFAULTS_CSS_FILENAMES)
             cssDocumentCache.remove(CSSDocumentCache.createKey(removedSWC, defaultsCSSFileName));
 
         for (String fileInSWC : removedSWC.getFiles().keySet())
+        {
             swfCache.remove(SWFCache.createKey(removedSWC, fileInSWC));
+            swfCache.remove(SWFCache.createKeyForAllTags(removedSWC, fileInSWC));
+        }
+    }
+
+    /**
+     * Stop sharing the memory mappings of the SWCs read by this manager, so
+     * that their files are no longer kept open. The SWCs are still cached,
+     * and their files are read without a shared mapping until they are
+     * removed and read again.
+     */
+    public void releaseArchives()
+    {
+        MappedSWCArchive.releaseAll(this);
     }
 
     @Override
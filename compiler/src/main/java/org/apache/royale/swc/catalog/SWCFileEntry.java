@@ -19,17 +19,17 @@
 
 package org.apache.royale.swc.catalog;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.ZipFile;
 
 import org.apache.royale.swc.ISWCFileEntry;
-import org.apache.royale.swc.io.SWCReader;
+import org.apache.royale.swc.io.MappedSWCArchive;
 
 /**
  * A file in a SWC archive.
  */
-class SWCFileEntry implements ISWCFileEntry
+public class SWCFileEntry implements ISWCFileEntry
 {
     public SWCFileEntry(String containingSWCPath, String path, long mod)
     {
@@ -63,8 +63,6 @@ class SWCFileEntry implements ISWCFileEntry
     @Override
     public InputStream createInputStream() throws IOException
     {
-        ZipFile swcFile = new ZipFile(containingSWCPath);
-        InputStream inputStream = SWCReader.getInputStream(swcFile, path);
-        return inputStream;
+        return MappedSWCArchive.openEntry(new File(containingSWCPath), path);
     }
 }
@@ -0,0 +1,590 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * A read-only view of a SWC archive that is memory-mapped once and shared by
+ * all readers of the SWC, instead of opening a {@link ZipFile} and searching
+ * its entries every time a file in the SWC is read.
+ * <p>
+ * STORED entries are served as slices of the mapped buffer without copying.
+ * DEFLATED entries are inflated lazily while they are read.
+ * <p>
+ * Only plain ZIP archives are supported. {@link #openEntry(File, String)}
+ * falls back to {@link ZipFile} for ZIP64 archives, archives larger than
+ * 2GB and encrypted entries. The fallback is remembered until the file
+ * changes.
+ * <p>
+ * An archive is only mapped and shared while an owner, usually the
+ * {@code SWCManager} that read the SWC, has retained it with
+ * {@link #retain(File, Object)}. Once every owner has called
+ * {@link #release(File, Object)} or {@link #releaseAll(Object)}, or has been
+ * garbage collected, the mapping is dropped, and the garbage collector
+ * unmaps it once the last stream is closed. An archive that no owner
+ * retains is read with a {@link ZipFile}, so that the file is not kept
+ * mapped (and locked, on Windows) by a compilation that is over.
+ * <p>
+ * A mapped file that is truncated by another process makes reads of the
+ * mapping fail. The streams returned by this class report that as an
+ * {@link IOException}, and a file whose length or modification time changed
+ * is mapped again before new streams are opened.
+ */
+public class MappedSWCArchive
+{
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    /**
+     * The retained archives by path.
+     */
+    private static final ConcurrentMap<String, RetainedArchive> archives =
+            new ConcurrentHashMap<String, RetainedArchive>();
+
+    /**
+     * An archive that is retained by at least one owner. Guarded by itself.
+     */
+    private static final class RetainedArchive
+    {
+        /**
+         * The owners, which are only weakly referenced so that an owner that
+         * is never closed does not keep the mapping.
+         */
+        final Set<Object> owners = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+
+        MappedSWCArchive archive;
+
+        /**
+         * Why the file, with {@link #length} and {@link #lastModified}, can't
+         * be mapped, or null.
+         */
+        ZipException unsupported;
+        long length;
+        long lastModified;
+    }
+
+    /**
+     * Share the mapping of an archive until the owner releases it.
+     *
+     * @param file archive file
+     * @param owner the owner, usually a {@code SWCManager}
+     */
+    public static void retain(File file, Object owner)
+    {
+        final String path = file.getAbsolutePath();
+        while (true)
+        {
+            RetainedArchive retained = archives.get(path);
+            if (retained == null)
+            {
+                final RetainedArchive newRetained = new RetainedArchive();
+                retained = archives.putIfAbsent(path, newRetained);
+                if (retained == null)
+                    retained = newRetained;
+            }
+            synchronized (retained)
+            {
+                // an archive whose owners were all released is removed
+                if (archives.get(path) == retained)
+                {
+                    retained.owners.add(owner);
+                    break;
+                }
+            }
+        }
+        removeUnowned();
+    }
+
+    /**
+     * Stop sharing the mapping of an archive for an owner.
+     *
+     * @param file archive file
+     * @param owner an owner passed to {@link #retain(File, Object)}
+     */
+    public static void release(File file, Object owner)
+    {
+        final String path = file.getAbsolutePath();
+        final RetainedArchive retained = archives.get(path);
+        if (retained == null)
+            return;
+        synchronized (retained)
+        {
+            retained.owners.remove(owner);
+            if (retained.owners.isEmpty())
+                archives.remove(path);
+        }
+    }
+
+    /**
+     * Stop sharing the mappings of all the archives an owner retained.
+     *
+     * @param owner an owner passed to {@link #retain(File, Object)}
+     */
+    public static void releaseAll(Object owner)
+    {
+        for (final Iterator<Map.Entry<String, RetainedArchive>> iter = archives.entrySet().iterator(); iter.hasNext();)
+        {
+            final RetainedArchive retained = iter.next().getValue();
+            synchronized (retained)
+            {
+                retained.owners.remove(owner);
+                if (retained.owners.isEmpty())
+                    iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the archives whose owners have all been garbage collected.
+     */
+    private static void removeUnowned()
+    {
+        for (final Iterator<Map.Entry<String, RetainedArchive>> iter = archives.entrySet().iterator(); iter.hasNext();)
+        {
+            final RetainedArchive retained = iter.next().getValue();
+            synchronized (retained)
+            {
+                if (retained.owners.isEmpty())
+                    iter.remove();
+            }
+        }
+    }
+
+    /**
+     * @param file archive file
+     * @return true if an owner retains the archive
+     */
+    public static boolean isRetained(File file)
+    {
+        return archives.containsKey(file.getAbsolutePath());
+    }
+
+    /**
+     * Get the mapped archive for a file. The mapping of a retained archive
+     * is shared, and it is mapped again if the file changed since it was
+     * mapped. An archive that is not retained is mapped for the caller only.
+     *
+     * @param file archive file
+     * @return mapped archive
+     * @throws IOException if the file can't be read, or if it is not a ZIP
+     * archive this class supports
+     */
+    public static MappedSWCArchive get(File file) throws IOException
+    {
+        final RetainedArchive retained = archives.get(file.getAbsolutePath());
+        if (retained == null)
+            return new MappedSWCArchive(file);
+
+        synchronized (retained)
+        {
+            final long length = file.length();
+            final long lastModified = file.lastModified();
+            if (retained.length != length || retained.lastModified != lastModified)
+            {
+                retained.archive = null;
+                retained.unsupported = null;
+                retained.length = length;
+                retained.lastModified = lastModified;
+            }
+            if (retained.unsupported != null)
+                throw retained.unsupported;
+            if (retained.archive == null)
+            {
+                try
+                {
+                    retained.archive = new MappedSWCArchive(file);
+                }
+                catch (ZipException e)
+                {
+                    retained.unsupported = e;
+                    throw e;
+                }
+            }
+            return retained.archive;
+        }
+    }
+
+    /**
+     * Open a file in an archive for reading. If the archive can't be mapped,
+     * the file is read with a {@link ZipFile}, which is closed when the
+     * returned stream is closed.
+     *
+     * @param file archive file
+     * @param name name of the file in the archive
+     * @return a stream of the uncompressed file, or null if the archive does
+     * not contain the file
+     * @throws IOException error reading the archive
+     */
+    public static InputStream openEntry(File file, String name) throws IOException
+    {
+        if (isRetained(file))
+        {
+            try
+            {
+                final MappedSWCArchive archive = get(file);
+                if (!archive.hasEntry(name))
+                    return null;
+                if (archive.isReadable(name))
+                    return archive.getInputStream(name);
+            }
+            catch (ZipException e)
+            {
+                // fall back to ZipFile below
+            }
+        }
+
+        final ZipFile zipFile = new ZipFile(file, ZipFile.OPEN_READ);
+        final InputStream in;
+        try
+        {
+            in = SWCReader.getInputStream(zipFile, name);
+        }
+        catch (IOException e)
+        {
+            zipFile.close();
+            throw e;
+        }
+        if (in == null)
+        {
+            zipFile.close();
+            return null;
+        }
+        return new FilterInputStream(in)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    zipFile.close();
+                }
+            }
+        };
+    }
+
+    private MappedSWCArchive(File file) throws IOException
+    {
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+        if (length > Integer.MAX_VALUE)
+            throw new ZipException("Archive too large to map: " + file.getPath());
+
+        final FileInputStream in = new FileInputStream(file);
+        try
+        {
+            final FileChannel channel = in.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        finally
+        {
+            in.close();
+        }
+        entries = Collections.unmodifiableMap(readCentralDirectory(buffer, file.getPath()));
+    }
+
+    private final long length;
+    private final long lastModified;
+    private final ByteBuffer buffer;
+    private final Map<String, Entry> entries;
+
+    /**
+     * A file in the archive, as described by the central directory.
+     */
+    private static final class Entry
+    {
+        int method;
+        boolean encrypted;
+        int compressedSize;
+        int size;
+        int localHeaderOffset;
+
+        /**
+         * Offset of the file data, which is only known after the local
+         * header has been read.
+         */
+        volatile int dataOffset = -1;
+    }
+
+    private static Map<String, Entry> readCentralDirectory(ByteBuffer buffer, String path) throws IOException
+    {
+        final int limit = buffer.limit();
+        int end = -1;
+        for (int i = limit - END_HEADER_SIZE; i >= 0 && i >= limit - END_HEADER_SIZE - MAX_COMMENT_SIZE; i--)
+        {
+            if (buffer.getInt(i) == END_HEADER_SIGNATURE)
+            {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1)
+            throw new ZipException("Not a ZIP archive: " + path);
+
+        final int entryCount = buffer.getShort(end + 10) & 0xFFFF;
+        final long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || directoryOffset == 0xFFFFFFFFL || directoryOffset >= limit)
+            throw new ZipException("ZIP64 archives are not supported: " + path);
+
+        final Map<String, Entry> result = new LinkedHashMap<String, Entry>(entryCount * 2);
+        int offset = (int)directoryOffset;
+        for (int i = 0; i < entryCount; i++)
+        {
+            if (buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid central directory in " + path);
+
+            final Entry entry = new Entry();
+            entry.encrypted = (buffer.getShort(offset + 8) & 1) != 0;
+            entry.method = buffer.getShort(offset + 10) & 0xFFFF;
+            entry.compressedSize = buffer.getInt(offset + 20);
+            entry.size = buffer.getInt(offset + 24);
+            final int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+            final int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+            final int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+            entry.localHeaderOffset = buffer.getInt(offset + 42);
+            if (entry.compressedSize < 0 || entry.size < 0 || entry.localHeaderOffset < 0)
+                throw new ZipException("ZIP64 archives are not supported: " + path);
+
+            final byte[] nameBytes = new byte[nameLength];
+            final ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(offset + CENTRAL_HEADER_SIZE);
+            nameBuffer.get(nameBytes);
+            result.put(new String(nameBytes, "UTF-8"), entry);
+
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    /**
+     * @return names of the files in the archive, in archive order
+     */
+    public Set<String> getEntryNames()
+    {
+        return entries.keySet();
+    }
+
+    /**
+     * @param name name of a file in the archive
+     * @return true if the archive contains the file
+     */
+    public boolean hasEntry(String name)
+    {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * @param name name of a file in the archive
+     * @return true if the archive contains the file and it can be read
+     * through this class
+     */
+    boolean isReadable(String name)
+    {
+        final Entry entry = entries.get(name);
+        return entry != null && !entry.encrypted &&
+               (entry.method == STORED || entry.method == DEFLATED);
+    }
+
+    /**
+     * Open a file in the archive for reading.
+     *
+     * @param name name of the file in the archive
+     * @return a stream of the uncompressed file, or null if the archive does
+     * not contain the file
+     * @throws IOException error reading the archive
+     */
+    public InputStream getInputStream(String name) throws IOException
+    {
+        final Entry entry = entries.get(name);
+        if (entry == null)
+            return null;
+        if (entry.encrypted)
+            throw new ZipException("Encrypted entries are not supported: " + name);
+
+        switch (entry.method)
+        {
+            case STORED:
+                return new ByteBufferInputStream(slice(entry, entry.size), false);
+            case DEFLATED:
+                // With "nowrap", the inflater needs an extra dummy byte after
+                // the compressed data.
+                final Inflater inflater = new Inflater(true);
+                final InputStream compressed =
+                        new ByteBufferInputStream(slice(entry, entry.compressedSize), true);
+                return new InflaterInputStream(compressed, inflater, 8192)
+                {
+                    private boolean closed;
+
+                    @Override
+                    public void close() throws IOException
+                    {
+                        if (closed)
+                            return;
+                        closed = true;
+                        inflater.end();
+                        super.close();
+                    }
+                };
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + ": " + name);
+        }
+    }
+
+    private ByteBuffer slice(Entry entry, int size) throws IOException
+    {
+        int dataOffset = entry.dataOffset;
+        if (dataOffset == -1)
+        {
+            final int headerOffset = entry.localHeaderOffset;
+            if (buffer.getInt(headerOffset) != LOCAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid local header at " + headerOffset);
+            final int nameLength = buffer.getShort(headerOffset + 26) & 0xFFFF;
+            final int extraLength = buffer.getShort(headerOffset + 28) & 0xFFFF;
+            dataOffset = headerOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+            entry.dataOffset = dataOffset;
+        }
+
+        final ByteBuffer result = buffer.duplicate();
+        result.position(dataOffset);
+        result.limit(dataOffset + size);
+        return result.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * An {@link InputStream} that reads a {@link ByteBuffer}.
+     */
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        ByteBufferInputStream(ByteBuffer buffer, boolean padding)
+        {
+            this.buffer = buffer;
+            this.padding = padding;
+        }
+
+        private final ByteBuffer buffer;
+        private boolean padding;
+
+        @Override
+        public int read() throws IOException
+        {
+            if (buffer.hasRemaining())
+                return get() & 0xFF;
+            if (padding)
+            {
+                padding = false;
+                return 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+                return 0;
+            final int remaining = buffer.remaining();
+            if (remaining == 0)
+                return read() == -1 ? -1 : fillPadding(b, off);
+            final int n = Math.min(len, remaining);
+            try
+            {
+                buffer.get(b, off, n);
+            }
+            catch (InternalError e)
+            {
+                throw truncated(e);
+            }
+            return n;
+        }
+
+        private byte get() throws IOException
+        {
+            try
+            {
+                return buffer.get();
+            }
+            catch (InternalError e)
+            {
+                throw truncated(e);
+            }
+        }
+
+        /**
+         * The JVM reports a fault while reading a mapping, such as a SIGBUS
+         * after the file was truncated, as an {@link InternalError}.
+         */
+        private static IOException truncated(InternalError e)
+        {
+            return new IOException("The archive changed while it was read", e);
+        }
+
+        private static int fillPadding(byte[] b, int off)
+        {
+            b[off] = 0;
+            return 1;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            final int skipped = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
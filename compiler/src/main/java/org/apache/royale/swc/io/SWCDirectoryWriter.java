@@ -109,8 +109,7 @@ public class SWCDirectoryWriter extends SWCWriterBase
 
         final DigestOutputStream digestStream = getDigestOutputStream(library, outputStream);
 
-        ISWFWriter swfWriter = swfWriterFactory.createSWFWriter(swf,
-                getLibrarySWFCompression(), enableDebug, enableTelemetry);
+        ISWFWriter swfWriter = createLibrarySWFWriter(swf);
         swfWriter.writeTo(digestStream != null ? digestStream : outputStream);
         swfWriter.close();
         outputStream.close();
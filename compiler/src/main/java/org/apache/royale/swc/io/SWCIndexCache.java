@@ -0,0 +1,433 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCComponent;
+import org.apache.royale.swc.ISWCDigest;
+import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.ISWCLibrary;
+import org.apache.royale.swc.ISWCScript;
+import org.apache.royale.swc.ISWCVersion;
+import org.apache.royale.swc.SWC;
+import org.apache.royale.swc.SWCComponent;
+import org.apache.royale.swc.SWCDigest;
+import org.apache.royale.swc.SWCLibrary;
+import org.apache.royale.swc.SWCScript;
+import org.apache.royale.swc.catalog.SWCFileEntry;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.StringEncoder;
+
+/**
+ * A directory of binary indexes of SWC catalogs, so that a SWC whose catalog
+ * was read by an earlier compiler process can be loaded without opening the
+ * SWC archive and parsing <code>catalog.xml</code>.
+ * <p>
+ * Each index holds the libraries, scripts, definitions, dependencies,
+ * digests, components and files of one SWC. It is keyed by the canonical
+ * path of the SWC, and it is only used while the SWC still has the length
+ * and modification time recorded in the index. The indexes are read through
+ * a memory-mapped buffer.
+ * <p>
+ * The DITA documentation of a SWC is not indexed, so a SWC that has any is
+ * only loaded from the index when no DITA parser is used.
+ */
+public class SWCIndexCache
+{
+    private static final int MAGIC = 0x53574349; // "SWCI"
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_EXTENSION = ".swci";
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory the indexes are stored in. It is
+     * created when the first index is stored.
+     */
+    public SWCIndexCache(File directory)
+    {
+        assert directory != null;
+        this.directory = directory;
+    }
+
+    private final File directory;
+
+    /**
+     * @return The directory the indexes are stored in.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Load a SWC from its index.
+     *
+     * @param swcFile The SWC file.
+     * @param needsDITA True if the caller needs the DITA documentation of the
+     * SWC.
+     * @return The SWC model, or null if there is no up-to-date index for the
+     * SWC.
+     */
+    public SWC load(File swcFile, boolean needsDITA)
+    {
+        final File indexFile;
+        final String swcPath;
+        try
+        {
+            swcPath = swcFile.getCanonicalPath();
+            indexFile = getIndexFile(swcPath);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        if (!indexFile.isFile())
+            return null;
+
+        try
+        {
+            final ByteBuffer buffer = map(indexFile);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+                return null;
+            if (!swcPath.equals(readString(buffer)) ||
+                    buffer.getLong() != swcFile.length() ||
+                    buffer.getLong() != swcFile.lastModified())
+                return null;
+            final boolean hasDITA = buffer.get() != 0;
+            if (hasDITA && needsDITA)
+                return null;
+            return readSWC(buffer, swcFile);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (BufferUnderflowException e)
+        {
+            // a truncated index is rewritten by the next full read
+            return null;
+        }
+    }
+
+    /**
+     * Store the index of a SWC that was read from the SWC archive. The SWC
+     * is not indexed if reading it reported any problems.
+     *
+     * @param swc The SWC model.
+     * @param hasDITA True if the SWC has DITA documentation.
+     */
+    public void store(ISWC swc, boolean hasDITA)
+    {
+        if (!swc.getProblems().isEmpty())
+            return;
+
+        final File swcFile = swc.getSWCFile();
+        File tempFile = null;
+        try
+        {
+            final String swcPath = swcFile.getCanonicalPath();
+            final File indexFile = getIndexFile(swcPath);
+            if (!directory.isDirectory() && !directory.mkdirs())
+                return;
+
+            // Write to a temporary file first, so that another compiler
+            // process never maps a partially written index.
+            tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, swcPath);
+                out.writeLong(swcFile.length());
+                out.writeLong(swcFile.lastModified());
+                out.writeBoolean(hasDITA);
+                writeSWC(out, swc);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if (replace(tempFile, indexFile))
+                tempFile = null;
+        }
+        catch (IOException e)
+        {
+            // the index is only an optimization
+        }
+        finally
+        {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    /**
+     * Replaces an index with a new file. On most platforms the rename replaces
+     * the old index atomically. Where it cannot replace an existing file, the
+     * old index is deleted first, so a reader finds the old index, no index,
+     * or the new one, but never a partial one. If the old index cannot be
+     * deleted, for example because another process has it mapped, it is kept:
+     * it no longer matches the SWC, so it is simply not used.
+     *
+     * @return true if the new file replaced the index.
+     */
+    private static boolean replace(File tempFile, File indexFile)
+    {
+        if (tempFile.renameTo(indexFile))
+            return true;
+        if (!indexFile.exists() || !indexFile.delete())
+            return false;
+        return tempFile.renameTo(indexFile);
+    }
+
+    private File getIndexFile(String swcPath)
+    {
+        return new File(directory, StringEncoder.stringToMD5String(swcPath) + INDEX_EXTENSION);
+    }
+
+    private static ByteBuffer map(File file) throws IOException
+    {
+        final FileInputStream in = new FileInputStream(file);
+        try
+        {
+            final FileChannel channel = in.getChannel();
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeSWC(DataOutputStream out, ISWC swc) throws IOException
+    {
+        out.writeBoolean(swc.isANE());
+
+        final ISWCVersion version = swc.getVersion();
+        writeString(out, version.getSWCVersion());
+        writeString(out, version.getRoyaleVersion());
+        writeString(out, version.getRoyaleMinSupportedVersion());
+        writeString(out, version.getRoyaleBuild());
+        writeString(out, version.getCompilerName());
+        writeString(out, version.getCompilerVersion());
+        writeString(out, version.getCompilerBuild());
+
+        final Collection<ISWCLibrary> libraries = swc.getLibraries();
+        out.writeInt(libraries.size());
+        for (final ISWCLibrary library : libraries)
+        {
+            writeString(out, library.getPath());
+
+            final Set<String> metadataNames = library.getKeepAS3MetadataSet();
+            out.writeInt(metadataNames.size());
+            for (final String name : metadataNames)
+                writeString(out, name);
+
+            final List<ISWCDigest> digests = library.getDigests();
+            out.writeInt(digests.size());
+            for (final ISWCDigest digest : digests)
+            {
+                writeString(out, digest.getType());
+                writeString(out, digest.getValue());
+                out.writeBoolean(digest.isSigned());
+            }
+
+            final List<ISWCScript> scripts = library.getScripts();
+            out.writeInt(scripts.size());
+            for (final ISWCScript script : scripts)
+            {
+                writeString(out, script.getName());
+                out.writeLong(script.getLastModified());
+                writeString(out, script.getSignatureChecksum());
+
+                final Set<String> definitions = script.getDefinitions();
+                out.writeInt(definitions.size());
+                for (final String definition : definitions)
+                    writeString(out, definition);
+
+                final Collection<Map.Entry<String, DependencyType>> dependencies =
+                        script.getDependencies().entries();
+                out.writeInt(dependencies.size());
+                for (final Map.Entry<String, DependencyType> dependency : dependencies)
+                {
+                    writeString(out, dependency.getKey());
+                    out.writeChar(dependency.getValue().getSymbol());
+                }
+            }
+        }
+
+        final List<ISWCComponent> components = swc.getComponents();
+        out.writeInt(components.size());
+        for (final ISWCComponent component : components)
+        {
+            writeString(out, component.getQName());
+            writeString(out, component.getName());
+            writeString(out, component.getURI());
+            writeString(out, component.getIcon());
+            writeString(out, component.getPreview());
+            final ISWCScript script = component.getScript();
+            String libraryPath = null;
+            if (script != null)
+            {
+                for (final ISWCLibrary library : libraries)
+                {
+                    if (library.getScript(script.getName()) == script)
+                        libraryPath = library.getPath();
+                }
+            }
+            writeString(out, libraryPath);
+            writeString(out, libraryPath != null ? script.getName() : null);
+        }
+
+        final Collection<ISWCFileEntry> files = swc.getFiles().values();
+        out.writeInt(files.size());
+        for (final ISWCFileEntry file : files)
+        {
+            writeString(out, file.getPath());
+            out.writeLong(file.getLastModified());
+        }
+    }
+
+    private static SWC readSWC(ByteBuffer in, File swcFile) throws IOException
+    {
+        final SWC swc = new SWC(swcFile);
+        swc.setIsANE(in.get() != 0);
+
+        final ISWCVersion version = swc.getVersion();
+        version.setSWCVersion(readString(in));
+        version.setRoyaleVersion(readString(in));
+        version.setRoyaleMinSupportedVersion(readString(in));
+        version.setRoyaleBuild(readString(in));
+        version.setCompilerName(readString(in));
+        version.setCompilerVersion(readString(in));
+        version.setCompilerBuild(readString(in));
+
+        for (int libraryCount = in.getInt(); libraryCount > 0; libraryCount--)
+        {
+            final SWCLibrary library = new SWCLibrary(readString(in));
+            swc.addLibrary(library);
+
+            for (int count = in.getInt(); count > 0; count--)
+                library.addNameToKeepAS3MetadataSet(readString(in));
+
+            for (int count = in.getInt(); count > 0; count--)
+            {
+                final SWCDigest digest = new SWCDigest();
+                digest.setType(readString(in));
+                digest.setValue(readString(in));
+                digest.setSigned(in.get() != 0);
+                library.addDigest(digest);
+            }
+
+            for (int scriptCount = in.getInt(); scriptCount > 0; scriptCount--)
+            {
+                final SWCScript script = new SWCScript();
+                script.setName(intern(readString(in)));
+                script.setLastModified(in.getLong());
+                final String signatureChecksum = readString(in);
+                if (signatureChecksum != null)
+                    script.setSignatureChecksum(signatureChecksum);
+                for (int count = in.getInt(); count > 0; count--)
+                    script.addDefinition(readString(in));
+                for (int count = in.getInt(); count > 0; count--)
+                {
+                    final String id = readString(in);
+                    script.addDependency(id, DependencyType.get(in.getChar()));
+                }
+                library.addScript(script);
+            }
+        }
+
+        for (int componentCount = in.getInt(); componentCount > 0; componentCount--)
+        {
+            final SWCComponent component = new SWCComponent();
+            component.setQName(intern(readString(in)));
+            component.setName(intern(readString(in)));
+            component.setURI(intern(readString(in)));
+            component.setIcon(intern(readString(in)));
+            component.setPreview(intern(readString(in)));
+            final String libraryPath = readString(in);
+            final String scriptName = readString(in);
+            if (libraryPath != null)
+            {
+                final ISWCLibrary library = swc.getLibrary(libraryPath);
+                if (library != null)
+                    component.setScript(library.getScript(scriptName));
+            }
+            swc.addComponent(component);
+        }
+
+        final String containingSWCPath = FilenameNormalization.normalize(swcFile.getAbsolutePath());
+        for (int fileCount = in.getInt(); fileCount > 0; fileCount--)
+        {
+            final String path = readString(in);
+            swc.addFile(new SWCFileEntry(containingSWCPath, path, in.getLong()));
+        }
+
+        return swc;
+    }
+
+    private static String intern(String value)
+    {
+        return value != null ? value.intern() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException
+    {
+        final int length = in.getInt();
+        if (length < 0)
+            return null;
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
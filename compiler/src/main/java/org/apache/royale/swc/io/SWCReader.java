@@ -76,8 +76,36 @@ public class SWCReader implements ISWCReader
      * parse DITA information found in the SWC.
      */
     public SWCReader(File swcFile, IPackageDITAParser packageDitaParser)
+    {
+        this(swcFile, packageDitaParser, null);
+    }
+
+    /**
+     * Create a SWCReader from a file object, using an index of the SWC
+     * catalog stored by an earlier compilation if there is an up-to-date one.
+     * 
+     * @param swcFile input SWC file. The file must exist or a
+     * FileNotFoundException is thrown.
+     * @param packageDitaParser {@link IPackageDITAParser} that will be used to
+     * parse DITA information found in the SWC.
+     * @param indexCache {@link SWCIndexCache} to load the SWC from, and to
+     * store the index of the SWC in after it is read. May be null.
+     */
+    public SWCReader(File swcFile, IPackageDITAParser packageDitaParser, SWCIndexCache indexCache)
     {
         this.swcFile = swcFile;
+
+        if (indexCache != null && swcFile.isFile())
+        {
+            final SWC indexedSWC = indexCache.load(swcFile,
+                    packageDitaParser != IPackageDITAParser.NIL_PARSER);
+            if (indexedSWC != null)
+            {
+                this.swc = indexedSWC;
+                return;
+            }
+        }
+
         this.swc = new SWC(swcFile);
 
         if (!swcFile.exists() || !swcFile.isFile())
@@ -139,6 +167,8 @@ public class SWCReader implements ISWCReader
             // META-INF/AIR/extension.xml file.
             swc.setIsANE(zipFile.getEntry(ANE_EXTENSION_XML) != null);
             
+            if (indexCache != null)
+                indexCache.store(swc, zipFile.getEntry(DITA_MANIFEST) != null);
         }
         finally
         {
@@ -153,8 +153,7 @@ public class SWCWriter extends SWCWriterBase
     	ze.setMethod(ZipEntry.STORED);
     	
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ISWFWriter swfWriter = swfWriterFactory.createSWFWriter(swf,
-                getLibrarySWFCompression(), enableDebug, enableTelemetry);
+        ISWFWriter swfWriter = createLibrarySWFWriter(swf);
         swfWriter.writeTo(baos);
         swfWriter.close();
         ze.setSize(baos.size());
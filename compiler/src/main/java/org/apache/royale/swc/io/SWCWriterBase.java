@@ -38,7 +38,10 @@ import org.apache.royale.swc.SWCDigest;
 import org.apache.royale.swc.catalog.StAXCatalogWriter;
 import org.apache.royale.swf.Header;
 import org.apache.royale.swf.Header.Compression;
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.io.ISWFWriter;
 import org.apache.royale.swf.io.ISWFWriterFactory;
+import org.apache.royale.swf.io.SWFWriter;
 
 /**
  * Base class for serializing a SWC model.
@@ -77,6 +80,39 @@ abstract class SWCWriterBase implements ISWCWriter
     protected final boolean enableDebug;
     protected final boolean enableTelemetry;
     protected final ISWFWriterFactory swfWriterFactory;
+    private int swfCompressionLevel = SWFWriter.DEFAULT_COMPRESSION_LEVEL;
+    private int swfCompressionThreads = 1;
+    
+    /**
+     * Set the ZLIB compression options for the library SWFs.
+     * 
+     * @param level - the compression level, 0-9, or
+     * {@link SWFWriter#DEFAULT_COMPRESSION_LEVEL}.
+     * @param threads - the number of compression threads, or 0 for one per
+     * processor.
+     * @see SWFWriter#setCompressionLevel(int)
+     * @see SWFWriter#setCompressionThreads(int)
+     */
+    public void setLibrarySWFCompression(int level, int threads)
+    {
+        this.swfCompressionLevel = level;
+        this.swfCompressionThreads = threads;
+    }
+
+    /**
+     * @return a SWF writer for a library SWF.
+     */
+    protected ISWFWriter createLibrarySWFWriter(ISWF swf)
+    {
+        ISWFWriter swfWriter = swfWriterFactory.createSWFWriter(swf,
+                getLibrarySWFCompression(), enableDebug, enableTelemetry);
+        if (swfWriter instanceof SWFWriter)
+        {
+            ((SWFWriter)swfWriter).setCompressionLevel(swfCompressionLevel);
+            ((SWFWriter)swfWriter).setCompressionThreads(swfCompressionThreads);
+        }
+        return swfWriter;
+    }
     
     /**
      * @return true if the library is built compressed, false otherwise.
@@ -67,6 +67,12 @@ interface IInputBitStream extends Closeable
      */
     byte[] readToBoundary();
 
+    /**
+     * Skip all the bytes from the current position up to the read boundary,
+     * without copying them.
+     */
+    void skipToBoundary();
+
     /**
      * Read raw bytes.
      * 
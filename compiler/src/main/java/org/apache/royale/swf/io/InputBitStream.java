@@ -366,6 +366,33 @@ public class InputBitStream extends InputStream implements IInputBitStream
         return result;
     }
 
+    @Override
+    public void skipToBoundary()
+    {
+        assert readBoundary > 0 : "Must set boundary before skipToBoundary";
+
+        byteAlign();
+        try
+        {
+            while (offset < readBoundary)
+            {
+                long skipped = in.skip(readBoundary - offset);
+                if (skipped <= 0)
+                {
+                    // skip() may skip nothing before the end of the stream
+                    if (in.read() == -1)
+                        throw new RuntimeException("No more data to read.");
+                    skipped = 1;
+                }
+                offset += skipped;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public long getOffset()
     {
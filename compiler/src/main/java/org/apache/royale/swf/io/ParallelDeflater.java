@@ -0,0 +1,321 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swf.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a ZLIB stream (RFC 1950) by compressing fixed size chunks of the
+ * input on several threads, the same way pigz does.
+ * <p>
+ * Each chunk is compressed into raw deflate blocks, primed with the last 32K
+ * of the previous chunk as preset dictionary, and ends with a sync flush so
+ * that it finishes on a byte boundary. The last chunk ends the deflate
+ * stream. The chunks are concatenated in order between the ZLIB header and
+ * the Adler-32 of the whole input, so any inflater can read the result. For a
+ * given chunk size the output doesn't depend on the number of threads.
+ * <p>
+ * A sync flush needs {@code Deflater.deflate(byte[], int, int, int)}, which
+ * is only available on Java 7 and later. On older runtimes, or with a single
+ * thread, the input is compressed serially into one deflate stream.
+ */
+public class ParallelDeflater
+{
+    /**
+     * The default number of input bytes compressed by one task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+    /**
+     * The size of the deflate window, and therefore of the useful part of a
+     * preset dictionary.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final Method DEFLATE_WITH_FLUSH;
+    private static final int SYNC_FLUSH;
+
+    static
+    {
+        Method deflate = null;
+        int syncFlush = 0;
+        try
+        {
+            deflate = Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+            syncFlush = Deflater.class.getField("SYNC_FLUSH").getInt(null);
+        }
+        catch (Exception e)
+        {
+            // Java 6: compress serially
+            deflate = null;
+        }
+        DEFLATE_WITH_FLUSH = deflate;
+        SYNC_FLUSH = syncFlush;
+    }
+
+    /**
+     * @return true if the runtime supports compressing chunks in parallel.
+     */
+    public static boolean isParallelSupported()
+    {
+        return DEFLATE_WITH_FLUSH != null;
+    }
+
+    /**
+     * @param level the deflate compression level, 0-9, or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param threads the number of threads. 0 uses one thread per available
+     * processor.
+     */
+    public ParallelDeflater(int level, int threads)
+    {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("level: " + level);
+        if (threads < 0)
+            throw new IllegalArgumentException("threads: " + threads);
+        this.level = level;
+        this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    private final int level;
+    private final int threads;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * @param chunkSize the number of input bytes compressed by one task.
+     * Smaller chunks compress slightly worse.
+     */
+    public void setChunkSize(int chunkSize)
+    {
+        if (chunkSize < DICTIONARY_SIZE)
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Compresses the input into a complete ZLIB stream. This method does not
+     * close the {@code output} stream.
+     */
+    public void compress(final byte[] input, final int offset, final int length,
+            OutputStream output) throws IOException
+    {
+        if (threads <= 1 || length <= chunkSize || !isParallelSupported())
+        {
+            compressSerially(input, offset, length, output);
+            return;
+        }
+
+        final int chunkCount = (length + chunkSize - 1) / chunkSize;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(threads, chunkCount), DAEMON_THREAD_FACTORY);
+        try
+        {
+            List<Future<byte[]>> chunks = new ArrayList<Future<byte[]>>(chunkCount);
+            for (int i = 0; i < chunkCount; i++)
+            {
+                final int start = offset + i * chunkSize;
+                final int end = Math.min(start + chunkSize, offset + length);
+                final boolean last = i == chunkCount - 1;
+                chunks.add(executor.submit(new Callable<byte[]>()
+                {
+                    @Override
+                    public byte[] call() throws Exception
+                    {
+                        int dictionaryStart = Math.max(offset, start - DICTIONARY_SIZE);
+                        return compressChunk(input, dictionaryStart, start, end, last);
+                    }
+                }));
+            }
+
+            writeHeader(output);
+
+            // compute the checksum while the chunks compress
+            Adler32 adler = new Adler32();
+            adler.update(input, offset, length);
+
+            for (Future<byte[]> chunk : chunks)
+                output.write(getUninterruptibly(chunk));
+
+            int checksum = (int)adler.getValue();
+            output.write(checksum >>> 24);
+            output.write(checksum >>> 16);
+            output.write(checksum >>> 8);
+            output.write(checksum);
+            output.flush();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void compressSerially(byte[] input, int offset, int length, OutputStream output) throws IOException
+    {
+        Deflater deflater = new Deflater(level);
+        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(output, deflater);
+        deflaterStream.write(input, offset, length);
+        deflaterStream.finish();
+        deflater.end();
+        deflaterStream.flush();
+    }
+
+    /**
+     * Writes the two byte ZLIB header: deflate with a 32K window, the level
+     * hint, and no preset dictionary.
+     */
+    private void writeHeader(OutputStream output) throws IOException
+    {
+        final int cmf = 0x78;
+        int flevel;
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6)
+            flevel = 2;
+        else if (level < 2)
+            flevel = 0;
+        else if (level < 6)
+            flevel = 1;
+        else
+            flevel = 3;
+        int flg = flevel << 6;
+        flg += (31 - ((cmf << 8) + flg) % 31) % 31;
+        output.write(cmf);
+        output.write(flg);
+    }
+
+    private byte[] compressChunk(byte[] input, int dictionaryStart, int start, int end, boolean last)
+            throws IOException
+    {
+        Deflater deflater = new Deflater(level, true);
+        try
+        {
+            if (dictionaryStart < start)
+                deflater.setDictionary(input, dictionaryStart, start - dictionaryStart);
+            deflater.setInput(input, start, end - start);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream((end - start) / 2);
+            byte[] buffer = new byte[16 * 1024];
+            if (last)
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    int n = deflater.deflate(buffer);
+                    out.write(buffer, 0, n);
+                }
+            }
+            else
+            {
+                // Keep flushing while the buffer fills up; a short read
+                // means all of the input has been flushed.
+                int n;
+                do
+                {
+                    n = deflateWithSyncFlush(deflater, buffer);
+                    out.write(buffer, 0, n);
+                }
+                while (n == buffer.length);
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static int deflateWithSyncFlush(Deflater deflater, byte[] buffer) throws IOException
+    {
+        try
+        {
+            return (Integer)DEFLATE_WITH_FLUSH.invoke(deflater, buffer, 0, buffer.length, SYNC_FLUSH);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IOException(e.getMessage());
+        }
+        catch (InvocationTargetException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            throw new IOException(String.valueOf(cause));
+        }
+    }
+
+    private static byte[] getUninterruptibly(Future<byte[]> future) throws IOException
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new IOException(String.valueOf(cause));
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "SWF compression");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+}
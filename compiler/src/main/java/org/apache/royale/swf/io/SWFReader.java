@@ -23,10 +23,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.royale.compiler.problems.FileIOProblem;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -139,6 +143,61 @@ public class SWFReader implements ISWFReader, ITagContainer
 
     public static final InvalidTag INVALID_TAG = new InvalidTag();
 
+    /**
+     * The types of the tags the compiler needs to build definitions from a
+     * library SWF: the ABC code, and the tags that describe the SWF without
+     * referring to any character. Character tags, such as the tags of embedded
+     * assets, and the tags that refer to them, such as {@code SymbolClass},
+     * are not included.
+     */
+    public static final Set<TagType> CODE_TAG_TYPES = Collections.unmodifiableSet(EnumSet.of(
+            TagType.End,
+            TagType.ShowFrame,
+            TagType.FileAttributes,
+            TagType.Metadata,
+            TagType.SetBackgroundColor,
+            TagType.ScriptLimits,
+            TagType.ProductInfo,
+            TagType.EnableDebugger2,
+            TagType.EnableTelemetry,
+            TagType.FrameLabel,
+            TagType.DefineSceneAndFrameLabelData,
+            TagType.DoABC));
+
+    /**
+     * A tag that was not decoded, because its type was not one of the types
+     * to decode. The offset and length locate its body in the uncompressed
+     * SWF.
+     */
+    public static final class SkippedTag
+    {
+        SkippedTag(TagType type, long offset, int length)
+        {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private final TagType type;
+        private final long offset;
+        private final int length;
+
+        public TagType getType()
+        {
+            return type;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+    }
+
     /**
      * Wrapper class for "type" and "length" field in a SWF tag header.
      */
@@ -194,6 +253,15 @@ public class SWFReader implements ISWFReader, ITagContainer
      */
     protected final List<ITag> tags;
 
+    // Types of the tags to decode, or null to decode all the tags.
+    private final Set<TagType> decodedTagTypes;
+
+    // Tags that were not decoded.
+    private final List<SkippedTag> skippedTags;
+
+    // Names exported by SymbolClass tags that were not decoded.
+    private final Set<String> skippedSymbolNames;
+
     protected final Collection<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
 
     /**
@@ -212,7 +280,25 @@ public class SWFReader implements ISWFReader, ITagContainer
      */
     public SWFReader(boolean isBuildFrames)
     {
+        this(isBuildFrames, null);
+    }
+
+    /**
+     * Create a SWFReader that only decodes some of the tags. The other tags
+     * are skipped, and can be found with {@link #getSkippedTags()}.
+     * 
+     * @param isBuildFrames if true, the reader will build SWF frames from tags
+     * read. Frames can only be built if all the tags are decoded.
+     * @param decodedTagTypes types of the tags to decode, such as
+     * {@link #CODE_TAG_TYPES}, or null to decode all the tags.
+     */
+    public SWFReader(boolean isBuildFrames, Set<TagType> decodedTagTypes)
+    {
+        assert !(isBuildFrames && decodedTagTypes != null) : "can't build frames from some of the tags";
         this.buildFrames = isBuildFrames;
+        this.decodedTagTypes = decodedTagTypes;
+        skippedTags = new ArrayList<SkippedTag>();
+        skippedSymbolNames = new HashSet<String>();
         tags = new ArrayList<ITag>();
         dictionary = new HashMap<Integer, ICharacterTag>();
         swf = new SWF();
@@ -265,6 +351,30 @@ public class SWFReader implements ISWFReader, ITagContainer
         return problems;
     }
 
+    /**
+     * Get the tags that were not decoded, because their types were not among
+     * the types to decode.
+     * 
+     * @return skipped tags, in the order they were read
+     */
+    public List<SkippedTag> getSkippedTags()
+    {
+        return skippedTags;
+    }
+
+    /**
+     * Get the names of the symbols exported by the {@code SymbolClass} tags
+     * that were not decoded. The names are read even when the tags are skipped,
+     * so that it is possible to tell which definitions have assets without
+     * decoding the asset tags.
+     * 
+     * @return exported symbol names
+     */
+    public Set<String> getSkippedSymbolNames()
+    {
+        return skippedSymbolNames;
+    }
+
     /**
      * Read the header and body of the next SWF tag.
      * 
@@ -353,6 +463,13 @@ public class SWFReader implements ISWFReader, ITagContainer
     protected ITag readTag(TagHeader header) throws IOException
     {
         bitStream.setReadBoundary(bitStream.getOffset() + header.length);
+        if (decodedTagTypes != null && header.type != TagType.End &&
+            !decodedTagTypes.contains(header.type))
+        {
+            skipTag(header);
+            return null;
+        }
+
         ITag tag = null;
 
         try
@@ -406,6 +523,38 @@ public class SWFReader implements ISWFReader, ITagContainer
         return tag;
     }
 
+    /**
+     * Skip the body of a tag that is not decoded, and record where it is. The
+     * names exported by a {@code SymbolClass} tag are recorded as well.
+     * 
+     * @param header tag header
+     */
+    private void skipTag(TagHeader header)
+    {
+        skippedTags.add(new SkippedTag(header.type, bitStream.getOffset(), header.length));
+        try
+        {
+            if (header.type == TagType.SymbolClass)
+            {
+                final int numSymbols = bitStream.readUI16();
+                for (int i = 0; i < numSymbols; i++)
+                {
+                    final int id = bitStream.readUI16();
+                    final String name = bitStream.readString();
+                    // 0 is the top level class, not an exported character
+                    if (id != 0)
+                        skippedSymbolNames.add(name);
+                }
+            }
+            bitStream.skipToBoundary();
+        }
+        catch (RuntimeException e)
+        {
+            problems.add(new SWFUnableToReadTagBodyProblem(header.type.getValue(),
+                    header.length, swfPath, bitStream.getOffset()));
+        }
+    }
+
     /**
      * Add an {@code ICharacterTag} to the character dictionary.
      * 
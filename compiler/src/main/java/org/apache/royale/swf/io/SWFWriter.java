@@ -32,7 +32,6 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 
 import org.apache.commons.io.output.CountingOutputStream;
 
@@ -95,7 +94,8 @@ import com.google.common.primitives.Ints;
 /**
  * The implementation of SWF tag, type encoding logic. The SWF file body are
  * buffered in memory using {@code IOutputBitStream}. ZLIB compression is
- * optional. If enabled, compression is on-the-fly via a filtered output stream.
+ * optional. If enabled, the buffered body is compressed when it is written
+ * out, optionally on several threads (see {@link ParallelDeflater}).
  */
 public class SWFWriter implements ISWFWriter
 {
@@ -120,6 +120,12 @@ public class SWFWriter implements ISWFWriter
      */
     public static final ISWFWriterFactory DEFAULT_SWF_WRITER_FACTORY = new SWFWriterFactory();
 
+    /**
+     * Compression level that selects {@link Deflater#BEST_SPEED} for debug
+     * SWFs and {@link Deflater#BEST_COMPRESSION} otherwise.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+
     private static final int RESERVED = 0;
     private static final int SHORT_TAG_MAX_LENGTH = 62;
 
@@ -265,6 +271,12 @@ public class SWFWriter implements ISWFWriter
     // True if telemetry features of the SWF are enabled.
     private final boolean enableTelemetry;
 
+    // ZLIB compression level, or DEFAULT_COMPRESSION_LEVEL.
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+
+    // Number of threads used for ZLIB compression. 0 means one per processor.
+    private int compressionThreads = 1;
+
     // Current frame index. Updated in writeFrames().
     private int currentFrameIndex;
 
@@ -302,6 +314,32 @@ public class SWFWriter implements ISWFWriter
         computeCharacterID();
     }
 
+    /**
+     * Set the ZLIB compression level.
+     * 
+     * @param level 0-9, or {@link #DEFAULT_COMPRESSION_LEVEL}
+     */
+    public void setCompressionLevel(int level)
+    {
+        if (level < DEFAULT_COMPRESSION_LEVEL || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("level: " + level);
+        this.compressionLevel = level;
+    }
+
+    /**
+     * Set the number of threads used for ZLIB compression. With more than one
+     * thread the SWF body is compressed in independent chunks. The default is
+     * 1.
+     * 
+     * @param threads the number of threads, or 0 for one per processor
+     */
+    public void setCompressionThreads(int threads)
+    {
+        if (threads < 0)
+            throw new IllegalArgumentException("threads: " + threads);
+        this.compressionThreads = threads;
+    }
+
     /**
      * Compute the character ID for all the {@code ICharacterTag}s.
      */
@@ -2645,13 +2683,11 @@ public class SWFWriter implements ISWFWriter
                     break;
                 case ZLIB:
                 {
-                    int compressionLevel = enableDebug ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION;
-                    Deflater deflater = new Deflater(compressionLevel);
-                    DeflaterOutputStream deflaterStream = new DeflaterOutputStream(output, deflater);
-                    deflaterStream.write(outputBuffer.getBytes(), 0, outputBuffer.size());
-                    deflaterStream.finish();
-                    deflater.end();
-                    deflaterStream.flush();
+                    int level = compressionLevel;
+                    if (level == DEFAULT_COMPRESSION_LEVEL)
+                        level = enableDebug ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION;
+                    ParallelDeflater deflater = new ParallelDeflater(level, compressionThreads);
+                    deflater.compress(outputBuffer.getBytes(), 0, outputBuffer.size(), output);
                     break;
                 }
                 case NONE:
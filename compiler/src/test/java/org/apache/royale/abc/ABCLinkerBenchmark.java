@@ -0,0 +1,151 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+
+/**
+ * Measures the time {@link ABCLinker#linkABC} takes to link the DoABC blocks
+ * of one or more SWFs, with the optimizer and debug stripping enabled, for
+ * several numbers of link threads. Each thread count is also timed relinking
+ * the same blocks through a warm {@link ABCLinker.LinkCache}, as an
+ * incremental build that changed nothing does. {@link ABCLinkerTests} checks
+ * that every thread count produces the same ABC as the serial link.
+ * <p>
+ * This is not a unit test. Run it with the test classpath on a large set of
+ * ABC blocks, such as a debug build of an application (one DoABC tag per
+ * compilation unit) or the library.swf files of the framework SWCs:
+ * <pre>
+ * java ... ABCLinkerBenchmark [-iterations=n] [-threads=1,2,4] file.swf...
+ * </pre>
+ */
+public class ABCLinkerBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int iterations = 5;
+        int processors = Runtime.getRuntime().availableProcessors();
+        String[] threadCounts = { "1", "2", "4", String.valueOf(processors) };
+        List<byte[]> abcs = new ArrayList<byte[]>();
+        long abcBytes = 0;
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("-iterations="))
+            {
+                iterations = Integer.parseInt(arg.substring("-iterations=".length()));
+            }
+            else if (arg.startsWith("-threads="))
+            {
+                threadCounts = arg.substring("-threads=".length()).split(",");
+            }
+            else
+            {
+                for (byte[] abc : readABCs(arg))
+                {
+                    abcs.add(abc);
+                    abcBytes += abc.length;
+                }
+            }
+        }
+        if (abcs.isEmpty())
+        {
+            System.err.println("usage: ABCLinkerBenchmark [-iterations=n] [-threads=1,2,4] file.swf...");
+            System.exit(1);
+        }
+
+        System.out.println(abcs.size() + " ABC blocks, " + abcBytes + " bytes, " + processors + " processors");
+        System.out.println("threads     bytes       ms  speedup  cached ms");
+
+        double serialMs = 0;
+        for (String threadCount : threadCounts)
+        {
+            int threads = Integer.parseInt(threadCount.trim());
+
+            // warm up
+            byte[] linked = link(abcs, threads, null);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                linked = link(abcs, threads, null);
+            double ms = (System.nanoTime() - start) / 1e6 / iterations;
+            if (serialMs == 0)
+                serialMs = ms;
+
+            ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+            link(abcs, threads, cache);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                link(abcs, threads, cache);
+            double cachedMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+            System.out.println(String.format("%7d %9d %8.1f %8.2f %10.1f",
+                    threads, linked.length, ms, serialMs / ms, cachedMs));
+        }
+    }
+
+    private static byte[] link(List<byte[]> abcs, int threads, ABCLinker.LinkCache cache) throws Exception
+    {
+        ABCLinker.ABCLinkerSettings settings = new ABCLinker.ABCLinkerSettings();
+        settings.setOptimize(true);
+        settings.setStripDebugOpcodes(true);
+        settings.setStripGotoDefinitionHelp(true);
+        settings.setLinkThreads(threads);
+        settings.setLinkCache(cache);
+        return ABCLinker.linkABC(abcs, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+    }
+
+    static List<byte[]> readABCs(String path) throws Exception
+    {
+        InputStream input = new BufferedInputStream(new FileInputStream(path));
+        ISWF swf;
+        try
+        {
+            swf = new SWFReader().readFrom(input, path);
+        }
+        finally
+        {
+            input.close();
+        }
+
+        List<byte[]> abcs = new ArrayList<byte[]>();
+        for (int i = 0; i < swf.getFrameCount(); i++)
+        {
+            SWFFrame frame = swf.getFrameAt(i);
+            for (ITag tag : frame)
+            {
+                if (tag instanceof DoABCTag)
+                    abcs.add(((DoABCTag)tag).getABCData());
+            }
+        }
+        return abcs;
+    }
+}
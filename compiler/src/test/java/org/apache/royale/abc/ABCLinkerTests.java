@@ -0,0 +1,290 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.clients.MXMLC;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ABCLinker}, its {@link ABCLinker.LinkCache} and
+ * {@link RecordingABCVisitor}. The ABC blocks are those of a debug SWF
+ * compiled from generated classes, which has one DoABC tag per compilation
+ * unit.
+ */
+public class ABCLinkerTests
+{
+    private static final int CLASS_COUNT = 12;
+    private static final int THREADS = 4;
+
+    private static File folder;
+    private static List<byte[]> abcs;
+
+    @BeforeClass
+    public static void compileSWF() throws Exception
+    {
+        ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+        File playerglobal = testAdapter.getPlayerglobal();
+        assumeTrue(playerglobal != null && playerglobal.isFile());
+
+        folder = File.createTempFile("ABCLinkerTests", "", new File(testAdapter.getTempDir()));
+        folder.delete();
+        folder.mkdirs();
+
+        StringBuilder main = new StringBuilder();
+        main.append("package {\nimport flash.display.Sprite;\nimport pkg.*;\n");
+        main.append("public class Main extends Sprite {\npublic function Main() {\n");
+        for (int i = 0; i < CLASS_COUNT; i++)
+        {
+            writeClass(i);
+            main.append("trace(new Class").append(i).append("().compute(").append(i).append("));\n");
+        }
+        main.append("}\n}\n}\n");
+        File mainFile = new File(folder, "Main.as");
+        FileUtils.writeStringToFile(mainFile, main.toString(), "UTF-8");
+
+        File swfFile = new File(folder, "Main.swf");
+        List<String> args = new ArrayList<String>();
+        args.add("-debug=true");
+        args.add("-external-library-path=" + playerglobal.getPath());
+        args.add("-source-path=" + folder.getPath());
+        args.add("-output=" + swfFile.getPath());
+        args.add(mainFile.getPath());
+        MXMLC mxmlc = new MXMLC();
+        int exitCode = mxmlc.mainNoExit(args.toArray(new String[args.size()]));
+        assertThat(mxmlc.getProblems().getProblems().toString(), exitCode, is(0));
+
+        abcs = ABCLinkerBenchmark.readABCs(swfFile.getPath());
+        assertTrue("ABC blocks: " + abcs.size(), abcs.size() > CLASS_COUNT);
+        // the link cache tests count every block once
+        for (int i = 0; i < abcs.size(); i++)
+        {
+            for (int j = 0; j < i; j++)
+                assertTrue("blocks " + j + " and " + i + " are the same", !Arrays.equals(abcs.get(i), abcs.get(j)));
+        }
+    }
+
+    @AfterClass
+    public static void deleteFolder()
+    {
+        if (folder != null)
+            FileUtils.deleteQuietly(folder);
+    }
+
+    @Test
+    public void testParallelLinkSameAsSerial() throws Exception
+    {
+        assertArrayEquals(link(createSettings(1, false)), link(createSettings(THREADS, false)));
+    }
+
+    @Test
+    public void testParallelOptimizedLinkSameAsSerial() throws Exception
+    {
+        assertArrayEquals(link(createSettings(1, true)), link(createSettings(THREADS, true)));
+    }
+
+    @Test
+    public void testCachedLinkSameAsUncached() throws Exception
+    {
+        ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+        for (boolean optimize : new boolean[] {false, true})
+        {
+            byte[] expected = link(createSettings(1, optimize));
+            cache.clear();
+            assertArrayEquals("first link, optimize " + optimize, expected, link(createSettings(1, optimize), cache, abcs));
+            assertArrayEquals("relink, optimize " + optimize, expected, link(createSettings(1, optimize), cache, abcs));
+        }
+    }
+
+    @Test
+    public void testCachedRelinkFindsEveryBlock() throws Exception
+    {
+        ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+        link(createSettings(1, true), cache, abcs);
+        assertThat("misses", cache.getMissCount(), is(abcs.size()));
+        assertThat("size", cache.size(), is(abcs.size()));
+
+        cache.startBuild();
+        link(createSettings(1, true), cache, abcs);
+        assertThat("hits", cache.getHitCount(), is(abcs.size()));
+        assertThat("misses after relink", cache.getMissCount(), is(abcs.size()));
+    }
+
+    @Test
+    public void testCachedLinkOfChangedBlocks() throws Exception
+    {
+        // the first build links half the blocks, the second one all of them
+        ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+        link(createSettings(1, true), cache, abcs.subList(0, abcs.size() / 2));
+        cache.startBuild();
+        assertArrayEquals(link(createSettings(1, true)), link(createSettings(1, true), cache, abcs));
+        assertThat("hits", cache.getHitCount(), is(abcs.size() / 2));
+
+        // the blocks that weren't linked by the previous build are dropped
+        cache.startBuild();
+        link(createSettings(1, true), cache, abcs.subList(0, 1));
+        cache.startBuild();
+        assertThat("size", cache.size(), is(1));
+    }
+
+    @Test
+    public void testCachedLinkWithChangedSettings() throws Exception
+    {
+        ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+        link(createSettings(1, false), cache, abcs);
+        assertArrayEquals(link(createSettings(1, true)), link(createSettings(1, true), cache, abcs));
+        assertThat("hits", cache.getHitCount(), is(0));
+        assertArrayEquals(link(createSettings(1, false)), link(createSettings(1, false), cache, abcs));
+        assertThat("hits after switching back", cache.getHitCount(), is(0));
+
+        // the number of threads doesn't change the linked ABC
+        link(createSettings(THREADS, false), cache, abcs);
+        assertThat("hits with other threads", cache.getHitCount(), is(abcs.size()));
+    }
+
+    @Test
+    public void testCachedLinkOfDuplicateBlocks() throws Exception
+    {
+        List<byte[]> duplicates = new ArrayList<byte[]>(abcs);
+        duplicates.add(abcs.get(abcs.size() - 1));
+        duplicates.add(abcs.get(abcs.size() - 1).clone());
+        duplicates.add(0, abcs.get(1));
+
+        ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+        byte[] expected = ABCLinker.linkABC(duplicates, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, createSettings(1, true));
+        assertArrayEquals("first link", expected, link(createSettings(1, true), cache, duplicates));
+        assertThat("size", cache.size(), is(abcs.size()));
+        cache.startBuild();
+        assertArrayEquals("relink", expected, link(createSettings(1, true), cache, duplicates));
+        assertArrayEquals("relink with threads", expected, link(createSettings(THREADS, true), cache, duplicates));
+    }
+
+    @Test
+    public void testParallelCachedLinkSameAsSerial() throws Exception
+    {
+        for (boolean optimize : new boolean[] {false, true})
+        {
+            byte[] expected = link(createSettings(1, optimize));
+            ABCLinker.LinkCache cache = new ABCLinker.LinkCache();
+            assertArrayEquals("first link, optimize " + optimize, expected,
+                    link(createSettings(THREADS, optimize), cache, abcs));
+            assertArrayEquals("relink, optimize " + optimize, expected,
+                    link(createSettings(THREADS, optimize), cache, abcs));
+        }
+    }
+
+    /**
+     * The emitter fills in the ClassInfo, InstanceInfo and MethodBodyInfo
+     * of a recording as it is replayed, so each replay has to put them back
+     * the way they were recorded.
+     */
+    @Test
+    public void testRecordingReplayedTwice() throws Exception
+    {
+        for (int i = 0; i < abcs.size(); i++)
+        {
+            byte[] abc = abcs.get(i);
+            ABCEmitter direct = createEmitter();
+            new ABCParser(abc).parseABC(direct);
+            byte[] expected = direct.emit();
+
+            RecordingABCVisitor recording = new RecordingABCVisitor();
+            new ABCParser(abc).parseABC(recording);
+            for (int replay = 1; replay <= 3; replay++)
+            {
+                ABCEmitter emitter = createEmitter();
+                recording.replay(emitter);
+                assertArrayEquals("block " + i + ", replay " + replay, expected, emitter.emit());
+            }
+        }
+    }
+
+    /**
+     * @param threads number of link threads
+     * @param optimize true to optimize and strip debug information the way
+     * a release build does
+     */
+    static ABCLinker.ABCLinkerSettings createSettings(int threads, boolean optimize)
+    {
+        ABCLinker.ABCLinkerSettings settings = new ABCLinker.ABCLinkerSettings();
+        settings.setOptimize(optimize);
+        settings.setStripDebugOpcodes(optimize);
+        settings.setStripGotoDefinitionHelp(optimize);
+        settings.setLinkThreads(threads);
+        return settings;
+    }
+
+    static byte[] link(ABCLinker.ABCLinkerSettings settings) throws Exception
+    {
+        return ABCLinker.linkABC(abcs, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+    }
+
+    private static byte[] link(ABCLinker.ABCLinkerSettings settings, ABCLinker.LinkCache cache,
+            List<byte[]> blocks) throws Exception
+    {
+        settings.setLinkCache(cache);
+        return ABCLinker.linkABC(blocks, ABCConstants.VERSION_ABC_MAJOR_FP10,
+                ABCConstants.VERSION_ABC_MINOR_FP10, settings);
+    }
+
+    private static ABCEmitter createEmitter()
+    {
+        ABCEmitter emitter = new ABCEmitter();
+        emitter.setAllowBadJumps(true);
+        return emitter;
+    }
+
+    private static void writeClass(int i) throws Exception
+    {
+        String source = "package pkg {\n"
+                + "public class Class" + i + " {\n"
+                + "public static const NAME:String = \"Class" + i + "\";\n"
+                + "private var values:Array = [];\n"
+                + "public function compute(n:int):Number {\n"
+                + "var total:Number = " + i + ".5;\n"
+                + "for (var j:int = 0; j < n; j++) {\n"
+                + "values.push(NAME + j);\n"
+                + "total += j * 2 - " + i + ";\n"
+                + "}\n"
+                + "if (total < 0) return -total;\n"
+                + "return total;\n"
+                + "}\n"
+                + "}\n"
+                + "}\n";
+        FileUtils.writeStringToFile(new File(folder, "pkg/Class" + i + ".as"), source, "UTF-8");
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+/**
+ * Compares the throughput and the allocation of the generic {@link Pool}
+ * with {@link IntPool}, {@link LongPool}, {@link DoublePool} and
+ * {@link StringPool}, the way {@link ABCEmitter} uses them: every constant is
+ * added once for each use while the ABC is visited, and looked up again for
+ * each use when the ABC is written.
+ * <p>
+ * This is not a unit test. Run it with the test classpath:
+ * <pre>
+ * java ... PoolBenchmark [uses] [distinct constants] [iterations]
+ * </pre>
+ * Allocation is only reported on JVMs that support
+ * {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes}.
+ */
+public class PoolBenchmark
+{
+    private static abstract class Workload
+    {
+        Workload(String name)
+        {
+            this.name = name;
+        }
+
+        final String name;
+
+        /**
+         * @return the size of the pool, so the work can't be optimized away.
+         */
+        abstract int run();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int uses = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // Constants are used very unevenly: a few are used everywhere, most
+        // are used once or twice. The operands are boxed, as the
+        // instructions hold them.
+        Random random = new Random(42);
+        final Integer[] ints = new Integer[uses];
+        final Long[] uints = new Long[uses];
+        final Double[] doubles = new Double[uses];
+        final String[] strings = new String[uses];
+        String[] distinctStrings = new String[distinct];
+        for (int i = 0; i < distinct; i++)
+            distinctStrings[i] = "org.apache.royale.core:Name" + i;
+        for (int i = 0; i < uses; i++)
+        {
+            int key = (int)(distinct * Math.pow(random.nextDouble(), 3));
+            ints[i] = Integer.valueOf(key - distinct / 2);
+            uints[i] = Long.valueOf(0xffffffffL - key);
+            doubles[i] = Double.valueOf(key / 8.0);
+            strings[i] = distinctStrings[key];
+        }
+
+        Workload[] workloads = {
+            new Workload("Pool<Integer>")
+            {
+                @Override
+                int run()
+                {
+                    Pool<Integer> pool = new Pool<Integer>(Pool.DefaultType.HasDefaultZero);
+                    for (Integer e : ints)
+                        pool.add(e);
+                    for (Integer e : ints)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("IntPool")
+            {
+                @Override
+                int run()
+                {
+                    IntPool pool = new IntPool(Pool.DefaultType.HasDefaultZero);
+                    for (Integer e : ints)
+                        pool.add(e);
+                    for (Integer e : ints)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("Pool<Long>")
+            {
+                @Override
+                int run()
+                {
+                    Pool<Long> pool = new Pool<Long>(Pool.DefaultType.HasDefaultZero);
+                    for (Long e : uints)
+                        pool.add(e);
+                    for (Long e : uints)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("LongPool")
+            {
+                @Override
+                int run()
+                {
+                    LongPool pool = new LongPool(Pool.DefaultType.HasDefaultZero);
+                    for (Long e : uints)
+                        pool.add(e);
+                    for (Long e : uints)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("Pool<Double>")
+            {
+                @Override
+                int run()
+                {
+                    Pool<Double> pool = new Pool<Double>(Pool.DefaultType.HasDefaultZero);
+                    for (Double e : doubles)
+                        pool.add(e);
+                    for (Double e : doubles)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("DoublePool")
+            {
+                @Override
+                int run()
+                {
+                    DoublePool pool = new DoublePool(Pool.DefaultType.HasDefaultZero);
+                    for (Double e : doubles)
+                        pool.add(e);
+                    for (Double e : doubles)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("Pool<String>")
+            {
+                @Override
+                int run()
+                {
+                    Pool<String> pool = new Pool<String>(Pool.DefaultType.HasDefaultZero);
+                    for (String e : strings)
+                        pool.add(e);
+                    for (String e : strings)
+                        pool.id(e);
+                    return pool.size();
+                }
+            },
+            new Workload("StringPool")
+            {
+                @Override
+                int run()
+                {
+                    StringPool pool = new StringPool(Pool.DefaultType.HasDefaultZero);
+                    for (String e : strings)
+                        pool.add(e);
+                    for (String e : strings)
+                        pool.id(e);
+                    return pool.size();
+                }
+            }
+        };
+
+        System.out.println(uses + " uses of " + distinct + " distinct constants");
+        System.out.println("pool                ms  Mops/s  bytes/op");
+
+        // warm up
+        for (Workload workload : workloads)
+            workload.run();
+
+        int operations = 2 * uses;
+        for (Workload workload : workloads)
+        {
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            int size = 0;
+            for (int i = 0; i < iterations; i++)
+                size += workload.run();
+            double ms = (System.nanoTime() - start) / 1e6 / iterations;
+            long allocated = allocatedBefore >= 0 ? getAllocatedBytes() - allocatedBefore : -1;
+
+            String bytesPerOperation = allocated >= 0 ?
+                    String.format("%.2f", (double)allocated / iterations / operations) : "-";
+            System.out.println(String.format("%-14s %7.1f %7.1f %9s%s",
+                    workload.name, ms, operations / ms / 1000, bytesPerOperation,
+                    size == 0 ? " (empty)" : ""));
+        }
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far, or
+     * a negative number when the JVM can't tell.
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try
+        {
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long)method.invoke(bean, Thread.currentThread().getId());
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link IntPool}, {@link LongPool}, {@link DoublePool} and
+ * {@link StringPool}, which must give every value the same position as a
+ * {@link Pool} of the boxed values.
+ */
+public class PoolTests
+{
+    /**
+     * Enough values to rehash the tables several times.
+     */
+    private static final int COUNT = 20000;
+
+    @Test
+    public void testIntPoolSameAsPool()
+    {
+        for (Pool.DefaultType defaultType : Pool.DefaultType.values())
+        {
+            Random random = new Random(1);
+            Pool<Integer> expected = new Pool<Integer>(defaultType);
+            IntPool actual = new IntPool(defaultType);
+            for (int i = 0; i < COUNT; i++)
+            {
+                // a mix of repeated small values and spread out large ones
+                int value = random.nextBoolean() ? random.nextInt(500) - 250 : random.nextInt();
+                assertThat("add " + value, actual.add(value), is(expected.add(value)));
+            }
+            for (Integer value : expected.getValues())
+                assertThat("id " + value, actual.id(value.intValue()), is(expected.id(value)));
+            assertSameSize(expected, actual.size(), actual.getNominalSize());
+            assertThat("values", actual.getValues().length, is(expected.getValues().size()));
+        }
+    }
+
+    @Test
+    public void testLongPoolSameAsPool()
+    {
+        for (Pool.DefaultType defaultType : Pool.DefaultType.values())
+        {
+            Random random = new Random(2);
+            Pool<Long> expected = new Pool<Long>(defaultType);
+            LongPool actual = new LongPool(defaultType);
+            for (int i = 0; i < COUNT; i++)
+            {
+                // uint values, which only differ in their high bits too
+                long value = random.nextBoolean() ? random.nextInt(500) : random.nextLong() & 0xFFFFFFFFL;
+                if (random.nextInt(10) == 0)
+                    value = value << 32;
+                assertThat("add " + value, actual.add(value), is(expected.add(value)));
+            }
+            for (Long value : expected.getValues())
+                assertThat("id " + value, actual.id(value.longValue()), is(expected.id(value)));
+            assertSameSize(expected, actual.size(), actual.getNominalSize());
+        }
+    }
+
+    @Test
+    public void testDoublePoolSameAsPool()
+    {
+        for (Pool.DefaultType defaultType : Pool.DefaultType.values())
+        {
+            Random random = new Random(3);
+            Pool<Double> expected = new Pool<Double>(defaultType);
+            DoublePool actual = new DoublePool(defaultType);
+            for (int i = 0; i < COUNT; i++)
+            {
+                double value = random.nextBoolean() ? random.nextInt(500) / 4.0 : random.nextDouble() * 1e12;
+                assertThat("add " + value, actual.add(value), is(expected.add(value)));
+            }
+            for (Double value : expected.getValues())
+                assertThat("id " + value, actual.id(value.doubleValue()), is(expected.id(value)));
+            assertSameSize(expected, actual.size(), actual.getNominalSize());
+        }
+    }
+
+    @Test
+    public void testDoublePoolSpecialValues()
+    {
+        double[] values = {
+            0.0, -0.0, Double.NaN, Double.longBitsToDouble(0x7ff8000000000001L),
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE
+        };
+        Pool<Double> expected = new Pool<Double>(Pool.DefaultType.HasDefaultZero);
+        DoublePool actual = new DoublePool(Pool.DefaultType.HasDefaultZero);
+        for (int i = 0; i < 2; i++)
+        {
+            for (double value : values)
+                assertThat("add " + value, actual.add(value), is(expected.add(value)));
+        }
+        for (double value : values)
+            assertThat("id " + value, actual.id(value), is(expected.id(value)));
+
+        // like Double.equals, all NaNs are the same, and 0.0 and -0.0 differ
+        assertThat("NaN", actual.id(Double.NaN), is(actual.id(0.0 / 0.0)));
+        assertThat("-0.0", actual.id(-0.0) != actual.id(0.0), is(true));
+        assertSameSize(expected, actual.size(), actual.getNominalSize());
+    }
+
+    @Test
+    public void testStringPoolSameAsPool()
+    {
+        for (Pool.DefaultType defaultType : Pool.DefaultType.values())
+        {
+            Random random = new Random(4);
+            Pool<String> expected = new Pool<String>(defaultType);
+            StringPool actual = new StringPool(defaultType);
+            for (int i = 0; i < COUNT; i++)
+            {
+                String value = "name" + (random.nextBoolean() ? random.nextInt(500) : random.nextInt());
+                assertThat("add " + value, actual.add(value), is(expected.add(value)));
+            }
+            for (String value : expected.getValues())
+            {
+                // an equal string that is not the pooled instance
+                String copy = new String(value);
+                assertThat("id " + value, actual.id(copy), is(expected.id(copy)));
+            }
+            assertSameSize(expected, actual.size(), actual.getNominalSize());
+        }
+    }
+
+    @Test
+    public void testStringPoolCollidingHashCodes()
+    {
+        // "Aa" and "BB" have the same hash code
+        StringPool pool = new StringPool(Pool.DefaultType.NoDefaultZero);
+        assertThat(pool.add("Aa"), is(0));
+        assertThat(pool.add("BB"), is(1));
+        assertThat(pool.add("AaAa"), is(2));
+        assertThat(pool.add("BBBB"), is(3));
+        assertThat(pool.id("BB"), is(1));
+        assertThat(pool.id("AaAa"), is(2));
+        assertThat(pool.size(), is(4));
+    }
+
+    @Test
+    public void testDefaultZero()
+    {
+        IntPool intPool = new IntPool(Pool.DefaultType.HasDefaultZero);
+        LongPool longPool = new LongPool(Pool.DefaultType.HasDefaultZero);
+        DoublePool doublePool = new DoublePool(Pool.DefaultType.HasDefaultZero);
+        StringPool stringPool = new StringPool(Pool.DefaultType.HasDefaultZero);
+
+        assertThat("empty size", intPool.size(), is(1));
+        assertThat("empty nominal size", intPool.getNominalSize(), is(0));
+
+        // null is the default zero entry, as it is in Pool
+        assertThat(intPool.add((Integer)null), is(0));
+        assertThat(intPool.id((Integer)null), is(0));
+        assertThat(longPool.add((Long)null), is(0));
+        assertThat(longPool.id((Long)null), is(0));
+        assertThat(doublePool.add((Double)null), is(0));
+        assertThat(doublePool.id((Double)null), is(0));
+        assertThat(stringPool.add(null), is(0));
+        assertThat(stringPool.id(null), is(0));
+        assertThat("size after null", intPool.size(), is(1));
+
+        // a zero value is not the default zero entry
+        assertThat(intPool.add(0), is(1));
+        assertThat(intPool.id(Integer.valueOf(0)), is(1));
+        assertThat(intPool.getNominalSize(), is(2));
+    }
+
+    @Test
+    public void testNoDefaultZero()
+    {
+        IntPool intPool = new IntPool(Pool.DefaultType.NoDefaultZero);
+        assertThat(intPool.add(Integer.valueOf(7)), is(0));
+        assertThat(intPool.id(7), is(0));
+        assertThat(intPool.size(), is(1));
+        assertThat(intPool.getNominalSize(), is(1));
+        try
+        {
+            intPool.add((Integer)null);
+            fail("Expected a NullPointerException");
+        }
+        catch (NullPointerException e)
+        {
+        }
+        try
+        {
+            new StringPool(Pool.DefaultType.NoDefaultZero).id(null);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    @Test
+    public void testUnknownItem()
+    {
+        IntPool intPool = new IntPool(Pool.DefaultType.HasDefaultZero);
+        intPool.add(1);
+        try
+        {
+            intPool.id(2);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        StringPool stringPool = new StringPool(Pool.DefaultType.HasDefaultZero);
+        stringPool.add("a");
+        try
+        {
+            stringPool.id("b");
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    private static void assertSameSize(Pool<?> expected, int size, int nominalSize)
+    {
+        assertThat("size", size, is(expected.size()));
+        assertThat("nominal size", nominalSize, is(expected.getNominalSize()));
+    }
+}
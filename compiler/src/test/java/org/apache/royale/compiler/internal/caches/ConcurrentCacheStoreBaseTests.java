@@ -0,0 +1,232 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ConcurrentCacheStoreBase}.
+ */
+public class ConcurrentCacheStoreBaseTests
+{
+    private static class StringKey extends CacheStoreKeyBase
+    {
+        StringKey(String key)
+        {
+            this.key = key;
+        }
+
+        private final String key;
+
+        @Override
+        public String generateKey()
+        {
+            return key;
+        }
+    }
+
+    /**
+     * A key that counts down a latch when the cache compares it with the key
+     * of an existing entry, that is, once a lookup has found the entry.
+     */
+    private static class LookupKey extends StringKey
+    {
+        LookupKey(String key, CountDownLatch foundEntry)
+        {
+            super(key);
+            this.foundEntry = foundEntry;
+        }
+
+        private final CountDownLatch foundEntry;
+
+        @Override
+        public boolean equals(Object o)
+        {
+            boolean result = super.equals(o);
+            if (result)
+                foundEntry.countDown();
+            return result;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return super.hashCode();
+        }
+    }
+
+    /**
+     * Creates a new string for each key and weighs it by its length.
+     */
+    private static class StringCache extends ConcurrentCacheStoreBase<String>
+    {
+        final AtomicInteger created = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch release;
+
+        @Override
+        protected String createEntryValue(CacheStoreKeyBase key)
+        {
+            created.incrementAndGet();
+            entered.countDown();
+            if (release != null)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+            return new String(key.generateKey());
+        }
+
+        @Override
+        protected long getEntryWeight(CacheStoreKeyBase key, String value)
+        {
+            return value.length();
+        }
+    }
+
+    @Test
+    public void get_countsHitsAndMisses()
+    {
+        StringCache cache = new StringCache();
+        String first = cache.get(new StringKey("a"));
+        String second = cache.get(new StringKey("a"));
+        assertThat("same value", second, sameInstance(first));
+        assertThat("created", cache.created.get(), is(1));
+        assertThat("misses", cache.getMissCount(), is(1L));
+        assertThat("hits", cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void get_concurrentMissesCreateOnce() throws Exception
+    {
+        final StringCache cache = new StringCache();
+        cache.release = new CountDownLatch(1);
+        final CountDownLatch foundEntry = new CountDownLatch(3);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            results.add(executor.submit(new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    return cache.get(new StringKey("a"));
+                }
+            }));
+            // the first thread is creating the value
+            cache.entered.await();
+            for (int i = 0; i < 3; i++)
+            {
+                results.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                    {
+                        return cache.get(new LookupKey("a", foundEntry));
+                    }
+                }));
+            }
+            // every other thread has found the entry that is being created
+            foundEntry.await();
+            cache.release.countDown();
+            String first = results.get(0).get();
+            for (Future<String> result : results)
+                assertThat("same value", result.get(), sameInstance(first));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertThat("created", cache.created.get(), is(1));
+        assertThat("misses", cache.getMissCount(), is(1L));
+        assertThat("hits", cache.getHitCount(), is(3L));
+    }
+
+    @Test
+    public void setMaximumWeight_evictsLeastRecentlyUsed()
+    {
+        StringCache cache = new StringCache();
+        cache.setMaximumWeight(6);
+        cache.get(new StringKey("aa"));
+        cache.get(new StringKey("bb"));
+        cache.get(new StringKey("cc"));
+        // use "aa" so that "bb" is the least recently used
+        cache.get(new StringKey("aa"));
+        cache.get(new StringKey("dd"));
+        assertThat("size", cache.size(), is(3));
+        assertThat("weight", cache.getWeight(), is(6L));
+        assertThat("evictions", cache.getEvictionCount(), is(1L));
+
+        cache.get(new StringKey("aa"));
+        assertThat("created", cache.created.get(), is(4));
+        cache.get(new StringKey("bb"));
+        assertThat("created", cache.created.get(), is(5));
+    }
+
+    @Test
+    public void remove_updatesWeight()
+    {
+        StringCache cache = new StringCache();
+        cache.setMaximumWeight(100);
+        cache.get(new StringKey("aaa"));
+        cache.get(new StringKey("bb"));
+        assertThat("removed", cache.remove(new StringKey("aaa")), is("aaa"));
+        assertThat("weight", cache.getWeight(), is(2L));
+        assertThat("size", cache.size(), is(1));
+    }
+
+    @Test
+    public void replace_updatesValueAndWeight()
+    {
+        StringCache cache = new StringCache();
+        cache.setMaximumWeight(100);
+        cache.get(new StringKey("aaa"));
+        cache.replace(new StringKey("aaa"), "replaced");
+        assertThat("value", cache.get(new StringKey("aaa")), is("replaced"));
+        assertThat("weight", cache.getWeight(), is(8L));
+        assertThat("size", cache.size(), is(1));
+
+        // a missing entry is added
+        cache.replace(new StringKey("b"), "bbb");
+        assertThat("value", cache.get(new StringKey("b")), is("bbb"));
+        assertThat("weight", cache.getWeight(), is(11L));
+        assertThat("created", cache.created.get(), is(1));
+    }
+}
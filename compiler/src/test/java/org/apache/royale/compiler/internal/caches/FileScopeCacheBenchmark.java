@@ -0,0 +1,172 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCLibrary;
+import org.apache.royale.swc.ISWCScript;
+import org.apache.royale.swc.SWCManager;
+import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.tags.ITag;
+
+/**
+ * Loads the file scopes of all of the scripts of large SWCs through the
+ * {@link FileScopeCache}, and compares finding the {@code DoABC} tag of each
+ * script with the index of the {@link SWFCache} and with a scan of the tags.
+ * <p>
+ * This is not a unit test. Run it with the test classpath on large SWCs, such
+ * as the framework SWCs:
+ * <pre>
+ * java ... FileScopeCacheBenchmark [-iterations=n] file.swc...
+ * </pre>
+ */
+public class FileScopeCacheBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int iterations = 5;
+        List<File> swcFiles = new ArrayList<File>();
+        for (String arg : args)
+        {
+            if (arg.startsWith("-iterations="))
+                iterations = Integer.parseInt(arg.substring("-iterations=".length()));
+            else
+                swcFiles.add(new File(arg).getAbsoluteFile());
+        }
+        if (swcFiles.isEmpty())
+        {
+            System.err.println("usage: FileScopeCacheBenchmark [-iterations=n] file.swc...");
+            System.exit(1);
+        }
+
+        // warm up
+        loadFileScopes(swcFiles);
+
+        System.out.println("swc                              scripts  indexed ms  scanned ms  file scopes ms");
+        for (File swcFile : swcFiles)
+        {
+            Workspace workspace = new Workspace();
+            try
+            {
+                SWCManager swcManager = (SWCManager)workspace.getSWCManager();
+                ISWC swc = swcManager.get(swcFile);
+                int scriptCount = 0;
+                long indexedNanos = 0;
+                long scannedNanos = 0;
+                for (ISWCLibrary library : swc.getLibraries())
+                {
+                    ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(SWFCache.createKey(swc, library.getPath()));
+                    ITagContainer scannedTags = new ScannedTagContainer(tags);
+                    for (int i = 0; i < iterations; i++)
+                    {
+                        long start = System.nanoTime();
+                        for (ISWCScript script : library.getScripts())
+                            SWFCache.findDoABCTagByName(tags, script.getName());
+                        indexedNanos += System.nanoTime() - start;
+
+                        start = System.nanoTime();
+                        for (ISWCScript script : library.getScripts())
+                            SWFCache.findDoABCTagByName(scannedTags, script.getName());
+                        scannedNanos += System.nanoTime() - start;
+                    }
+                    scriptCount += library.getScripts().size();
+                }
+
+                long fileScopesNanos = 0;
+                for (int i = 0; i < iterations; i++)
+                    fileScopesNanos += loadFileScopes(Collections.singletonList(swcFile));
+
+                System.out.printf("%-32s %8d %11.2f %11.2f %15.1f%n", swcFile.getName(), scriptCount,
+                        indexedNanos / 1e6 / iterations, scannedNanos / 1e6 / iterations,
+                        fileScopesNanos / 1e6 / iterations);
+            }
+            finally
+            {
+                workspace.close();
+            }
+        }
+    }
+
+    /**
+     * Loads the file scopes of all of the scripts of the SWCs in a new
+     * workspace, so that nothing is cached yet.
+     *
+     * @return the time taken, in nanoseconds.
+     */
+    private static long loadFileScopes(List<File> swcFiles)
+    {
+        Workspace workspace = new Workspace();
+        try
+        {
+            long start = System.nanoTime();
+            SWCManager swcManager = (SWCManager)workspace.getSWCManager();
+            FileScopeCache fileScopeCache = (FileScopeCache)swcManager.getFileScopeCache();
+            for (File swcFile : swcFiles)
+            {
+                ISWC swc = swcManager.get(swcFile);
+                for (ISWCLibrary library : swc.getLibraries())
+                {
+                    for (ISWCScript script : library.getScripts())
+                        fileScopeCache.get(FileScopeCache.createKey(swc, library.getPath(), script));
+                }
+            }
+            return System.nanoTime() - start;
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    /**
+     * Hides the index of the tags of a SWF in the {@link SWFCache}, so that
+     * lookups scan the tags.
+     */
+    private static class ScannedTagContainer implements ITagContainer
+    {
+        ScannedTagContainer(ITagContainer tags)
+        {
+            this.tags = tags;
+        }
+
+        private final ITagContainer tags;
+
+        @Override
+        public Iterator<ITag> iterator()
+        {
+            return tags.iterator();
+        }
+
+        @Override
+        public Collection<ICompilerProblem> getProblems()
+        {
+            return tags.getProblems();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.problems.SWFCharacterIDNotFoundProblem;
+import org.apache.royale.swc.SWC;
+import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.TagType;
+import org.apache.royale.swf.tags.ITag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SWFCache}, which only decodes the code of library
+ * SWFs until all their tags are asked for. The library SWF of the SWC has a
+ * {@code SymbolClass} tag that exports a character that does not exist.
+ */
+public class SWFCacheTests
+{
+    private static final String LIBRARY = "library.swf";
+
+    private File swcFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        swcFile = File.createTempFile("SWFCacheTests", ".swc");
+    }
+
+    @After
+    public void tearDown()
+    {
+        swcFile.delete();
+    }
+
+    @Test
+    public void testCodeOnly() throws IOException
+    {
+        writeSWC(true);
+        SWFCache cache = new SWFCache(null);
+        ITagContainer tags = cache.get(SWFCache.createKey(new SWC(swcFile), LIBRARY));
+        assertThat("problems", tags.getProblems().size(), is(0));
+        assertThat("DoABC", SWFCache.findDoABCTagByName(tags, "Foo") != null, is(true));
+        assertThat("DefineBinaryData", hasTag(tags, TagType.DefineBinaryData), is(false));
+        assertThat("exports Data", SWFCache.exportsSymbol(tags, "Data"), is(true));
+        assertThat("exports Foo", SWFCache.exportsSymbol(tags, "Foo"), is(false));
+    }
+
+    @Test
+    public void testAllTagsReplaceCode() throws IOException
+    {
+        writeSWC(true);
+        SWC swc = new SWC(swcFile);
+        SWFCache cache = new SWFCache(null);
+        cache.get(SWFCache.createKey(swc, LIBRARY));
+        ITagContainer allTags = cache.getAllTags(swc, LIBRARY);
+        assertThat("DefineBinaryData", hasTag(allTags, TagType.DefineBinaryData), is(true));
+        assertThat("size", cache.size(), is(1));
+
+        // the key of the code finds all the tags, so they are decoded once
+        assertThat(cache.get(SWFCache.createKey(swc, LIBRARY)), sameInstance(allTags));
+        assertThat(cache.getAllTags(swc, LIBRARY), sameInstance(allTags));
+        assertThat("misses", cache.getMissCount(), is(2L));
+    }
+
+    /**
+     * The problems of the asset tags are found with the key of the code, as
+     * {@code LibraryPathManager.collectProblems()} does, once all the tags
+     * are decoded.
+     */
+    @Test
+    public void testCorruptAssetTagProblem() throws IOException
+    {
+        writeSWC(true);
+        SWC swc = new SWC(swcFile);
+        SWFCache cache = new SWFCache(null);
+        cache.getAllTags(swc, LIBRARY);
+        ITagContainer tags = cache.get(SWFCache.createKey(swc, LIBRARY));
+        assertThat("problems", tags.getProblems().size(), is(1));
+        ICompilerProblem problem = tags.getProblems().iterator().next();
+        assertThat(problem.getClass().getName(), problem instanceof SWFCharacterIDNotFoundProblem, is(true));
+    }
+
+    @Test
+    public void testNoAssetTags() throws IOException
+    {
+        writeSWC(false);
+        SWC swc = new SWC(swcFile);
+        SWFCache cache = new SWFCache(null);
+        ITagContainer tags = cache.get(SWFCache.createKey(swc, LIBRARY));
+        assertThat(cache.getAllTags(swc, LIBRARY), sameInstance(tags));
+        assertThat("misses", cache.getMissCount(), is(1L));
+    }
+
+    private static boolean hasTag(ITagContainer tags, TagType type)
+    {
+        for (ITag tag : tags)
+        {
+            if (tag.getTagType() == type)
+                return true;
+        }
+        return false;
+    }
+
+    private void writeSWC(boolean assets) throws IOException
+    {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(swcFile));
+        try
+        {
+            out.putNextEntry(new ZipEntry(LIBRARY));
+            out.write(createSWF(assets));
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @param assets true to add a {@code DefineBinaryData} tag, and a
+     * {@code SymbolClass} tag that exports it and a character that is not
+     * defined
+     * @return an uncompressed SWF
+     */
+    private static byte[] createSWF(boolean assets)
+    {
+        ByteArrayOutputStream tags = new ByteArrayOutputStream();
+        writeTag(tags, TagType.FileAttributes, new byte[] {8, 0, 0, 0});
+
+        ByteArrayOutputStream doABC = new ByteArrayOutputStream();
+        writeUI32(doABC, 1);
+        writeString(doABC, "Foo");
+        doABC.write(0x10);
+        doABC.write(0x00);
+        doABC.write(0x2e);
+        doABC.write(0x00);
+        writeTag(tags, TagType.DoABC, doABC.toByteArray());
+
+        if (assets)
+        {
+            ByteArrayOutputStream binaryData = new ByteArrayOutputStream();
+            writeUI16(binaryData, 1);
+            writeUI32(binaryData, 0);
+            binaryData.write(42);
+            writeTag(tags, TagType.DefineBinaryData, binaryData.toByteArray());
+
+            ByteArrayOutputStream symbolClass = new ByteArrayOutputStream();
+            writeUI16(symbolClass, 2);
+            writeUI16(symbolClass, 1);
+            writeString(symbolClass, "Data");
+            writeUI16(symbolClass, 2);
+            writeString(symbolClass, "Missing");
+            writeTag(tags, TagType.SymbolClass, symbolClass.toByteArray());
+        }
+
+        writeTag(tags, TagType.ShowFrame, new byte[0]);
+        writeTag(tags, TagType.End, new byte[0]);
+
+        byte[] body = tags.toByteArray();
+        ByteArrayOutputStream swf = new ByteArrayOutputStream();
+        swf.write('F');
+        swf.write('W');
+        swf.write('S');
+        swf.write(10);
+        // signature, version, length, an empty RECT, frame rate and count
+        writeUI32(swf, 8 + 1 + 4 + body.length);
+        swf.write(0);
+        writeUI16(swf, 24 << 8);
+        writeUI16(swf, 1);
+        swf.write(body, 0, body.length);
+        return swf.toByteArray();
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, TagType type, byte[] body)
+    {
+        assert body.length < 0x3f;
+        writeUI16(out, (type.getValue() << 6) | body.length);
+        out.write(body, 0, body.length);
+    }
+
+    private static void writeUI16(ByteArrayOutputStream out, int value)
+    {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private static void writeUI32(ByteArrayOutputStream out, long value)
+    {
+        writeUI16(out, (int)(value & 0xffff));
+        writeUI16(out, (int)((value >>> 16) & 0xffff));
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value)
+    {
+        for (int i = 0; i < value.length(); i++)
+            out.write(value.charAt(i));
+        out.write(0);
+    }
+}
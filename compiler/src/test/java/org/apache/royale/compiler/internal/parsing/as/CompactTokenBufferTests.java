@@ -0,0 +1,117 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.parsing.as;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.apache.royale.utils.NonLockingStringReader;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link CompactTokenBuffer}, which must feed the parser the
+ * same tokens as {@link StreamingTokenBuffer}.
+ */
+public class CompactTokenBufferTests
+{
+    private static final String PATH = "/tmp/Foo.as";
+
+    private static final String SOURCE =
+            "package foo\n" +
+            "{\n" +
+            "    [Event(name=\"change\")]\n" +
+            "    public class Foo\n" +
+            "    {\n" +
+            "        /** ASDoc */\n" +
+            "        public var caf\\u00e9:String = 'a\\'b';\n" +
+            "        private static const PATTERN:RegExp = /a\\/b/g;\n" +
+            "        public function bar(n:int):Number\n" +
+            "        {\n" +
+            "            var total:Number = 0x1F + 1.5e3;\n" +
+            "            for (var i:int = 0; i < n; i++) { total += i; }\n" +
+            "            return total\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    @Test
+    public void testSameTokensAsStreaming()
+    {
+        IRepairingTokenBuffer streaming = new StreamingTokenBuffer(createTokenizer());
+        IRepairingTokenBuffer compact = new CompactTokenBuffer(createTokenizer().getCompactTokens(SOURCE));
+        int count = 0;
+        while (streaming.LA(1) != ASTokenTypes.EOF)
+        {
+            ASToken expected = streaming.LT(1);
+            assertThat("type of " + expected, compact.LA(1), is(expected.getType()));
+            ASToken actual = compact.LT(1);
+            assertThat("text", actual.getText(), is(expected.getText()));
+            assertThat("start of " + expected, actual.getStart(), is(expected.getStart()));
+            assertThat("end of " + expected, actual.getEnd(), is(expected.getEnd()));
+            assertThat("line of " + expected, actual.getLine(), is(expected.getLine()));
+            assertThat("column of " + expected, actual.getColumn(), is(expected.getColumn()));
+            assertThat("source path of " + expected, actual.getSourcePath(), is(expected.getSourcePath()));
+            streaming.consume();
+            compact.consume();
+            count++;
+        }
+        assertThat("EOF", compact.LA(1), is(ASTokenTypes.EOF));
+        assertThat(count > 50, is(true));
+    }
+
+    @Test
+    public void testRewindKeepsChangedType()
+    {
+        CompactTokenList tokens = createTokenizer().getCompactTokens(SOURCE);
+        CompactTokenBuffer buffer = new CompactTokenBuffer(tokens);
+        buffer.LT(1).setType(ASTokenTypes.TOKEN_IDENTIFIER);
+        int mark = buffer.mark();
+        assertThat(buffer.LA(1), is(ASTokenTypes.TOKEN_IDENTIFIER));
+
+        // walk far enough for the token object to be dropped
+        while (buffer.LA(1) != ASTokenTypes.EOF)
+        {
+            buffer.LT(1);
+            buffer.consume();
+        }
+        buffer.rewind(mark);
+        assertThat(buffer.LA(1), is(ASTokenTypes.TOKEN_IDENTIFIER));
+        assertThat(buffer.LT(1).getText(), is("package"));
+    }
+
+    @Test
+    public void testPreviousWithoutLookAhead()
+    {
+        CompactTokenBuffer buffer = new CompactTokenBuffer(createTokenizer().getCompactTokens(SOURCE));
+        buffer.consume();
+        buffer.consume();
+        assertThat(buffer.previous().getText(), is("foo"));
+        assertThat(buffer.lookAheadSourcePath(1), is(PATH));
+        assertThat(buffer.LA(1), is(ASTokenTypes.TOKEN_BLOCK_OPEN));
+    }
+
+    private static StreamingASTokenizer createTokenizer()
+    {
+        StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+        tokenizer.setReader(new NonLockingStringReader(SOURCE));
+        tokenizer.setPath(PATH);
+        return tokenizer;
+    }
+}
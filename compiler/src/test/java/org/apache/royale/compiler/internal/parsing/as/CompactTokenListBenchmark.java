@@ -0,0 +1,219 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.parsing.as;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.utils.NonLockingStringReader;
+
+/**
+ * Compares the two token buffers {@link BaseASParser#parseFile} can parse a
+ * file with: a {@link StreamingTokenBuffer} that pulls {@link ASToken}
+ * objects from a {@link StreamingASTokenizer}, and a
+ * {@link CompactTokenBuffer} over the {@link CompactTokenList} returned by
+ * {@link StreamingASTokenizer#getCompactTokens(String)}. It reports the
+ * tokens per second and the bytes allocated per token to tokenize the
+ * sources and walk their tokens the way the parser does, both when the
+ * parser looks at every token and when it only checks the type of each
+ * token, as it does in the function bodies it skips.
+ * <p>
+ * This is not a unit test. Run it with the test classpath on large
+ * ActionScript files, or directories of them:
+ * <pre>
+ * java ... CompactTokenListBenchmark [-iterations=n] file.as|directory...
+ * </pre>
+ * Allocation is only reported on JVMs that support
+ * {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes}.
+ */
+public class CompactTokenListBenchmark
+{
+    private static abstract class Workload
+    {
+        Workload(String name)
+        {
+            this.name = name;
+        }
+
+        final String name;
+
+        /**
+         * @return a token buffer over the tokens of a source.
+         */
+        abstract IRepairingTokenBuffer createBuffer(String path, String source);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int iterations = 5;
+        List<String> paths = new ArrayList<String>();
+        List<String> sources = new ArrayList<String>();
+        long chars = 0;
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("-iterations="))
+            {
+                iterations = Integer.parseInt(arg.substring("-iterations=".length()));
+            }
+            else
+            {
+                for (File file : listFiles(new File(arg)))
+                {
+                    String source = FileUtils.readFileToString(file, "UTF-8");
+                    paths.add(file.getAbsolutePath());
+                    sources.add(source);
+                    chars += source.length();
+                }
+            }
+        }
+        if (sources.isEmpty())
+        {
+            System.err.println("usage: CompactTokenListBenchmark [-iterations=n] file.as|directory...");
+            System.exit(1);
+        }
+
+        Workload[] workloads = {
+            new Workload("Streaming")
+            {
+                @Override
+                IRepairingTokenBuffer createBuffer(String path, String source)
+                {
+                    StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+                    tokenizer.setReader(new NonLockingStringReader(source));
+                    tokenizer.setPath(path);
+                    return new StreamingTokenBuffer(tokenizer);
+                }
+            },
+            new Workload("Compact")
+            {
+                @Override
+                IRepairingTokenBuffer createBuffer(String path, String source)
+                {
+                    StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+                    tokenizer.setReader(new NonLockingStringReader(source));
+                    tokenizer.setPath(path);
+                    return new CompactTokenBuffer(tokenizer.getCompactTokens(source));
+                }
+            }
+        };
+
+        System.out.println(sources.size() + " files, " + chars + " characters");
+        System.out.println("buffer     walk         ms  tokens/ms  alloc/token");
+
+        // warm up
+        for (Workload workload : workloads)
+        {
+            run(workload, paths, sources, true);
+            run(workload, paths, sources, false);
+        }
+
+        for (boolean lookAtTokens : new boolean[] {true, false})
+        {
+            for (Workload workload : workloads)
+            {
+                long allocatedBefore = getAllocatedBytes();
+                long start = System.nanoTime();
+                long tokenCount = 0;
+                for (int i = 0; i < iterations; i++)
+                    tokenCount += run(workload, paths, sources, lookAtTokens);
+                double ms = (System.nanoTime() - start) / 1e6 / iterations;
+                long allocated = allocatedBefore >= 0 ? getAllocatedBytes() - allocatedBefore : -1;
+                tokenCount /= iterations;
+
+                String bytesPerToken = allocated >= 0 ?
+                        String.format("%.1f", (double)allocated / iterations / tokenCount) : "-";
+                System.out.println(String.format("%-10s %-6s %10.1f %10.1f %12s",
+                        workload.name, lookAtTokens ? "LT" : "LA", ms, tokenCount / ms, bytesPerToken));
+            }
+        }
+    }
+
+    private static long run(Workload workload, List<String> paths, List<String> sources, boolean lookAtTokens)
+    {
+        long tokenCount = 0;
+        for (int i = 0; i < sources.size(); i++)
+            tokenCount += walkBuffer(workload.createBuffer(paths.get(i), sources.get(i)), lookAtTokens);
+        return tokenCount;
+    }
+
+    /**
+     * Consume every token of a buffer, as the parser does.
+     *
+     * @param lookAtTokens true to get the text of every token, false to only
+     * get their types, as the parser does in a skipped function body.
+     * @return the number of tokens.
+     */
+    private static int walkBuffer(IRepairingTokenBuffer buffer, boolean lookAtTokens)
+    {
+        int count = 0;
+        while (buffer.LA(1) != ASTokenTypes.EOF)
+        {
+            if (lookAtTokens)
+                buffer.LT(1).getText();
+            buffer.consume();
+            count++;
+        }
+        return count;
+    }
+
+    private static List<File> listFiles(File file)
+    {
+        List<File> files = new ArrayList<File>();
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children != null)
+            {
+                for (File child : children)
+                    files.addAll(listFiles(child));
+            }
+        }
+        else if (file.getName().endsWith(".as"))
+        {
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far, or
+     * a negative number when the JVM can't tell.
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try
+        {
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long)method.invoke(bean, Thread.currentThread().getId());
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.common.DependencyTypeSet;
+import org.apache.royale.compiler.exceptions.CircularDependencyException;
+import org.apache.royale.compiler.internal.graph.Graph;
+import org.apache.royale.compiler.internal.graph.TopologicalSort;
+import org.apache.royale.compiler.internal.projects.DependencyGraph.Edge;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link DependencyGraphSnapshot}. The sort and the
+ * invalidation of random graphs are compared with the implementations the
+ * snapshot replaced: {@link TopologicalSort} on a {@link Graph}, and a work
+ * list of incoming edges.
+ */
+public class DependencyGraphSnapshotTests
+{
+    private static final int GRAPH_COUNT = 200;
+    private static final int MAX_UNIT_COUNT = 60;
+
+    /**
+     * A comparator other than the default name order.
+     */
+    private static final Comparator<ICompilationUnit> REVERSE_NAME_COMPARATOR = new Comparator<ICompilationUnit>()
+    {
+        @Override
+        public int compare(ICompilationUnit o1, ICompilationUnit o2)
+        {
+            return o2.getName().compareTo(o1.getName());
+        }
+    };
+
+    @Test
+    public void testSortSameAsTopologicalSort() throws Exception
+    {
+        Random random = new Random(1);
+        for (int i = 0; i < GRAPH_COUNT; i++)
+            assertSortSameAsTopologicalSort("acyclic graph " + i, createGraph(random, false), random);
+    }
+
+    @Test
+    public void testSortOfInheritanceCyclesSameAsTopologicalSort() throws Exception
+    {
+        Random random = new Random(2);
+        int cycles = 0;
+        for (int i = 0; i < GRAPH_COUNT; i++)
+        {
+            if (assertSortSameAsTopologicalSort("cyclic graph " + i, createGraph(random, true), random))
+                cycles++;
+        }
+        assertThat("no graph had a cycle", cycles > 0, is(true));
+    }
+
+    @Test
+    public void testInvalidationSameAsWorkList() throws Exception
+    {
+        Random random = new Random(3);
+        for (int i = 0; i < GRAPH_COUNT; i++)
+        {
+            DependencyGraph graph = createGraph(random, i % 2 == 1);
+            Graph<ICompilationUnit, Edge> copy = copy(graph);
+            List<ICompilationUnit> roots = chooseRoots(graph, random);
+            assertThat("graph " + i, graph.snapshot().computeInvalidationSet(roots),
+                    is(computeInvalidationSet(copy, roots)));
+        }
+    }
+
+    @Test
+    public void testLastCircularDependencyException() throws Exception
+    {
+        DependencyGraph graph = new DependencyGraph();
+        ICompilationUnit a = createUnit("A");
+        ICompilationUnit b = createUnit("B");
+        ICompilationUnit c = createUnit("C");
+        graph.addCompilationUnit(a);
+        graph.addCompilationUnit(b);
+        graph.addCompilationUnit(c);
+        graph.addDependency(c, a, DependencyType.EXPRESSION);
+        graph.addDependency(a, b, DependencyType.INHERITANCE);
+        graph.addDependency(b, a, DependencyType.INHERITANCE);
+
+        List<ICompilationUnit> roots = Collections.singletonList(c);
+        try
+        {
+            graph.topologicalSort(roots);
+        }
+        catch (AssertionError e)
+        {
+            // thrown when assertions are enabled, after the exception is kept
+        }
+        CircularDependencyException exception = graph.lastCircularDependencyException;
+        assertThat("exception", exception, notNullValue());
+
+        List<ICompilationUnit> expectedList = new ArrayList<ICompilationUnit>();
+        CircularDependencyException expected = sort(copy(graph), roots, null, expectedList);
+        assertThat("expected exception", expected, notNullValue());
+        assertThat("cycle", exception.getCircularDependency(), is(expected.getCircularDependency()));
+
+        // a sort without a cycle clears the exception
+        graph.removeDependencies(b);
+        graph.topologicalSort(roots);
+        assertThat("exception after the cycle is removed", graph.lastCircularDependencyException, nullValue());
+    }
+
+    @Test
+    public void testSnapshotSharedUntilChanged() throws Exception
+    {
+        DependencyGraph graph = new DependencyGraph();
+        ICompilationUnit a = createUnit("A");
+        ICompilationUnit b = createUnit("B");
+        graph.addCompilationUnit(a);
+        DependencyGraphSnapshot snapshot = graph.snapshot();
+        assertThat(graph.snapshot() == snapshot, is(true));
+
+        graph.addCompilationUnit(b);
+        DependencyGraphSnapshot changed = graph.snapshot();
+        assertThat(changed == snapshot, is(false));
+        assertThat(changed.getCompilationUnitCount(), is(2));
+
+        graph.addDependency(a, b, DependencyType.SIGNATURE);
+        assertThat(graph.snapshot().getEdgeCount(), is(1));
+        assertThat(changed.getEdgeCount(), is(0));
+    }
+
+    /**
+     * Sorts the graph from random roots in name order and in another order,
+     * and compares the sorted units and the cycle found with those of
+     * {@link TopologicalSort}.
+     *
+     * @return true if the sort found a cycle
+     */
+    private static boolean assertSortSameAsTopologicalSort(String message, DependencyGraph graph, Random random)
+    {
+        Graph<ICompilationUnit, Edge> copy = copy(graph);
+        List<ICompilationUnit> roots = chooseRoots(graph, random);
+        // roots that aren't in the graph are sorted too
+        if (random.nextInt(4) == 0)
+            roots.add(createUnit("extra" + random.nextInt(1000)));
+
+        boolean cycle = false;
+        for (Comparator<ICompilationUnit> comparator : Arrays.asList(null, REVERSE_NAME_COMPARATOR))
+        {
+            List<ICompilationUnit> expectedList = new ArrayList<ICompilationUnit>();
+            CircularDependencyException expected = sort(copy, roots, comparator, expectedList);
+
+            List<ICompilationUnit> actualList = new ArrayList<ICompilationUnit>();
+            CircularDependencyException actual = null;
+            try
+            {
+                graph.snapshot().topologicalSort(roots, comparator, actualList);
+            }
+            catch (CircularDependencyException e)
+            {
+                actual = e;
+            }
+
+            String comparatorMessage = message + (comparator == null ? ", by name" : ", by reverse name");
+            assertThat(comparatorMessage, actualList, is(expectedList));
+            assertThat(comparatorMessage + ", cycle", actual != null, is(expected != null));
+            if (expected != null)
+            {
+                assertThat(comparatorMessage + ", cycle", actual.getCircularDependency(),
+                        is(expected.getCircularDependency()));
+                cycle = true;
+            }
+        }
+        return cycle;
+    }
+
+    /**
+     * The sort {@link DependencyGraph#topologicalSort} did before it used
+     * snapshots.
+     *
+     * @return the circular dependency found, or null
+     */
+    private static CircularDependencyException sort(Graph<ICompilationUnit, Edge> graph,
+            Collection<ICompilationUnit> roots, Comparator<ICompilationUnit> comparator,
+            final List<ICompilationUnit> sortedList)
+    {
+        final Comparator<ICompilationUnit> vertexComparator =
+                comparator != null ? comparator : DependencyGraphSnapshot.NAME_COMPARATOR;
+        TopologicalSort.IVisitor<ICompilationUnit, Edge> visitor =
+                new TopologicalSort.IVisitor<ICompilationUnit, Edge>()
+            {
+                @Override
+                public void visit(ICompilationUnit v)
+                {
+                    sortedList.add(v);
+                }
+
+                @Override
+                public boolean isTopologicalEdge(Edge e)
+                {
+                    return e.getIsInheritanceDependency();
+                }
+
+                @Override
+                public int compare(ICompilationUnit a, ICompilationUnit b)
+                {
+                    return vertexComparator.compare(a, b);
+                }
+            };
+        try
+        {
+            TopologicalSort.sort(graph, roots, visitor);
+            return null;
+        }
+        catch (CircularDependencyException e)
+        {
+            return e;
+        }
+    }
+
+    /**
+     * The invalidation {@link DependencyGraph#computeInvalidationSet} did
+     * before it used snapshots.
+     */
+    private static Set<ICompilationUnit> computeInvalidationSet(Graph<ICompilationUnit, Edge> graph,
+            Iterable<ICompilationUnit> roots)
+    {
+        HashSet<ICompilationUnit> result = new HashSet<ICompilationUnit>();
+        LinkedList<Edge> workList = new LinkedList<Edge>();
+        for (ICompilationUnit root : roots)
+        {
+            if (result.add(root))
+                workList.addAll(graph.getIncomingEdges(root));
+        }
+        DependencyTypeSet recursiveInvalidationSet =
+                DependencyTypeSet.of(DependencyType.INHERITANCE, DependencyType.SIGNATURE, DependencyType.NAMESPACE);
+        HashSet<Edge> visitedEdges = new HashSet<Edge>();
+        while (!workList.isEmpty())
+        {
+            Edge currentEdge = workList.pop();
+            if (visitedEdges.add(currentEdge))
+            {
+                ICompilationUnit dependentUnit = currentEdge.getFrom();
+                result.add(dependentUnit);
+                if (currentEdge.typeInSet(recursiveInvalidationSet))
+                    workList.addAll(graph.getIncomingEdges(dependentUnit));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a graph of up to {@link #MAX_UNIT_COUNT} units with random
+     * dependencies.
+     *
+     * @param inheritanceCycles false to only add inheritance dependencies
+     * from a unit to the units before it, which can't make a cycle
+     */
+    private static DependencyGraph createGraph(Random random, boolean inheritanceCycles)
+    {
+        int unitCount = 1 + random.nextInt(MAX_UNIT_COUNT);
+        List<ICompilationUnit> units = new ArrayList<ICompilationUnit>(unitCount);
+        for (int i = 0; i < unitCount; i++)
+            units.add(createUnit("unit" + random.nextInt(10000) + "_" + i));
+        // the order of the units is not their name order
+        Collections.shuffle(units, random);
+
+        DependencyGraph graph = new DependencyGraph();
+        graph.addCompilationUnits(units);
+        DependencyType[] types = DependencyType.values();
+        int edgeCount = random.nextInt(3 * unitCount + 1);
+        for (int i = 0; i < edgeCount; i++)
+        {
+            int from = random.nextInt(unitCount);
+            int to = random.nextInt(unitCount);
+            if (from == to)
+                continue;
+            DependencyType type = types[random.nextInt(types.length)];
+            if (type == DependencyType.INHERITANCE && !inheritanceCycles && to > from)
+                type = DependencyType.EXPRESSION;
+            if (random.nextBoolean())
+                graph.addDependency(units.get(from), units.get(to), type, "pkg.Definition" + to);
+            else
+                graph.addDependency(units.get(from), units.get(to), type);
+        }
+        return graph;
+    }
+
+    private static List<ICompilationUnit> chooseRoots(DependencyGraph graph, Random random)
+    {
+        List<ICompilationUnit> roots = new ArrayList<ICompilationUnit>();
+        for (ICompilationUnit unit : graph.getCompilationUnits())
+        {
+            if (random.nextInt(4) == 0)
+                roots.add(unit);
+        }
+        return roots;
+    }
+
+    /**
+     * Copies the graph the snapshots are taken from, with the same edges.
+     */
+    private static Graph<ICompilationUnit, Edge> copy(DependencyGraph graph)
+    {
+        Graph<ICompilationUnit, Edge> copy = new Graph<ICompilationUnit, Edge>();
+        Collection<ICompilationUnit> units = graph.getCompilationUnits();
+        copy.addVertices(units);
+        for (ICompilationUnit unit : units)
+        {
+            for (Edge edge : graph.getOutgoingEdges(unit))
+                copy.setEdge(edge);
+        }
+        return copy;
+    }
+
+    /**
+     * Creates a compilation unit that only has a name. It is only equal to
+     * itself, like the compilation units of a project.
+     */
+    private static ICompilationUnit createUnit(final String name)
+    {
+        InvocationHandler handler = new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                String methodName = method.getName();
+                if (methodName.equals("getName") || methodName.equals("toString"))
+                    return name;
+                if (methodName.equals("isInvisible"))
+                    return false;
+                if (methodName.equals("getQualifiedNames"))
+                    return Collections.singletonList(name);
+                if (methodName.equals("hashCode"))
+                    return System.identityHashCode(proxy);
+                if (methodName.equals("equals"))
+                    return proxy == args[0];
+                throw new UnsupportedOperationException(methodName);
+            }
+        };
+        return (ICompilationUnit)Proxy.newProxyInstance(ICompilationUnit.class.getClassLoader(),
+                new Class<?>[] {ICompilationUnit.class}, handler);
+    }
+}
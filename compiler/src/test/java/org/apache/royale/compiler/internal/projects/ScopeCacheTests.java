@@ -0,0 +1,138 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.scopes.ASScope;
+import org.apache.royale.compiler.internal.scopes.ASScopeCache;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.scopes.IASScope;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the {@link ASScopeCache}s of a {@link CompilerProject}.
+ */
+public class ScopeCacheTests
+{
+    private static final String[] CLASS_NAMES = {"A", "B", "C", "D"};
+
+    private File sourceDir;
+    private Workspace workspace;
+    private RoyaleProject project;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sourceDir = File.createTempFile("ScopeCacheTests", "");
+        sourceDir.delete();
+        sourceDir = FilenameNormalization.normalize(sourceDir);
+        for (String className : CLASS_NAMES)
+            writeClass(className);
+
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(sourceDir));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(sourceDir);
+    }
+
+    @Test
+    public void ScopeCache_reused() throws Exception
+    {
+        ASScope scope = getFileScopes().get(0);
+        ASScopeCache cache = project.getCacheForScope(scope);
+        assertThat(project.getCacheForScope(scope), sameInstance(cache));
+    }
+
+    @Test
+    public void ScopeCache_maximumCount() throws Exception
+    {
+        project.setScopeCacheMaximumCount(2);
+        assertThat("count after reset", project.getScopeCacheCount(), is(0L));
+
+        List<ASScope> scopes = getFileScopes();
+        for (ASScope scope : scopes)
+            project.getCacheForScope(scope);
+        assertTrue("count: " + project.getScopeCacheCount(), project.getScopeCacheCount() <= 2);
+    }
+
+    @Test
+    public void ScopeCache_maximumSizeDoesNotLimitCount() throws Exception
+    {
+        project.setScopeCacheMaximumSize(10);
+
+        List<ASScope> scopes = getFileScopes();
+        for (ASScope scope : scopes)
+            project.getCacheForScope(scope);
+        assertThat("count", project.getScopeCacheCount(), is((long)scopes.size()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ScopeCache_negativeMaximumCount()
+    {
+        project.setScopeCacheMaximumCount(-1);
+    }
+
+    private List<ASScope> getFileScopes() throws InterruptedException
+    {
+        List<ASScope> scopes = new ArrayList<ASScope>();
+        for (String className : CLASS_NAMES)
+        {
+            File file = getFile(className);
+            for (ICompilationUnit unit : workspace.getCompilationUnits(file.getPath(), project))
+            {
+                for (IASScope scope : unit.getFileScopeRequest().get().getScopes())
+                    scopes.add((ASScope)scope);
+            }
+        }
+        assertThat("file scopes", scopes.size(), is(CLASS_NAMES.length));
+        return scopes;
+    }
+
+    private File getFile(String className)
+    {
+        return new File(sourceDir, "pkg" + File.separator + className + ".as");
+    }
+
+    private void writeClass(String className) throws Exception
+    {
+        FileUtils.writeStringToFile(getFile(className), "package pkg\n{\npublic class " + className + "\n{\n}\n}\n", "UTF-8");
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.scopes;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.common.IMetaInfo;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.definitions.INamespaceDefinition;
+import org.apache.royale.compiler.definitions.metadata.IMetaTag;
+import org.apache.royale.compiler.definitions.metadata.IMetaTagAttribute;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.definitions.ClassDefinition;
+import org.apache.royale.compiler.internal.definitions.DefinitionBase;
+import org.apache.royale.compiler.internal.definitions.FunctionDefinition;
+import org.apache.royale.compiler.internal.definitions.InterfaceDefinition;
+import org.apache.royale.compiler.internal.definitions.ParameterDefinition;
+import org.apache.royale.compiler.internal.definitions.ScopedDefinitionBase;
+import org.apache.royale.compiler.internal.definitions.VariableDefinition;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.projects.ICompilerProject;
+import org.apache.royale.compiler.scopes.IASScope;
+import org.apache.royale.compiler.tree.as.IDefinitionNode;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
+import org.apache.royale.utils.FilenameNormalization;
+import org.apache.royale.utils.ITestAdapter;
+import org.apache.royale.utils.TestAdapterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ASFileScopeCache}. Each test stands for several
+ * compiler processes by compiling the same source files in several
+ * workspaces that share a cache directory.
+ */
+public class ASFileScopeCacheTests
+{
+    /**
+     * Source files whose file scopes can all be cached: they have
+     * definitions of every kind, namespaces, metadata and literal values,
+     * but no namespace declarations, bindable definitions or other
+     * synthetic definitions.
+     */
+    private static final String[][] SOURCES = {
+        {"pkg/A.as",
+            "package pkg\n" +
+            "{\n" +
+            "[Event(name=\"change\", type=\"flash.events.Event\")]\n" +
+            "public class A extends B implements IC\n" +
+            "{\n" +
+            "    public static const NAME:String = \"A\";\n" +
+            "    protected var count:int = 3;\n" +
+            "    private var ratio:Number = 0.5;\n" +
+            "    internal var flag:Boolean = true;\n" +
+            "    public function A(n:int = 2)\n" +
+            "    {\n" +
+            "        count = n;\n" +
+            "    }\n" +
+            "    public function get size():int\n" +
+            "    {\n" +
+            "        return count;\n" +
+            "    }\n" +
+            "    public function set size(value:int):void\n" +
+            "    {\n" +
+            "        count = value;\n" +
+            "    }\n" +
+            "    override public function compute(x:Number, ...rest):Number\n" +
+            "    {\n" +
+            "        return flag ? x * ratio + super.compute(x) : new Helper().twice(x);\n" +
+            "    }\n" +
+            "    [Inspectable(defaultValue=\"a\")]\n" +
+            "    public function describe(prefix:String = \"a\", suffix:* = null):String\n" +
+            "    {\n" +
+            "        return prefix + NAME + suffix;\n" +
+            "    }\n" +
+            "}\n" +
+            "}\n" +
+            "class Helper\n" +
+            "{\n" +
+            "    public function twice(x:Number):Number\n" +
+            "    {\n" +
+            "        return 2 * x;\n" +
+            "    }\n" +
+            "}\n"},
+        {"pkg/B.as",
+            "package pkg\n" +
+            "{\n" +
+            "public class B\n" +
+            "{\n" +
+            "    public function compute(x:Number, ...rest):Number\n" +
+            "    {\n" +
+            "        return helper(x);\n" +
+            "    }\n" +
+            "    protected static function helper(x:Number):Number\n" +
+            "    {\n" +
+            "        return -x;\n" +
+            "    }\n" +
+            "}\n" +
+            "}\n"},
+        {"pkg/IC.as",
+            "package pkg\n" +
+            "{\n" +
+            "public interface IC\n" +
+            "{\n" +
+            "    function describe(prefix:String = \"a\", suffix:* = null):String;\n" +
+            "}\n" +
+            "}\n"},
+        {"pkg/d.as",
+            "package pkg\n" +
+            "{\n" +
+            "public function d(v:uint = 4, w:Number = 1.5):uint\n" +
+            "{\n" +
+            "    return v + new A().size;\n" +
+            "}\n" +
+            "}\n"},
+    };
+
+    private File sourceDir;
+    private File cacheDir;
+    private final List<Workspace> workspaces = new ArrayList<Workspace>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sourceDir = createTempDir("ASFileScopeCacheTests");
+        cacheDir = createTempDir("ASFileScopeCacheTests-cache");
+        for (String[] source : SOURCES)
+            FileUtils.writeStringToFile(getFile(source[0]), source[1], "UTF-8");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for (Workspace workspace : workspaces)
+            workspace.close();
+        FileUtils.deleteDirectory(sourceDir);
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception
+    {
+        RoyaleProject cold = createProject(null, null);
+        Map<String, String> expected = describeFileScopes(cold);
+
+        // the first process with a cache stores an image of every file
+        RoyaleProject storing = createProject(cacheDir, null);
+        assertThat(describeFileScopes(storing), is(expected));
+        assertThat("images", getImageCount(), is(SOURCES.length));
+
+        // the next one loads the file scopes without parsing the files
+        AtomicInteger parseCount = new AtomicInteger();
+        RoyaleProject loading = createProject(cacheDir, parseCount);
+        assertThat(describeFileScopes(loading), is(expected));
+        assertThat("files parsed", parseCount.get(), is(0));
+    }
+
+    @Test
+    public void testLoadDirectly() throws Exception
+    {
+        RoyaleProject storing = createProject(cacheDir, null);
+        Map<String, String> expected = describeFileScopes(storing);
+
+        RoyaleProject loading = createProject(cacheDir, null);
+        ASFileScopeCache cache = loading.getFileScopeCache();
+        for (String[] source : SOURCES)
+        {
+            IFileSpecification fileSpec = new FileSpecification(getFile(source[0]).getPath());
+            String key = cache.computeKey(loading, fileSpec);
+            assertThat(source[0], key, is(cache.computeKey(loading, fileSpec.getPath(), source[1])));
+            ASFileScope fileScope = cache.load(fileSpec, loading.getWorkspace(), key);
+            assertThat(source[0], fileScope, notNullValue());
+            assertThat(source[0], describe(fileScope, loading), is(expected.get(source[0])));
+
+            // an image is only used for the contents it was stored for
+            String otherKey = cache.computeKey(loading, fileSpec.getPath(), source[1] + "\n");
+            assertThat(source[0], cache.load(fileSpec, loading.getWorkspace(), otherKey), nullValue());
+        }
+    }
+
+    @Test
+    public void testChangedFileIsParsed() throws Exception
+    {
+        describeFileScopes(createProject(cacheDir, null));
+        String changed = SOURCES[1][1].replace("return -x;", "return x;");
+        FileUtils.writeStringToFile(getFile(SOURCES[1][0]), changed, "UTF-8");
+
+        AtomicInteger parseCount = new AtomicInteger();
+        RoyaleProject loading = createProject(cacheDir, parseCount);
+        describeFileScopes(loading);
+        assertThat("files parsed", parseCount.get(), is(1));
+    }
+
+    @Test
+    public void testReparseAndReconnect() throws Exception
+    {
+        Map<String, String> expected = describeFileScopes(createProject(null, null));
+        describeFileScopes(createProject(cacheDir, null));
+
+        AtomicInteger parseCount = new AtomicInteger();
+        RoyaleProject loading = createProject(cacheDir, parseCount);
+        Map<String, ASFileScope> fileScopes = new LinkedHashMap<String, ASFileScope>();
+        for (String[] source : SOURCES)
+            fileScopes.put(source[0], getFileScope(loading, source[0]));
+        assertThat("files parsed", parseCount.get(), is(0));
+
+        // the syntax tree of each file is connected to the loaded definitions
+        for (String[] source : SOURCES)
+        {
+            ICompilationUnit unit = getCompilationUnit(loading, source[0]);
+            unit.getSyntaxTreeRequest().get();
+            ASFileScope fileScope = fileScopes.get(source[0]);
+            assertThat(source[0], getFileScope(loading, source[0]), sameInstance(fileScope));
+            assertReconnected(fileScope);
+            assertThat(source[0], describe(fileScope, loading), is(expected.get(source[0])));
+        }
+        assertThat("files parsed", parseCount.get(), is(SOURCES.length));
+    }
+
+    @Test
+    public void testCodeGenerationSameAsColdBuild() throws Exception
+    {
+        ITestAdapter testAdapter = TestAdapterFactory.getTestAdapter();
+        File playerglobal = testAdapter.getPlayerglobal();
+        assumeTrue(playerglobal != null && playerglobal.isFile());
+
+        RoyaleProject cold = createProject(null, null);
+        cold.setLibraries(Collections.singletonList(playerglobal));
+        Map<String, byte[]> expected = generateABC(cold);
+
+        RoyaleProject storing = createProject(cacheDir, null);
+        storing.setLibraries(Collections.singletonList(playerglobal));
+        generateABC(storing);
+
+        // the file scopes are loaded first, as they are by a build, and the
+        // files are only parsed for code generation
+        AtomicInteger parseCount = new AtomicInteger();
+        RoyaleProject loading = createProject(cacheDir, parseCount);
+        loading.setLibraries(Collections.singletonList(playerglobal));
+        for (String[] source : SOURCES)
+            getFileScope(loading, source[0]);
+        assertThat("files parsed", parseCount.get(), is(0));
+        Map<String, byte[]> actual = generateABC(loading);
+        for (String[] source : SOURCES)
+            assertArrayEquals(source[0], expected.get(source[0]), actual.get(source[0]));
+    }
+
+    /**
+     * Checks that every definition that came from source is connected to
+     * the node of the syntax tree that was parsed after the definition was
+     * loaded.
+     */
+    private static void assertReconnected(ASScope scope)
+    {
+        for (IDefinition definition : scope.getAllLocalDefinitions())
+        {
+            if (definition.isImplicit() || definition.isContingent())
+                continue;
+            IDefinitionNode node = definition.getNode();
+            assertThat(definition.getQualifiedName(), node, notNullValue());
+            assertThat(definition.getQualifiedName(), node.getDefinition(), sameInstance(definition));
+            if (definition instanceof ScopedDefinitionBase && !(definition instanceof FunctionDefinition))
+                assertReconnected(((ScopedDefinitionBase)definition).getContainedScope());
+        }
+    }
+
+    private RoyaleProject createProject(File cacheDirectory, final AtomicInteger parseCount)
+    {
+        Workspace workspace = new Workspace();
+        workspaces.add(workspace);
+        if (parseCount != null)
+        {
+            workspace.setProfilingDelegate(new IWorkspaceProfilingDelegate()
+            {
+                @Override
+                public void operationStarted(ICompilationUnit cu, ICompilationUnit.Operation operation)
+                {
+                    if (operation == ICompilationUnit.Operation.GET_SYNTAX_TREE)
+                        parseCount.incrementAndGet();
+                }
+
+                @Override
+                public void operationCompleted(ICompilationUnit cu, ICompilationUnit.Operation operation)
+                {
+                }
+            });
+        }
+        RoyaleProject project = new RoyaleProject(workspace);
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(sourceDir));
+        project.setFileScopeCacheDirectory(cacheDirectory);
+        return project;
+    }
+
+    private Map<String, String> describeFileScopes(RoyaleProject project) throws InterruptedException
+    {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (String[] source : SOURCES)
+            result.put(source[0], describe(getFileScope(project, source[0]), project));
+        return result;
+    }
+
+    private Map<String, byte[]> generateABC(RoyaleProject project) throws InterruptedException
+    {
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        for (String[] source : SOURCES)
+        {
+            ICompilationUnit unit = getCompilationUnit(project, source[0]);
+            result.put(source[0], unit.getABCBytesRequest().get().getABCBytes());
+        }
+        return result;
+    }
+
+    private ASFileScope getFileScope(RoyaleProject project, String path) throws InterruptedException
+    {
+        IASScope[] scopes = getCompilationUnit(project, path).getFileScopeRequest().get().getScopes();
+        assertThat(path, scopes.length, is(1));
+        return (ASFileScope)scopes[0];
+    }
+
+    private ICompilationUnit getCompilationUnit(RoyaleProject project, String path)
+    {
+        Collection<ICompilationUnit> units = project.getWorkspace().getCompilationUnits(getFile(path).getPath(), project);
+        assertThat(path, units.size(), is(1));
+        return units.iterator().next();
+    }
+
+    private int getImageCount()
+    {
+        File[] images = cacheDir.listFiles();
+        return images != null ? images.length : 0;
+    }
+
+    private File getFile(String path)
+    {
+        return new File(sourceDir, path.replace('/', File.separatorChar));
+    }
+
+    private static File createTempDir(String prefix) throws Exception
+    {
+        File dir = File.createTempFile(prefix, "");
+        dir.delete();
+        dir.mkdirs();
+        return FilenameNormalization.normalize(dir);
+    }
+
+    /**
+     * Describes a scope and everything the image of a file scope stores
+     * about it: its imports, and the names, namespaces, flags, locations,
+     * types, values and metadata of its definitions, recursively. The
+     * definitions of a scope are sorted, because the order they are found in
+     * depends on their hash codes.
+     */
+    private static String describe(ASScope scope, ICompilerProject project)
+    {
+        StringBuilder sb = new StringBuilder();
+        describeScope(scope, project, "", sb);
+        return sb.toString();
+    }
+
+    private static void describeScope(ASScope scope, ICompilerProject project, String indent, StringBuilder sb)
+    {
+        sb.append(indent).append(scope.getClass().getSimpleName())
+          .append(" at ").append(scope.getScopeNodeAbsoluteStart())
+          .append(" imports ").append(Arrays.toString(scope.getImports()))
+          .append('\n');
+        List<String> definitions = new ArrayList<String>();
+        for (IDefinition definition : scope.getAllLocalDefinitions())
+        {
+            if (definition.isContingent())
+                continue;
+            StringBuilder definitionSB = new StringBuilder();
+            describeDefinition((DefinitionBase)definition, project, indent + "  ", definitionSB);
+            definitions.add(definitionSB.toString());
+        }
+        Collections.sort(definitions);
+        for (String definition : definitions)
+            sb.append(definition);
+    }
+
+    private static void describeDefinition(DefinitionBase definition, ICompilerProject project,
+            String indent, StringBuilder sb)
+    {
+        sb.append(indent).append(definition.getClass().getSimpleName())
+          .append(' ').append(definition.getQualifiedName());
+        INamespaceDefinition namespace = definition.resolveNamespace(project);
+        if (namespace != null)
+            sb.append(" namespace ").append(namespace.getClass().getSimpleName()).append(' ').append(namespace.getURI());
+        sb.append(" flags ").append(definition.getFlags());
+        if (definition.isAbstract())
+            sb.append(" abstract");
+        if (!definition.isImplicit())
+            sb.append(" at ").append(definition.getAbsoluteStart());
+        sb.append(" name ").append(definition.getNameStart()).append('-').append(definition.getNameEnd());
+        sb.append(" type ").append(definition.getTypeAsDisplayString());
+        if (definition instanceof VariableDefinition)
+            sb.append(" value ").append(((VariableDefinition)definition).getKnownInitialValue());
+        if (definition instanceof ParameterDefinition)
+        {
+            ParameterDefinition parameter = (ParameterDefinition)definition;
+            sb.append(" rest ").append(parameter.isRest()).append(" default ").append(parameter.hasDefaultValue());
+        }
+        for (IMetaTag metaTag : definition.getAllMetaTags())
+            describeMetaTag(metaTag, sb);
+        if (definition instanceof ClassDefinition)
+        {
+            ClassDefinition classDefinition = (ClassDefinition)definition;
+            sb.append(" extends ").append(classDefinition.getBaseClassAsDisplayString())
+              .append(" implements ").append(Arrays.toString(classDefinition.getImplementedInterfacesAsDisplayStrings()));
+        }
+        if (definition instanceof InterfaceDefinition)
+        {
+            InterfaceDefinition interfaceDefinition = (InterfaceDefinition)definition;
+            sb.append(" extends ").append(Arrays.toString(interfaceDefinition.getExtendedInterfacesAsDisplayStrings()));
+        }
+        sb.append('\n');
+
+        if (definition instanceof FunctionDefinition)
+        {
+            FunctionDefinition function = (FunctionDefinition)definition;
+            sb.append(indent).append("  returns ").append(function.getReturnTypeAsDisplayString()).append('\n');
+            for (ParameterDefinition parameter : function.getParameters())
+                describeDefinition(parameter, project, indent + "  ", sb);
+        }
+        else if (definition instanceof ScopedDefinitionBase)
+        {
+            describeScope(((ScopedDefinitionBase)definition).getContainedScope(), project, indent + "  ", sb);
+        }
+    }
+
+    private static void describeMetaTag(IMetaInfo metaTag, StringBuilder sb)
+    {
+        sb.append(" [").append(metaTag.getTagName());
+        for (IMetaTagAttribute attribute : metaTag.getAllAttributes())
+            sb.append(' ').append(attribute.getKey()).append('=').append(attribute.getValue());
+        sb.append(']');
+    }
+}
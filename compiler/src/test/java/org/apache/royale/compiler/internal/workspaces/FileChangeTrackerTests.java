@@ -0,0 +1,117 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link FileChangeTracker}.
+ */
+public class FileChangeTrackerTests
+{
+    private File sourceDir;
+    private Workspace workspace;
+    private RoyaleProject project;
+    private FileChangeTracker tracker;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sourceDir = File.createTempFile("FileChangeTrackerTests", "");
+        sourceDir.delete();
+        sourceDir = FilenameNormalization.normalize(sourceDir);
+        writeClass("A");
+        writeClass("B");
+
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(sourceDir));
+
+        tracker = new FileChangeTracker(workspace, project);
+        tracker.recordFiles();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(sourceDir);
+    }
+
+    @Test
+    public void FileChangeTracker_unchanged()
+    {
+        assertThat("notifyChangedFiles", tracker.notifyChangedFiles(), is(0));
+    }
+
+    @Test
+    public void FileChangeTracker_changed()
+    {
+        File file = getFile("A");
+        file.setLastModified(file.lastModified() - 10000);
+        assertThat("notifyChangedFiles", tracker.notifyChangedFiles(), is(1));
+        assertThat("compilation units", workspace.getCompilationUnits(file.getPath(), project).size(), is(1));
+    }
+
+    @Test
+    public void FileChangeTracker_removed()
+    {
+        File file = getFile("B");
+        file.delete();
+        assertThat("notifyChangedFiles", tracker.notifyChangedFiles(), is(1));
+        assertThat("compilation units", workspace.getCompilationUnits(file.getPath(), project).size(), is(0));
+    }
+
+    @Test
+    public void FileChangeTracker_added() throws Exception
+    {
+        File file = writeClass("C");
+        assertThat("notifyChangedFiles", tracker.notifyChangedFiles(), is(1));
+        assertThat("compilation units", workspace.getCompilationUnits(file.getPath(), project).size(), is(1));
+
+        tracker.recordFiles();
+        assertThat("notifyChangedFiles", tracker.notifyChangedFiles(), is(0));
+    }
+
+    private File getFile(String className)
+    {
+        return new File(sourceDir, "pkg" + File.separator + className + ".as");
+    }
+
+    private File writeClass(String className) throws Exception
+    {
+        File file = getFile(className);
+        FileUtils.writeStringToFile(file, "package pkg\n{\npublic class " + className + "\n{\n}\n}\n", "UTF-8");
+        return file;
+    }
+}
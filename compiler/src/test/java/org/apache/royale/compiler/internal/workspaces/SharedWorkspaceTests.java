@@ -0,0 +1,178 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.royale.compiler.asdoc.IASDocComment;
+import org.apache.royale.compiler.asdoc.IASDocDelegate;
+import org.apache.royale.compiler.asdoc.IASParserASDocDelegate;
+import org.apache.royale.compiler.asdoc.IPackageDITAParser;
+import org.apache.royale.compiler.common.ISourceLocation;
+import org.apache.royale.compiler.definitions.IDocumentableDefinition;
+import org.apache.royale.compiler.internal.parsing.as.NilASDocDelegate;
+import org.apache.royale.swc.ISWCManager;
+import org.apache.royale.swc.SWCManager;
+import org.apache.royale.swc.dita.IDITAList;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SharedWorkspace}.
+ */
+public class SharedWorkspaceTests
+{
+    @After
+    public void tearDown()
+    {
+        System.clearProperty(SharedWorkspace.SESSION_PROPERTY);
+        SharedWorkspace.close();
+    }
+
+    @Test
+    public void SharedWorkspace_notShared()
+    {
+        Workspace workspace1 = new Workspace();
+        Workspace workspace2 = new Workspace();
+        assertThat("getSWCManager", workspace1.getSWCManager(), not(sameInstance(workspace2.getSWCManager())));
+        workspace1.close();
+        workspace2.close();
+    }
+
+    @Test
+    public void SharedWorkspace_sameSession()
+    {
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session1");
+        Workspace workspace1 = new Workspace();
+        Workspace workspace2 = new Workspace();
+        assertThat("getSWCManager", workspace1.getSWCManager(), sameInstance(workspace2.getSWCManager()));
+        workspace1.close();
+        workspace2.close();
+    }
+
+    @Test
+    public void SharedWorkspace_newSession()
+    {
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session1");
+        Workspace workspace1 = new Workspace();
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session2");
+        Workspace workspace2 = new Workspace();
+        assertThat("getSWCManager", workspace1.getSWCManager(), not(sameInstance(workspace2.getSWCManager())));
+        workspace1.close();
+        workspace2.close();
+    }
+
+    @Test
+    public void SharedWorkspace_clearedDuringSession()
+    {
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session1");
+        Workspace workspace1 = new Workspace();
+        System.clearProperty(SharedWorkspace.SESSION_PROPERTY);
+        Workspace workspace2 = new Workspace();
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session1");
+        Workspace workspace3 = new Workspace();
+        assertThat("getSWCManager", workspace2.getSWCManager(), not(sameInstance(workspace1.getSWCManager())));
+        assertThat("getSWCManager", workspace3.getSWCManager(), sameInstance(workspace1.getSWCManager()));
+        workspace1.close();
+        workspace2.close();
+        workspace3.close();
+    }
+
+    @Test
+    public void SharedWorkspace_concurrentWorkspaces() throws Exception
+    {
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session1");
+        Workspace sharedWorkspace = new Workspace();
+        final ISWCManager sharedSWCManager = sharedWorkspace.getSWCManager();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<ISWCManager>> results = new ArrayList<Future<ISWCManager>>();
+        for (int i = 0; i < 16; i++)
+        {
+            results.add(executor.submit(new Callable<ISWCManager>()
+            {
+                @Override
+                public ISWCManager call()
+                {
+                    Workspace workspace = new Workspace();
+                    workspace.close();
+                    return workspace.getSWCManager();
+                }
+            }));
+        }
+        executor.shutdown();
+        for (Future<ISWCManager> result : results)
+            assertThat("getSWCManager", result.get(), sameInstance(sharedSWCManager));
+        sharedWorkspace.close();
+    }
+
+    @Test
+    public void SharedWorkspace_packageDITA()
+    {
+        System.setProperty(SharedWorkspace.SESSION_PROPERTY, "session1");
+        Workspace workspace = new Workspace();
+        ISWCManager sharedSWCManager = workspace.getSWCManager();
+        workspace.setASDocDelegate(new DITAParsingASDocDelegate());
+        assertThat("getSWCManager", workspace.getSWCManager(), not(sameInstance(sharedSWCManager)));
+        assertThat("getWorkspace", ((SWCManager)workspace.getSWCManager()).getWorkspace() == workspace, is(true));
+        workspace.close();
+    }
+
+    /**
+     * An ASDoc delegate that parses the package DITA of SWCs.
+     */
+    private static class DITAParsingASDocDelegate implements IASDocDelegate
+    {
+        @Override
+        public IASParserASDocDelegate getASParserASDocDelegate()
+        {
+            return NilASDocDelegate.get().getASParserASDocDelegate();
+        }
+
+        @Override
+        public IASDocComment createASDocComment(ISourceLocation location, IDocumentableDefinition definition)
+        {
+            return null;
+        }
+
+        @Override
+        public IPackageDITAParser getPackageDitaParser()
+        {
+            return new IPackageDITAParser()
+            {
+                @Override
+                public IDITAList parse(String swcFilePath, InputStream stream)
+                {
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.units.requests.RequestStatistics;
+import org.apache.royale.compiler.internal.units.requests.RequestStatistics.RequestKind;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.requests.IABCBytesRequestResult;
+import org.apache.royale.compiler.units.requests.IRequest;
+
+/**
+ * Compiles a large synthetic ActionScript project to ABC with each kind of
+ * executor a {@link Workspace} can use: the default pool of platform threads,
+ * pools of other sizes, and a virtual thread per request. The classes of the
+ * project extend and call each other, so that the requests of each
+ * compilation unit wait on the requests of others.
+ * <p>
+ * This is not a unit test. Run it with the test classpath:
+ * <pre>
+ * java ... WorkspaceExecutorBenchmark [-classes=n] [-iterations=n] [-threads=n,...]
+ * </pre>
+ * The virtual thread executor is only measured on JVMs that support virtual
+ * threads.
+ */
+public class WorkspaceExecutorBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int classCount = 2000;
+        int iterations = 3;
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (String arg : args)
+        {
+            if (arg.startsWith("-classes="))
+            {
+                classCount = Integer.parseInt(arg.substring("-classes=".length()));
+            }
+            else if (arg.startsWith("-iterations="))
+            {
+                iterations = Integer.parseInt(arg.substring("-iterations=".length()));
+            }
+            else if (arg.startsWith("-threads="))
+            {
+                for (String count : arg.substring("-threads=".length()).split(","))
+                    threadCounts.add(Integer.valueOf(count));
+            }
+            else
+            {
+                System.err.println("usage: WorkspaceExecutorBenchmark [-classes=n] [-iterations=n] [-threads=n,...]");
+                System.exit(1);
+            }
+        }
+        if (threadCounts.isEmpty())
+        {
+            threadCounts.add(0);
+            threadCounts.add(Runtime.getRuntime().availableProcessors());
+            threadCounts.add(64);
+        }
+
+        File sourceDir = File.createTempFile("WorkspaceExecutorBenchmark", "");
+        sourceDir.delete();
+        try
+        {
+            writeSources(sourceDir, classCount);
+            System.out.println(classCount + " classes in " + sourceDir);
+            System.out.println("executor             ms  caller-runs  abc wait ms");
+
+            // warm up
+            run(sourceDir, 0, false);
+
+            for (int threadCount : threadCounts)
+                report(threadCount == 0 ? "platform (default)" : "platform " + threadCount,
+                       sourceDir, threadCount, false, iterations);
+            if (run(sourceDir, 0, true) != null)
+                report("virtual", sourceDir, 0, true, iterations);
+            else
+                System.out.println("virtual            (not supported by this JVM)");
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(sourceDir);
+        }
+    }
+
+    private static void report(String name, File sourceDir, int threadCount, boolean useVirtualThreads, int iterations) throws InterruptedException
+    {
+        long start = System.nanoTime();
+        long callerRuns = 0;
+        long waitNanos = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            RequestStatistics statistics = run(sourceDir, threadCount, useVirtualThreads);
+            for (RequestKind kind : RequestKind.values())
+                callerRuns += statistics.getCallerRunsCount(kind);
+            waitNanos += statistics.getTotalNanos(RequestKind.ABC_BYTES, RequestStatistics.Timing.WAIT);
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / iterations;
+        System.out.printf("%-18s %6.0f %12d %12.0f%n", name, ms, callerRuns / iterations, waitNanos / 1e6 / iterations);
+    }
+
+    /**
+     * Compiles every source file in the directory to ABC, in a new workspace.
+     *
+     * @return the request statistics of the workspace, or null if virtual
+     * threads were requested but are not supported.
+     */
+    private static RequestStatistics run(File sourceDir, int threadCount, boolean useVirtualThreads) throws InterruptedException
+    {
+        Workspace workspace = new Workspace();
+        try
+        {
+            workspace.setExecutorOptions(threadCount, useVirtualThreads);
+            if (useVirtualThreads && !workspace.isUsingVirtualThreads())
+                return null;
+            workspace.setEnableRequestStatistics(true);
+
+            RoyaleProject project = new RoyaleProject(workspace);
+            RoyaleProjectConfigurator.configure(project);
+            project.setSourcePath(Collections.singletonList(sourceDir));
+
+            // start all of the requests before waiting on any of them, the
+            // way the targets do
+            List<IRequest<IABCBytesRequestResult, ICompilationUnit>> requests =
+                    new ArrayList<IRequest<IABCBytesRequestResult, ICompilationUnit>>();
+            for (ICompilationUnit unit : project.getCompilationUnits())
+                requests.add(unit.getABCBytesRequest());
+            for (IRequest<IABCBytesRequestResult, ICompilationUnit> request : requests)
+                request.get();
+
+            return workspace.getRequestStatistics();
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    /**
+     * Writes classes that each extend an earlier class, hold instances of a
+     * few random other classes, and call methods on them.
+     */
+    private static void writeSources(File sourceDir, int classCount) throws Exception
+    {
+        final int referenceCount = 4;
+        Random random = new Random(42);
+        File packageDir = new File(sourceDir, "bench");
+        for (int i = 0; i < classCount; i++)
+        {
+            StringBuilder source = new StringBuilder();
+            source.append("package bench\n{\n");
+            source.append("public class C").append(i);
+            if (i > 0)
+                source.append(" extends C").append(random.nextInt(i));
+            source.append("\n{\n");
+
+            int[] references = new int[referenceCount];
+            for (int r = 0; r < referenceCount; r++)
+            {
+                references[r] = random.nextInt(classCount);
+                source.append("    public var f").append(r).append(":C").append(references[r]).append(";\n");
+            }
+
+            source.append("    public function m").append(i).append("(n:int):int\n    {\n");
+            source.append("        var total:int = n;\n");
+            for (int r = 0; r < referenceCount; r++)
+            {
+                source.append("        if (f").append(r).append(" != null)\n");
+                source.append("            total += f").append(r).append(".m").append(references[r]).append("(n - 1);\n");
+            }
+            source.append("        for (var k:int = 0; k < n; k++)\n");
+            source.append("            total = total * 31 + k;\n");
+            source.append("        return total;\n    }\n}\n}\n");
+
+            FileUtils.writeStringToFile(new File(packageDir, "C" + i + ".as"), source.toString(), "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link Workspace#setExecutorOptions(int, boolean)}. The
+ * requests are submitted the way {@code RequestMaker} submits them, between
+ * {@link Workspace#startRequest(boolean)} and {@link Workspace#endRequest()}.
+ */
+public class WorkspaceExecutorTests
+{
+    private static final int THREADS = 4;
+    private static final int REQUESTS = 2000;
+
+    private Workspace workspace;
+
+    @Before
+    public void setUp()
+    {
+        workspace = new Workspace();
+    }
+
+    @After
+    public void tearDown()
+    {
+        workspace.close();
+    }
+
+    @Test
+    public void testSameOptionsKeepExecutor()
+    {
+        ExecutorService executor = workspace.getExecutorService();
+        workspace.setExecutorOptions(0, false);
+        assertThat(workspace.getExecutorService(), sameInstance(executor));
+        workspace.setExecutorOptions(2, false);
+        assertThat(workspace.getExecutorService(), not(sameInstance(executor)));
+        assertThat("previous executor shut down", executor.isShutdown(), is(true));
+        assertThat(workspace.isUsingVirtualThreads(), is(false));
+    }
+
+    @Test
+    public void testSwapWaitsForRunningRequest() throws Exception
+    {
+        final ExecutorService executor = workspace.getExecutorService();
+        workspace.startRequest(false);
+        Thread swapper = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                workspace.setExecutorOptions(2, false);
+            }
+        };
+        swapper.start();
+        swapper.join(200);
+        assertThat("swapped while a request was running", swapper.isAlive(), is(true));
+        assertThat(workspace.getExecutorService(), sameInstance(executor));
+
+        workspace.endRequest();
+        swapper.join();
+        assertThat(workspace.getExecutorService(), not(sameInstance(executor)));
+    }
+
+    /**
+     * Every request submitted while the executor is swapped back and forth
+     * must run, rather than be dropped by an executor that was shut down.
+     */
+    @Test
+    public void testSwapWhileSubmitting() throws Exception
+    {
+        final AtomicInteger completed = new AtomicInteger();
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        List<Thread> submitters = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++)
+        {
+            Thread submitter = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < REQUESTS; j++)
+                    {
+                        Future<?> future = submit(new Callable<Integer>()
+                        {
+                            @Override
+                            public Integer call()
+                            {
+                                return completed.incrementAndGet();
+                            }
+                        });
+                        synchronized (futures)
+                        {
+                            futures.add(future);
+                        }
+                    }
+                }
+            };
+            submitters.add(submitter);
+            submitter.start();
+        }
+
+        int swaps = 0;
+        while (isAnyAlive(submitters))
+        {
+            workspace.setExecutorOptions(1 + swaps % 3, swaps % 4 == 3);
+            swaps++;
+        }
+        for (Thread submitter : submitters)
+            submitter.join();
+
+        assertThat(futures.size(), is(THREADS * REQUESTS));
+        for (Future<?> future : futures)
+            future.get(10, TimeUnit.SECONDS);
+        assertThat(completed.get(), is(THREADS * REQUESTS));
+    }
+
+    private <T> Future<T> submit(final Callable<T> callable)
+    {
+        workspace.startRequest(false);
+        return workspace.getExecutorService().submit(new Callable<T>()
+        {
+            @Override
+            public T call() throws Exception
+            {
+                try
+                {
+                    return callable.call();
+                }
+                finally
+                {
+                    workspace.endRequest();
+                }
+            }
+        });
+    }
+
+    private static boolean isAnyAlive(List<Thread> threads)
+    {
+        for (Thread thread : threads)
+        {
+            if (thread.isAlive())
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.io;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link MappedSWCArchive}.
+ */
+public class MappedSWCArchiveTests
+{
+    private static final String STORED_CONTENT = "stored content";
+    private static final String DEFLATED_CONTENT = "deflated content, deflated content, deflated content";
+
+    private File folder;
+    private File archiveFile;
+    private Object owner;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile("MappedSWCArchiveTests", "");
+        folder.delete();
+        folder.mkdirs();
+        archiveFile = new File(folder, "Library.swc");
+        writeArchive(archiveFile, STORED_CONTENT, DEFLATED_CONTENT);
+        owner = new Object();
+    }
+
+    @After
+    public void tearDown()
+    {
+        MappedSWCArchive.releaseAll(owner);
+        FileUtils.deleteQuietly(folder);
+    }
+
+    @Test
+    public void testReadWithoutRetain() throws IOException
+    {
+        assertThat("retained", MappedSWCArchive.isRetained(archiveFile), is(false));
+        assertThat("stored", read("stored.txt"), is(STORED_CONTENT));
+        assertThat("deflated", read("deflated.txt"), is(DEFLATED_CONTENT));
+        assertThat("missing", MappedSWCArchive.openEntry(archiveFile, "missing.txt"), is(nullValue()));
+
+        // without an owner, every caller gets its own mapping
+        assertThat(MappedSWCArchive.get(archiveFile), not(sameInstance(MappedSWCArchive.get(archiveFile))));
+    }
+
+    @Test
+    public void testRetainSharesMapping() throws IOException
+    {
+        MappedSWCArchive.retain(archiveFile, owner);
+        assertThat("retained", MappedSWCArchive.isRetained(archiveFile), is(true));
+
+        final MappedSWCArchive archive = MappedSWCArchive.get(archiveFile);
+        assertThat(MappedSWCArchive.get(archiveFile), sameInstance(archive));
+        assertThat("stored", read("stored.txt"), is(STORED_CONTENT));
+        assertThat("deflated", read("deflated.txt"), is(DEFLATED_CONTENT));
+        assertThat("missing", MappedSWCArchive.openEntry(archiveFile, "missing.txt"), is(nullValue()));
+    }
+
+    @Test
+    public void testRelease() throws IOException
+    {
+        final Object otherOwner = new Object();
+        MappedSWCArchive.retain(archiveFile, owner);
+        MappedSWCArchive.retain(archiveFile, otherOwner);
+        final MappedSWCArchive archive = MappedSWCArchive.get(archiveFile);
+
+        MappedSWCArchive.release(archiveFile, owner);
+        assertThat("retained by the other owner", MappedSWCArchive.isRetained(archiveFile), is(true));
+        assertThat(MappedSWCArchive.get(archiveFile), sameInstance(archive));
+
+        MappedSWCArchive.release(archiveFile, otherOwner);
+        assertThat("released", MappedSWCArchive.isRetained(archiveFile), is(false));
+        assertThat(MappedSWCArchive.get(archiveFile), not(sameInstance(archive)));
+        assertThat("stored", read("stored.txt"), is(STORED_CONTENT));
+    }
+
+    @Test
+    public void testReleaseAll() throws IOException
+    {
+        final File otherFile = new File(folder, "Other.swc");
+        writeArchive(otherFile, STORED_CONTENT, DEFLATED_CONTENT);
+        MappedSWCArchive.retain(archiveFile, owner);
+        MappedSWCArchive.retain(otherFile, owner);
+
+        MappedSWCArchive.releaseAll(owner);
+        assertThat(MappedSWCArchive.isRetained(archiveFile), is(false));
+        assertThat(MappedSWCArchive.isRetained(otherFile), is(false));
+    }
+
+    @Test
+    public void testChangedFileMappedAgain() throws IOException
+    {
+        MappedSWCArchive.retain(archiveFile, owner);
+        final MappedSWCArchive archive = MappedSWCArchive.get(archiveFile);
+        final long lastModified = archiveFile.lastModified();
+
+        writeArchive(archiveFile, "changed", "changed deflated content");
+        archiveFile.setLastModified(lastModified - 10000);
+
+        assertThat(MappedSWCArchive.get(archiveFile), not(sameInstance(archive)));
+        assertThat("stored", read("stored.txt"), is("changed"));
+        assertThat("deflated", read("deflated.txt"), is("changed deflated content"));
+    }
+
+    @Test
+    public void testUnsupportedArchiveRemembered() throws IOException
+    {
+        // more entries than the end header can count makes ZipOutputStream
+        // write a ZIP64 archive, which ZipFile reads but this class does not
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archiveFile));
+        try
+        {
+            for (int i = 0; i <= 0xFFFF; i++)
+            {
+                out.putNextEntry(new ZipEntry("e" + i));
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("stored.txt"));
+            out.write(STORED_CONTENT.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+        MappedSWCArchive.retain(archiveFile, owner);
+
+        final ZipException unsupported = getUnsupported();
+        assertThat("remembered", getUnsupported(), sameInstance(unsupported));
+        assertThat("read with ZipFile", read("stored.txt"), is(STORED_CONTENT));
+        assertThat("missing", MappedSWCArchive.openEntry(archiveFile, "missing.txt"), is(nullValue()));
+
+        // a supported archive replaces the unsupported one
+        final long lastModified = archiveFile.lastModified();
+        writeArchive(archiveFile, STORED_CONTENT, DEFLATED_CONTENT);
+        archiveFile.setLastModified(lastModified - 10000);
+        assertThat(MappedSWCArchive.get(archiveFile).hasEntry("deflated.txt"), is(true));
+    }
+
+    private ZipException getUnsupported() throws IOException
+    {
+        try
+        {
+            MappedSWCArchive.get(archiveFile);
+        }
+        catch (ZipException e)
+        {
+            return e;
+        }
+        fail("Expected a ZipException");
+        return null;
+    }
+
+    private String read(String name) throws IOException
+    {
+        final InputStream in = MappedSWCArchive.openEntry(archiveFile, name);
+        try
+        {
+            return IOUtils.toString(in, "UTF-8");
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeArchive(File file, String storedContent, String deflatedContent) throws IOException
+    {
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try
+        {
+            final byte[] stored = storedContent.getBytes("UTF-8");
+            final CRC32 crc = new CRC32();
+            crc.update(stored);
+            final ZipEntry storedEntry = new ZipEntry("stored.txt");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(stored.length);
+            storedEntry.setCompressedSize(stored.length);
+            storedEntry.setCrc(crc.getValue());
+            out.putNextEntry(storedEntry);
+            out.write(stored);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("deflated.txt"));
+            out.write(deflatedContent.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.io;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.problems.FileNotFoundProblem;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCComponent;
+import org.apache.royale.swc.ISWCDigest;
+import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.ISWCLibrary;
+import org.apache.royale.swc.ISWCScript;
+import org.apache.royale.swc.ISWCVersion;
+import org.apache.royale.swc.SWC;
+import org.apache.royale.swc.SWCComponent;
+import org.apache.royale.swc.SWCDigest;
+import org.apache.royale.swc.SWCLibrary;
+import org.apache.royale.swc.SWCScript;
+import org.apache.royale.swc.catalog.SWCFileEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SWCIndexCache}.
+ */
+public class SWCIndexCacheTests
+{
+    private File folder;
+    private File swcFile;
+    private SWCIndexCache indexCache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile("SWCIndexCacheTests", "");
+        folder.delete();
+        folder.mkdirs();
+        // only the length and modification time of the SWC file are used
+        swcFile = new File(folder, "Library.swc");
+        writeSWCFile(10);
+        indexCache = new SWCIndexCache(new File(folder, "index"));
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(folder);
+    }
+
+    @Test
+    public void storeAndLoad_roundTrip()
+    {
+        final SWC swc = createSWC();
+        indexCache.store(swc, false);
+
+        final SWC loaded = indexCache.load(swcFile, true);
+        assertThat("loaded", loaded, notNullValue());
+        assertSameSWC(loaded, swc);
+    }
+
+    @Test
+    public void load_swcChanged()
+    {
+        indexCache.store(createSWC(), false);
+        writeSWCFile(20);
+        assertThat("loaded", indexCache.load(swcFile, false), nullValue());
+    }
+
+    @Test
+    public void load_needsDITA()
+    {
+        indexCache.store(createSWC(), true);
+        assertThat("loaded with DITA", indexCache.load(swcFile, true), nullValue());
+        assertThat("loaded without DITA", indexCache.load(swcFile, false), notNullValue());
+    }
+
+    @Test
+    public void load_truncatedIndex() throws IOException
+    {
+        indexCache.store(createSWC(), false);
+        final File[] indexFiles = indexCache.getDirectory().listFiles();
+        assertThat("index files", indexFiles.length, is(1));
+        final RandomAccessFile file = new RandomAccessFile(indexFiles[0], "rw");
+        try
+        {
+            file.setLength(file.length() / 2);
+        }
+        finally
+        {
+            file.close();
+        }
+        assertThat("loaded", indexCache.load(swcFile, false), nullValue());
+    }
+
+    @Test
+    public void store_replacesIndex()
+    {
+        indexCache.store(createSWC(), false);
+        writeSWCFile(20);
+        final SWC swc = createSWC();
+        ((SWCLibrary)swc.getLibrary("library.swf")).addNameToKeepAS3MetadataSet("Changed");
+        indexCache.store(swc, false);
+
+        assertThat("index files", indexCache.getDirectory().listFiles().length, is(1));
+        final SWC loaded = indexCache.load(swcFile, false);
+        assertThat("loaded", loaded, notNullValue());
+        assertSameSWC(loaded, swc);
+    }
+
+    @Test
+    public void store_skipsSWCWithProblems()
+    {
+        final SWC swc = createSWC();
+        swc.addProblem(new FileNotFoundProblem(swcFile.getPath()));
+        indexCache.store(swc, false);
+        assertThat("loaded", indexCache.load(swcFile, false), nullValue());
+    }
+
+    private void writeSWCFile(int length)
+    {
+        try
+        {
+            final FileOutputStream out = new FileOutputStream(swcFile);
+            try
+            {
+                out.write(new byte[length]);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private SWC createSWC()
+    {
+        final SWC swc = new SWC(swcFile);
+        final ISWCVersion version = swc.getVersion();
+        version.setSWCVersion("1.2");
+        version.setRoyaleVersion("0.9.13");
+        version.setRoyaleMinSupportedVersion(null);
+        version.setRoyaleBuild("1");
+        version.setCompilerName("Apache Royale Compiler");
+        version.setCompilerVersion("0.9.13");
+        version.setCompilerBuild("2");
+
+        final SWCLibrary library = new SWCLibrary("library.swf");
+        library.addNameToKeepAS3MetadataSet("Event");
+        final SWCDigest digest = new SWCDigest();
+        digest.setType(SWCDigest.SHA_256);
+        digest.setValue("0123456789abcdef");
+        digest.setSigned(false);
+        library.addDigest(digest);
+
+        final SWCScript script = new SWCScript();
+        script.setName("com/example/A");
+        script.setLastModified(1234L);
+        script.addDefinition("com.example:A");
+        script.addDependency("Object", DependencyType.INHERITANCE);
+        script.addDependency("com.example:B", DependencyType.EXPRESSION);
+        script.addDependency("com.example:B", DependencyType.SIGNATURE);
+        library.addScript(script);
+
+        final SWCScript script2 = new SWCScript();
+        script2.setName("com/example/B");
+        script2.setLastModified(5678L);
+        script2.setSignatureChecksum("abcd");
+        script2.addDefinition("com.example:B");
+        script2.addDefinition("com.example:b");
+        library.addScript(script2);
+        swc.addLibrary(library);
+
+        final SWCComponent component = new SWCComponent();
+        component.setQName("com.example:A");
+        component.setName("A");
+        component.setURI("library://ns.example.com");
+        component.setIcon("A.png");
+        component.setScript(script);
+        swc.addComponent(component);
+
+        swc.addFile(new SWCFileEntry(swcFile.getAbsolutePath(), "A.png", 42L));
+        return swc;
+    }
+
+    private static void assertSameSWC(ISWC actual, ISWC expected)
+    {
+        assertThat("isANE", actual.isANE(), is(expected.isANE()));
+        final ISWCVersion actualVersion = actual.getVersion();
+        final ISWCVersion expectedVersion = expected.getVersion();
+        assertThat("SWCVersion", actualVersion.getSWCVersion(), is(expectedVersion.getSWCVersion()));
+        assertThat("RoyaleVersion", actualVersion.getRoyaleVersion(), is(expectedVersion.getRoyaleVersion()));
+        assertThat("RoyaleMinSupportedVersion", actualVersion.getRoyaleMinSupportedVersion(), is(expectedVersion.getRoyaleMinSupportedVersion()));
+        assertThat("RoyaleBuild", actualVersion.getRoyaleBuild(), is(expectedVersion.getRoyaleBuild()));
+        assertThat("CompilerName", actualVersion.getCompilerName(), is(expectedVersion.getCompilerName()));
+        assertThat("CompilerVersion", actualVersion.getCompilerVersion(), is(expectedVersion.getCompilerVersion()));
+        assertThat("CompilerBuild", actualVersion.getCompilerBuild(), is(expectedVersion.getCompilerBuild()));
+
+        assertThat("libraries", actual.getLibraries().size(), is(expected.getLibraries().size()));
+        final Iterator<ISWCLibrary> actualLibraries = actual.getLibraries().iterator();
+        for (ISWCLibrary expectedLibrary : expected.getLibraries())
+        {
+            final ISWCLibrary actualLibrary = actualLibraries.next();
+            assertThat("library path", actualLibrary.getPath(), is(expectedLibrary.getPath()));
+            assertThat("keep-as3-metadata", actualLibrary.getKeepAS3MetadataSet(), is(expectedLibrary.getKeepAS3MetadataSet()));
+
+            final List<ISWCDigest> expectedDigests = expectedLibrary.getDigests();
+            final List<ISWCDigest> actualDigests = actualLibrary.getDigests();
+            assertThat("digests", actualDigests.size(), is(expectedDigests.size()));
+            for (int i = 0; i < expectedDigests.size(); i++)
+            {
+                assertThat("digest type", actualDigests.get(i).getType(), is(expectedDigests.get(i).getType()));
+                assertThat("digest value", actualDigests.get(i).getValue(), is(expectedDigests.get(i).getValue()));
+                assertThat("digest signed", actualDigests.get(i).isSigned(), is(expectedDigests.get(i).isSigned()));
+            }
+
+            final List<ISWCScript> expectedScripts = expectedLibrary.getScripts();
+            final List<ISWCScript> actualScripts = actualLibrary.getScripts();
+            assertThat("scripts", actualScripts.size(), is(expectedScripts.size()));
+            for (int i = 0; i < expectedScripts.size(); i++)
+            {
+                final ISWCScript expectedScript = expectedScripts.get(i);
+                final ISWCScript actualScript = actualScripts.get(i);
+                assertThat("script name", actualScript.getName(), is(expectedScript.getName()));
+                assertThat("script lastModified", actualScript.getLastModified(), is(expectedScript.getLastModified()));
+                assertThat("script signatureChecksum", actualScript.getSignatureChecksum(), is(expectedScript.getSignatureChecksum()));
+                assertThat("script definitions", actualScript.getDefinitions(), is(expectedScript.getDefinitions()));
+                assertThat("script dependencies", actualScript.getDependencies(), is(expectedScript.getDependencies()));
+            }
+        }
+
+        final List<ISWCComponent> expectedComponents = expected.getComponents();
+        final List<ISWCComponent> actualComponents = actual.getComponents();
+        assertThat("components", actualComponents.size(), is(expectedComponents.size()));
+        for (int i = 0; i < expectedComponents.size(); i++)
+        {
+            final ISWCComponent expectedComponent = expectedComponents.get(i);
+            final ISWCComponent actualComponent = actualComponents.get(i);
+            assertThat("component qname", actualComponent.getQName(), is(expectedComponent.getQName()));
+            assertThat("component name", actualComponent.getName(), is(expectedComponent.getName()));
+            assertThat("component URI", actualComponent.getURI(), is(expectedComponent.getURI()));
+            assertThat("component icon", actualComponent.getIcon(), is(expectedComponent.getIcon()));
+            assertThat("component preview", actualComponent.getPreview(), is(expectedComponent.getPreview()));
+            final ISWCScript actualScript = actualComponent.getScript();
+            assertThat("component script", actualScript.getName(), is(expectedComponent.getScript().getName()));
+            assertThat("component script instance", actualScript,
+                    sameInstance(actual.getLibrary("library.swf").getScript(actualScript.getName())));
+        }
+
+        final List<String> expectedFiles = new ArrayList<String>(expected.getFiles().keySet());
+        final List<String> actualFiles = new ArrayList<String>(actual.getFiles().keySet());
+        assertThat("files", actualFiles, is(expectedFiles));
+        for (String path : expectedFiles)
+        {
+            final ISWCFileEntry actualFile = actual.getFile(path);
+            assertThat("file path", actualFile.getPath(), is(path));
+            assertThat("file lastModified", actualFile.getLastModified(), is(expected.getFile(path).getLastModified()));
+        }
+    }
+}
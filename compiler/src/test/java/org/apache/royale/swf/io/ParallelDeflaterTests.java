@@ -0,0 +1,218 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swf.io;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ParallelDeflater}. Every output is inflated with a
+ * plain {@link Inflater} and compared to the input.
+ */
+public class ParallelDeflaterTests
+{
+    private static final int[] LEVELS = {0, 1, 9};
+    private static final int THREADS = 4;
+
+    @Test
+    public void testEmpty() throws Exception
+    {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void testSmall() throws Exception
+    {
+        assertRoundTrip(createInput(1000));
+    }
+
+    @Test
+    public void testChunkBoundary() throws Exception
+    {
+        final int chunkSize = ParallelDeflater.DEFAULT_CHUNK_SIZE;
+        assertRoundTrip(createInput(chunkSize));
+        assertRoundTrip(createInput(chunkSize + 1));
+        assertRoundTrip(createInput(2 * chunkSize));
+        assertRoundTrip(createInput(2 * chunkSize - 1));
+    }
+
+    @Test
+    public void testMultipleMegabytes() throws Exception
+    {
+        assertRoundTrip(createInput(5 * 1024 * 1024 + 17));
+    }
+
+    @Test
+    public void testIncompressible() throws Exception
+    {
+        final byte[] input = new byte[3 * ParallelDeflater.DEFAULT_CHUNK_SIZE + 5];
+        new Random(1).nextBytes(input);
+        assertRoundTrip(input);
+    }
+
+    @Test
+    public void testSmallestChunks() throws Exception
+    {
+        final byte[] input = createInput(1024 * 1024);
+        for (int level : LEVELS)
+        {
+            final byte[] serial = compress(input, 0, input.length, level, 1, 32 * 1024);
+            final byte[] parallel = compress(input, 0, input.length, level, THREADS, 32 * 1024);
+            assertArrayEquals("level " + level, input, inflate(serial));
+            assertArrayEquals("level " + level, input, inflate(parallel));
+        }
+    }
+
+    @Test
+    public void testOffsetAndLength() throws Exception
+    {
+        final byte[] input = createInput(3 * ParallelDeflater.DEFAULT_CHUNK_SIZE);
+        final int offset = 1234;
+        final int length = input.length - offset - 4321;
+        final byte[] expected = Arrays.copyOfRange(input, offset, offset + length);
+        for (int level : LEVELS)
+        {
+            final byte[] output = compress(input, offset, length, level, THREADS, ParallelDeflater.DEFAULT_CHUNK_SIZE);
+            assertArrayEquals("level " + level, expected, inflate(output));
+        }
+    }
+
+    @Test
+    public void testSameOutputForAnyNumberOfThreads() throws Exception
+    {
+        final byte[] input = createInput(1024 * 1024);
+        for (int level : LEVELS)
+        {
+            final byte[] twoThreads = compress(input, 0, input.length, level, 2, ParallelDeflater.DEFAULT_CHUNK_SIZE);
+            final byte[] manyThreads = compress(input, 0, input.length, level, THREADS, ParallelDeflater.DEFAULT_CHUNK_SIZE);
+            assertArrayEquals("level " + level, twoThreads, manyThreads);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel()
+    {
+        new ParallelDeflater(10, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize()
+    {
+        new ParallelDeflater(1, 1).setChunkSize(1024);
+    }
+
+    /**
+     * Compresses the input at every level with one and with several
+     * threads, and checks that each output inflates to the input.
+     */
+    private static void assertRoundTrip(byte[] input) throws IOException, DataFormatException
+    {
+        for (int level : LEVELS)
+        {
+            for (int threads : new int[] {1, THREADS})
+            {
+                final byte[] output = compress(input, 0, input.length, level, threads, ParallelDeflater.DEFAULT_CHUNK_SIZE);
+                final byte[] inflated = inflate(output);
+                assertThat("length, level " + level + ", threads " + threads, inflated.length, is(input.length));
+                assertArrayEquals("level " + level + ", threads " + threads, input, inflated);
+            }
+        }
+    }
+
+    private static byte[] compress(byte[] input, int offset, int length, int level, int threads, int chunkSize)
+            throws IOException
+    {
+        final ParallelDeflater deflater = new ParallelDeflater(level, threads);
+        deflater.setChunkSize(chunkSize);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        deflater.compress(input, offset, length, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Inflates a complete ZLIB stream, which checks its header and Adler-32.
+     */
+    private static byte[] inflate(byte[] compressed) throws DataFormatException
+    {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(compressed);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[64 * 1024];
+            while (!inflater.finished())
+            {
+                final int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new DataFormatException("Truncated ZLIB stream");
+                output.write(buffer, 0, n);
+            }
+            assertThat("trailing bytes", inflater.getRemaining(), is(0));
+            return output.toByteArray();
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Creates compressible input that looks like SWF bytecode: repeated
+     * words mixed with random bytes.
+     */
+    private static byte[] createInput(int length)
+    {
+        final Random random = new Random(length);
+        final byte[][] words = new byte[64][];
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] = new byte[4 + random.nextInt(12)];
+            random.nextBytes(words[i]);
+        }
+
+        final byte[] input = new byte[length];
+        int i = 0;
+        while (i < length)
+        {
+            if (random.nextInt(4) == 0)
+            {
+                input[i++] = (byte)random.nextInt(256);
+            }
+            else
+            {
+                final byte[] word = words[random.nextInt(words.length)];
+                final int n = Math.min(word.length, length - i);
+                System.arraycopy(word, 0, input, i, n);
+                i += n;
+            }
+        }
+        return input;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swf.io;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.royale.swf.Header;
+import org.apache.royale.swf.ISWF;
+
+/**
+ * Measures the time and the output size of {@link SWFWriter} for every
+ * combination of ZLIB compression level and number of compression threads.
+ * <p>
+ * This is not a unit test. Run it with the test classpath on a large SWF,
+ * such as a release build of an application or an RSL:
+ * <pre>
+ * java ... SWFCompressionBenchmark file.swf [iterations] [threads,...]
+ * </pre>
+ */
+public class SWFCompressionBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: SWFCompressionBenchmark file.swf [iterations] [threads,...]");
+            System.exit(1);
+        }
+        String path = args[0];
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int processors = Runtime.getRuntime().availableProcessors();
+        String[] threadCounts = args.length > 2 ?
+                args[2].split(",") : new String[] { "1", "2", "4", String.valueOf(processors) };
+
+        InputStream input = new BufferedInputStream(new FileInputStream(path));
+        ISWF swf;
+        try
+        {
+            swf = new SWFReader().readFrom(input, path);
+        }
+        finally
+        {
+            input.close();
+        }
+
+        int uncompressed = write(swf, Header.Compression.NONE, SWFWriter.DEFAULT_COMPRESSION_LEVEL, 1);
+        System.out.println(path + ": " + uncompressed + " bytes uncompressed, " + processors + " processors");
+        System.out.println("level threads     bytes    ratio       ms     MB/s");
+
+        for (int level = 1; level <= 9; level++)
+        {
+            for (String threadCount : threadCounts)
+            {
+                int threads = Integer.parseInt(threadCount.trim());
+
+                // warm up
+                write(swf, Header.Compression.ZLIB, level, threads);
+
+                int size = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    size = write(swf, Header.Compression.ZLIB, level, threads);
+                double ms = (System.nanoTime() - start) / 1e6 / iterations;
+
+                System.out.println(String.format("%5d %7d %9d %8.3f %8.1f %8.1f",
+                        level, threads, size, (double)size / uncompressed, ms,
+                        uncompressed / 1048576.0 / (ms / 1000)));
+            }
+        }
+    }
+
+    private static int write(ISWF swf, Header.Compression compression, int level, int threads) throws Exception
+    {
+        SWFWriter writer = new SWFWriter(swf, compression);
+        writer.setCompressionLevel(level);
+        writer.setCompressionThreads(threads);
+        CountingOutputStream output = new CountingOutputStream(NULL_OUTPUT);
+        writer.writeTo(output);
+        writer.close();
+        return output.getCount();
+    }
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream()
+    {
+        @Override
+        public void write(int b)
+        {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+        }
+    };
+}
@@ -322,6 +322,16 @@ public class BuilderConfiguration implements Configuration
 		configuration.setMaximumCachedFonts(size);
 	}
 
+	public void setCompilerThreads(int count, boolean useVirtualThreads)
+	{
+		configuration.setCompilerThreads(count, useVirtualThreads);
+	}
+
+	public void setLibraryCacheSize(int size)
+	{
+		configuration.setLibraryCacheSize(size);
+	}
+
 	public void setMaximumGlyphsPerFace(int size)
 	{
 		configuration.setMaximumGlyphsPerFace(size);
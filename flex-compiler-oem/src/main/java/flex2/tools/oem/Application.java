@@ -303,7 +303,7 @@ public class Application implements Builder
     private String cacheName, configurationReport;
     private List<Message> messages;
     private boolean setOutputCalled;
-    private int loaded = 0;
+    private File fileScopeCacheDirectory;
 
     /**
      * @inheritDoc
@@ -541,6 +541,7 @@ public class Application implements Builder
     	// assuming FB takes care of deleting bin-release and bin-debug, we want to delete bin.
     	// but this also gets called when quitting FB.
     	setOutputCalled = false;
+    	closeCompiler();
     }
 
     /**
@@ -548,7 +549,7 @@ public class Application implements Builder
      */
     public void load(InputStream in) throws IOException
     {
-    	loaded++;
+        fileScopeCacheDirectory = OEMUtil.loadCompilationData(in);
     }
 
     /**
@@ -556,8 +557,7 @@ public class Application implements Builder
      */
     public long save(OutputStream out) throws IOException
     {
-    	loaded--;
-        return 1;
+        return OEMUtil.saveCompilationData(out, fileScopeCacheDirectory);
     }
 
     /**
@@ -632,14 +632,24 @@ public class Application implements Builder
     
             //Map licenseMap = OEMUtil.getLicenseMap(tempOEMConfiguration.configuration);
     
-            mxmljsc = new MXMLJSC();
-            mxmljsc.noLink = true;
+            // an incremental build reuses the compiler of the previous build, which
+            // kept its workspace open and only compiles the files that changed again
+            if (!incremental || mxmljsc == null)
+            {
+                closeCompiler();
+                mxmljsc = new MXMLJSC();
+                mxmljsc.noLink = true;
+                mxmljsc.setIncremental(true);
+            }
             //int returnValue = mxmlc.mainCompileOnly(constructCommandLine2(tempOEMConfiguration.configuration), null);
-            int returnValue = mxmljsc.mainNoExit(constructCommandLine(oemConfiguration), null, true);
+            int returnValue = mxmljsc.mainNoExit(OEMUtil.addFileScopeCacheDirectory(constructCommandLine(oemConfiguration),
+                                                                                    fileScopeCacheDirectory), null, true);
             if (returnValue == 0 || returnValue == 2)
                 returnValue = OK;
             else
                 returnValue = FAIL;
+            if (mxmljsc.config != null && mxmljsc.config.getFileScopeCacheDir() != null)
+                fileScopeCacheDirectory = mxmljsc.config.getFileScopeCacheDir();
             
             processMXMLCReport(mxmljsc, tempOEMConfiguration);
             
@@ -661,10 +671,22 @@ public class Application implements Builder
 
     public long link(OutputStream output)
     {
-        return mxmljsc.writeSWF(output);
+        return mxmljsc != null ? mxmljsc.writeSWF(output) : 0;
+    }
+
+    /**
+     * Closes the workspace that the compiler kept open for incremental builds.
+     */
+    private void closeCompiler()
+    {
+        if (mxmljsc != null)
+        {
+            mxmljsc.closeWorkspaces();
+            mxmljsc = null;
+        }
     }
     
-    private MXMLJSC mxmljsc = new MXMLJSC();
+    private MXMLJSC mxmljsc;
     private List<Source> sources;
     private SimpleMovie movie;
     private SourceList sourceList;
@@ -258,6 +258,35 @@ public interface Configuration
      * @param size An integer representing the maximum number of embedded font faces.
      */
     void setMaximumCachedFonts(int size);
+
+    /**
+     * Sets the maximum number of threads that compile the source files, and whether
+     * to compile each source file on its own virtual thread instead.
+     * This is equivalent to using the <code>compiler.threads</code> and
+     * <code>compiler.virtual-threads</code> options of the mxmlc or compc compilers.
+     * 
+     * <p>
+     * The default is 16 platform threads.
+     * 
+     * @param count The maximum number of threads, or 0 for the default.
+     * Ignored when virtual threads are used.
+     * @param useVirtualThreads true to use a virtual thread per source file. On a JVM
+     * without virtual threads, platform threads are used.
+     */
+    void setCompilerThreads(int count, boolean useVirtualThreads);
+
+    /**
+     * Sets the maximum size, in megabytes, of each of the caches of SWC and SWF contents
+     * that are kept for later compilations in the same process.
+     * This is equivalent to using the <code>compiler.library-cache-max-size</code> option
+     * of the mxmlc or compc compilers.
+     * 
+     * <p>
+     * By default, there is no maximum, and the contents are kept until the JVM runs low on memory.
+     * 
+     * @param size The maximum size, or 0 for no maximum.
+     */
+    void setLibraryCacheSize(int size);
     
     /**
      * Sets the maximum number of character glyph outlines to cache for each font face.
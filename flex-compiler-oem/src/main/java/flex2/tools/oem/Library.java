@@ -258,6 +258,8 @@ public class Library implements Builder, Cloneable
     
     private List<Source> compiledSources;
     private SourceList sourceList;
+    private COMPJSC compc;
+    private File fileScopeCacheDirectory;
 
 
     // clean() would null out the following variables
@@ -727,6 +729,7 @@ public class Library implements Builder, Cloneable
      */
     public void clean()
     {
+        closeCompiler();
         clean(true /* cleanData */,
               true /* cleanCache */,
               true /* cleanOutput */,
@@ -740,6 +743,7 @@ public class Library implements Builder, Cloneable
      */
     public void load(InputStream in) throws IOException
     {
+        fileScopeCacheDirectory = OEMUtil.loadCompilationData(in);
     }
 
     /**
@@ -747,7 +751,7 @@ public class Library implements Builder, Cloneable
      */
     public long save(OutputStream out) throws IOException
     {
-        return 1;
+        return OEMUtil.saveCompilationData(out, fileScopeCacheDirectory);
     }
 
     /**
@@ -914,12 +918,22 @@ public class Library implements Builder, Cloneable
               true /* cleanConfig */,
               false /* cleanMessages */,
               false /* cleanThreadLocals */);
-        COMPJSC compc = new COMPJSC();
-        int returnValue = compc.mainNoExit(constructCommandLine(oemConfiguration), null, true);
+        // an incremental build reuses the compiler of the previous build, which
+        // kept its workspace open and only compiles the files that changed again
+        if (!incremental || compc == null)
+        {
+            closeCompiler();
+            compc = new COMPJSC();
+            compc.setIncremental(true);
+        }
+        int returnValue = compc.mainNoExit(OEMUtil.addFileScopeCacheDirectory(constructCommandLine(oemConfiguration),
+                                                                             fileScopeCacheDirectory), null, true);
         if (returnValue == 0 || returnValue == 2)
             returnValue = OK;
         else
             returnValue = FAIL;
+        if (compc.config != null && compc.config.getFileScopeCacheDir() != null)
+            fileScopeCacheDirectory = compc.config.getFileScopeCacheDir();
 
         LibraryCompilerConfiguration acc = ((LibraryCompilerConfiguration)tempOEMConfiguration.configuration);
         VirtualFile[] sourcePaths = acc.getCompilerConfiguration().getSourcePath();
@@ -1010,6 +1024,18 @@ public class Library implements Builder, Cloneable
               false /* cleanThreadLocals */);
     }
 
+    /**
+     * Closes the workspace that the compiler kept open for incremental builds.
+     */
+    private void closeCompiler()
+    {
+        if (compc != null)
+        {
+            compc.closeWorkspaces();
+            compc = null;
+        }
+    }
+
     /**
      *
      * @param cleanData
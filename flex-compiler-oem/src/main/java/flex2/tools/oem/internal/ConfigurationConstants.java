@@ -116,6 +116,10 @@ interface ConfigurationConstants
     String COMPILER_HEADLESS_SERVER                             = "--compiler.headless-server";
     String COMPILER_FONTS_MAX_GLYPHS_PER_FACE                   = "--compiler.fonts.max-glyphs-per-face";
     String COMPILER_FONTS_MAX_CACHED_FONTS                      = "--compiler.fonts.max-cached-fonts";
+    String COMPILER_THREADS                                     = "--compiler.threads";
+    String COMPILER_VIRTUAL_THREADS                             = "--compiler.virtual-threads";
+    String COMPILER_FILE_SCOPE_CACHE_DIR                        = "--compiler.file-scope-cache-dir";
+    String COMPILER_LIBRARY_CACHE_MAX_SIZE                      = "--compiler.library-cache-max-size";
     String COMPILER_FONTS_MANAGERS                              = "--compiler.fonts.managers";
     String COMPILER_FONTS_LOCAL_FONT_PATHS                      = "--compiler.fonts.local-font-paths";
     String COMPILER_FONTS_LOCAL_FONTS_SNAPSHOT                  = "--compiler.fonts.local-fonts-snapshot";
@@ -783,6 +783,40 @@ public class OEMConfiguration implements Configuration, ConfigurationConstants,
 		}
 	}
 	
+	/**
+	 * Sets the maximum number of threads that compile the source files, and whether
+	 * to compile each source file on its own virtual thread instead.
+	 * This is equivalent to using <code>mxmlc/compc --compiler.threads</code> and
+	 * <code>--compiler.virtual-threads</code>.
+	 * By default, it's 16 platform threads.
+	 * 
+	 * @param count an integer, or 0 for the default
+	 * @param useVirtualThreads boolean value
+	 */
+	public void setCompilerThreads(int count, boolean useVirtualThreads)
+	{
+		if (count >= 0)
+		{
+			args.put(COMPILER_THREADS, new Integer(count));
+		}
+		args.put(COMPILER_VIRTUAL_THREADS, useVirtualThreads ? Boolean.TRUE : Boolean.FALSE);
+	}
+	
+	/**
+	 * Sets the maximum size, in megabytes, of each of the caches of SWC and SWF contents.
+	 * This is equivalent to using <code>mxmlc/compc --compiler.library-cache-max-size</code>.
+	 * By default, there is no maximum.
+	 * 
+	 * @param size an integer, or 0 for no maximum
+	 */
+	public void setLibraryCacheSize(int size)
+	{
+		if (size >= 0)
+		{
+			args.put(COMPILER_LIBRARY_CACHE_MAX_SIZE, new Integer(size));
+		}
+	}
+	
 	/**
 	 * Sets the maximum number of character glyph outlines to cache for each font face.
 	 * This is equivalent to using <code>mxmlc/compc --compiler.fonts.max-glyphs-per-face</code>.
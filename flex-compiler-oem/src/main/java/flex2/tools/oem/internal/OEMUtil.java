@@ -19,9 +19,15 @@
 
 package flex2.tools.oem.internal;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import flex2.compiler.common.CompilerConfiguration;
@@ -499,6 +505,78 @@ public class OEMUtil
 		return args;
 	}
 	
+	/**
+	 * Writes the compilation data that a new <code>Application</code> or
+	 * <code>Library</code> needs to warm start: the directory of the on-disk
+	 * cache of file scopes of the last build.
+	 * 
+	 * @param out
+	 * @param fileScopeCacheDirectory the directory, or null
+	 * @return the number of bytes written
+	 * @throws IOException
+	 */
+	public static final long saveCompilationData(OutputStream out, File fileScopeCacheDirectory) throws IOException
+	{
+		Properties data = new Properties();
+		data.setProperty(COMPILATION_DATA_VERSION_KEY, COMPILATION_DATA_VERSION);
+		if (fileScopeCacheDirectory != null)
+			data.setProperty(FILE_SCOPE_CACHE_DIR_KEY, fileScopeCacheDirectory.getPath());
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		data.store(buffer, null);
+		buffer.writeTo(out);
+		return buffer.size();
+	}
+
+	/**
+	 * Reads the compilation data written by {@link #saveCompilationData}.
+	 * Data written by another version is ignored.
+	 * 
+	 * @param in
+	 * @return the directory of the on-disk cache of file scopes, or null
+	 * @throws IOException
+	 */
+	public static final File loadCompilationData(InputStream in) throws IOException
+	{
+		Properties data = new Properties();
+		data.load(in);
+		if (!COMPILATION_DATA_VERSION.equals(data.getProperty(COMPILATION_DATA_VERSION_KEY)))
+			return null;
+
+		String directory = data.getProperty(FILE_SCOPE_CACHE_DIR_KEY);
+		return directory != null ? new File(directory) : null;
+	}
+
+	/**
+	 * Adds the directory of the on-disk cache of file scopes to the command
+	 * line, unless the command line already sets one.
+	 * 
+	 * @param args
+	 * @param fileScopeCacheDirectory the directory, or null
+	 * @return
+	 */
+	public static final String[] addFileScopeCacheDirectory(String[] args, File fileScopeCacheDirectory)
+	{
+		if (fileScopeCacheDirectory == null)
+			return args;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].startsWith(ConfigurationConstants.COMPILER_FILE_SCOPE_CACHE_DIR))
+				return args;
+		}
+
+		String[] newArgs = new String[args.length + 2];
+		newArgs[0] = ConfigurationConstants.COMPILER_FILE_SCOPE_CACHE_DIR;
+		newArgs[1] = fileScopeCacheDirectory.getPath();
+		System.arraycopy(args, 0, newArgs, 2, args.length);
+		return newArgs;
+	}
+
+	private static final String COMPILATION_DATA_VERSION_KEY = "version";
+	private static final String COMPILATION_DATA_VERSION = "1";
+	private static final String FILE_SCOPE_CACHE_DIR_KEY = "file-scope-cache-dir";
+
 	public static final Logger getLogger(Logger logger, List<Message> messages)
 	{
 		return new BuilderLogger(logger == null ? new OEMConsole() : logger, messages);
@@ -19,6 +19,7 @@ import org.apache.flex.tools.FlexTool;
 import org.apache.flex.tools.FlexToolGroup;
 import org.apache.flex.tools.FlexToolRegistry;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
@@ -44,6 +45,12 @@ public abstract class BaseMojo
         extends AbstractMojo
 {
 
+    /**
+     * The system property read by the compiler's
+     * {@code org.apache.royale.compiler.internal.workspaces.SharedWorkspace}.
+     */
+    private static final String SHARED_WORKSPACE_PROPERTY = "royale.compiler.shared-workspace";
+
     @Parameter(defaultValue = "${project}", readonly = true)
     protected MavenProject project;
 
@@ -97,6 +104,20 @@ public abstract class BaseMojo
     @Parameter
     private String additionalCompilerOptions = null;
 
+    /**
+     * Share the SWCs read by the compiler, such as the framework SWCs, between
+     * all of the executions of this plugin in a Maven session, instead of
+     * reading them again for every module. SWCs that change on disk during
+     * the session, such as the output of another module, are read again.
+     * Modules built in parallel (-T) share the same caches.
+     * Needs a compiler that supports it; older ones ignore it.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean shareCompilerCaches;
+
+    @Parameter(readonly = true, defaultValue = "${session}")
+    private MavenSession session;
+
     @Component
     private ProjectDependenciesResolver projectDependenciesResolver;
 
@@ -301,6 +322,15 @@ public abstract class BaseMojo
             throw new MojoExecutionException("Could not find tool group: " + getToolGroupName());
         }
 
+        // The compiler shares a workspace between the compilations of a session
+        // while this property identifies the session.
+        if(shareCompilerCaches) {
+            System.setProperty(SHARED_WORKSPACE_PROPERTY, Integer.toHexString(System.identityHashCode(session)) +
+                    "-" + session.getStartTime().getTime());
+        } else {
+            System.clearProperty(SHARED_WORKSPACE_PROPERTY);
+        }
+
         // Get an instance of the compiler and run the build.
         FlexTool tool = toolGroup.getFlexTool(getFlexTool());
         String[] args = getCompilerArgs(configFile).toArray(new String[0]);
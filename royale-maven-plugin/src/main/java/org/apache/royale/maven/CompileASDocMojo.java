@@ -26,7 +26,7 @@ import java.util.List;
 /**
  * goal which compiles the asdoc documentation for the project.
  */
-@Mojo(name="compile-asdoc",defaultPhase = LifecyclePhase.SITE)
+@Mojo(name="compile-asdoc",defaultPhase = LifecyclePhase.SITE,threadSafe = true)
 public class CompileASDocMojo
     extends BaseMojo
 {
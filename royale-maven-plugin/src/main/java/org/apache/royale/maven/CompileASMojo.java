@@ -30,7 +30,7 @@ import java.util.List;
 /**
  * goal which compiles a project into a royale swc library.
  */
-@Mojo(name="compile-as",defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name="compile-as",defaultPhase = LifecyclePhase.PROCESS_SOURCES,threadSafe = true)
 public class CompileASMojo
     extends BaseMojo
 {
@@ -28,7 +28,7 @@ import java.util.List;
 /**
  * goal which compiles a project into a royale sef application.
  */
-@Mojo(name="compile-app",defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name="compile-app",defaultPhase = LifecyclePhase.PROCESS_SOURCES,threadSafe = true)
 public class CompileAppMojo
     extends BaseMojo
 {
@@ -33,7 +33,7 @@ import java.util.zip.ZipOutputStream;
 /**
  * goal which compiles a project into a royale swc library.
  */
-@Mojo(name="compile-js",defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name="compile-js",defaultPhase = LifecyclePhase.PROCESS_SOURCES,threadSafe = true)
 public class CompileJSMojo
     extends BaseMojo
 {
@@ -30,7 +30,7 @@ import java.util.List;
 /**
  * goal which compiles a project into a royale swc library.
  */
-@Mojo(name="compile-extern",defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name="compile-extern",defaultPhase = LifecyclePhase.PROCESS_SOURCES,threadSafe = true)
 public class CompileTypedefsMojo
     extends BaseMojo
 {
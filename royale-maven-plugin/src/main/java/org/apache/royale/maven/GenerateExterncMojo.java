@@ -29,7 +29,7 @@ import java.util.List;
 /**
  * Created by christoferdutz on 30.04.16.
  */
-@Mojo(name="generate-extern",defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name="generate-extern",defaultPhase = LifecyclePhase.PROCESS_SOURCES,threadSafe = true)
 public class GenerateExterncMojo
         extends BaseMojo
 {